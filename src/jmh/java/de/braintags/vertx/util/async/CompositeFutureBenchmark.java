@@ -0,0 +1,93 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link CacheableCompositeFuture#all(List)} and {@link CacheableCompositeFuture#join(List)} over completed and pending
+ * futures
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompositeFutureBenchmark {
+
+  @Param({ "10", "100", "1000", "10000" })
+  public int size;
+
+  @Benchmark
+  public Object allSucceeded() {
+    return CacheableCompositeFuture.all(succeeded()).result();
+  }
+
+  @Benchmark
+  public Object allPending() {
+    List<CacheableFuture<Integer>> futures = pending();
+    CacheableFuture<List<Integer>> all = CacheableCompositeFuture.all(futures);
+    complete(futures);
+    return all.result();
+  }
+
+  @Benchmark
+  public Object joinSucceeded() {
+    return CacheableCompositeFuture.join(succeeded()).result();
+  }
+
+  @Benchmark
+  public Object joinPending() {
+    List<CacheableFuture<Integer>> futures = pending();
+    CacheableFuture<List<Integer>> join = CacheableCompositeFuture.join(futures);
+    complete(futures);
+    return join.result();
+  }
+
+  private List<CacheableFuture<Integer>> succeeded() {
+    List<CacheableFuture<Integer>> futures = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      futures.add(CacheableFuture.succeededFuture(CacheableResult.INFINITE, i));
+    }
+    return futures;
+  }
+
+  private List<CacheableFuture<Integer>> pending() {
+    List<CacheableFuture<Integer>> futures = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      futures.add(CacheableFuture.future());
+    }
+    return futures;
+  }
+
+  private void complete(final List<CacheableFuture<Integer>> futures) {
+    for (int i = 0; i < size; i++) {
+      futures.get(i).complete(CacheableResult.INFINITE, i);
+    }
+  }
+
+}
@@ -0,0 +1,92 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+
+/**
+ * Dispatch of {@link MultiThreadedFuture} handlers registered on several event loop contexts. Each invocation
+ * registers the handlers on their contexts, completes the future from the benchmark thread and waits until all
+ * handlers were called on their context.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CrossContextDispatchBenchmark {
+
+  @Param({ "1", "4" })
+  public int contexts;
+
+  @Param({ "1", "16" })
+  public int handlersPerContext;
+
+  private Vertx vertx;
+  private Context[] eventLoops;
+
+  @Setup
+  public void setup() {
+    vertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(contexts));
+    eventLoops = new Context[contexts];
+    for (int i = 0; i < contexts; i++) {
+      eventLoops[i] = vertx.getOrCreateContext();
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws InterruptedException {
+    CountDownLatch closed = new CountDownLatch(1);
+    vertx.close(res -> closed.countDown());
+    closed.await();
+  }
+
+  @Benchmark
+  public Object dispatch() throws InterruptedException {
+    MultiThreadedFuture<String> future = MultiThreadedFuture.future();
+    CountDownLatch registered = new CountDownLatch(contexts);
+    CountDownLatch called = new CountDownLatch(contexts * handlersPerContext);
+    for (Context context : eventLoops) {
+      context.runOnContext(v -> {
+        for (int i = 0; i < handlersPerContext; i++) {
+          future.setHandler(res -> called.countDown());
+        }
+        registered.countDown();
+      });
+    }
+    registered.await();
+    future.complete("result");
+    called.await();
+    return future;
+  }
+
+}
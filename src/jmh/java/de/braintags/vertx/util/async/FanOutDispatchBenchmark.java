@@ -0,0 +1,142 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+
+/**
+ * Completion of a future with many handlers spread over several event loops. The contexts are wrapped in proxies which
+ * count the calls of {@link Context#runOnContext(Handler)}, the count per operation is reported as the secondary
+ * result "submissions":
+ * <ul>
+ * <li>batched: {@link MultiThreadedFutureImpl} dispatches one task per context</li>
+ * <li>perHandler: one task per handler, like the dispatch before the handlers were grouped by context</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FanOutDispatchBenchmark {
+
+  @Param({ "8" })
+  public int contexts;
+
+  @Param({ "20", "200" })
+  public int handlers;
+
+  private Vertx vertx;
+  private Context[] eventLoops;
+  private final LongAdder submissions = new LongAdder();
+
+  /**
+   * Reports the number of submitted tasks per operation
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Counters {
+
+    public long submissions;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      submissions = 0;
+    }
+  }
+
+  @Setup
+  public void setup() {
+    vertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(contexts));
+    eventLoops = new Context[contexts];
+    for (int i = 0; i < contexts; i++) {
+      eventLoops[i] = counting(vertx.getOrCreateContext());
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws InterruptedException {
+    CountDownLatch closed = new CountDownLatch(1);
+    vertx.close(res -> closed.countDown());
+    closed.await();
+  }
+
+  @Benchmark
+  public Object batched(final Counters counters) throws InterruptedException {
+    long before = submissions.sum();
+    MultiThreadedFutureImpl<String> future = new MultiThreadedFutureImpl<>();
+    CountDownLatch called = new CountDownLatch(handlers);
+    for (int i = 0; i < handlers; i++) {
+      future.addHandler(eventLoops[i % contexts], res -> called.countDown());
+    }
+    future.complete("result");
+    called.await();
+    counters.submissions += submissions.sum() - before;
+    return future;
+  }
+
+  @Benchmark
+  public Object perHandler(final Counters counters) throws InterruptedException {
+    long before = submissions.sum();
+    MultiThreadedFutureImpl<String> future = new MultiThreadedFutureImpl<>();
+    CountDownLatch called = new CountDownLatch(handlers);
+    for (int i = 0; i < handlers; i++) {
+      Context context = eventLoops[i % contexts];
+      future.addHandler(null, res -> context.runOnContext(v -> called.countDown()));
+    }
+    future.complete("result");
+    called.await();
+    counters.submissions += submissions.sum() - before;
+    return future;
+  }
+
+  private Context counting(final Context context) {
+    return (Context) Proxy.newProxyInstance(Context.class.getClassLoader(), new Class<?>[] { Context.class },
+        (proxy, method, args) -> {
+          if (method.getName().equals("runOnContext")) {
+            submissions.increment();
+          }
+          try {
+            return method.invoke(context, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+        });
+  }
+
+}
@@ -0,0 +1,115 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.vertx.core.Future;
+
+/**
+ * Cost of map, compose, recover and otherwise stages, on pending futures which are completed after the chain was built
+ * and on already succeeded futures.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FutureChainBenchmark {
+
+  @Param({ "VERTX", "SHARED", "CACHEABLE", "MULTI_THREADED" })
+  public FutureType type;
+
+  @Param({ "1", "5", "10", "20" })
+  public int depth;
+
+  private Function<Integer, Integer> increment;
+  private Function<Integer, Future<Integer>> composeIncrement;
+  private Function<Throwable, Integer> otherwise;
+
+  @Setup
+  public void setup() {
+    increment = i -> i + 1;
+    composeIncrement = i -> type.succeeded(i + 1);
+    otherwise = e -> -1;
+  }
+
+  @Benchmark
+  public Object mapPending() {
+    Future<Integer> start = type.pending();
+    Future<Integer> future = start;
+    for (int i = 0; i < depth; i++) {
+      future = future.map(increment);
+    }
+    start.complete(0);
+    return future.result();
+  }
+
+  @Benchmark
+  public Object mapSucceeded() {
+    Future<Integer> future = type.succeeded(0);
+    for (int i = 0; i < depth; i++) {
+      future = future.map(increment);
+    }
+    return future.result();
+  }
+
+  @Benchmark
+  public Object composePending() {
+    Future<Integer> start = type.pending();
+    Future<Integer> future = start;
+    for (int i = 0; i < depth; i++) {
+      future = future.compose(composeIncrement);
+    }
+    start.complete(0);
+    return future.result();
+  }
+
+  @Benchmark
+  public Object composeSucceeded() {
+    Future<Integer> future = type.succeeded(0);
+    for (int i = 0; i < depth; i++) {
+      future = future.compose(composeIncrement);
+    }
+    return future.result();
+  }
+
+  /**
+   * Alternating map and otherwise stages, the otherwise stages are never used
+   */
+  @Benchmark
+  public Object mapOtherwisePending() {
+    Future<Integer> start = type.pending();
+    Future<Integer> future = start;
+    for (int i = 0; i < depth; i++) {
+      future = future.map(increment).otherwise(otherwise);
+    }
+    start.complete(0);
+    return future.result();
+  }
+
+}
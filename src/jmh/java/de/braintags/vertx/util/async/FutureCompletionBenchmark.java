@@ -0,0 +1,97 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.braintags.vertx.util.async.LegacyFutures.LegacyCacheableFuture;
+import de.braintags.vertx.util.async.LegacyFutures.LegacyMultiThreadedFuture;
+import de.braintags.vertx.util.async.LegacyFutures.LegacySharedFuture;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+
+/**
+ * Compares the compare and set based futures with the former lock based implementations: create a future, register
+ * the handlers and complete it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FutureCompletionBenchmark {
+
+  @Param({ "1", "4" })
+  public int handlers;
+
+  private Handler<AsyncResult<String>> handler;
+
+  @Setup
+  public void setup(final Blackhole blackhole) {
+    handler = res -> blackhole.consume(res.result());
+  }
+
+  @Benchmark
+  public Object sharedFuture() {
+    return run(SharedFuture.future());
+  }
+
+  @Benchmark
+  public Object legacySharedFuture() {
+    return run(new LegacySharedFuture<>());
+  }
+
+  @Benchmark
+  public Object cacheableFuture() {
+    return run(CacheableFuture.future());
+  }
+
+  @Benchmark
+  public Object legacyCacheableFuture() {
+    return run(new LegacyCacheableFuture<>());
+  }
+
+  @Benchmark
+  public Object multiThreadedFuture() {
+    return run(MultiThreadedFuture.future());
+  }
+
+  @Benchmark
+  public Object legacyMultiThreadedFuture() {
+    return run(new LegacyMultiThreadedFuture<>());
+  }
+
+  private Future<String> run(final Future<String> future) {
+    for (int i = 0; i < handlers; i++) {
+      future.setHandler(handler);
+    }
+    future.complete("result");
+    return future;
+  }
+
+}
@@ -0,0 +1,98 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+
+/**
+ * Creation, completion and handler fan-out of the different future types
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FutureLifecycleBenchmark {
+
+  @Param({ "VERTX", "SHARED", "CACHEABLE", "MULTI_THREADED" })
+  public FutureType type;
+
+  @Param({ "0", "1", "4", "16" })
+  public int handlers;
+
+  private Handler<AsyncResult<String>> handler;
+
+  @Setup
+  public void setup(final Blackhole blackhole) {
+    handler = res -> blackhole.consume(res.result());
+  }
+
+  @Benchmark
+  public Object createPending() {
+    return type.pending();
+  }
+
+  @Benchmark
+  public Object createSucceeded() {
+    return type.succeeded("result");
+  }
+
+  @Benchmark
+  public Object complete() {
+    Future<String> future = type.pending();
+    future.complete("result");
+    return future;
+  }
+
+  /**
+   * Handlers registered before the completion. The plain vertx future only supports one handler, so the handlers
+   * replace each other.
+   */
+  @Benchmark
+  public Object fanOutBeforeCompletion() {
+    Future<String> future = type.pending();
+    for (int i = 0; i < handlers; i++) {
+      future.setHandler(handler);
+    }
+    future.complete("result");
+    return future;
+  }
+
+  @Benchmark
+  public Object fanOutAfterCompletion() {
+    Future<String> future = type.succeeded("result");
+    for (int i = 0; i < handlers; i++) {
+      future.setHandler(handler);
+    }
+    return future;
+  }
+
+}
@@ -0,0 +1,77 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import io.vertx.core.Future;
+
+/**
+ * The future implementations compared by the benchmarks. {@link #VERTX} is the plain vertx future as baseline.
+ */
+enum FutureType {
+
+  VERTX {
+    @Override
+    <T> Future<T> pending() {
+      return Future.future();
+    }
+
+    @Override
+    <T> Future<T> succeeded(final T result) {
+      return Future.succeededFuture(result);
+    }
+  },
+  SHARED {
+    @Override
+    <T> Future<T> pending() {
+      return SharedFuture.future();
+    }
+
+    @Override
+    <T> Future<T> succeeded(final T result) {
+      return SharedFuture.succeededFuture(result);
+    }
+  },
+  CACHEABLE {
+    @Override
+    <T> Future<T> pending() {
+      return CacheableFuture.future();
+    }
+
+    @Override
+    <T> Future<T> succeeded(final T result) {
+      return CacheableFuture.succeededFuture(CacheableResult.INFINITE, result);
+    }
+  },
+  MULTI_THREADED {
+    @Override
+    <T> Future<T> pending() {
+      return MultiThreadedFuture.future();
+    }
+
+    @Override
+    <T> Future<T> succeeded(final T result) {
+      return MultiThreadedFuture.succeededFuture(CacheableResult.INFINITE, result);
+    }
+  };
+
+  /**
+   * @return a new future which is not completed
+   */
+  abstract <T> Future<T> pending();
+
+  /**
+   * @return a new future which is already succeeded with the result
+   */
+  abstract <T> Future<T> succeeded(T result);
+
+}
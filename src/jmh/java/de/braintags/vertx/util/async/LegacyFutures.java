@@ -0,0 +1,242 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+
+/**
+ * The completion and handler logic of the futures before the switch to compare and set, reduced to what the
+ * benchmarks need. Only used as baseline for the benchmarks.
+ */
+final class LegacyFutures {
+
+  private LegacyFutures() {
+  }
+
+  /**
+   * Handler storage of the former {@link SharedFutureImpl}: one handler field and a lazily created list
+   */
+  static class LegacySharedFuture<T> extends AbstractFuture<T> {
+
+    protected boolean failed;
+    protected boolean succeeded;
+    protected T result;
+    protected Throwable throwable;
+
+    private Handler<AsyncResult<T>> handler;
+    private List<Handler<AsyncResult<T>>> additionalHandlers;
+
+    @Override
+    public T result() {
+      return result;
+    }
+
+    @Override
+    public Throwable cause() {
+      return throwable;
+    }
+
+    @Override
+    public boolean succeeded() {
+      return succeeded;
+    }
+
+    @Override
+    public boolean failed() {
+      return failed;
+    }
+
+    @Override
+    public boolean isComplete() {
+      return failed || succeeded;
+    }
+
+    @Override
+    public Future<T> setHandler(final Handler<AsyncResult<T>> handler) {
+      if (isComplete()) {
+        handler.handle(this);
+      } else if (this.handler != null) {
+        if (additionalHandlers == null) {
+          additionalHandlers = new ArrayList<>(4);
+        }
+        additionalHandlers.add(handler);
+      } else {
+        this.handler = handler;
+      }
+      return this;
+    }
+
+    @Override
+    public boolean tryFail(final Throwable cause) {
+      if (isComplete())
+        return false;
+      this.throwable = cause;
+      failed = true;
+      callHandlers();
+      return true;
+    }
+
+    @Override
+    public boolean tryComplete(final T result) {
+      if (isComplete())
+        return false;
+      this.result = result;
+      succeeded = true;
+      callHandlers();
+      return true;
+    }
+
+    protected void callHandlers() {
+      if (handler != null) {
+        handler.handle(this);
+        handler = null;
+      }
+      if (additionalHandlers != null) {
+        int size = additionalHandlers.size();
+        for (int i = 0; i < size; i++) {
+          additionalHandlers.get(i).handle(this);
+        }
+        additionalHandlers = null;
+      }
+    }
+  }
+
+  /**
+   * Completion of the former {@link CacheableFutureImpl}: synchronized on the future
+   */
+  static class LegacyCacheableFuture<T> extends LegacySharedFuture<T> {
+
+    private long expires = CacheableFuture.INFINITE;
+
+    public long expires() {
+      return expires;
+    }
+
+    public void reduceExpire(final long expires) {
+      this.expires = Math.min(this.expires, expires);
+    }
+
+    public synchronized boolean tryComplete(final long expires, final T result) {
+      if (isComplete())
+        return false;
+      reduceExpire(expires);
+      this.result = result;
+      succeeded = true;
+      callHandlers();
+      return true;
+    }
+
+    @Override
+    public synchronized boolean tryComplete(final T result) {
+      if (isComplete())
+        return false;
+      reduceExpire(CacheableFuture.EXPIRED);
+      return super.tryComplete(result);
+    }
+  }
+
+  /**
+   * Former {@link MultiThreadedFutureImpl}: synchronized, with an eagerly created list of context/handler pairs
+   */
+  static class LegacyMultiThreadedFuture<T> extends AbstractFuture<T> {
+
+    private volatile List<Pair<Context, Handler<AsyncResult<T>>>> handlers = new ArrayList<>();
+    protected volatile FutureState state = FutureState.RUNNING;
+    protected volatile T result;
+    protected volatile Throwable throwable;
+
+    @Override
+    public T result() {
+      return result;
+    }
+
+    @Override
+    public Throwable cause() {
+      return throwable;
+    }
+
+    @Override
+    public boolean succeeded() {
+      return state == FutureState.SUCCEEDED;
+    }
+
+    @Override
+    public boolean failed() {
+      return state == FutureState.FAILED;
+    }
+
+    @Override
+    public boolean isComplete() {
+      return state != FutureState.RUNNING;
+    }
+
+    @Override
+    public synchronized boolean tryComplete(final T result) {
+      if (isComplete())
+        return false;
+      this.result = result;
+      state = FutureState.SUCCEEDED;
+      callHandlers();
+      return true;
+    }
+
+    @Override
+    public synchronized boolean tryFail(final Throwable cause) {
+      if (isComplete())
+        return false;
+      this.throwable = cause;
+      state = FutureState.FAILED;
+      callHandlers();
+      return true;
+    }
+
+    protected synchronized void callHandlers() {
+      Context currentContext = Vertx.currentContext();
+      for (Pair<Context, Handler<AsyncResult<T>>> handler : handlers) {
+        if (handler.getKey() == null || currentContext == handler.getKey()) {
+          handler.getValue().handle(this);
+        } else {
+          handler.getKey().runOnContext(v -> handler.getValue().handle(this));
+        }
+      }
+      handlers = null;
+    }
+
+    @Override
+    public Future<T> setHandler(final Handler<AsyncResult<T>> handler) {
+      boolean handleImmediately = isComplete();
+      if (!handleImmediately) {
+        Context currentContext = Vertx.currentContext();
+        synchronized (this) {
+          handleImmediately = isComplete();
+          if (!handleImmediately) {
+            handlers.add(Pair.of(currentContext, handler));
+          }
+        }
+      }
+      if (handleImmediately) {
+        handler.handle(this);
+      }
+      return this;
+    }
+  }
+}
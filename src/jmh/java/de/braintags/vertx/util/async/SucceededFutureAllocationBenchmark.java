@@ -0,0 +1,154 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.vertx.core.Future;
+
+/**
+ * Allocations of map and compose chains on already succeeded futures. Run with the gc profiler (enabled by default in
+ * the build) and compare gc.alloc.rate.norm of the fused and the unfused variants:
+ *
+ * <pre>
+ * mvn -Pjmh verify -Djmh.include=SucceededFutureAllocationBenchmark
+ * </pre>
+ *
+ * The pending variants derive the futures from a cacheable future which is completed afterwards, so the handlers of
+ * the derived futures are part of the allocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SucceededFutureAllocationBenchmark {
+
+  private CacheableFuture<Integer> cacheable;
+  private SharedFuture<Integer> shared;
+  private CacheableResult<Integer> cacheableResult;
+  private Function<Integer, Integer> increment;
+  private Function<Integer, Integer> identity;
+  private Function<Integer, Future<Integer>> composeCacheable;
+
+  @Setup
+  public void setup() {
+    cacheable = CacheableFuture.succeededFuture(CacheableResult.INFINITE, 1);
+    shared = SharedFuture.succeededFuture(1);
+    cacheableResult = CacheableResult.succeededResult(1, CacheableResult.INFINITE);
+    increment = i -> i + 1;
+    identity = i -> i;
+    composeCacheable = i -> cacheable;
+  }
+
+  @Benchmark
+  public Object mapThenCompose() {
+    return cacheable.map(increment).compose(composeCacheable);
+  }
+
+  @Benchmark
+  public Object mapThenComposeFused() {
+    return cacheable.mapThenCompose(increment, composeCacheable);
+  }
+
+  @Benchmark
+  public Object mapChain() {
+    return cacheable.map(increment).map(increment).map(increment);
+  }
+
+  @Benchmark
+  public Object mapChainPiped() {
+    return cacheable.pipe(increment, increment, increment);
+  }
+
+  @Benchmark
+  public Object mapIdentity() {
+    return cacheable.map(identity).map(identity);
+  }
+
+  @Benchmark
+  public Object map2() {
+    return cacheable.map2(cacheable, (a, b) -> a + b);
+  }
+
+  @Benchmark
+  public Object map2Unfused() {
+    return cacheable.compose(a -> cacheable.map(b -> a + b));
+  }
+
+  @Benchmark
+  public Object pendingMapThenCompose() {
+    CacheableFuture<Integer> pending = CacheableFuture.future();
+    CacheableFuture<Integer> result = pending.map(increment).compose(composeCacheable);
+    pending.complete(CacheableResult.INFINITE, 1);
+    return result;
+  }
+
+  @Benchmark
+  public Object pendingMapThenComposeFused() {
+    CacheableFuture<Integer> pending = CacheableFuture.future();
+    CacheableFuture<Integer> result = pending.mapThenCompose(increment, composeCacheable);
+    pending.complete(CacheableResult.INFINITE, 1);
+    return result;
+  }
+
+  @Benchmark
+  public Object pendingMap2() {
+    CacheableFuture<Integer> pending = CacheableFuture.future();
+    CacheableFuture<Integer> result = pending.map2(cacheable, (a, b) -> a + b);
+    pending.complete(CacheableResult.INFINITE, 1);
+    return result;
+  }
+
+  @Benchmark
+  public Object pendingMap2Unfused() {
+    CacheableFuture<Integer> pending = CacheableFuture.future();
+    CacheableFuture<Integer> result = pending.compose(a -> cacheable.map(b -> a + b));
+    pending.complete(CacheableResult.INFINITE, 1);
+    return result;
+  }
+
+  @Benchmark
+  public Object sharedMapToBoolean() {
+    return shared.map(Boolean.TRUE);
+  }
+
+  @Benchmark
+  public Object sharedMapEmpty() {
+    return shared.mapEmpty();
+  }
+
+  @Benchmark
+  public Object cacheableResultMapIdentity() {
+    return cacheableResult.map(identity);
+  }
+
+  @Benchmark
+  public Object cacheableResultMap() {
+    return cacheableResult.map(increment);
+  }
+
+}
@@ -0,0 +1,87 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.json;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Applies a diff which changes one field of one entry of a large array map. The diff sets a value, so it can be applied
+ * to the same base repeatedly:
+ * <ul>
+ * <li>applyDiff: {@link JsonDiff#applyDiff(JsonNode, JsonNode)}, which converts the whole array map</li>
+ * <li>applyDiffInPlace: {@link JsonDiff#applyDiffInPlace(JsonNode, JsonNode)}, which only touches the patched
+ * entry</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApplyDiffBenchmark {
+
+  @Param({ "100", "10000" })
+  public int size;
+
+  private JsonNode base;
+  private JsonNode diff;
+
+  @Setup
+  public void setup() {
+    JsonNodeFactory factory = JsonNodeFactory.instance;
+    ObjectNode document = factory.objectNode();
+    document.put("title", "document");
+    ArrayNode entries = document.putObject("entries").putArray(ArrayMapSerializer.ARRAY_MAP);
+    for (int i = 0; i < size; i++) {
+      ObjectNode entry = entries.addObject();
+      entry.putObject(ArrayMapSerializer.KEY).put("id", i).put("type", "key");
+      ObjectNode value = entry.putObject(ArrayMapSerializer.VALUE);
+      value.put("name", "entry " + i);
+      value.putArray("tags").add("a").add("b");
+    }
+    ObjectNode data = document.deepCopy();
+    ((ObjectNode) data.get("entries").get(ArrayMapSerializer.ARRAY_MAP).get(size / 2).get(ArrayMapSerializer.VALUE))
+        .put("name", "changed");
+    base = document;
+    diff = JsonDiff.getDiff(document, data);
+  }
+
+  @Benchmark
+  public JsonNode applyDiff() {
+    return JsonDiff.applyDiff(base, diff);
+  }
+
+  @Benchmark
+  public JsonNode applyDiffInPlace() {
+    return JsonDiff.applyDiffInPlace(base, diff);
+  }
+
+}
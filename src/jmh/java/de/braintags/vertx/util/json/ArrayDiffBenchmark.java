@@ -0,0 +1,121 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.json;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Diff of an array of objects where 1% of the elements were removed, inserted or changed and a block of elements was
+ * moved:
+ * <ul>
+ * <li>hashed: {@link JsonDiff#getDiff(JsonNode, JsonNode)}, which matches equal elements by a hash lookup</li>
+ * <li>legacy: the former backward scan for each element, quadratic in the array size. It has its own sizes, because
+ * an array of 100000 elements would take minutes per operation.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArrayDiffBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Arrays {
+
+    @Param({ "100", "1000", "10000", "100000" })
+    public int size;
+
+    JsonNode base;
+    JsonNode data;
+
+    @Setup
+    public void setup() {
+      create(this, size);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class LegacyArrays {
+
+    @Param({ "100", "1000", "10000" })
+    public int size;
+
+    Arrays arrays = new Arrays();
+
+    @Setup
+    public void setup() {
+      create(arrays, size);
+    }
+  }
+
+  private static void create(final Arrays arrays, final int size) {
+    JsonNodeFactory factory = JsonNodeFactory.instance;
+    Random random = new Random(42);
+    ArrayNode baseArray = factory.arrayNode(size);
+    for (int i = 0; i < size; i++) {
+      baseArray.add(element(factory, i, "element " + i));
+    }
+    ArrayNode dataArray = baseArray.deepCopy();
+    for (int i = 0; i < Math.max(1, size / 100); i++) {
+      dataArray.remove(random.nextInt(dataArray.size()));
+      dataArray.insert(random.nextInt(dataArray.size()), element(factory, size + i, "inserted"));
+      ((ObjectNode) dataArray.get(random.nextInt(dataArray.size()))).put("name", "changed " + i);
+    }
+    // move the first tenth to the end
+    for (int i = 0; i < size / 10; i++) {
+      dataArray.add(dataArray.remove(0));
+    }
+    arrays.base = factory.objectNode().set("array", baseArray);
+    arrays.data = factory.objectNode().set("array", dataArray);
+  }
+
+  private static ObjectNode element(final JsonNodeFactory factory, final int id, final String name) {
+    ObjectNode element = factory.objectNode();
+    element.put("id", id);
+    element.put("name", name);
+    element.putArray("tags").add("a").add("b");
+    element.putObject("nested").put("value", id * 31);
+    return element;
+  }
+
+  @Benchmark
+  public JsonNode hashed(final Arrays arrays) {
+    return JsonDiff.getDiff(arrays.base, arrays.data);
+  }
+
+  @Benchmark
+  public JsonNode legacy(final LegacyArrays legacy) {
+    return LegacyJsonDiff.arrayDiff((ArrayNode) legacy.arrays.base.get("array"),
+        (ArrayNode) legacy.arrays.data.get("array"), JsonNodeFactory.instance);
+  }
+
+}
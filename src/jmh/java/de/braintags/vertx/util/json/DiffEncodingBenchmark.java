@@ -0,0 +1,131 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.json;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.vertx.core.json.Json;
+
+/**
+ * Encoding and decoding of the diff of a document with an array of objects, where 1% of the elements were changed and
+ * some fields of the document were replaced. The encoded size per operation is reported as the secondary result
+ * "bytes":
+ * <ul>
+ * <li>binary: {@link JsonDiffCodec}</li>
+ * <li>json: the diff as JSON text, as it was sent before</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiffEncodingBenchmark {
+
+  @Param({ "100", "10000" })
+  public int size;
+
+  private JsonNode diff;
+  private byte[] binary;
+  private byte[] json;
+
+  /**
+   * Reports the number of encoded bytes per operation
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Counters {
+
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      bytes = 0;
+    }
+  }
+
+  @Setup
+  public void setup() throws IOException {
+    JsonNodeFactory factory = JsonNodeFactory.instance;
+    Random random = new Random(42);
+    ObjectNode base = factory.objectNode();
+    base.put("title", "document");
+    base.put("version", 1);
+    ArrayNode baseArray = base.putArray("array");
+    for (int i = 0; i < size; i++) {
+      ObjectNode element = baseArray.addObject();
+      element.put("id", i);
+      element.put("name", "element " + i);
+      element.put("price", i * 0.25);
+      element.putArray("tags").add("a").add("b");
+    }
+    ObjectNode data = base.deepCopy();
+    data.put("version", 2);
+    ArrayNode dataArray = (ArrayNode) data.get("array");
+    for (int i = 0; i < Math.max(1, size / 100); i++) {
+      ObjectNode element = (ObjectNode) dataArray.get(random.nextInt(dataArray.size()));
+      element.put("name", "changed " + i);
+      element.put("price", random.nextDouble());
+    }
+    diff = JsonDiff.getDiff(base, data);
+    binary = JsonDiffCodec.encode(diff);
+    json = Json.mapper.writeValueAsBytes(diff);
+  }
+
+  @Benchmark
+  public byte[] encodeBinary(final Counters counters) {
+    byte[] encoded = JsonDiffCodec.encode(diff);
+    counters.bytes += encoded.length;
+    return encoded;
+  }
+
+  @Benchmark
+  public byte[] encodeJson(final Counters counters) throws IOException {
+    byte[] encoded = Json.mapper.writeValueAsBytes(diff);
+    counters.bytes += encoded.length;
+    return encoded;
+  }
+
+  @Benchmark
+  public JsonNode decodeBinary() {
+    return JsonDiffCodec.decode(binary);
+  }
+
+  @Benchmark
+  public JsonNode decodeJson() throws IOException {
+    return Json.mapper.readTree(json);
+  }
+
+}
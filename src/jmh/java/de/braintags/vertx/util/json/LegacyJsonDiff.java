@@ -0,0 +1,62 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.json;
+
+import java.util.Objects;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * The array diff of {@link JsonDiff} before equal elements were matched by a hash lookup. Only used as baseline for
+ * the benchmarks.
+ */
+final class LegacyJsonDiff {
+
+  private LegacyJsonDiff() {
+  }
+
+  static ArrayNode arrayDiff(final ArrayNode baseNode, final ArrayNode dataNode, final JsonNodeFactory nodeFactory) {
+    ArrayNode elements = nodeFactory.arrayNode(dataNode.size());
+    boolean[] usedIndices = new boolean[baseNode.size()];
+    for (int index = 0; index < dataNode.size(); index++) {
+      JsonNode element = dataNode.get(index);
+      int oldIndex = indexOf(baseNode, element, usedIndices);
+      if (oldIndex >= 0) {
+        elements.add(nodeFactory.numberNode(oldIndex));
+        usedIndices[oldIndex] = true;
+      } else {
+        ObjectNode valueNode = nodeFactory.objectNode();
+        if (baseNode.size() > index) {
+          valueNode.set(JsonDiff.DIFF, JsonDiff.getDiff(baseNode.get(index), element, nodeFactory));
+          valueNode.set(JsonDiff.INDEX, nodeFactory.numberNode(index));
+        } else {
+          valueNode.set(JsonDiff.VALUE, element.deepCopy());
+        }
+        elements.add(valueNode);
+      }
+    }
+    return elements;
+  }
+
+  private static int indexOf(final ArrayNode baseNode, final JsonNode element, final boolean[] ignoredIndices) {
+    for (int i = baseNode.size() - 1; i >= 0; i--) {
+      if (!ignoredIndices[i] && Objects.equals(baseNode.get(i), element)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
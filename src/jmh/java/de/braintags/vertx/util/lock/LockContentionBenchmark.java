@@ -0,0 +1,79 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.lock;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Several threads executing a mix of read and write locked executions on one lock. The executions consume some CPU
+ * and release the lock synchronously, executions which can not get the lock are run by the releasing thread:
+ * <ul>
+ * <li>stamped: {@link AsyncReadWriteLock}, retrying on a StampedLock</li>
+ * <li>fair: {@link FairAsyncReadWriteLock}, FIFO queue with batched readers</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class LockContentionBenchmark {
+
+  @Param({ "0.5", "0.9" })
+  public double readRatio;
+
+  @Param({ "10", "100" })
+  public int holdTokens;
+
+  private AsyncReadWriteLock stampedLock;
+  private FairAsyncReadWriteLock fairLock;
+  private LockedExecution execution;
+
+  @Setup
+  public void setup() {
+    stampedLock = new AsyncReadWriteLock();
+    fairLock = new FairAsyncReadWriteLock();
+    execution = finish -> {
+      Blackhole.consumeCPU(holdTokens);
+      finish.run();
+    };
+  }
+
+  @Benchmark
+  public void stamped() {
+    stampedLock.execute(ThreadLocalRandom.current().nextDouble() < readRatio, execution);
+  }
+
+  @Benchmark
+  public Object fair() {
+    return fairLock.execute(ThreadLocalRandom.current().nextDouble() < readRatio, 0, execution);
+  }
+
+}
@@ -11,6 +11,7 @@ public class DebugDetection {
 
   private static final boolean develop = detectDevelopMode();
   private static final boolean profiling = detectProfilingMode();
+  private static final boolean tracing = detectTracingMode();
   private static final boolean test = detectTestMode();
   private static final boolean fileCachingDisabled = detectFileCachingDisabled();
 
@@ -26,6 +27,13 @@ public class DebugDetection {
     return profiling;
   }
 
+  /**
+   * @return true if futures are traced, see {@link de.braintags.vertx.util.async.FutureTracer}
+   */
+  public static boolean isTracing() {
+    return tracing;
+  }
+
   public static boolean isFileCachingDisabled() {
     return fileCachingDisabled;
   }
@@ -46,6 +54,10 @@ public class DebugDetection {
     return "true".equals(System.getProperties().getProperty("profiling"));
   }
 
+  private static boolean detectTracingMode() {
+    return "true".equals(System.getProperties().getProperty("tracing"));
+  }
+
   private static boolean detectDevelopMode() {
     String develop = System.getProperty("develop");
     if (develop != null)
@@ -0,0 +1,308 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+
+/**
+ * Limits the number of concurrently executed asynchronous operations, e.g. calls to a downstream service. The limit is
+ * not fixed, but adjusted by a {@link LimitAlgorithm} from the round trip time of each finished operation:
+ * <ul>
+ * <li>{@link AimdLimit} increases the limit by one while the operations are fast and decreases it by a factor on a
+ * timeout</li>
+ * <li>{@link GradientLimit} compares the current round trip time with the long term average and shrinks the limit
+ * when the downstream becomes slower (like TCP Vegas)</li>
+ * </ul>
+ * If the limit is reached, operations are queued up to the maximum queue size, further operations fail immediately
+ * with a {@link RejectedExecutionException}. An operation that fails with an {@link AsyncTimeoutException} is treated
+ * as a sign of overload.
+ * <p>
+ * A limiter can be shared between verticles. Queued operations are started on the context they were requested on.
+ */
+public class AdaptiveLimiter {
+
+  private final LimitAlgorithm algorithm;
+  private final int minLimit;
+  private final int maxLimit;
+  private final int maxQueueSize;
+
+  private final Queue<Pending<?>> queue = new ArrayDeque<>();
+  private int limit;
+  private int inFlight;
+  private long rejectedCount;
+
+  /**
+   * @param algorithm
+   *          the algorithm to adjust the limit
+   * @param initialLimit
+   *          the limit before the first round trip was measured
+   * @param minLimit
+   *          the lower bound of the limit
+   * @param maxLimit
+   *          the upper bound of the limit
+   * @param maxQueueSize
+   *          the maximum number of operations waiting for a free slot, 0 to fail fast when the limit is reached
+   */
+  public AdaptiveLimiter(final LimitAlgorithm algorithm, final int initialLimit, final int minLimit,
+      final int maxLimit, final int maxQueueSize) {
+    if (minLimit <= 0 || maxLimit < minLimit) {
+      throw new IllegalArgumentException("0 < minLimit <= maxLimit required");
+    }
+    if (maxQueueSize < 0) {
+      throw new IllegalArgumentException("maxQueueSize must be >= 0");
+    }
+    this.algorithm = algorithm;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.maxQueueSize = maxQueueSize;
+    this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+  }
+
+  /**
+   * Executes the operation if the limit is not reached, otherwise queues or rejects it.
+   *
+   * @param operation
+   *          creates the future of the operation
+   * @return the result of the operation or a future failed with {@link RejectedExecutionException}
+   */
+  public <T> MultiThreadedFuture<T> execute(final Supplier<? extends Future<T>> operation) {
+    Pending<T> pending = new Pending<>(operation);
+    synchronized (this) {
+      if (inFlight < limit) {
+        inFlight++;
+      } else if (queue.size() < maxQueueSize) {
+        pending.context = Vertx.currentContext();
+        queue.add(pending);
+        return pending.result;
+      } else {
+        rejectedCount++;
+        return MultiThreadedFuture
+            .failedFuture(new RejectedExecutionException("concurrency limit of " + limit + " reached"));
+      }
+    }
+    start(pending);
+    return pending.result;
+  }
+
+  private <T> void start(final Pending<T> pending) {
+    long start = System.nanoTime();
+    Future<T> future;
+    try {
+      future = pending.operation.get();
+    } catch (Throwable e) {
+      future = Future.failedFuture(e);
+    }
+    future.setHandler(res -> {
+      release(System.nanoTime() - start, res);
+      pending.result.handle(res);
+    });
+  }
+
+  private void release(final long rttNanos, final AsyncResult<?> res) {
+    boolean dropped = res.failed() && res.cause() instanceof AsyncTimeoutException;
+    List<Pending<?>> next = null;
+    synchronized (this) {
+      int newLimit = algorithm.update(limit, inFlight, rttNanos, dropped);
+      limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+      inFlight--;
+      while (inFlight < limit && !queue.isEmpty()) {
+        if (next == null) {
+          next = new ArrayList<>(2);
+        }
+        next.add(queue.poll());
+        inFlight++;
+      }
+    }
+    if (next != null) {
+      Context currentContext = Vertx.currentContext();
+      for (Pending<?> pending : next) {
+        if (pending.context == null || pending.context == currentContext) {
+          start(pending);
+        } else {
+          pending.context.runOnContext(v -> start(pending));
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the current limit
+   */
+  public synchronized int getLimit() {
+    return limit;
+  }
+
+  /**
+   * @return the number of running operations
+   */
+  public synchronized int getInFlight() {
+    return inFlight;
+  }
+
+  /**
+   * @return the number of operations waiting for a free slot
+   */
+  public synchronized int getQueueDepth() {
+    return queue.size();
+  }
+
+  /**
+   * @return the number of operations that were rejected because the limit was reached and the queue was full
+   */
+  public synchronized long getRejectedCount() {
+    return rejectedCount;
+  }
+
+  private static class Pending<T> {
+
+    private final Supplier<? extends Future<T>> operation;
+    private final MultiThreadedFuture<T> result = MultiThreadedFuture.future();
+    private Context context;
+
+    Pending(final Supplier<? extends Future<T>> operation) {
+      this.operation = operation;
+    }
+  }
+
+  /**
+   * Computes the new limit after an operation finished. Called while the limiter is locked, so implementations don't
+   * need to be thread safe, but must be used by one limiter only.
+   */
+  public interface LimitAlgorithm {
+
+    /**
+     * @param limit
+     *          the current limit
+     * @param inFlight
+     *          the number of running operations, including the finished one
+     * @param rttNanos
+     *          the round trip time of the finished operation
+     * @param dropped
+     *          true if the operation failed because of a timeout
+     * @return the new limit
+     */
+    int update(int limit, int inFlight, long rttNanos, boolean dropped);
+  }
+
+  /**
+   * Additive increase, multiplicative decrease: the limit grows by one for each fast operation while at least half of
+   * the limit is used and is multiplied by the backoff ratio for each timeout or slow operation.
+   */
+  public static class AimdLimit implements LimitAlgorithm {
+
+    private final long timeoutNanos;
+    private final double backoffRatio;
+
+    /**
+     * @param timeoutMs
+     *          operations slower than this are treated like a timeout
+     * @param backoffRatio
+     *          the factor to decrease the limit, between 0.5 and 1
+     */
+    public AimdLimit(final long timeoutMs, final double backoffRatio) {
+      if (backoffRatio < 0.5 || backoffRatio >= 1) {
+        throw new IllegalArgumentException("backoffRatio must be in [0.5, 1)");
+      }
+      this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+      this.backoffRatio = backoffRatio;
+    }
+
+    @Override
+    public int update(final int limit, final int inFlight, final long rttNanos, final boolean dropped) {
+      if (dropped || rttNanos > timeoutNanos) {
+        return (int) (limit * backoffRatio);
+      }
+      if (inFlight * 2 >= limit) {
+        return limit + 1;
+      }
+      return limit;
+    }
+  }
+
+  /**
+   * Gradient algorithm: the ratio of the long term average round trip time to the current round trip time estimates
+   * the queueing in the downstream. If the current round trip time rises, the limit shrinks proportionally, otherwise
+   * it grows by a small queue allowance of sqrt(limit).
+   */
+  public static class GradientLimit implements LimitAlgorithm {
+
+    private final double tolerance;
+    private final double smoothing;
+    private final double longRttAlpha;
+
+    private double estimatedLimit = -1;
+    private double longRtt;
+
+    /**
+     * Create a gradient limit with a tolerance of 1.5, a smoothing of 0.2 and a long term window of 600 samples
+     */
+    public GradientLimit() {
+      this(1.5, 0.2, 600);
+    }
+
+    /**
+     * @param tolerance
+     *          the ratio of current to long term round trip time which is tolerated before the limit shrinks, >= 1
+     * @param smoothing
+     *          the weight of a new limit, between 0 and 1
+     * @param longWindow
+     *          the number of samples of the long term average round trip time
+     */
+    public GradientLimit(final double tolerance, final double smoothing, final int longWindow) {
+      if (tolerance < 1) {
+        throw new IllegalArgumentException("tolerance must be >= 1");
+      }
+      this.tolerance = tolerance;
+      this.smoothing = smoothing;
+      this.longRttAlpha = 2.0 / (longWindow + 1);
+    }
+
+    @Override
+    public int update(final int limit, final int inFlight, final long rttNanos, final boolean dropped) {
+      if (estimatedLimit < 0 || Math.abs(estimatedLimit - limit) >= 1) {
+        // first sample or the limiter clamped the limit to its bounds
+        estimatedLimit = limit;
+      }
+      double shortRtt = Math.max(1, rttNanos);
+      if (longRtt == 0) {
+        longRtt = shortRtt;
+      } else {
+        longRtt += longRttAlpha * (shortRtt - longRtt);
+      }
+      if (longRtt / shortRtt > 2) {
+        // the downstream recovered, let the long term average follow faster
+        longRtt *= 0.95;
+      }
+      if (!dropped && inFlight * 2 < estimatedLimit) {
+        // the limit is not used, the samples say nothing about it
+        return (int) estimatedLimit;
+      }
+      double gradient = dropped ? 0.5 : Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+      double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+      estimatedLimit = estimatedLimit * (1 - smoothing) + newLimit * smoothing;
+      estimatedLimit = Math.max(1, estimatedLimit);
+      return (int) estimatedLimit;
+    }
+  }
+}
@@ -0,0 +1,308 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongBiFunction;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+
+/**
+ * A bounded cache for {@link CacheableFuture futures}. The cache holds the in-flight and the completed future for each
+ * key:
+ * <ul>
+ * <li>concurrent misses for the same key are coalesced onto one call of the loader</li>
+ * <li>completed entries are removed as soon as {@link CacheableResult#expires()} has passed</li>
+ * <li>failed loads are not cached</li>
+ * <li>if the total weight of all entries exceeds the maximum weight, the least recently used entries are evicted</li>
+ * </ul>
+ * The returned futures are {@link MultiThreadedFuture multi threaded futures}, so a cache instance can be shared
+ * between multiple verticles.
+ *
+ * @param <K>
+ *          the type of the keys
+ * @param <V>
+ *          the type of the cached values
+ */
+public class AsyncCache<K, V> {
+
+  private final Function<K, ? extends Future<V>> loader;
+  private final long maximumWeight;
+  private final ToLongBiFunction<K, V> weigher;
+
+  // access ordered, so the iteration order is the LRU order
+  private final LinkedHashMap<K, CacheEntry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long currentWeight;
+
+  private long hitCount;
+  private long missCount;
+  private long loadSuccessCount;
+  private long loadFailureCount;
+  private long totalLoadTimeNanos;
+  private long evictionCount;
+
+  /**
+   * Create a new cache where each entry has the weight 1.
+   *
+   * @param maximumSize
+   *          the maximum number of entries
+   * @param loader
+   *          the function to load the value of a missing key. If the returned future is a {@link CacheableResult},
+   *          its expires is used, otherwise the value is expired immediately
+   */
+  public AsyncCache(final long maximumSize, final Function<K, ? extends Future<V>> loader) {
+    this(maximumSize, (key, value) -> 1, loader);
+  }
+
+  /**
+   * Create a new cache.
+   *
+   * @param maximumWeight
+   *          the maximum total weight of all entries
+   * @param weigher
+   *          computes the weight of a loaded entry. Entries that are still loading have the weight 1.
+   * @param loader
+   *          the function to load the value of a missing key. If the returned future is a {@link CacheableResult},
+   *          its expires is used, otherwise the value is expired immediately
+   */
+  public AsyncCache(final long maximumWeight, final ToLongBiFunction<K, V> weigher,
+      final Function<K, ? extends Future<V>> loader) {
+    if (maximumWeight <= 0) {
+      throw new IllegalArgumentException("maximumWeight must be > 0");
+    }
+    this.maximumWeight = maximumWeight;
+    this.weigher = weigher;
+    this.loader = loader;
+  }
+
+  /**
+   * Returns the cached future for the key. If there is no valid entry, the loader is called. Concurrent calls for a
+   * key which is currently loading share the same future.
+   *
+   * @param key
+   *          the key
+   * @return the cached or loading future
+   */
+  public CacheableFuture<V> get(final K key) {
+    CacheEntry<V> entry;
+    synchronized (this) {
+      CacheEntry<V> existing = entries.get(key);
+      if (existing != null) {
+        if (!existing.isExpired(System.currentTimeMillis())) {
+          hitCount++;
+          return existing.future;
+        }
+        removeEntry(key, existing);
+      }
+      missCount++;
+      entry = new CacheEntry<>(MultiThreadedFuture.future());
+      entries.put(key, entry);
+      currentWeight += entry.weight;
+      evictIfNecessary();
+    }
+    load(key, entry);
+    return entry.future;
+  }
+
+  /**
+   * Returns the cached future for the key without loading it.
+   *
+   * @param key
+   *          the key
+   * @return the cached future or null, if there is no valid entry
+   */
+  public synchronized CacheableFuture<V> getIfPresent(final K key) {
+    CacheEntry<V> existing = entries.get(key);
+    if (existing == null) {
+      return null;
+    }
+    if (existing.isExpired(System.currentTimeMillis())) {
+      removeEntry(key, existing);
+      return null;
+    }
+    hitCount++;
+    return existing.future;
+  }
+
+  /**
+   * Removes the entry of the key. A currently loading future is not affected, but its result will not be cached.
+   *
+   * @param key
+   *          the key
+   */
+  public synchronized void invalidate(final K key) {
+    CacheEntry<V> existing = entries.get(key);
+    if (existing != null) {
+      removeEntry(key, existing);
+    }
+  }
+
+  /**
+   * Removes all entries
+   */
+  public synchronized void invalidateAll() {
+    entries.clear();
+    currentWeight = 0;
+  }
+
+  /**
+   * Removes all expired entries. Expired entries are removed lazily when they are accessed or when they are the least
+   * recently used entries, so calling this method is only needed to release memory early, e.g. from a periodic timer.
+   */
+  public synchronized void cleanUp() {
+    long now = System.currentTimeMillis();
+    Iterator<CacheEntry<V>> iterator = entries.values().iterator();
+    while (iterator.hasNext()) {
+      CacheEntry<V> entry = iterator.next();
+      if (entry.isExpired(now)) {
+        iterator.remove();
+        currentWeight -= entry.weight;
+        evictionCount++;
+      }
+    }
+  }
+
+  private void load(final K key, final CacheEntry<V> entry) {
+    long start = System.nanoTime();
+    Future<V> loading;
+    try {
+      loading = loader.apply(key);
+    } catch (Throwable e) {
+      loading = Future.failedFuture(e);
+    }
+    loading.setHandler(res -> loaded(key, entry, res, System.nanoTime() - start));
+  }
+
+  private void loaded(final K key, final CacheEntry<V> entry, final AsyncResult<V> res, final long loadTimeNanos) {
+    synchronized (this) {
+      totalLoadTimeNanos += loadTimeNanos;
+      if (res.succeeded()) {
+        loadSuccessCount++;
+      } else {
+        loadFailureCount++;
+      }
+      if (entries.get(key) == entry) {
+        long expires = res instanceof CacheableResult ? ((CacheableResult<?>) res).expires() : CacheableResult.EXPIRED;
+        if (res.failed() || expires <= System.currentTimeMillis()) {
+          // not cacheable, but the waiting callers still get the result
+          entries.remove(key);
+          currentWeight -= entry.weight;
+        } else {
+          long weight = weigher.applyAsLong(key, res.result());
+          currentWeight += weight - entry.weight;
+          entry.weight = weight;
+          evictIfNecessary();
+        }
+      }
+    }
+    entry.future.handle(res);
+  }
+
+  private void removeEntry(final K key, final CacheEntry<V> entry) {
+    entries.remove(key);
+    currentWeight -= entry.weight;
+    evictionCount++;
+  }
+
+  private void evictIfNecessary() {
+    Iterator<Map.Entry<K, CacheEntry<V>>> iterator = entries.entrySet().iterator();
+    while (currentWeight > maximumWeight && iterator.hasNext()) {
+      CacheEntry<V> eldest = iterator.next().getValue();
+      iterator.remove();
+      currentWeight -= eldest.weight;
+      evictionCount++;
+    }
+  }
+
+  /**
+   * @return the number of entries, including loading and not yet removed expired entries
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return the total weight of all entries
+   */
+  public synchronized long weight() {
+    return currentWeight;
+  }
+
+  /**
+   * @return the number of calls to {@link #get(Object)} or {@link #getIfPresent(Object)} that returned a cached future
+   */
+  public synchronized long hitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return the number of calls to {@link #get(Object)} that called the loader
+   */
+  public synchronized long missCount() {
+    return missCount;
+  }
+
+  /**
+   * @return the number of loads that succeeded
+   */
+  public synchronized long loadSuccessCount() {
+    return loadSuccessCount;
+  }
+
+  /**
+   * @return the number of loads that failed
+   */
+  public synchronized long loadFailureCount() {
+    return loadFailureCount;
+  }
+
+  /**
+   * @return the total time spent in loading values in nanoseconds
+   */
+  public synchronized long totalLoadTimeNanos() {
+    return totalLoadTimeNanos;
+  }
+
+  /**
+   * @return the number of entries that were removed because they expired or because of the weight limit
+   */
+  public synchronized long evictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * @return the ratio of hits to all requests, 1 if there was no request yet
+   */
+  public synchronized double hitRate() {
+    long requests = hitCount + missCount;
+    return requests == 0 ? 1.0 : (double) hitCount / requests;
+  }
+
+  private static class CacheEntry<V> {
+
+    private final MultiThreadedFuture<V> future;
+    private long weight = 1;
+
+    public CacheEntry(final MultiThreadedFuture<V> future) {
+      this.future = future;
+    }
+
+    public boolean isExpired(final long now) {
+      return future.isComplete() && (future.failed() || future.expires() <= now);
+    }
+  }
+}
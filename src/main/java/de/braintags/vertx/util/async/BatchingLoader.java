@@ -0,0 +1,227 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToLongBiFunction;
+
+import de.braintags.vertx.util.async.metrics.AsyncMetrics;
+import de.braintags.vertx.util.async.metrics.Counter;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+
+/**
+ * Coalesces the loads of single keys into one call of a batch function, e.g. a multi-get of a backend. The keys
+ * requested by {@link #load(Object)} are collected into a batch, which is loaded
+ * <ul>
+ * <li>at the end of the current event loop tick, if no delay is set</li>
+ * <li>after the delay, if a delay is set</li>
+ * <li>immediately when it reaches the maximum batch size</li>
+ * </ul>
+ * A key requested twice in the same batch is loaded once. Keys missing in the map returned by the batch function are
+ * completed with null.
+ * <p>
+ * The returned futures are {@link MultiThreadedFuture multi threaded futures}, so a loader can be shared between
+ * verticles. The batch is loaded on the context of the first key of the batch.
+ *
+ * @param <K>
+ *          the type of the keys
+ * @param <V>
+ *          the type of the values
+ */
+public class BatchingLoader<K, V> {
+
+  private static final Counter BATCHES = AsyncMetrics.counter("batching.loader.batches");
+  private static final Counter KEYS = AsyncMetrics.counter("batching.loader.keys");
+
+  private final Vertx vertx;
+  private final Function<Set<K>, ? extends Future<Map<K, V>>> batchFunction;
+  private final ToLongBiFunction<K, V> expiry;
+  private int maxBatchSize = 100;
+  private long maxDelayMicros;
+
+  // guarded by this
+  private Batch<K, V> current;
+
+  /**
+   * Create a loader whose values expire like the future returned by the batch function: if it is a
+   * {@link CacheableResult}, its expires is used for all keys, otherwise the values are expired immediately
+   *
+   * @param vertx
+   *          the vertx instance
+   * @param batchFunction
+   *          loads the values of a set of keys
+   */
+  public BatchingLoader(final Vertx vertx, final Function<Set<K>, ? extends Future<Map<K, V>>> batchFunction) {
+    this(vertx, batchFunction, null);
+  }
+
+  /**
+   * @param vertx
+   *          the vertx instance
+   * @param batchFunction
+   *          loads the values of a set of keys
+   * @param expiry
+   *          computes the expiration of the value of each key, null to use the expiration of the batch
+   */
+  public BatchingLoader(final Vertx vertx, final Function<Set<K>, ? extends Future<Map<K, V>>> batchFunction,
+      final ToLongBiFunction<K, V> expiry) {
+    this.vertx = vertx;
+    this.batchFunction = batchFunction;
+    this.expiry = expiry;
+  }
+
+  /**
+   * @param maxBatchSize
+   *          the maximum number of keys of a batch
+   * @return this for fluent usage
+   */
+  public BatchingLoader<K, V> setMaxBatchSize(final int maxBatchSize) {
+    if (maxBatchSize <= 0) {
+      throw new IllegalArgumentException("maxBatchSize must be > 0");
+    }
+    this.maxBatchSize = maxBatchSize;
+    return this;
+  }
+
+  /**
+   * @param maxDelayMicros
+   *          the time to collect keys after the first key of a batch, 0 to load the batch at the end of the current
+   *          event loop tick. Vert.x timers have a resolution of milliseconds, so the delay is rounded up.
+   * @return this for fluent usage
+   */
+  public BatchingLoader<K, V> setMaxDelayMicros(final long maxDelayMicros) {
+    if (maxDelayMicros < 0) {
+      throw new IllegalArgumentException("maxDelayMicros must be >= 0");
+    }
+    this.maxDelayMicros = maxDelayMicros;
+    return this;
+  }
+
+  /**
+   * Adds the key to the current batch
+   *
+   * @param key
+   *          the key to load
+   * @return the future of the value of the key
+   */
+  public MultiThreadedFuture<V> load(final K key) {
+    MultiThreadedFuture<V> future;
+    Batch<K, V> full = null;
+    boolean schedule = false;
+    Batch<K, V> batch;
+    synchronized (this) {
+      batch = current;
+      if (batch == null) {
+        batch = current = new Batch<>();
+        schedule = true;
+      }
+      future = batch.futures.get(key);
+      if (future == null) {
+        future = MultiThreadedFuture.future();
+        batch.futures.put(key, future);
+        if (batch.futures.size() >= maxBatchSize) {
+          current = null;
+          full = batch;
+        }
+      }
+    }
+    if (full != null) {
+      dispatch(full);
+    } else if (schedule) {
+      schedule(batch);
+    }
+    return future;
+  }
+
+  private void schedule(final Batch<K, V> batch) {
+    if (maxDelayMicros > 0) {
+      long delayMs = Math.max(1, TimeUnit.MICROSECONDS.toMillis(maxDelayMicros + 999));
+      batch.timerId = vertx.setTimer(delayMs, id -> flush(batch));
+      return;
+    }
+    Context context = Vertx.currentContext();
+    if (context != null) {
+      context.runOnContext(v -> flush(batch));
+    } else {
+      vertx.runOnContext(v -> flush(batch));
+    }
+  }
+
+  /**
+   * Loads the batch if it was not dispatched because it is full
+   */
+  private void flush(final Batch<K, V> batch) {
+    synchronized (this) {
+      if (current != batch) {
+        return;
+      }
+      current = null;
+    }
+    dispatch(batch);
+  }
+
+  private void dispatch(final Batch<K, V> batch) {
+    if (batch.timerId >= 0) {
+      vertx.cancelTimer(batch.timerId);
+    }
+    BATCHES.increment();
+    KEYS.increment(batch.futures.size());
+    Future<Map<K, V>> result;
+    try {
+      result = batchFunction.apply(Collections.unmodifiableSet(batch.futures.keySet()));
+    } catch (Throwable e) {
+      result = Future.failedFuture(e);
+    }
+    Future<Map<K, V>> loaded = result;
+    loaded.setHandler(res -> complete(batch, res, loaded));
+  }
+
+  private void complete(final Batch<K, V> batch, final AsyncResult<Map<K, V>> res, final Future<Map<K, V>> loaded) {
+    if (res.failed()) {
+      for (MultiThreadedFuture<V> future : batch.futures.values()) {
+        future.fail(res.cause());
+      }
+      return;
+    }
+    Map<K, V> values = res.result() != null ? res.result() : Collections.emptyMap();
+    long batchExpires = loaded instanceof CacheableResult ? ((CacheableResult<?>) loaded).expires()
+        : CacheableResult.EXPIRED;
+    for (Map.Entry<K, MultiThreadedFuture<V>> entry : batch.futures.entrySet()) {
+      V value;
+      long expires;
+      try {
+        value = values.get(entry.getKey());
+        expires = expiry != null ? expiry.applyAsLong(entry.getKey(), value) : batchExpires;
+      } catch (Throwable e) {
+        // only the key is failed, the other keys of the batch are still completed
+        entry.getValue().fail(e);
+        continue;
+      }
+      entry.getValue().complete(expires, value);
+    }
+  }
+
+  private static class Batch<K, V> {
+
+    private final Map<K, MultiThreadedFuture<V>> futures = new LinkedHashMap<>();
+    private long timerId = -1;
+  }
+}
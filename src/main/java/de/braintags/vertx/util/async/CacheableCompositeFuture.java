@@ -16,7 +16,9 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.BiConsumer;
 
+import de.braintags.vertx.util.async.CacheableCompositeFutureImpl.Mode;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
@@ -45,9 +47,7 @@ public interface CacheableCompositeFuture {
     if (futures.isEmpty()) {
       return CacheableFuture.succeededFuture(CacheableFuture.INFINITE);
     }
-    CacheableFuture<Void> f = CacheableFuture.future();
-    SharedCompositeFuture.allVoid(futures).setHandler(handler(f, futures));
-    return f;
+    return new CacheableCompositeFutureImpl<>(CacheableCompositeFutureImpl.asList(futures), Mode.ALL, 0, false, null);
   }
 
   /**
@@ -63,9 +63,7 @@ public interface CacheableCompositeFuture {
     if (futures.isEmpty()) {
       return CacheableFuture.succeededFuture(CacheableFuture.INFINITE, Collections.emptyList());
     }
-    CacheableFuture<List<T>> f = CacheableFuture.future();
-    SharedCompositeFuture.all(futures).setHandler(handler(f, futures));
-    return f;
+    return new CacheableCompositeFutureImpl<>(futures, Mode.ALL, 0, true, null);
   }
 
   /**
@@ -102,9 +100,7 @@ public interface CacheableCompositeFuture {
     if (futures.isEmpty()) {
       return CacheableFuture.succeededFuture(CacheableFuture.INFINITE);
     }
-    CacheableFuture<Void> f = CacheableFuture.future();
-    SharedCompositeFuture.joinVoid(futures).setHandler(handler(f, futures));
-    return f;
+    return new CacheableCompositeFutureImpl<>(futures, Mode.JOIN, 0, false, null);
   }
   
   /**
@@ -131,11 +127,77 @@ public interface CacheableCompositeFuture {
     if (futures.isEmpty()) {
       return CacheableFuture.succeededFuture(CacheableFuture.INFINITE, Collections.emptyList());
     }
-    CacheableFuture<List<T>> f = CacheableFuture.future();
-    SharedCompositeFuture.join(futures).setHandler(handler(f, futures));
-    return f;
+    return new CacheableCompositeFutureImpl<>(futures, Mode.JOIN, 0, true, null);
   }
 
+  /**
+   * Return a composite future, succeeded with the result of the first succeeded future, failed when all futures are
+   * failed. The expiration is the one of the first succeeded future.
+   * <p>
+   *
+   * When the list is empty, the returned future will be already completed with null.
+   *
+   * @param futures
+   *          the futures
+   * @return the composite future
+   */
+  static <T> CacheableFuture<T> any(final List<? extends CacheableFuture<T>> futures) {
+    if (futures.isEmpty()) {
+      return CacheableFuture.succeededFuture(CacheableFuture.INFINITE);
+    }
+    return new CacheableCompositeFutureImpl<>(futures, Mode.ANY, 0, false, null);
+  }
+
+  /**
+   * Return a composite future, succeeded with the results of the first k succeeded futures in the order of their
+   * completion, failed as soon as k results can not be reached anymore. The other results are ignored.
+   *
+   * @param futures
+   *          the futures
+   * @param k
+   *          the number of results
+   * @return the composite future
+   */
+  static <T> CacheableFuture<List<T>> firstN(final List<? extends CacheableFuture<T>> futures, final int k) {
+    if (k < 0 || k > futures.size()) {
+      return CacheableFuture
+          .failedFuture(new IllegalArgumentException("k must be between 0 and " + futures.size() + ": " + k));
+    }
+    if (k == 0) {
+      return CacheableFuture.succeededFuture(CacheableFuture.INFINITE, Collections.emptyList());
+    }
+    return new CacheableCompositeFutureImpl<>(futures, Mode.FIRST_N, k, true, null);
+  }
+
+  /**
+   * Calls the handler for each result as soon as it arrives, so the results can be processed without waiting for the
+   * slowest future. The handler is called with the index of the future in the list.
+   * <p>
+   * The returned future succeeds when all futures are completed, failures are only reported to the handler. It
+   * expires with the first expiring future, or immediately if any future failed.
+   *
+   * @param futures
+   *          the futures
+   * @param handler
+   *          the handler for each result
+   * @return a future that is completed when all futures are completed
+   */
+  static <T> CacheableFuture<Void> onEach(final List<? extends CacheableFuture<T>> futures,
+      final BiConsumer<Integer, AsyncResult<T>> handler) {
+    if (futures.isEmpty()) {
+      return CacheableFuture.succeededFuture(CacheableFuture.INFINITE);
+    }
+    return new CacheableCompositeFutureImpl<>(futures, Mode.EACH, 0, false,
+        (BiConsumer<Integer, AsyncResult<?>>) (BiConsumer<?, ?>) handler);
+  }
+
+  /**
+   * Creates a handler which completes the future with the result and the earliest expiration of the futures
+   *
+   * @deprecated the composite futures reduce the expiration themselves, use {@link #all(List)}, {@link #join(List)}
+   *             or {@link #allVoid(Collection)} instead
+   */
+  @Deprecated
   static <T> Handler<AsyncResult<T>> handler(final CacheableFuture<T> f,
       final Iterable<? extends CacheableFuture<?>> futures) {
     return res -> {
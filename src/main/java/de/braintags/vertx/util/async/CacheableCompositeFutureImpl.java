@@ -0,0 +1,201 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.BiConsumer;
+
+import io.vertx.core.AsyncResult;
+
+/**
+ * Composite of cacheable futures which registers one handler per future and tracks the completion with atomic
+ * counters instead of wrapping a vert.x CompositeFuture. The minimum expiration of the succeeded futures is computed
+ * while the results arrive, the results are collected into one array in list order.
+ *
+ * @param <R>
+ *          the type of the result of the composite
+ */
+final class CacheableCompositeFutureImpl<R> extends CacheableFutureImpl<R> {
+
+  /**
+   * The completion rule of the composite
+   */
+  enum Mode {
+    /** succeeds with all results, fails with the first failure */
+    ALL,
+    /** waits for all futures, fails with the failure of the first failed future in list order */
+    JOIN,
+    /** succeeds with the first result, fails if all futures fail */
+    ANY,
+    /** succeeds with the first k results in completion order, fails if k results can not be reached anymore */
+    FIRST_N,
+    /** calls a handler for each result and succeeds when all futures are completed */
+    EACH
+  }
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicIntegerFieldUpdater<CacheableCompositeFutureImpl> REMAINING = AtomicIntegerFieldUpdater
+      .newUpdater(CacheableCompositeFutureImpl.class, "remaining");
+  @SuppressWarnings("rawtypes")
+  private static final AtomicIntegerFieldUpdater<CacheableCompositeFutureImpl> SUCCESSES = AtomicIntegerFieldUpdater
+      .newUpdater(CacheableCompositeFutureImpl.class, "successes");
+  @SuppressWarnings("rawtypes")
+  private static final AtomicIntegerFieldUpdater<CacheableCompositeFutureImpl> FILLED = AtomicIntegerFieldUpdater
+      .newUpdater(CacheableCompositeFutureImpl.class, "filled");
+  @SuppressWarnings("rawtypes")
+  private static final AtomicLongFieldUpdater<CacheableCompositeFutureImpl> MIN_EXPIRES = AtomicLongFieldUpdater
+      .newUpdater(CacheableCompositeFutureImpl.class, "minExpires");
+
+  private final List<? extends CacheableFuture<?>> futures;
+  private final Mode mode;
+  private final int count;
+  private final Object[] results;
+  private final BiConsumer<Integer, AsyncResult<?>> each;
+
+  // the number of pending futures, for ANY and FIRST_N the number of futures which did not fail
+  private volatile int remaining;
+  private volatile int successes;
+  private volatile int filled;
+  private volatile long minExpires = CacheableResult.INFINITE;
+  private volatile boolean anyFailed;
+
+  /**
+   * @param futures
+   *          the futures, must not be empty
+   * @param mode
+   *          the completion rule
+   * @param count
+   *          the number of results for {@link Mode#FIRST_N}
+   * @param collect
+   *          true to collect the results into a list, false to complete with null
+   * @param each
+   *          the handler for {@link Mode#EACH}
+   */
+  CacheableCompositeFutureImpl(final List<? extends CacheableFuture<?>> futures, final Mode mode, final int count,
+      final boolean collect, final BiConsumer<Integer, AsyncResult<?>> each) {
+    this.futures = futures;
+    this.mode = mode;
+    this.count = mode == Mode.FIRST_N ? count : futures.size();
+    this.results = collect ? new Object[this.count] : null;
+    this.each = each;
+    this.remaining = futures.size();
+    for (int i = 0; i < futures.size(); i++) {
+      if (isComplete() && mode != Mode.EACH && mode != Mode.JOIN) {
+        // short circuit, the remaining results are not needed
+        break;
+      }
+      int index = i;
+      CacheableFuture<?> future = futures.get(i);
+      future.setHandler(res -> onResult(index, future, res));
+    }
+  }
+
+  static <T> List<T> asList(final Collection<T> futures) {
+    return futures instanceof List ? (List<T>) futures : new ArrayList<>(futures);
+  }
+
+  private void onResult(final int index, final CacheableFuture<?> future, final AsyncResult<?> res) {
+    if (each != null) {
+      each.accept(index, res);
+    }
+    if (res.failed()) {
+      anyFailed = true;
+    } else if (mode != Mode.FIRST_N) {
+      reduceMinExpires(future.expires());
+    }
+    switch (mode) {
+    case ALL:
+      if (res.failed()) {
+        tryFail(res.cause());
+        return;
+      }
+      store(index, res.result());
+      if (REMAINING.decrementAndGet(this) == 0) {
+        completeWithResults();
+      }
+      return;
+    case ANY:
+      if (res.succeeded()) {
+        tryComplete(future.expires(), (R) res.result());
+      } else if (REMAINING.decrementAndGet(this) == 0) {
+        tryFail(firstFailure());
+      }
+      return;
+    case FIRST_N:
+      if (res.succeeded()) {
+        int slot = SUCCESSES.getAndIncrement(this);
+        if (slot < count) {
+          reduceMinExpires(future.expires());
+          store(slot, res.result());
+          if (FILLED.incrementAndGet(this) == count) {
+            completeWithResults();
+          }
+        }
+      } else if (REMAINING.decrementAndGet(this) < count) {
+        // too many failures, k results can not be reached anymore
+        tryFail(res.cause());
+      }
+      return;
+    default:
+      // JOIN and EACH
+      if (res.succeeded()) {
+        store(index, res.result());
+      }
+      if (REMAINING.decrementAndGet(this) == 0) {
+        if (mode == Mode.JOIN && anyFailed) {
+          tryFail(firstFailure());
+        } else {
+          if (anyFailed) {
+            reduceMinExpires(CacheableResult.EXPIRED);
+          }
+          completeWithResults();
+        }
+      }
+    }
+  }
+
+  private void store(final int slot, final Object result) {
+    if (results != null) {
+      results[slot] = result;
+    }
+  }
+
+  private void completeWithResults() {
+    tryComplete(minExpires, results == null ? null : (R) new ArrayList<>(Arrays.asList(results)));
+  }
+
+  private void reduceMinExpires(final long expires) {
+    long current;
+    do {
+      current = minExpires;
+      if (expires >= current) {
+        return;
+      }
+    } while (!MIN_EXPIRES.compareAndSet(this, current, expires));
+  }
+
+  private Throwable firstFailure() {
+    for (CacheableFuture<?> future : futures) {
+      if (future.failed()) {
+        return future.cause();
+      }
+    }
+    return new IllegalStateException("no failed future");
+  }
+
+}
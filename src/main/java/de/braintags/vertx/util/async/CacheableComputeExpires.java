@@ -24,6 +24,7 @@ class CacheableComputeExpires<U, T> extends CacheableFutureImpl<U> implements Ca
 
   public CacheableComputeExpires(final Future<T> src, final Function<T, U> mapper,
       final Function<AsyncResult<T>, Long> expiresMapper) {
+    super(src);
     this.mapper = mapper;
     this.expiresMapper = expiresMapper;
     src.setHandler(this::chainFuture);
@@ -12,6 +12,7 @@
  */
 package de.braintags.vertx.util.async;
 
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 import io.vertx.core.AsyncResult;
@@ -114,6 +115,35 @@ public interface CacheableFuture<T> extends SharedFuture<T>, CacheableResult<T>
   @Override
   CacheableFuture<T> otherwiseEmpty();
 
+  /**
+   * One composed future for both stages, a succeeded future applies both functions directly.
+   */
+  @Override
+  default <U, V> CacheableFuture<V> mapThenCompose(final Function<T, U> mapper, final Function<U, Future<V>> composer) {
+    return new ComposedCacheableFuture<>(this, result -> composer.apply(mapper.apply(result)));
+  }
+
+  /**
+   * One future which waits for both futures, instead of a composed future and a mapped future of the other one. It
+   * expires with the first expiring future.
+   */
+  @Override
+  default <U, V> CacheableFuture<V> map2(final Future<U> other, final BiFunction<T, U, V> combiner) {
+    return new CombinedCacheableFuture<>(this, other, combiner);
+  }
+
+  @Override
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  default <V> CacheableFuture<V> pipe(final Function<?, ?>... stages) {
+    return map(result -> {
+      Object value = result;
+      for (Function stage : stages) {
+        value = stage.apply(value);
+      }
+      return (V) value;
+    });
+  }
+
   CacheableFuture<T> addCacheHandler(Handler<CacheableFuture<T>> handler);
 
 
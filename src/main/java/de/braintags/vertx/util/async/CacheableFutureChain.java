@@ -22,6 +22,7 @@ class CacheableFutureChain<U> extends CacheableFutureImpl<U> implements Cacheabl
   private final Function<Void, Future<U>> mapper;
 
   public CacheableFutureChain(final Future<?> src, final Function<Void, Future<U>> mapper) {
+    super(src);
     this.mapper = mapper;
     src.setHandler(this::chainFuture);
   }
@@ -29,11 +30,16 @@ class CacheableFutureChain<U> extends CacheableFutureImpl<U> implements Cacheabl
   private void chainFuture(final AsyncResult<?> ar) {
     reduceExpireFromResult(ar);
     Future<U> mapped;
+    FutureTrace previous = trace != null ? FutureTracer.enter(trace) : null;
     try {
       mapped = mapper.apply(null);
     } catch (Throwable e) {
       fail(e);
       return;
+    } finally {
+      if (trace != null) {
+        FutureTracer.exit(previous);
+      }
     }
     mapped.setHandler(res -> {
       if (ar.failed()) {
@@ -29,9 +29,25 @@ import io.vertx.core.Handler;
 public class CacheableFutureImpl<T> extends SharedFutureImpl<T> implements CacheableFuture<T> {
 
   private long expires = CacheableFuture.INFINITE;
+  FutureTrace trace;
 
   CacheableFutureImpl() {
     super();
+    FutureTracer tracer = FutureTracer.installed();
+    if (tracer != null) {
+      trace = tracer.start(this, null);
+    }
+  }
+
+  /**
+   * Create a future derived from the source future, it is traced as a stage of the chain of the source
+   */
+  CacheableFutureImpl(final Future<?> source) {
+    super();
+    FutureTracer tracer = FutureTracer.installed();
+    if (tracer != null) {
+      trace = tracer.start(this, source);
+    }
   }
 
   CacheableFutureImpl(final Throwable cause) {
@@ -59,43 +75,30 @@ public class CacheableFutureImpl<T> extends SharedFutureImpl<T> implements Cache
   @Override
   public void complete(final long expires, final T result) {
     if (!tryComplete(expires, result))
-      throw new IllegalStateException("Result is already complete: " + (succeeded ? "succeeded" : "failed"));
+      throw new IllegalStateException("Result is already complete: " + (succeeded() ? "succeeded" : "failed"));
   }
 
-  public synchronized boolean tryComplete(final long expires, final T result) {
-    if (isComplete())
-      return false;
-    reduceExpire(expires);
-    this.result = result;
-    succeeded = true;
-    callHandlers();
-    return true;
+  public boolean tryComplete(final long expires, final T result) {
+    return tryComplete(true, result, null, expires);
   }
 
   public boolean tryComplete(final long expires) {
     return tryComplete(expires, null);
   }
 
+  /**
+   * Reduces the expiration to the given value. Futures completed without expiration or failed futures get
+   * {@link CacheableResult#EXPIRED}.
+   */
   @Override
-  public void complete() {
-    reduceExpire(CacheableFuture.EXPIRED);
-    super.complete();
-  }
-
-  @Override
-  public synchronized boolean tryComplete(final T result) {
-    if (isComplete())
-      return false;
-    reduceExpire(CacheableFuture.EXPIRED);
-    return super.tryComplete(result);
-  }
-
-  @Override
-  public boolean tryFail(final Throwable cause) {
-    if (isComplete())
-      return false;
-    reduceExpire(CacheableFuture.EXPIRED);
-    return super.tryFail(cause);
+  protected void completing(final long expires) {
+    reduceExpire(expires);
+    if (trace != null) {
+      FutureTracer tracer = FutureTracer.installed();
+      if (tracer != null) {
+        tracer.completed(trace);
+      }
+    }
   }
 
   @Override
@@ -22,6 +22,7 @@ class CacheableFutureThen<U, T> extends CacheableFutureImpl<U> implements Cachea
   private final Function<AsyncResult<T>, Future<U>> mapper;
 
   public CacheableFutureThen(final Future<T> src, final Function<AsyncResult<T>, Future<U>> mapper) {
+    super(src);
     this.mapper = mapper;
     src.setHandler(this::chainFuture);
   }
@@ -29,11 +30,16 @@ class CacheableFutureThen<U, T> extends CacheableFutureImpl<U> implements Cachea
   private void chainFuture(final AsyncResult<T> res) {
     reduceExpireFromResult(res);
     Future<U> result;
+    FutureTrace previous = trace != null ? FutureTracer.enter(trace) : null;
     try {
       result = mapper.apply(res);
     } catch (Throwable e) {
       fail(e);
       return;
+    } finally {
+      if (trace != null) {
+        FutureTracer.exit(previous);
+      }
     }
     result.setHandler(this);
   }
@@ -39,49 +39,26 @@ public interface CacheableResult<T> extends AsyncResult<T> {
     return new CacheableResultImpl<>(cause);
   }
 
+  /**
+   * Maps the result. A failed result or a mapping which returns the same instance returns this result, otherwise a
+   * {@link CacheableResultImpl} with the same expiration is created.
+   */
   @Override
+  @SuppressWarnings("unchecked")
   default <U> CacheableResult<U> map(final Function<T, U> mapper) {
     if (mapper == null) {
       throw new NullPointerException();
     }
-
+    if (failed()) {
+      return (CacheableResult<U>) this;
+    }
     try {
-      U mappedResult;
-      if (succeeded()) {
-        mappedResult = mapper.apply(CacheableResult.this.result());
-      } else {
-        mappedResult = null;
+      T result = result();
+      U mappedResult = mapper.apply(result);
+      if (mappedResult == result) {
+        return (CacheableResult<U>) this;
       }
-      return new CacheableResult<U>() {
-        @Override
-        public U result() {
-          if (succeeded()) {
-            return mappedResult;
-          } else {
-            return null;
-          }
-        }
-
-        @Override
-        public Throwable cause() {
-          return CacheableResult.this.cause();
-        }
-
-        @Override
-        public boolean succeeded() {
-          return CacheableResult.this.succeeded();
-        }
-
-        @Override
-        public boolean failed() {
-          return CacheableResult.this.failed();
-        }
-
-        @Override
-        public long expires() {
-          return CacheableResult.this.expires();
-        }
-      };
+      return new CacheableResultImpl<>(mappedResult, expires());
     } catch (Throwable e) {
       return CacheableResult.failedResult(e);
     }
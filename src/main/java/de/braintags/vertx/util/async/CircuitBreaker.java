@@ -0,0 +1,340 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * A circuit breaker for calls to a backend which return {@link CacheableFuture cacheable futures}. The breaker records
+ * the outcome of the last calls in a sliding window:
+ * <ul>
+ * <li>CLOSED: calls are executed. If the failure rate or the rate of slow calls in the window reaches its threshold,
+ * the circuit opens.</li>
+ * <li>OPEN: calls fail immediately with a {@link RejectedExecutionException} without calling the backend. After the
+ * open duration the circuit becomes half open.</li>
+ * <li>HALF_OPEN: a limited number of trial calls is executed, further calls are rejected. If the trial calls are
+ * below the thresholds, the circuit closes, otherwise it opens again.</li>
+ * </ul>
+ * Suppliers wrapped by {@link #protect(Supplier)} remember their last successful result and serve it as already
+ * expired result if the call fails or is rejected (stale-if-error), so a {@link RefreshableFuture} keeps its last value
+ * during an outage and refreshes it as soon as the backend is back.
+ */
+public class CircuitBreaker {
+
+  /**
+   * The states of a circuit breaker
+   */
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private int windowSize = 100;
+  private int minimumCalls = 20;
+  private double failureRateThreshold = 0.5;
+  private double slowCallRateThreshold = 1.0;
+  private long slowCallDurationNanos = TimeUnit.SECONDS.toNanos(60);
+  private long openDurationMs = 30000;
+  private int halfOpenCalls = 5;
+
+  // guarded by this
+  private State state = State.CLOSED;
+  private long generation;
+  private long openedAt;
+  private int halfOpenPermits;
+  private byte[] outcomes = new byte[windowSize];
+  private int outcomeCount;
+  private int failures;
+  private int slowCalls;
+
+  private static final byte SUCCESS = 0;
+  private static final byte FAILURE = 1;
+  private static final byte SLOW = 2;
+
+  /**
+   * @param windowSize
+   *          the number of calls in the sliding window
+   * @param minimumCalls
+   *          the minimum number of calls in the window before the circuit can open
+   * @return this for fluent usage
+   */
+  public synchronized CircuitBreaker setWindow(final int windowSize, final int minimumCalls) {
+    if (windowSize <= 0 || minimumCalls <= 0 || minimumCalls > windowSize) {
+      throw new IllegalArgumentException("0 < minimumCalls <= windowSize required");
+    }
+    this.windowSize = windowSize;
+    this.minimumCalls = minimumCalls;
+    resetWindow();
+    return this;
+  }
+
+  /**
+   * @param failureRateThreshold
+   *          the rate of failed calls, between 0 and 1, at which the circuit opens
+   * @return this for fluent usage
+   */
+  public synchronized CircuitBreaker setFailureRateThreshold(final double failureRateThreshold) {
+    this.failureRateThreshold = failureRateThreshold;
+    return this;
+  }
+
+  /**
+   * @param slowCallDurationMs
+   *          calls taking longer are slow, even if they succeed
+   * @param slowCallRateThreshold
+   *          the rate of slow calls, between 0 and 1, at which the circuit opens
+   * @return this for fluent usage
+   */
+  public synchronized CircuitBreaker setSlowCallThreshold(final long slowCallDurationMs,
+      final double slowCallRateThreshold) {
+    this.slowCallDurationNanos = TimeUnit.MILLISECONDS.toNanos(slowCallDurationMs);
+    this.slowCallRateThreshold = slowCallRateThreshold;
+    return this;
+  }
+
+  /**
+   * @param openDurationMs
+   *          the time the circuit stays open before trial calls are allowed
+   * @return this for fluent usage
+   */
+  public synchronized CircuitBreaker setOpenDurationMs(final long openDurationMs) {
+    this.openDurationMs = openDurationMs;
+    return this;
+  }
+
+  /**
+   * @param halfOpenCalls
+   *          the number of trial calls in the half open state. The outcomes of the trial calls are recorded in the
+   *          window, so at most the window size of trial calls are made.
+   * @return this for fluent usage
+   */
+  public synchronized CircuitBreaker setHalfOpenCalls(final int halfOpenCalls) {
+    if (halfOpenCalls <= 0) {
+      throw new IllegalArgumentException("halfOpenCalls must be > 0");
+    }
+    this.halfOpenCalls = halfOpenCalls;
+    return this;
+  }
+
+  /**
+   * Executes the call if the circuit allows it
+   *
+   * @param call
+   *          creates the future of the call
+   * @return the result of the call or a future failed with a {@link RejectedExecutionException} if the circuit is
+   *         open
+   */
+  public <T> CacheableFuture<T> execute(final Supplier<? extends CacheableFuture<T>> call) {
+    long permit = tryAcquire();
+    if (permit < 0) {
+      return CacheableFuture.failedFuture(new RejectedExecutionException("circuit breaker is open"));
+    }
+    long start = System.nanoTime();
+    CacheableFuture<T> future;
+    try {
+      future = call.get();
+    } catch (Throwable e) {
+      record(permit, false, 0);
+      return CacheableFuture.failedFuture(e);
+    }
+    CacheableFuture<T> result = CacheableFuture.future();
+    future.setHandler(res -> {
+      record(permit, res.succeeded(), System.nanoTime() - start);
+      if (res.succeeded()) {
+        result.complete(future.expires(), res.result());
+      } else {
+        result.fail(res.cause());
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Wraps a supplier, e.g. of a {@link RefreshableFuture}, so that each call goes through this circuit breaker. If the
+   * call fails or is rejected, the last successful result is served with {@link CacheableResult#EXPIRED}.
+   *
+   * @param supplier
+   *          the supplier of the backend call
+   * @return the protected supplier
+   */
+  public <T> Supplier<CacheableFuture<T>> protect(final Supplier<? extends CacheableFuture<T>> supplier) {
+    return protect(supplier, CacheableResult.INFINITE);
+  }
+
+  /**
+   * Wraps a supplier, e.g. of a {@link RefreshableFuture}, so that each call goes through this circuit breaker. If the
+   * call fails or is rejected, the last successful result is served with {@link CacheableResult#EXPIRED} as long as it
+   * is not older than maxStaleMs.
+   *
+   * @param supplier
+   *          the supplier of the backend call
+   * @param maxStaleMs
+   *          the maximum age of a stale result
+   * @return the protected supplier
+   */
+  public <T> Supplier<CacheableFuture<T>> protect(final Supplier<? extends CacheableFuture<T>> supplier,
+      final long maxStaleMs) {
+    AtomicReference<Stale<T>> lastGood = new AtomicReference<>();
+    return () -> {
+      CacheableFuture<T> result = CacheableFuture.future();
+      CacheableFuture<T> call = execute(supplier);
+      call.setHandler(res -> {
+        if (res.succeeded()) {
+          lastGood.set(new Stale<>(res.result()));
+          result.complete(call.expires(), res.result());
+          return;
+        }
+        Stale<T> stale = lastGood.get();
+        if (stale != null && System.currentTimeMillis() - stale.timestamp <= maxStaleMs) {
+          result.complete(CacheableResult.EXPIRED, stale.value);
+        } else {
+          result.fail(res.cause());
+        }
+      });
+      return result;
+    };
+  }
+
+  /**
+   * @return the permit for the call, -1 if the call is rejected
+   */
+  private synchronized long tryAcquire() {
+    switch (state) {
+    case CLOSED:
+      return generation;
+    case OPEN:
+      if (System.currentTimeMillis() - openedAt < openDurationMs) {
+        return -1;
+      }
+      transition(State.HALF_OPEN);
+      halfOpenPermits = trialCalls() - 1;
+      return generation;
+    default:
+      if (halfOpenPermits <= 0) {
+        return -1;
+      }
+      halfOpenPermits--;
+      return generation;
+    }
+  }
+
+  private synchronized void record(final long permit, final boolean success, final long durationNanos) {
+    if (permit != generation) {
+      // the call was started before the last state change
+      return;
+    }
+    byte outcome = success ? SUCCESS : FAILURE;
+    if (durationNanos >= slowCallDurationNanos) {
+      outcome |= SLOW;
+    }
+    int index = outcomeCount % windowSize;
+    if (outcomeCount >= windowSize) {
+      remove(outcomes[index]);
+    }
+    outcomes[index] = outcome;
+    outcomeCount++;
+    if ((outcome & FAILURE) != 0) {
+      failures++;
+    }
+    if ((outcome & SLOW) != 0) {
+      slowCalls++;
+    }
+
+    int calls = Math.min(outcomeCount, windowSize);
+    if (state == State.HALF_OPEN) {
+      if (calls >= trialCalls()) {
+        transition(exceedsThresholds(calls) ? State.OPEN : State.CLOSED);
+      }
+    } else if (calls >= minimumCalls && exceedsThresholds(calls)) {
+      transition(State.OPEN);
+    }
+  }
+
+  /**
+   * @return the number of trial calls in the half open state, limited by the window which records their outcomes
+   */
+  private int trialCalls() {
+    return Math.min(halfOpenCalls, windowSize);
+  }
+
+  private void remove(final byte outcome) {
+    if ((outcome & FAILURE) != 0) {
+      failures--;
+    }
+    if ((outcome & SLOW) != 0) {
+      slowCalls--;
+    }
+  }
+
+  private boolean exceedsThresholds(final int calls) {
+    return failures >= failureRateThreshold * calls || slowCalls >= slowCallRateThreshold * calls;
+  }
+
+  private void transition(final State newState) {
+    state = newState;
+    generation++;
+    if (newState == State.OPEN) {
+      openedAt = System.currentTimeMillis();
+    }
+    resetWindow();
+  }
+
+  private void resetWindow() {
+    if (outcomes.length != windowSize) {
+      outcomes = new byte[windowSize];
+    }
+    outcomeCount = 0;
+    failures = 0;
+    slowCalls = 0;
+  }
+
+  /**
+   * @return the current state, an open circuit is reported as half open after the open duration
+   */
+  public synchronized State getState() {
+    if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDurationMs) {
+      return State.HALF_OPEN;
+    }
+    return state;
+  }
+
+  /**
+   * @return the rate of failed calls in the current window
+   */
+  public synchronized double getFailureRate() {
+    int calls = Math.min(outcomeCount, windowSize);
+    return calls == 0 ? 0 : (double) failures / calls;
+  }
+
+  /**
+   * @return the rate of slow calls in the current window
+   */
+  public synchronized double getSlowCallRate() {
+    int calls = Math.min(outcomeCount, windowSize);
+    return calls == 0 ? 0 : (double) slowCalls / calls;
+  }
+
+  private static class Stale<T> {
+
+    private final T value;
+    private final long timestamp = System.currentTimeMillis();
+
+    Stale(final T value) {
+      this.value = value;
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.BiFunction;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+
+/**
+ * The future of {@link CacheableFuture#map2(Future, BiFunction)}: waits for both sources itself instead of composing
+ * this future with a mapped future of the other one. It expires with the first expiring source.
+ *
+ * @param <T>
+ *          the type of the result of the source
+ * @param <U>
+ *          the type of the result of the other source
+ * @param <V>
+ *          the type of the combined result
+ */
+final class CombinedCacheableFuture<T, U, V> extends CacheableFutureImpl<V> {
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicIntegerFieldUpdater<CombinedCacheableFuture> REMAINING = AtomicIntegerFieldUpdater
+      .newUpdater(CombinedCacheableFuture.class, "remaining");
+
+  private final BiFunction<T, U, V> combiner;
+  // published by the decrement of remaining, the expiration is reduced once both sources arrived because the sources
+  // may complete on different threads
+  private T first;
+  private U second;
+  private long firstExpires;
+  private long secondExpires;
+  private volatile int remaining = 2;
+
+  CombinedCacheableFuture(final Future<T> src, final Future<U> other, final BiFunction<T, U, V> combiner) {
+    super(src);
+    this.combiner = combiner;
+    src.setHandler(res -> {
+      if (res.succeeded()) {
+        first = res.result();
+        firstExpires = expiresOf(res);
+      }
+      onResult(res);
+    });
+    other.setHandler(res -> {
+      if (res.succeeded()) {
+        second = res.result();
+        secondExpires = expiresOf(res);
+      }
+      onResult(res);
+    });
+  }
+
+  private void onResult(final AsyncResult<?> res) {
+    if (res.failed()) {
+      tryFail(res.cause());
+      return;
+    }
+    if (REMAINING.decrementAndGet(this) == 0) {
+      V result;
+      try {
+        result = combiner.apply(first, second);
+      } catch (Throwable e) {
+        tryFail(e);
+        return;
+      }
+      tryComplete(Math.min(firstExpires, secondExpires), result);
+    }
+  }
+
+  private static long expiresOf(final AsyncResult<?> res) {
+    return res instanceof CacheableResult ? ((CacheableResult<?>) res).expires() : CacheableResult.EXPIRED;
+  }
+
+}
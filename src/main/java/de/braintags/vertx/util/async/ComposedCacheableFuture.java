@@ -22,6 +22,7 @@ class ComposedCacheableFuture<U, T> extends CacheableFutureImpl<U> implements Ca
   private final Function<T, Future<U>> mapper;
 
   public ComposedCacheableFuture(final Future<T> src, final Function<T, Future<U>> mapper) {
+    super(src);
     this.mapper = mapper;
     src.setHandler(this::chainFuture);
   }
@@ -30,11 +31,16 @@ class ComposedCacheableFuture<U, T> extends CacheableFutureImpl<U> implements Ca
     if (res.succeeded()) {
       reduceExpireFromResult(res);
       Future<U> result;
+      FutureTrace previous = trace != null ? FutureTracer.enter(trace) : null;
       try {
         result = mapper.apply(res.result());
       } catch (Throwable e) {
         fail(e);
         return;
+      } finally {
+        if (trace != null) {
+          FutureTracer.exit(previous);
+        }
       }
       result.setHandler(this);
     } else {
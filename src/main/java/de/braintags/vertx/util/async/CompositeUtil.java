@@ -17,6 +17,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.function.Function;
 
+import de.braintags.vertx.util.async.metrics.AsyncMetrics;
+import de.braintags.vertx.util.async.metrics.Timer;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
@@ -31,10 +33,39 @@ import io.vertx.core.Vertx;
  */
 public class CompositeUtil {
 
+  private static final Timer CHUNK_DURATION = AsyncMetrics.timer("composite.chunk.duration");
+
   private CompositeUtil() {
     // hide constructor
   }
 
+  /**
+   * Executes the function for all objects of the iterator with at most windowSize operations in flight. A new
+   * operation is started as soon as any running operation finishes, see {@link SlidingWindowExecutor}.
+   * 
+   * Like {@link #executeChunked(Iterator, int, Function)} the returned future will always succeed with all futures
+   * created during the execution, in the order of the iterator. The caller MUST check each future for failure.
+   * 
+   * @param iterator
+   *          the iterator of all data that should be processed
+   * @param windowSize
+   *          the maximum number of operations executed at the same time
+   * @param func
+   *          the function that should be executed for each object of the iterator
+   * @return all futures created during the execution
+   */
+  public static <T, U, F extends Future<U>> SharedFuture<List<F>> executeWindowed(final Iterator<T> iterator,
+      final int windowSize, final Function<T, F> func) {
+    List<F> futures = new ArrayList<>();
+    SlidingWindowExecutor<T, U> executor = new SlidingWindowExecutor<>(windowSize, object -> {
+      F future = func.apply(object);
+      futures.add(future);
+      return future;
+    });
+    return executor.stream(iterator, (object, result) -> {
+    }).map(count -> futures);
+  }
+
   /**
    * Like a composite future with the "join" method, but executes only a given amount, and waits until that amount is
    * finished before starting the next chunk.
@@ -129,6 +160,7 @@ public class CompositeUtil {
       final List<F> totalFutures,
       final Handler<AsyncResult<Void>> handler) {
     List<Future> futures = new ArrayList<>();
+    long start = System.nanoTime();
     while (iterator.hasNext()) {
       T object = iterator.next();
       F future = biConsumer.apply(object);
@@ -136,6 +168,7 @@ public class CompositeUtil {
       totalFutures.add(future);
       if (futures.size() == chunkSize || !iterator.hasNext()) {
         CompositeFuture.join(futures).setHandler(result -> {
+          CHUNK_DURATION.recordSince(start);
           if (iterator.hasNext()) {
             if (vertx != null && waitDuration > 0) {
               vertx.setTimer(waitDuration, id -> {
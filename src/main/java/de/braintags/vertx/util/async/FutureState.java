@@ -2,6 +2,6 @@ package de.braintags.vertx.util.async;
 
 public enum FutureState {
 
-  RUNNING, SUCCEEDED, FAILED;
+  RUNNING, COMPLETING, SUCCEEDED, FAILED;
   
 }
@@ -18,6 +18,8 @@ import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Function;
 
+import de.braintags.vertx.util.async.metrics.AsyncMetrics;
+import de.braintags.vertx.util.async.metrics.Counter;
 import io.vertx.core.Context;
 import io.vertx.core.Future;
 
@@ -26,13 +28,16 @@ import io.vertx.core.Future;
  * In order to be efficient the monitor works in generations which are created at a rate specified by the
  * tolerance of the timeout. A generation is checked as soon as the generation itself timeouts.
  * 
+ * For a large number of futures or futures with different timeouts see {@link TimingWheelTimeoutMonitor}.
+ * 
  * @author mpluecker
  *
  */
-public class FutureTimeoutMonitor {
+public class FutureTimeoutMonitor implements TimeoutMonitor {
 
   private static final io.vertx.core.logging.Logger LOGGER = io.vertx.core.logging.LoggerFactory
       .getLogger(FutureTimeoutMonitor.class);
+  private static final Counter TIMEOUTS = AsyncMetrics.counter("timeout.monitor.future.timeouts");
 
   private final Queue<TimeoutGeneration> generations;
   private final Thread monitorThread;
@@ -75,6 +80,7 @@ public class FutureTimeoutMonitor {
     monitorThread.start();
   }
 
+  @Override
   public void addFuture(final Context context, final Future<?> future) {
     currentGeneration.add(new FutureWithContext(context, future));
   }
@@ -95,7 +101,9 @@ public class FutureTimeoutMonitor {
                 try {
                   Future<?> future = f.getFuture();
                   Exception exception = timeoutException.apply(future);
-                  future.tryFail(exception);
+                  if (future.tryFail(exception)) {
+                    TIMEOUTS.increment();
+                  }
                 } catch (Throwable e2) {
                   LOGGER.error(e2);
                 }
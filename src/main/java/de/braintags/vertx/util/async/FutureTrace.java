@@ -0,0 +1,129 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+/**
+ * The trace of one future recorded by a {@link FutureTracer}: the stage (the class of the future), the call site that
+ * created it, the trace of the future it was derived from and the creation and completion time.
+ */
+public final class FutureTrace {
+
+  private final String stage;
+  private final StackTraceElement callSite;
+  private final FutureTrace parent;
+  private final long chainId;
+  private final long createdNanos;
+  private volatile long completedNanos;
+  private volatile boolean hasChildren;
+
+  FutureTrace(final String stage, final StackTraceElement callSite, final FutureTrace parent, final long chainId,
+      final long createdNanos) {
+    this.stage = stage;
+    this.callSite = callSite;
+    this.parent = parent;
+    this.chainId = chainId;
+    this.createdNanos = createdNanos;
+    if (parent != null) {
+      parent.hasChildren = true;
+    }
+  }
+
+  void completed(final long nanos) {
+    completedNanos = nanos;
+  }
+
+  /**
+   * @return the simple class name of the future
+   */
+  public String getStage() {
+    return stage;
+  }
+
+  /**
+   * @return the first stack frame outside of the future implementations when the future was created, null if unknown
+   */
+  public StackTraceElement getCallSite() {
+    return callSite;
+  }
+
+  /**
+   * @return the trace of the future this future was derived from, or which was running when this future was created,
+   *         null for the root of a chain
+   */
+  public FutureTrace getParent() {
+    return parent;
+  }
+
+  /**
+   * @return the id shared by all traces of a chain
+   */
+  public long getChainId() {
+    return chainId;
+  }
+
+  public long getCreatedNanos() {
+    return createdNanos;
+  }
+
+  /**
+   * @return the completion time, 0 if not completed
+   */
+  public long getCompletedNanos() {
+    return completedNanos;
+  }
+
+  /**
+   * @return true if other futures were derived from this future
+   */
+  public boolean hasChildren() {
+    return hasChildren;
+  }
+
+  /**
+   * @return the time the stage was active: from the completion of the parent, or its own creation if later, to its
+   *         own completion
+   */
+  public long getSelfNanos() {
+    return completedNanos - getStartNanos();
+  }
+
+  long getStartNanos() {
+    long start = createdNanos;
+    if (parent != null) {
+      long parentCompleted = parent.completedNanos;
+      if (parentCompleted > start && parentCompleted <= completedNanos) {
+        start = parentCompleted;
+      }
+    }
+    return start;
+  }
+
+  /**
+   * @return the stage with the call site, e.g. MappedCacheableFuture(MyService.java:42)
+   */
+  public String getFrameName() {
+    if (callSite == null) {
+      return stage;
+    }
+    return stage + "(" + callSite.getClassName() + "." + callSite.getMethodName() + ":" + callSite.getLineNumber()
+        + ")";
+  }
+
+  FutureTrace getRoot() {
+    FutureTrace root = this;
+    while (root.parent != null) {
+      root = root.parent;
+    }
+    return root;
+  }
+}
@@ -0,0 +1,301 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import de.braintags.vertx.util.DebugDetection;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Records traces of cacheable future chains to find the stage that dominates the latency of a slow chain. Tracing is
+ * enabled with the system property "tracing=true" (see {@link DebugDetection#isTracing()}), otherwise no tracer is
+ * installed and a future only checks that the static tracer field is null.
+ * <p>
+ * A sampled fraction of the root futures is traced (system property "tracing.sampleRate", default 0.01). Futures
+ * derived from a traced future, and futures created while a traced stage runs its mapper, are traced as its children,
+ * so a chain is either traced completely or not at all. When a traced future without children completes more than
+ * the threshold (system property "tracing.slowMs", default 100) after the creation of its chain, the chain is kept as
+ * slow chain. The slow chains can be exported as collapsed stacks for flame graphs or as Chrome trace JSON.
+ */
+public final class FutureTracer {
+
+  /**
+   * true if tracing is enabled by the system property
+   */
+  public static final boolean ENABLED = DebugDetection.isTracing();
+
+  private static final FutureTracer GLOBAL = new FutureTracer(
+      Double.parseDouble(System.getProperty("tracing.sampleRate", "0.01")), Long.getLong("tracing.slowMs", 100), 256);
+  // the tracer used by the futures, null if tracing is disabled
+  private static volatile FutureTracer installed = ENABLED ? GLOBAL : null;
+  private static final ThreadLocal<FutureTrace> CURRENT = new ThreadLocal<>();
+  private static final Map<String, Boolean> FUTURE_CLASSES = new ConcurrentHashMap<>();
+
+  private final double sampleRate;
+  private final long slowNanos;
+  private final int capacity;
+  private final LongSupplier nanoClock;
+  private final AtomicLong chainIds = new AtomicLong();
+  // guarded by itself
+  private final ArrayDeque<FutureTrace> slowChains;
+
+  /**
+   * @param sampleRate
+   *          the fraction of root futures which are traced, between 0 and 1
+   * @param slowThresholdMs
+   *          chains taking longer are kept as slow chains
+   * @param capacity
+   *          the maximum number of slow chains kept, the oldest are dropped
+   */
+  public FutureTracer(final double sampleRate, final long slowThresholdMs, final int capacity) {
+    this(sampleRate, slowThresholdMs, capacity, System::nanoTime);
+  }
+
+  /**
+   * @param nanoClock
+   *          the clock of the creation and completion times, in nanoseconds like {@link System#nanoTime()}
+   */
+  FutureTracer(final double sampleRate, final long slowThresholdMs, final int capacity, final LongSupplier nanoClock) {
+    this.sampleRate = sampleRate;
+    this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMs);
+    this.capacity = capacity;
+    this.nanoClock = nanoClock;
+    this.slowChains = new ArrayDeque<>(capacity);
+  }
+
+  /**
+   * @return the tracer used by the futures if tracing is enabled
+   */
+  public static FutureTracer global() {
+    return GLOBAL;
+  }
+
+  /**
+   * @return the tracer used by the futures, null if tracing is disabled
+   */
+  static FutureTracer installed() {
+    return installed;
+  }
+
+  /**
+   * Installs the tracer used by the futures, independent of {@link #ENABLED}. Futures started by the previous tracer
+   * are completed with the new one.
+   *
+   * @param tracer
+   *          the tracer, null disables tracing
+   * @return the previous tracer
+   */
+  static FutureTracer install(final FutureTracer tracer) {
+    FutureTracer previous = installed;
+    installed = tracer;
+    return previous;
+  }
+
+  /**
+   * Starts the trace of a future
+   *
+   * @param future
+   *          the future
+   * @param source
+   *          the future it is derived from, or null
+   * @return the trace or null if the future is not traced
+   */
+  public FutureTrace start(final Future<?> future, final Future<?> source) {
+    FutureTrace parent = source instanceof CacheableFutureImpl ? ((CacheableFutureImpl<?>) source).trace : null;
+    if (parent == null) {
+      parent = CURRENT.get();
+    }
+    if (parent == null && (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+      return null;
+    }
+    long chainId = parent != null ? parent.getChainId() : chainIds.incrementAndGet();
+    return new FutureTrace(future.getClass().getSimpleName(), callSite(), parent, chainId, nanoClock.getAsLong());
+  }
+
+  /**
+   * Completes the trace and keeps its chain if it is slow
+   */
+  public void completed(final FutureTrace trace) {
+    trace.completed(nanoClock.getAsLong());
+    if (trace.hasChildren()) {
+      // the chain continues, the last stage reports it
+      return;
+    }
+    if (trace.getCompletedNanos() - trace.getRoot().getCreatedNanos() >= slowNanos) {
+      synchronized (slowChains) {
+        if (slowChains.size() == capacity) {
+          slowChains.poll();
+        }
+        slowChains.add(trace);
+      }
+    }
+  }
+
+  /**
+   * Makes the trace the parent of the futures created by the current thread until {@link #exit(FutureTrace)}
+   *
+   * @return the previous trace, to be passed to {@link #exit(FutureTrace)}
+   */
+  static FutureTrace enter(final FutureTrace trace) {
+    FutureTrace previous = CURRENT.get();
+    if (trace != null) {
+      CURRENT.set(trace);
+    }
+    return previous;
+  }
+
+  /**
+   * @return the trace entered by the current thread, or null
+   */
+  static FutureTrace current() {
+    return CURRENT.get();
+  }
+
+  static void exit(final FutureTrace previous) {
+    if (previous == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(previous);
+    }
+  }
+
+  /**
+   * @return the last stages of the slow chains, oldest first. The chains are reached by {@link FutureTrace#getParent()}
+   */
+  public List<FutureTrace> getSlowChains() {
+    synchronized (slowChains) {
+      return new ArrayList<>(slowChains);
+    }
+  }
+
+  /**
+   * Removes all slow chains
+   */
+  public void clear() {
+    synchronized (slowChains) {
+      slowChains.clear();
+    }
+  }
+
+  /**
+   * Exports the slow chains in the collapsed stack format of flamegraph.pl: one line per stage with the stages from
+   * the root to the stage separated by semicolons and the active time of the stage in microseconds. Stages shared by
+   * several chains are written once.
+   *
+   * @return the collapsed stacks
+   */
+  public String toCollapsedStacks() {
+    StringBuilder builder = new StringBuilder();
+    Map<FutureTrace, String> paths = new IdentityHashMap<>();
+    for (FutureTrace trace : uniqueStages()) {
+      String path = path(trace, paths);
+      builder.append(path).append(' ').append(TimeUnit.NANOSECONDS.toMicros(Math.max(0, trace.getSelfNanos())))
+          .append('\n');
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Exports the slow chains in the Chrome trace event format, which can be opened in chrome://tracing. Each chain is
+   * shown as one thread, each stage as a complete event.
+   *
+   * @return the trace events
+   */
+  public JsonObject toChromeTrace() {
+    Set<FutureTrace> stages = uniqueStages();
+    long origin = Long.MAX_VALUE;
+    for (FutureTrace trace : stages) {
+      origin = Math.min(origin, trace.getCreatedNanos());
+    }
+    JsonArray events = new JsonArray();
+    for (FutureTrace trace : stages) {
+      JsonObject args = new JsonObject();
+      if (trace.getCallSite() != null) {
+        args.put("callSite", trace.getCallSite().toString());
+      }
+      events.add(new JsonObject().put("name", trace.getStage()).put("cat", "future").put("ph", "X")
+          .put("ts", TimeUnit.NANOSECONDS.toMicros(trace.getStartNanos() - origin))
+          .put("dur", TimeUnit.NANOSECONDS.toMicros(Math.max(0, trace.getSelfNanos()))).put("pid", 1)
+          .put("tid", trace.getChainId()).put("args", args));
+    }
+    return new JsonObject().put("traceEvents", events).put("displayTimeUnit", "ms");
+  }
+
+  /**
+   * @return all stages of the slow chains, each once, parents before children
+   */
+  private Set<FutureTrace> uniqueStages() {
+    // traces use identity equality
+    Set<FutureTrace> stages = new LinkedHashSet<>();
+    for (FutureTrace last : getSlowChains()) {
+      List<FutureTrace> chain = new ArrayList<>();
+      for (FutureTrace trace = last; trace != null && !stages.contains(trace); trace = trace.getParent()) {
+        chain.add(trace);
+      }
+      for (int i = chain.size() - 1; i >= 0; i--) {
+        stages.add(chain.get(i));
+      }
+    }
+    return stages;
+  }
+
+  private static String path(final FutureTrace trace, final Map<FutureTrace, String> paths) {
+    String path = paths.get(trace);
+    if (path == null) {
+      String frame = trace.getFrameName().replace(';', ',').replace(' ', '_');
+      path = trace.getParent() == null ? frame : path(trace.getParent(), paths) + ";" + frame;
+      paths.put(trace, path);
+    }
+    return path;
+  }
+
+  /**
+   * @return the first stack frame which is not in a future class
+   */
+  private static StackTraceElement callSite() {
+    StackTraceElement[] stack = new Throwable().getStackTrace();
+    for (StackTraceElement element : stack) {
+      if (!element.getMethodName().equals("<init>") && !isFutureClass(element.getClassName())) {
+        return element;
+      }
+    }
+    return null;
+  }
+
+  private static boolean isFutureClass(final String className) {
+    return FUTURE_CLASSES.computeIfAbsent(className, name -> {
+      if (name.equals(FutureTracer.class.getName())) {
+        return true;
+      }
+      try {
+        return Future.class.isAssignableFrom(Class.forName(name, false, FutureTracer.class.getClassLoader()));
+      } catch (ClassNotFoundException | LinkageError e) {
+        return false;
+      }
+    });
+  }
+}
@@ -22,6 +22,7 @@ class MappedCacheableFuture<U, T> extends CacheableFutureImpl<U> implements Cach
   private final Function<T, U> mapper;
 
   public MappedCacheableFuture(final Future<T> src, final Function<T, U> mapper) {
+    super(src);
     this.mapper = mapper;
     src.setHandler(this::chainFuture);
   }
@@ -20,6 +20,7 @@ class MappedValueCacheableFuture<U, T> extends CacheableFutureImpl<U> implements
   private final U value;
 
   public MappedValueCacheableFuture(final Future<T> src, final U value) {
+    super(src);
     this.value = value;
     src.setHandler(this::chainFuture);
   }
@@ -12,9 +12,11 @@
  */
 package de.braintags.vertx.util.async;
 
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 
@@ -41,6 +43,20 @@ public interface MultiThreadedFuture<T> extends CacheableFuture<T> {
     return new MultiThreadedFutureImpl<>();
   }
 
+  /**
+   * Create a future that is completed on a worker thread, but notifies on its owner: handlers added outside of a vertx
+   * context are called on the owner context instead of the completing thread, and when completed from a worker thread
+   * no handler is called inline. Handlers added on a context are called on that context like for any
+   * {@link MultiThreadedFuture}.
+   *
+   * @param owner
+   *          the context to notify the handlers without context on
+   * @return the future
+   */
+  public static <T> MultiThreadedFuture<T> future(final Context owner) {
+    return new MultiThreadedFutureImpl<>(owner);
+  }
+
   public static <T> MultiThreadedFuture<T> succeededFuture() {
     return succeededFuture(CacheableFuture.EXPIRED, null);
   }
@@ -90,6 +106,28 @@ public interface MultiThreadedFuture<T> extends CacheableFuture<T> {
   @Override
   MultiThreadedFuture<T> otherwiseEmpty();
 
+  @Override
+  default <U, V> MultiThreadedFuture<V> mapThenCompose(final Function<T, U> mapper, final Function<U, Future<V>> composer) {
+    return compose(result -> composer.apply(mapper.apply(result)));
+  }
+
+  @Override
+  default <U, V> MultiThreadedFuture<V> map2(final Future<U> other, final BiFunction<T, U, V> combiner) {
+    return compose(result -> other.map(otherResult -> combiner.apply(result, otherResult)));
+  }
+
+  @Override
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  default <V> MultiThreadedFuture<V> pipe(final Function<?, ?>... stages) {
+    return map(result -> {
+      Object value = result;
+      for (Function stage : stages) {
+        value = stage.apply(value);
+      }
+      return (V) value;
+    });
+  }
+
   MultiThreadedFuture<T> addHandler(Handler<? super MultiThreadedFuture<T>> handler);
 
 
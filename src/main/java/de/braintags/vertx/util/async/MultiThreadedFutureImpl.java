@@ -2,26 +2,54 @@ package de.braintags.vertx.util.async;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.Function;
 
-import org.apache.commons.lang3.tuple.Pair;
-
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
-
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+/**
+ * Implementation of {@link MultiThreadedFuture}. Handlers are called on the context they were added on.
+ * <p>
+ * Like in {@link SharedFutureImpl}, the completion state and the handlers are stored in a single field updated by
+ * compare and set. A handler added outside of a vertx context is stored directly, handlers with a context are stored
+ * as a stack of {@link HandlerNode nodes}.
+ * <p>
+ * On completion the handlers are grouped by context: handlers of the completing context are called inline, the
+ * handlers of each other context are dispatched as one task. So a future with many handlers on a few event loops
+ * schedules one task per event loop instead of one per handler. A handler of a batch which throws is reported to the
+ * exception handler of its context, the following handlers of the batch are still called.
+ */
 public class MultiThreadedFutureImpl<T> extends AbstractFuture<T> implements MultiThreadedFuture<T> {
 
-  private volatile List<Pair<Context, Handler<? super MultiThreadedFuture<T>>>> handlers;
-  protected volatile FutureState state = FutureState.RUNNING;
-  protected volatile T result;
-  protected volatile Throwable throwable;
+  private static final Logger logger = LoggerFactory.getLogger(MultiThreadedFutureImpl.class);
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<MultiThreadedFutureImpl, Object> STATE = AtomicReferenceFieldUpdater
+      .newUpdater(MultiThreadedFutureImpl.class, Object.class, "state");
+
+  private volatile Object state;
+  protected T result;
+  protected Throwable throwable;
+  private final Context owner;
 
   MultiThreadedFutureImpl() {
+    this((Context) null);
+  }
+
+  /**
+   * @param owner
+   *          the context to call the handlers on which were added outside of a vertx context, null to call them on
+   *          the completing thread
+   */
+  MultiThreadedFutureImpl(final Context owner) {
     super();
-    handlers = new ArrayList<>();
+    this.owner = owner;
   }
 
   MultiThreadedFutureImpl(final Throwable cause) {
@@ -54,7 +82,7 @@ public class MultiThreadedFutureImpl<T> extends AbstractFuture<T> implements Mul
    */
   @Override
   public T result() {
-    return result;
+    return state == FutureState.SUCCEEDED ? result : null;
   }
 
   /**
@@ -62,7 +90,7 @@ public class MultiThreadedFutureImpl<T> extends AbstractFuture<T> implements Mul
    */
   @Override
   public Throwable cause() {
-    return throwable;
+    return state == FutureState.FAILED ? throwable : null;
   }
 
   /**
@@ -86,7 +114,8 @@ public class MultiThreadedFutureImpl<T> extends AbstractFuture<T> implements Mul
    */
   @Override
   public boolean isComplete() {
-    return state != FutureState.RUNNING;
+    Object current = state;
+    return current == FutureState.SUCCEEDED || current == FutureState.FAILED;
   }
 
   @Override
@@ -110,15 +139,8 @@ public class MultiThreadedFutureImpl<T> extends AbstractFuture<T> implements Mul
     return tryComplete(CacheableFuture.EXPIRED, value);
   }
 
-  public synchronized boolean tryComplete(final long expires, final T result) {
-    if (isComplete())
-      return false;
-    reduceExpire(expires);
-    // important: set result first
-    this.result = result;
-    state = FutureState.SUCCEEDED;
-    callHandlers();
-    return true;
+  public boolean tryComplete(final long expires, final T result) {
+    return tryComplete(true, result, null, expires);
   }
 
   /*
@@ -127,22 +149,35 @@ public class MultiThreadedFutureImpl<T> extends AbstractFuture<T> implements Mul
    * @see io.vertx.core.Future#tryFail(java.lang.Throwable)
    */
   @Override
-  public synchronized boolean tryFail(final Throwable cause) {
-    if (isComplete())
-      return false;
-    // important: set throwable first
-    this.throwable = cause;
-    state = FutureState.FAILED;
-    reduceExpire(CacheableResult.EXPIRED);
-
-    callHandlers();
-    return true;
+  public boolean tryFail(final Throwable cause) {
+    return tryComplete(false, null, cause, CacheableResult.EXPIRED);
   }
 
   public boolean tryComplete(final long expires) {
     return tryComplete(expires, null);
   }
 
+  private boolean tryComplete(final boolean success, final T result, final Throwable cause, final long expires) {
+    Object handlers;
+    do {
+      handlers = state;
+      if (handlers instanceof FutureState) {
+        return false;
+      }
+    } while (!STATE.compareAndSet(this, handlers, FutureState.COMPLETING));
+
+    reduceExpire(expires);
+    if (success) {
+      this.result = result;
+    } else {
+      this.throwable = cause;
+    }
+    // the volatile write publishes the result to all threads reading the state
+    state = success ? FutureState.SUCCEEDED : FutureState.FAILED;
+    callHandlers(handlers);
+    return true;
+  }
+
   @Override
   public Handler<CacheableResult<T>> cacheHandler() {
     return res -> {
@@ -161,39 +196,150 @@ public class MultiThreadedFutureImpl<T> extends AbstractFuture<T> implements Mul
     return addHandler(handler);
   }
 
-  protected synchronized void callHandlers() {
+  @SuppressWarnings("unchecked")
+  private void callHandlers(final Object handlers) {
+    if (handlers == null) {
+      return;
+    }
     Context currentContext = Vertx.currentContext();
-    for (Pair<Context, Handler<? super MultiThreadedFuture<T>>> handler : handlers) {
-      if (handler.getKey() == null || currentContext == handler.getKey()) {
-        handler.getValue().handle(this);
+    if (owner != null && Context.isOnWorkerThread()) {
+      // blocking code of the owner runs with the owner as current context, but the handlers must run on its event loop
+      currentContext = null;
+    }
+    if (!(handlers instanceof HandlerNode)) {
+      // handler without context
+      Handler<? super MultiThreadedFuture<T>> handler = (Handler<? super MultiThreadedFuture<T>>) handlers;
+      if (owner == null || owner == currentContext) {
+        handler.handle(this);
+      } else {
+        owner.runOnContext(v -> handler.handle(this));
+      }
+      return;
+    }
+
+    // the stack contains the handlers in reverse order, reverse it in place to call them in the order they were added
+    HandlerNode node = (HandlerNode) handlers;
+    HandlerNode reversed = null;
+    Object first = null;
+    while (true) {
+      Object next = node.next;
+      node.next = reversed;
+      reversed = node;
+      if (next instanceof HandlerNode) {
+        node = (HandlerNode) next;
+      } else {
+        first = next;
+        break;
+      }
+    }
+    if (first != null) {
+      // the handler without context was added first
+      HandlerNode firstNode = new HandlerNode(null, (Handler<?>) first);
+      firstNode.next = reversed;
+      reversed = firstNode;
+    }
+
+    // relink the nodes into one chain per context, keeping the order of each context
+    HandlerNode inline = null;
+    HandlerNode inlineTail = null;
+    List<HandlerBatch> batches = null;
+    HandlerNode n = reversed;
+    while (n != null) {
+      HandlerNode next = (HandlerNode) n.next;
+      n.next = null;
+      Context context = n.context != null ? n.context : owner;
+      if (context == null || context == currentContext) {
+        if (inlineTail == null) {
+          inline = n;
+        } else {
+          inlineTail.next = n;
+        }
+        inlineTail = n;
       } else {
-        handler.getKey().runOnContext(v -> {
-          handler.getValue().handle(this);
-        });
+        if (batches == null) {
+          batches = new ArrayList<>(4);
+        }
+        batch(batches, context).add(n);
+      }
+      n = next;
+    }
+
+    if (batches != null) {
+      for (HandlerBatch batch : batches) {
+        HandlerNode chain = batch.first;
+        batch.context.runOnContext(v -> callChain(batch.context, chain));
+      }
+    }
+    callChain(currentContext, inline);
+  }
+
+  /**
+   * Finds the batch of the context by a linear search, the number of contexts is the number of event loops at most.
+   */
+  private static HandlerBatch batch(final List<HandlerBatch> batches, final Context context) {
+    for (int i = 0; i < batches.size(); i++) {
+      HandlerBatch batch = batches.get(i);
+      if (batch.context == context) {
+        return batch;
+      }
+    }
+    HandlerBatch batch = new HandlerBatch(context);
+    batches.add(batch);
+    return batch;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void callChain(final Context context, final HandlerNode chain) {
+    for (HandlerNode n = chain; n != null; n = (HandlerNode) n.next) {
+      try {
+        ((Handler<? super MultiThreadedFuture<T>>) n.handler).handle(this);
+      } catch (Throwable e) {
+        Handler<Throwable> exceptionHandler = context != null ? context.exceptionHandler() : null;
+        if (exceptionHandler != null) {
+          exceptionHandler.handle(e);
+        } else {
+          logger.error("Unhandled exception in handler of future", e);
+        }
       }
     }
-    handlers = null;
   }
 
   @Override
   public MultiThreadedFuture<T> addHandler(final Handler<? super MultiThreadedFuture<T>> handler) {
+    return addHandler(Vertx.currentContext(), handler);
+  }
+
+  /**
+   * Adds a handler which is called on the given context
+   */
+  MultiThreadedFuture<T> addHandler(final Context currentContext,
+      final Handler<? super MultiThreadedFuture<T>> handler) {
     if (handler == null) {
       throw new NullPointerException("null handler not allowed");
     }
-    boolean handleImmediately = isComplete();
-    if (!handleImmediately) {
-      Context currentContext = Vertx.currentContext();
-      synchronized (this) {
-        handleImmediately = isComplete();
-        if (!handleImmediately) {
-          handlers.add(Pair.of(currentContext, handler));
+    HandlerNode node = null;
+    while (true) {
+      Object current = state;
+      if (current == FutureState.SUCCEEDED || current == FutureState.FAILED) {
+        handler.handle(this);
+        return this;
+      } else if (current == FutureState.COMPLETING) {
+        // the completing thread only has to set the result, the handler is called afterwards
+        Thread.yield();
+      } else if (current == null && currentContext == null) {
+        if (STATE.compareAndSet(this, null, handler)) {
+          return this;
+        }
+      } else {
+        if (node == null) {
+          node = new HandlerNode(currentContext, handler);
+        }
+        node.next = current;
+        if (STATE.compareAndSet(this, current, node)) {
+          return this;
         }
       }
     }
-    if (handleImmediately) {
-      handler.handle(this);
-    }
-    return this;
   }
 
   @Override
@@ -330,4 +476,42 @@ public class MultiThreadedFutureImpl<T> extends AbstractFuture<T> implements Mul
     });
     return this;
   }
+
+  /**
+   * The handlers of one context, called by one task on that context
+   */
+  private static final class HandlerBatch {
+
+    private final Context context;
+    private HandlerNode first;
+    private HandlerNode last;
+
+    HandlerBatch(final Context context) {
+      this.context = context;
+    }
+
+    void add(final HandlerNode node) {
+      if (last == null) {
+        first = node;
+      } else {
+        last.next = node;
+      }
+      last = node;
+    }
+  }
+
+  /**
+   * Node in the stack of handlers. The last node references the handler without context, if there is one.
+   */
+  private static final class HandlerNode {
+
+    private final Context context;
+    private final Handler<?> handler;
+    private Object next;
+
+    HandlerNode(final Context context, final Handler<?> handler) {
+      this.context = context;
+      this.handler = handler;
+    }
+  }
 }
@@ -22,6 +22,7 @@ class OtherwiseCacheableFuture<T> extends CacheableFutureImpl<T> implements Cach
   private final Function<Throwable, T> mapper;
 
   public OtherwiseCacheableFuture(final Future<T> src, final Function<Throwable, T> mapper) {
+    super(src);
     this.mapper = mapper;
     src.setHandler(this::chainFuture);
   }
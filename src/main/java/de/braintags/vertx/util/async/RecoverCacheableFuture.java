@@ -22,6 +22,7 @@ class RecoverCacheableFuture<T> extends CacheableFutureImpl<T> {
   private final Function<Throwable, Future<T>> mapper;
 
   public RecoverCacheableFuture(final Future<T> src, final Function<Throwable, Future<T>> mapper) {
+    super(src);
     this.mapper = mapper;
     src.setHandler(this::chainFuture);
   }
@@ -16,6 +16,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
+import de.braintags.vertx.util.async.metrics.AsyncMetrics;
+import de.braintags.vertx.util.async.metrics.Counter;
+import de.braintags.vertx.util.async.metrics.Timer;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 
@@ -33,6 +36,10 @@ import io.vertx.core.logging.LoggerFactory;
 public class RefreshableFuture<T, F extends CacheableFuture<T>> {
 
   private static final Logger logger = LoggerFactory.getLogger(RefreshableFuture.class);
+  private static final Counter SOFT_REFRESHES = AsyncMetrics.counter("refreshable.refresh.soft");
+  private static final Counter HARD_REFRESHES = AsyncMetrics.counter("refreshable.refresh.hard");
+  private static final Counter FAILED_REFRESHES = AsyncMetrics.counter("refreshable.refresh.failed");
+  private static final Timer REFRESH_DURATION = AsyncMetrics.timer("refreshable.refresh.duration");
 
   private final long hardLimit;
   private final Function<T, Boolean> shouldRefreshFilter;
@@ -100,12 +107,16 @@ public class RefreshableFuture<T, F extends CacheableFuture<T>> {
 
   private void softRefresh() {
     if (refreshing.compareAndSet(false, true)) {
+      SOFT_REFRESHES.increment();
+      long start = System.nanoTime();
       F newFuture = supplier.get();
       newFuture.setHandler(res -> {
+        REFRESH_DURATION.recordSince(start);
         if (res.succeeded()) {
           this.hardExpires = System.currentTimeMillis() + hardLimit;
           this.currentFuture = newFuture;
         } else {
+          FAILED_REFRESHES.increment();
           logger.error("Error soft-refreshing future", res.cause());
         }
         refreshing.set(false);
@@ -115,6 +126,7 @@ public class RefreshableFuture<T, F extends CacheableFuture<T>> {
 
   private synchronized void hardRefresh() {
     if (System.currentTimeMillis() > hardExpires) {
+      HARD_REFRESHES.increment();
       F newFuture = supplier.get();
       this.hardExpires = System.currentTimeMillis() + hardLimit;
       this.currentFuture = newFuture;
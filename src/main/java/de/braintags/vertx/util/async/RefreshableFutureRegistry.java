@@ -0,0 +1,291 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+/**
+ * A keyed registry of self-refreshing futures. In contrast to {@link RefreshableFuture}, the futures are refreshed in
+ * the background by a vertx timer before they expire, so the request path does not have to wait for the refresh.
+ * <ul>
+ * <li>each entry is refreshed {@code refreshAheadMs} plus a random jitter of up to {@code jitterMs} before
+ * {@link CacheableFuture#expires()}, so entries with the same expiration are not refreshed at the same time</li>
+ * <li>at most {@code maxConcurrentRefreshes} refreshes are executed at once, further refreshes are queued</li>
+ * <li>entries that were not requested via {@link #get(Object)} for {@code idleTimeoutMs} are removed instead of being
+ * refreshed</li>
+ * </ul>
+ * If a refresh fails, the last valid future is kept and the refresh is retried after {@code refreshAheadMs}.
+ *
+ * @param <K>
+ *          the type of the keys
+ * @param <T>
+ *          the type of the values
+ */
+public class RefreshableFutureRegistry<K, T> {
+
+  private static final Logger logger = LoggerFactory.getLogger(RefreshableFutureRegistry.class);
+
+  private final Vertx vertx;
+  private final Function<K, ? extends CacheableFuture<T>> supplier;
+  private final long refreshAheadMs;
+  private final long jitterMs;
+  private final int maxConcurrentRefreshes;
+  private final long idleTimeoutMs;
+
+  private final ConcurrentHashMap<K, Entry> entries = new ConcurrentHashMap<>();
+  private final Queue<Entry> pendingRefreshes = new ArrayDeque<>();
+  private int runningRefreshes;
+
+  /**
+   * Create a new registry
+   *
+   * @param vertx
+   *          the vertx instance used for the refresh timers
+   * @param refreshAheadMs
+   *          the time in ms before the expiration of a future, when the refresh is started
+   * @param jitterMs
+   *          the maximum random time in ms, that is additionally subtracted from the refresh time
+   * @param maxConcurrentRefreshes
+   *          the maximum number of refreshes that are executed at the same time
+   * @param idleTimeoutMs
+   *          the time in ms after which an entry that was not requested is removed
+   * @param supplier
+   *          creates the future for a key, will be used to refresh the future repeatedly
+   */
+  public RefreshableFutureRegistry(final Vertx vertx, final long refreshAheadMs, final long jitterMs,
+      final int maxConcurrentRefreshes, final long idleTimeoutMs,
+      final Function<K, ? extends CacheableFuture<T>> supplier) {
+    if (maxConcurrentRefreshes <= 0) {
+      throw new IllegalArgumentException("maxConcurrentRefreshes must be > 0");
+    }
+    if (idleTimeoutMs <= 0) {
+      throw new IllegalArgumentException("idleTimeoutMs must be > 0");
+    }
+    this.vertx = vertx;
+    this.refreshAheadMs = refreshAheadMs;
+    this.jitterMs = jitterMs;
+    this.maxConcurrentRefreshes = maxConcurrentRefreshes;
+    this.idleTimeoutMs = idleTimeoutMs;
+    this.supplier = supplier;
+  }
+
+  /**
+   * Returns the current future for the key. The future is created on the first call for the key and refreshed in the
+   * background afterwards. If the last refresh failed, the last valid - possibly expired - future is returned.
+   *
+   * @param key
+   *          the key
+   * @return the current future of the key
+   */
+  public CacheableFuture<T> get(final K key) {
+    Entry entry = entries.computeIfAbsent(key, Entry::new);
+    entry.lastAccess = System.currentTimeMillis();
+    CacheableFuture<T> current = entry.current;
+    if (current == null || current.failed()) {
+      synchronized (entry) {
+        if (entry.current == current) {
+          entry.current = load(entry);
+        }
+        current = entry.current;
+      }
+    } else if (current.isComplete() && current.expires() < entry.lastAccess) {
+      // the background refresh did not finish in time, make sure it is running
+      requestRefresh(entry);
+    }
+    return current;
+  }
+
+  /**
+   * Removes the entry of the key. A running refresh is not cancelled, but its result is discarded.
+   *
+   * @param key
+   *          the key
+   */
+  public void remove(final K key) {
+    Entry entry = entries.remove(key);
+    if (entry != null) {
+      entry.remove();
+    }
+  }
+
+  /**
+   * Removes all entries and cancels their refresh timers
+   */
+  public void clear() {
+    for (K key : entries.keySet()) {
+      remove(key);
+    }
+  }
+
+  /**
+   * @return the number of registered keys
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return the number of refreshes that are currently executed
+   */
+  public synchronized int getRunningRefreshes() {
+    return runningRefreshes;
+  }
+
+  /**
+   * @return the number of refreshes that are waiting for a free slot
+   */
+  public synchronized int getPendingRefreshes() {
+    return pendingRefreshes.size();
+  }
+
+  private CacheableFuture<T> load(final Entry entry) {
+    CacheableFuture<T> future;
+    try {
+      future = supplier.apply(entry.key);
+    } catch (Throwable e) {
+      future = CacheableFuture.failedFuture(e);
+    }
+    CacheableFuture<T> loaded = future;
+    loaded.setHandler(res -> {
+      if (res.succeeded()) {
+        scheduleRefresh(entry, loaded.expires());
+      } else {
+        // no refresh, but the entry must still be removed when it is idle
+        entry.refreshAt = Long.MAX_VALUE;
+        scheduleTimer(entry, System.currentTimeMillis());
+      }
+    });
+    return loaded;
+  }
+
+  private void scheduleRefresh(final Entry entry, final long expires) {
+    if (expires == CacheableResult.INFINITE) {
+      entry.refreshAt = Long.MAX_VALUE;
+    } else {
+      long jitter = jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0;
+      entry.refreshAt = expires - refreshAheadMs - jitter;
+    }
+    scheduleTimer(entry, System.currentTimeMillis());
+  }
+
+  private void scheduleTimer(final Entry entry, final long now) {
+    long delay = Math.min(entry.refreshAt - now, entry.lastAccess + idleTimeoutMs - now);
+    synchronized (entry) {
+      if (entry.timerId >= 0) {
+        vertx.cancelTimer(entry.timerId);
+      }
+      if (!entry.removed) {
+        entry.timerId = vertx.setTimer(Math.max(1, delay), id -> timerFired(entry));
+      }
+    }
+  }
+
+  private void timerFired(final Entry entry) {
+    long now = System.currentTimeMillis();
+    if (now - entry.lastAccess >= idleTimeoutMs) {
+      entries.remove(entry.key, entry);
+      entry.remove();
+    } else if (now >= entry.refreshAt) {
+      requestRefresh(entry);
+    } else {
+      scheduleTimer(entry, now);
+    }
+  }
+
+  private void requestRefresh(final Entry entry) {
+    synchronized (this) {
+      if (entry.refreshing || entry.removed) {
+        return;
+      }
+      entry.refreshing = true;
+      if (runningRefreshes >= maxConcurrentRefreshes) {
+        pendingRefreshes.add(entry);
+        return;
+      }
+      runningRefreshes++;
+    }
+    refresh(entry);
+  }
+
+  private void refresh(final Entry entry) {
+    CacheableFuture<T> future;
+    try {
+      future = supplier.apply(entry.key);
+    } catch (Throwable e) {
+      future = CacheableFuture.failedFuture(e);
+    }
+    CacheableFuture<T> refreshed = future;
+    refreshed.setHandler(res -> {
+      refreshFinished(entry);
+      if (res.succeeded()) {
+        entry.current = refreshed;
+        scheduleRefresh(entry, refreshed.expires());
+      } else {
+        logger.error("Error refreshing future for key " + entry.key, res.cause());
+        entry.refreshAt = System.currentTimeMillis() + Math.max(1, refreshAheadMs);
+        scheduleTimer(entry, System.currentTimeMillis());
+      }
+    });
+  }
+
+  private void refreshFinished(final Entry entry) {
+    Entry next;
+    synchronized (this) {
+      entry.refreshing = false;
+      next = pendingRefreshes.poll();
+      while (next != null && next.removed) {
+        next.refreshing = false;
+        next = pendingRefreshes.poll();
+      }
+      if (next == null) {
+        runningRefreshes--;
+      }
+    }
+    if (next != null) {
+      refresh(next);
+    }
+  }
+
+  private class Entry {
+
+    private final K key;
+    private volatile CacheableFuture<T> current;
+    private volatile long lastAccess;
+    private volatile long refreshAt = Long.MAX_VALUE;
+    private long timerId = -1;
+    private boolean refreshing;
+    private volatile boolean removed;
+
+    public Entry(final K key) {
+      this.key = key;
+    }
+
+    public void remove() {
+      synchronized (this) {
+        removed = true;
+        if (timerId >= 0) {
+          vertx.cancelTimer(timerId);
+          timerId = -1;
+        }
+      }
+    }
+  }
+}
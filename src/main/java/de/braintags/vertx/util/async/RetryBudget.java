@@ -0,0 +1,88 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket that limits the retries of all callers sharing the budget: each first attempt deposits a fraction of
+ * a token, each retry or hedged attempt withdraws a whole token. Additionally a minimum number of retries per second
+ * is always allowed. So retries can add at most the given ratio of load to a backend, even if every request fails.
+ * <p>
+ * The budget is thread safe and should be shared by all {@link RetryingFuture retrying futures} calling the same
+ * backend, e.g. via a shared {@link RetryPolicy}.
+ */
+public class RetryBudget {
+
+  private final double retryRatio;
+  private final double minRetriesPerSecond;
+  private final double maxBalance;
+
+  private double balance;
+  private long lastRefillNanos = System.nanoTime();
+
+  /**
+   * @param retryRatio
+   *          the ratio of retries to first attempts, e.g. 0.1 allows one retry per ten requests
+   * @param minRetriesPerSecond
+   *          the number of retries per second which is allowed independent of the number of requests
+   */
+  public RetryBudget(final double retryRatio, final double minRetriesPerSecond) {
+    if (retryRatio < 0 || minRetriesPerSecond < 0) {
+      throw new IllegalArgumentException("retryRatio and minRetriesPerSecond must be >= 0");
+    }
+    this.retryRatio = retryRatio;
+    this.minRetriesPerSecond = minRetriesPerSecond;
+    // one second of reserve and the deposits of 100 requests
+    this.maxBalance = Math.max(1, minRetriesPerSecond + retryRatio * 100);
+    this.balance = minRetriesPerSecond;
+  }
+
+  /**
+   * Called for each first attempt
+   */
+  public synchronized void deposit() {
+    balance = Math.min(maxBalance, balance + retryRatio);
+  }
+
+  /**
+   * Called before a retry
+   *
+   * @return true if the retry is allowed, false if the budget is exhausted
+   */
+  public synchronized boolean tryWithdraw() {
+    refill();
+    if (balance >= 1) {
+      balance--;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return the number of retries which are currently allowed
+   */
+  public synchronized double getBalance() {
+    refill();
+    return balance;
+  }
+
+  private void refill() {
+    long now = System.nanoTime();
+    if (minRetriesPerSecond > 0) {
+      double refill = (now - lastRefillNanos) * minRetriesPerSecond / TimeUnit.SECONDS.toNanos(1);
+      balance = Math.min(maxBalance, balance + refill);
+    }
+    lastRefillNanos = now;
+  }
+}
@@ -0,0 +1,231 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Configuration of a {@link RetryingFuture}:
+ * <ul>
+ * <li>the delay between retries grows with decorrelated jitter: each delay is a random value between the base delay
+ * and three times the previous delay, capped by the maximum delay. So retries of many callers that failed at the same
+ * time are spread out instead of hitting the backend together.</li>
+ * <li>an optional {@link RetryBudget} shared by all callers limits the total number of retries</li>
+ * <li>an optional timeout per attempt fails a hanging attempt with an {@link AsyncTimeoutException}, which is
+ * retried</li>
+ * <li>with hedging, a second attempt is started when the first one is slower than the 95th percentile of the recent
+ * successful attempts (or a fixed delay). The first successful attempt wins, the other is cancelled.</li>
+ * </ul>
+ * A policy holds the latency samples for hedging and can be shared by all retrying futures calling the same backend.
+ */
+public class RetryPolicy {
+
+  private static final int LATENCY_SAMPLES = 256;
+  private static final int MIN_LATENCY_SAMPLES = 20;
+
+  private int maxRetries = 3;
+  private long baseDelayMs = 50;
+  private long maxDelayMs = 10000;
+  private long attemptTimeoutMs;
+  private Predicate<Throwable> retryOn = e -> true;
+  private RetryBudget budget;
+  private boolean hedging;
+  private long hedgeDelayMs;
+
+  private Function<Integer, Boolean> retryDecider;
+  private Function<Integer, Integer> delayFunction;
+
+  // ring buffer of the latencies of successful attempts, for the hedge delay
+  private final long[] latencies = new long[LATENCY_SAMPLES];
+  private int latencyCount;
+  private int samplesSinceEstimate;
+  private long p95 = -1;
+
+  /**
+   * Create a policy with 3 retries, a base delay of 50 ms and a maximum delay of 10 s
+   */
+  public RetryPolicy() {
+  }
+
+  /**
+   * Create a policy with the functions of the former constructor of {@link RetryingFuture}
+   *
+   * @param retryDecider
+   *          Function that decides if another retry is made. The function is called with the current number of retries
+   *          (first retry is called with 0).
+   * @param retryDelayMs
+   *          Function from retry to delay. The function is called with the current number of retries (first retry is
+   *          called with 0).
+   */
+  public RetryPolicy(final Function<Integer, Boolean> retryDecider, final Function<Integer, Integer> retryDelayMs) {
+    this.retryDecider = retryDecider;
+    this.delayFunction = retryDelayMs;
+  }
+
+  /**
+   * @param maxRetries
+   *          the maximum number of retries after the first attempt
+   * @return this for fluent usage
+   */
+  public RetryPolicy setMaxRetries(final int maxRetries) {
+    this.maxRetries = maxRetries;
+    return this;
+  }
+
+  /**
+   * @param baseDelayMs
+   *          the minimum delay before a retry
+   * @param maxDelayMs
+   *          the maximum delay before a retry
+   * @return this for fluent usage
+   */
+  public RetryPolicy setBackoff(final long baseDelayMs, final long maxDelayMs) {
+    if (baseDelayMs < 0 || maxDelayMs < baseDelayMs) {
+      throw new IllegalArgumentException("0 <= baseDelayMs <= maxDelayMs required");
+    }
+    this.baseDelayMs = baseDelayMs;
+    this.maxDelayMs = maxDelayMs;
+    return this;
+  }
+
+  /**
+   * @param attemptTimeoutMs
+   *          the time after which a single attempt is failed with an {@link AsyncTimeoutException}, 0 for no timeout
+   * @return this for fluent usage
+   */
+  public RetryPolicy setAttemptTimeoutMs(final long attemptTimeoutMs) {
+    this.attemptTimeoutMs = attemptTimeoutMs;
+    return this;
+  }
+
+  /**
+   * @param retryOn
+   *          decides if a failure is retried
+   * @return this for fluent usage
+   */
+  public RetryPolicy setRetryOn(final Predicate<Throwable> retryOn) {
+    this.retryOn = retryOn;
+    return this;
+  }
+
+  /**
+   * @param budget
+   *          the budget for retries and hedged attempts, null for no limit
+   * @return this for fluent usage
+   */
+  public RetryPolicy setBudget(final RetryBudget budget) {
+    this.budget = budget;
+    return this;
+  }
+
+  /**
+   * Enables hedging with the 95th percentile of the latencies of the recent successful attempts as delay. Hedging
+   * starts when enough samples were recorded.
+   *
+   * @param hedging
+   *          true to enable hedging
+   * @return this for fluent usage
+   */
+  public RetryPolicy setHedging(final boolean hedging) {
+    this.hedging = hedging;
+    return this;
+  }
+
+  /**
+   * Enables hedging with a fixed delay
+   *
+   * @param hedgeDelayMs
+   *          the delay after which the hedged attempt is started
+   * @return this for fluent usage
+   */
+  public RetryPolicy setHedgeDelayMs(final long hedgeDelayMs) {
+    this.hedging = true;
+    this.hedgeDelayMs = hedgeDelayMs;
+    return this;
+  }
+
+  public long getAttemptTimeoutMs() {
+    return attemptTimeoutMs;
+  }
+
+  public RetryBudget getBudget() {
+    return budget;
+  }
+
+  /**
+   * @param retry
+   *          the number of the retry, starting with 0
+   * @param cause
+   *          the failure of the last attempt
+   * @return true if the failure should be retried, the budget is not checked
+   */
+  boolean shouldRetry(final int retry, final Throwable cause) {
+    if (retryDecider != null) {
+      return retryDecider.apply(retry);
+    }
+    return retry < maxRetries && retryOn.test(cause);
+  }
+
+  /**
+   * @param retry
+   *          the number of the retry, starting with 0
+   * @param previousDelayMs
+   *          the delay before the previous retry, 0 for the first retry
+   * @return the delay before the retry
+   */
+  long nextDelayMs(final int retry, final long previousDelayMs) {
+    if (delayFunction != null) {
+      return delayFunction.apply(retry);
+    }
+    long upper = Math.max(baseDelayMs, previousDelayMs * 3);
+    long delay = upper > baseDelayMs ? ThreadLocalRandom.current().nextLong(baseDelayMs, upper + 1) : baseDelayMs;
+    return Math.min(maxDelayMs, delay);
+  }
+
+  /**
+   * @return the delay after which a hedged attempt is started, -1 if no hedged attempt should be started
+   */
+  synchronized long hedgeDelayMs() {
+    if (!hedging) {
+      return -1;
+    }
+    if (hedgeDelayMs > 0) {
+      return hedgeDelayMs;
+    }
+    if (samplesSinceEstimate > 0 && (p95 < 0 || samplesSinceEstimate >= LATENCY_SAMPLES / 8)) {
+      int count = Math.min(latencyCount, LATENCY_SAMPLES);
+      if (count >= MIN_LATENCY_SAMPLES) {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        p95 = sorted[(int) (count * 0.95) - 1];
+        samplesSinceEstimate = 0;
+      }
+    }
+    return p95;
+  }
+
+  /**
+   * Records the latency of a successful attempt
+   */
+  synchronized void recordLatency(final long latencyMs) {
+    if (!hedging) {
+      return;
+    }
+    latencies[latencyCount % LATENCY_SAMPLES] = latencyMs;
+    latencyCount++;
+    samplesSinceEstimate++;
+  }
+}
@@ -12,25 +12,42 @@
  */
 package de.braintags.vertx.util.async;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+import de.braintags.vertx.util.async.metrics.AsyncMetrics;
+import de.braintags.vertx.util.async.metrics.Counter;
+import de.braintags.vertx.util.async.metrics.Timer;
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
 
 /**
- * Retries an execution for number of times if it fails
+ * Retries an execution for number of times if it fails. The retries are configured by a {@link RetryPolicy}, which
+ * can add a timeout for each attempt and hedged attempts for slow executions.
  * 
  * @author mpluecker
  *
  */
 public class RetryingFuture<F extends Future<?>> extends SharedFutureImpl<F> {
 
+  private static final Counter ATTEMPTS = AsyncMetrics.counter("retrying.attempts");
+  private static final Counter RETRIES = AsyncMetrics.counter("retrying.retries");
+  private static final Counter HEDGES = AsyncMetrics.counter("retrying.hedges");
+  private static final Counter BUDGET_EXHAUSTED = AsyncMetrics.counter("retrying.budget.exhausted");
+  private static final Timer ATTEMPT_DURATION = AsyncMetrics.timer("retrying.attempt.duration");
+
   private final Callable<F> execution;
-  private int currentTry = -1;
   private final Vertx vertx;
-  private final Function<Integer, Integer> retryDelayMs;
-  private final Function<Integer, Boolean> retryDecider;
+  private final RetryPolicy policy;
+
+  // guarded by running
+  private final List<F> running = new ArrayList<>(2);
+  private int retries;
+  private long previousDelayMs;
 
   /**
    * @param retryDecider
@@ -42,34 +59,135 @@ public class RetryingFuture<F extends Future<?>> extends SharedFutureImpl<F> {
    */
   public RetryingFuture(final Vertx vertx, final Callable<F> execution, final Function<Integer, Boolean> retryDecider,
       final Function<Integer, Integer> retryDelayMs) {
+    this(vertx, execution, new RetryPolicy(retryDecider, retryDelayMs));
+  }
+
+  /**
+   * @param policy
+   *          the policy for retries, attempt timeouts and hedging. May be shared by several retrying futures.
+   */
+  public RetryingFuture(final Vertx vertx, final Callable<F> execution, final RetryPolicy policy) {
     this.vertx = vertx;
     this.execution = execution;
-    this.retryDecider = retryDecider;
-    this.retryDelayMs = retryDelayMs;
-    execute();
+    this.policy = policy;
+    if (policy.getBudget() != null) {
+      policy.getBudget().deposit();
+    }
+    execute(false);
   }
 
-  private void execute() {
+  private void execute(final boolean hedge) {
+    F current;
     try {
-      currentTry++;
-      F current = execution.call();
-      current.setHandler(res -> {
-        if (res.succeeded()) {
-          complete(current);
-        } else {
-          retry(res.cause());
-        }
-      });
+      current = execution.call();
     } catch (Throwable e) {
-      fail(e);
+      synchronized (running) {
+        if (!running.isEmpty()) {
+          // the other attempt may still succeed
+          return;
+        }
+      }
+      tryFail(e);
+      return;
+    }
+    synchronized (running) {
+      running.add(current);
     }
+    ATTEMPTS.increment();
+    if (hedge) {
+      HEDGES.increment();
+    }
+    long start = System.nanoTime();
+    long timeoutTimer = -1;
+    if (policy.getAttemptTimeoutMs() > 0) {
+      timeoutTimer = vertx.setTimer(policy.getAttemptTimeoutMs(), timerId -> current
+          .tryFail(new AsyncTimeoutException("attempt timed out after " + policy.getAttemptTimeoutMs() + "ms")));
+    }
+    long hedgeTimer = hedge ? -1 : scheduleHedge(current);
+    long cancelTimeout = timeoutTimer;
+    current.setHandler(res -> {
+      cancelTimer(cancelTimeout);
+      cancelTimer(hedgeTimer);
+      ATTEMPT_DURATION.recordSince(start);
+      if (res.succeeded()) {
+        policy.recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        succeeded(current);
+      } else {
+        failed(current, res.cause());
+      }
+    });
   }
 
-  private void retry(final Throwable cause) {
-    if (retryDecider.apply(currentTry)) {
-      vertx.setTimer(retryDelayMs.apply(currentTry), timerId -> execute());
+  private long scheduleHedge(final F current) {
+    long delay = policy.hedgeDelayMs();
+    if (delay < 0) {
+      return -1;
+    }
+    return vertx.setTimer(Math.max(1, delay), timerId -> {
+      synchronized (running) {
+        if (isComplete() || running.size() != 1 || running.get(0) != current) {
+          return;
+        }
+      }
+      RetryBudget budget = policy.getBudget();
+      if (budget == null || budget.tryWithdraw()) {
+        execute(true);
+      } else {
+        BUDGET_EXHAUSTED.increment();
+      }
+    });
+  }
+
+  private void succeeded(final F winner) {
+    List<F> losers;
+    synchronized (running) {
+      running.remove(winner);
+      losers = new ArrayList<>(running);
+      running.clear();
+    }
+    if (tryComplete(winner)) {
+      for (F loser : losers) {
+        loser.tryFail(new CancellationException("another attempt succeeded"));
+      }
+    }
+  }
+
+  private void failed(final F current, final Throwable cause) {
+    int retry;
+    synchronized (running) {
+      if (!running.remove(current) || !running.isEmpty() || isComplete()) {
+        // cancelled or a hedged attempt is still running
+        return;
+      }
+      retry = retries;
+    }
+    RetryBudget budget = policy.getBudget();
+    boolean retryAllowed = policy.shouldRetry(retry, cause);
+    if (retryAllowed && budget != null && !budget.tryWithdraw()) {
+      BUDGET_EXHAUSTED.increment();
+      retryAllowed = false;
+    }
+    if (retryAllowed) {
+      RETRIES.increment();
+      long delay;
+      synchronized (running) {
+        retries++;
+        delay = policy.nextDelayMs(retry, previousDelayMs);
+        previousDelayMs = delay;
+      }
+      if (delay <= 0) {
+        execute(false);
+      } else {
+        vertx.setTimer(delay, timerId -> execute(false));
+      }
     } else {
-      fail(cause);
+      tryFail(cause);
+    }
+  }
+
+  private void cancelTimer(final long timerId) {
+    if (timerId >= 0) {
+      vertx.cancelTimer(timerId);
     }
   }
 
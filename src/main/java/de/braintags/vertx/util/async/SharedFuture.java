@@ -12,6 +12,7 @@
  */
 package de.braintags.vertx.util.async;
 
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 import io.vertx.core.AsyncResult;
@@ -47,12 +48,16 @@ public interface SharedFuture<T> extends Future<T> {
     return new SharedFutureImpl<>();
   }
 
+  /**
+   * Returns a succeeded future. For null, {@link Boolean} and {@link java.util.Collections#emptyList()} results a shared
+   * instance is returned.
+   */
   public static <T> SharedFuture<T> succeededFuture(final T result) {
-    return new SucceededSharedFuture<>(result);
+    return SucceededSharedFuture.of(result);
   }
 
   public static <T> SharedFuture<T> succeededFuture() {
-    return new SucceededSharedFuture<>(null);
+    return SucceededSharedFuture.of(null);
   }
 
   public static <T> SharedFuture<T> failedFuture(final Throwable cause) {
@@ -92,6 +97,37 @@ public interface SharedFuture<T> extends Future<T> {
   @Override
   SharedFuture<T> otherwiseEmpty();
 
+  /**
+   * Fused {@link #map(Function)} and {@link #compose(Function)}: only one intermediate future is created for both
+   * stages.
+   */
+  default <U, V> SharedFuture<V> mapThenCompose(final Function<T, U> mapper,
+      final Function<U, Future<V>> composer) {
+    return compose(result -> composer.apply(mapper.apply(result)));
+  }
+
+  /**
+   * Combines the result of this and another future. The returned future fails if one of the futures fails.
+   */
+  default <U, V> SharedFuture<V> map2(final Future<U> other, final BiFunction<T, U, V> combiner) {
+    return compose(result -> other.map(otherResult -> combiner.apply(result, otherResult)));
+  }
+
+  /**
+   * Applies several mapping functions in one stage, like chained calls of {@link #map(Function)} without the
+   * intermediate futures. Each function gets the result of the previous function.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  default <V> SharedFuture<V> pipe(final Function<?, ?>... stages) {
+    return map(result -> {
+      Object value = result;
+      for (Function stage : stages) {
+        value = stage.apply(value);
+      }
+      return (V) value;
+    });
+  }
+
   public static <T> SharedFuture<T> wrap(final Future<T> future) {
     SharedFuture<T> f = new SharedFutureImpl<>();
     future.setHandler(f);
@@ -12,8 +12,7 @@
  */
 package de.braintags.vertx.util.async;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.Function;
 
 import javax.annotation.Nullable;
@@ -24,11 +23,20 @@ import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
-import io.vertx.core.logging.Logger;
-import io.vertx.core.logging.LoggerFactory;
 
 /**
  * Implementation of future which is thread safe and supports multiple handlers (set handler is add handler);
+ * <p>
+ * The completion state and the handlers are stored in a single field which is updated by compare and set:
+ * <ul>
+ * <li>null: not completed, no handler</li>
+ * <li>a {@link Handler}: not completed, exactly one handler</li>
+ * <li>a {@link HandlerNode}: not completed, a stack of handlers ending with the first handler</li>
+ * <li>{@link FutureState#COMPLETING}: the result is being set by the completing thread</li>
+ * <li>{@link FutureState#SUCCEEDED} or {@link FutureState#FAILED}: completed</li>
+ * </ul>
+ * So a future with a single handler does not allocate anything for the handler, each further handler allocates one
+ * node.
  *
  * @author mpluecker
  *
@@ -36,16 +44,14 @@ import io.vertx.core.logging.LoggerFactory;
  */
 public class SharedFutureImpl<T> extends AbstractFuture<T> implements SharedFuture<T> {
 
-  private static final Logger logger = LoggerFactory.getLogger(SharedFutureImpl.class);
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<SharedFutureImpl, Object> STATE = AtomicReferenceFieldUpdater
+      .newUpdater(SharedFutureImpl.class, Object.class, "state");
 
-  protected boolean failed;
-  protected boolean succeeded;
+  private volatile Object state;
   protected T result;
   protected Throwable throwable;
 
-  private Handler<AsyncResult<T>> handler;
-  private List<Handler<AsyncResult<T>>> additionalHandlers;
-
   private @Nullable Context context;
 
   /**
@@ -81,7 +87,7 @@ public class SharedFutureImpl<T> extends AbstractFuture<T> implements SharedFutu
    */
   @Override
   public T result() {
-    return result;
+    return state == FutureState.SUCCEEDED ? result : null;
   }
 
   /**
@@ -89,7 +95,7 @@ public class SharedFutureImpl<T> extends AbstractFuture<T> implements SharedFutu
    */
   @Override
   public Throwable cause() {
-    return throwable;
+    return state == FutureState.FAILED ? throwable : null;
   }
 
   /**
@@ -97,7 +103,7 @@ public class SharedFutureImpl<T> extends AbstractFuture<T> implements SharedFutu
    */
   @Override
   public boolean succeeded() {
-    return succeeded;
+    return state == FutureState.SUCCEEDED;
   }
 
   /**
@@ -105,7 +111,7 @@ public class SharedFutureImpl<T> extends AbstractFuture<T> implements SharedFutu
    */
   @Override
   public boolean failed() {
-    return failed;
+    return state == FutureState.FAILED;
   }
 
   /**
@@ -113,33 +119,39 @@ public class SharedFutureImpl<T> extends AbstractFuture<T> implements SharedFutu
    */
   @Override
   public boolean isComplete() {
-    return failed || succeeded;
+    Object current = state;
+    return current == FutureState.SUCCEEDED || current == FutureState.FAILED;
   }
 
   @Override
   public SharedFuture<T> setHandler(final Handler<AsyncResult<T>> handler) {
-    boolean callHandler = isComplete();
-    if (callHandler) {
-      handler.handle(this);
-    } else {
-      if (this.handler != null) {
-        if (!DebugDetection.isTest() || context == Vertx.currentContext()) {
-          if (additionalHandlers == null) {
-            additionalHandlers = new ArrayList<>(4);
+    while (true) {
+      Object current = state;
+      if (current == FutureState.SUCCEEDED || current == FutureState.FAILED) {
+        handler.handle(this);
+        return this;
+      } else if (current == FutureState.COMPLETING) {
+        // the completing thread only has to set the result, the handler is called afterwards
+        Thread.yield();
+      } else if (current == null) {
+        if (STATE.compareAndSet(this, null, handler)) {
+          if (DebugDetection.isTest()) {
+            context = Vertx.currentContext();
           }
-          additionalHandlers.add(handler);
-        } else {
+          return this;
+        }
+      } else {
+        if (DebugDetection.isTest() && context != Vertx.currentContext()) {
           IllegalStateException e = new IllegalStateException(
               "handler already set on context " + context + " - unable to set on context " + Vertx.currentContext());
           handler.handle(Future.failedFuture(e));
           throw e;
         }
-      } else {
-        this.handler = handler;
-        this.context = DebugDetection.isTest() ? Vertx.currentContext() : null;
+        if (STATE.compareAndSet(this, current, new HandlerNode(handler, current))) {
+          return this;
+        }
       }
     }
-    return this;
   }
 
   /*
@@ -149,12 +161,7 @@ public class SharedFutureImpl<T> extends AbstractFuture<T> implements SharedFutu
    */
   @Override
   public boolean tryFail(final Throwable cause) {
-    if (isComplete())
-      return false;
-    this.throwable = cause;
-    failed = true;
-    callHandlers();
-    return true;
+    return tryComplete(false, null, cause, CacheableResult.EXPIRED);
   }
 
   /*
@@ -164,26 +171,83 @@ public class SharedFutureImpl<T> extends AbstractFuture<T> implements SharedFutu
    */
   @Override
   public boolean tryComplete(final T result) {
-    if (isComplete())
-      return false;
-    this.result = result;
-    succeeded = true;
-    callHandlers();
+    return tryComplete(true, result, null, CacheableResult.EXPIRED);
+  }
+
+  /**
+   * Completes the future, if it is not completed yet.
+   *
+   * @param success
+   *          true to complete with the result, false to fail with the cause
+   * @param result
+   *          the result, if success is true
+   * @param cause
+   *          the cause, if success is false
+   * @param expires
+   *          passed to {@link #completing(long)}
+   * @return true, if this call completed the future
+   */
+  final boolean tryComplete(final boolean success, final T result, final Throwable cause, final long expires) {
+    Object handlers;
+    do {
+      handlers = state;
+      if (handlers instanceof FutureState) {
+        return false;
+      }
+    } while (!STATE.compareAndSet(this, handlers, FutureState.COMPLETING));
+
+    if (success) {
+      this.result = result;
+    } else {
+      this.throwable = cause;
+    }
+    completing(expires);
+    // the volatile write publishes the result to all threads reading the state
+    state = success ? FutureState.SUCCEEDED : FutureState.FAILED;
+    callHandlers(handlers);
     return true;
   }
 
-  protected void callHandlers() {
-    if (handler != null) {
-      handler.handle(this);
-      handler = null;
+  /**
+   * Called by the thread completing the future after the result was set, but before the future is visible as
+   * completed and before any handler is called.
+   *
+   * @param expires
+   *          the expiration given on completion
+   */
+  protected void completing(final long expires) {
+    // nothing to do for shared futures
+  }
+
+  @SuppressWarnings("unchecked")
+  private void callHandlers(final Object handlers) {
+    if (handlers == null) {
+      return;
+    }
+    if (!(handlers instanceof HandlerNode)) {
+      ((Handler<AsyncResult<T>>) handlers).handle(this);
+      return;
     }
 
-    if (additionalHandlers != null) {
-      int size = additionalHandlers.size();
-      for (int i = 0; i < size; i++) {
-        additionalHandlers.get(i).handle(this);
+    // the stack contains the handlers in reverse order, reverse it in place to call them in the order they were set
+    HandlerNode node = (HandlerNode) handlers;
+    HandlerNode reversed = null;
+    Object first;
+    while (true) {
+      Object next = node.next;
+      node.next = reversed;
+      reversed = node;
+      if (next instanceof HandlerNode) {
+        node = (HandlerNode) next;
+      } else {
+        first = next;
+        break;
       }
-      additionalHandlers = null;
+    }
+
+    ((Handler<AsyncResult<T>>) first).handle(this);
+    for (HandlerNode n = reversed; n != null; n = (HandlerNode) n.next) {
+      ((Handler<AsyncResult<T>>) n.handler).handle(this);
     }
   }
 
@@ -300,4 +364,18 @@ public class SharedFutureImpl<T> extends AbstractFuture<T> implements SharedFutu
     return otherwise(err -> null);
   }
 
+  /**
+   * Node in the stack of handlers. The last node references the first handler directly.
+   */
+  private static final class HandlerNode {
+
+    private final Handler<?> handler;
+    private Object next;
+
+    HandlerNode(final Handler<?> handler, final Object next) {
+      this.handler = handler;
+      this.next = next;
+    }
+  }
+
 }
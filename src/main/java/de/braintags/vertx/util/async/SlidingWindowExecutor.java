@@ -0,0 +1,346 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.streams.ReadStream;
+
+/**
+ * Executes an asynchronous function for all elements of a source with a fixed number of operations in flight. In
+ * contrast to {@link CompositeUtil#executeChunked(Iterator, int, Function)} a new operation is started as soon as any
+ * running operation finishes, so a slow operation only occupies its own slot.
+ * <ul>
+ * <li>the source can be an {@link Iterator} or a {@link ReadStream}, a stream is paused while the window is full</li>
+ * <li>the start rate can be limited by a token bucket, see {@link #setRateLimit(Vertx, double)}</li>
+ * <li>{@link #execute(Iterator)} returns all futures, the streaming methods report each result to a handler and do not
+ * keep the futures</li>
+ * </ul>
+ * Like the futures of this package, one execution must be driven from one context: the results of the operations
+ * must be delivered on the context which started the execution.
+ *
+ * @param <T>
+ *          the type of the source elements
+ * @param <U>
+ *          the result type of the operation
+ */
+public class SlidingWindowExecutor<T, U> {
+
+  private final int windowSize;
+  private final Function<T, ? extends Future<U>> operation;
+
+  private Vertx vertx;
+  private double opsPerSecond;
+  private double burst;
+
+  /**
+   * @param windowSize
+   *          the number of operations that are executed at the same time
+   * @param operation
+   *          the operation that is executed for each element of the source
+   */
+  public SlidingWindowExecutor(final int windowSize, final Function<T, ? extends Future<U>> operation) {
+    if (windowSize <= 0) {
+      throw new IllegalArgumentException("'windowSize' must be > 0");
+    }
+    this.windowSize = windowSize;
+    this.operation = operation;
+  }
+
+  /**
+   * Limits the rate at which operations are started with a token bucket. The bucket holds at most one second of
+   * tokens.
+   *
+   * @param vertx
+   *          the vertx instance, used to wait for new tokens
+   * @param opsPerSecond
+   *          the maximum number of operations started per second, <= 0 to disable the rate limit
+   * @return this for fluent usage
+   */
+  public SlidingWindowExecutor<T, U> setRateLimit(final Vertx vertx, final double opsPerSecond) {
+    this.vertx = vertx;
+    this.opsPerSecond = opsPerSecond;
+    this.burst = Math.max(1, opsPerSecond);
+    return this;
+  }
+
+  /**
+   * Executes the operation for all elements of the iterator. The returned future succeeds with all futures in the
+   * order of the iterator when all operations are finished. It will always succeed, the caller must check each future
+   * for failure.
+   *
+   * @param iterator
+   *          the source
+   * @return the future of all operation futures
+   */
+  public SharedFuture<List<Future<U>>> execute(final Iterator<T> iterator) {
+    List<Future<U>> futures = new ArrayList<>();
+    SharedFuture<List<Future<U>>> result = SharedFuture.future();
+    Window window = new Window(new IteratorSource<>(iterator), null, futures);
+    window.finished.setHandler(res -> result.complete(futures));
+    window.pump();
+    return result;
+  }
+
+  /**
+   * Executes the operation for all elements of the iterator and reports each result to the handler. The futures of the
+   * operations are not kept, so this mode can be used for a large number of elements.
+   *
+   * @param iterator
+   *          the source
+   * @param resultHandler
+   *          called with the element and the result of its operation
+   * @return a future that succeeds with the number of executed operations when all operations are finished
+   */
+  public SharedFuture<Long> stream(final Iterator<T> iterator, final BiConsumer<T, AsyncResult<U>> resultHandler) {
+    Window window = new Window(new IteratorSource<>(iterator), resultHandler, null);
+    window.pump();
+    return window.finished;
+  }
+
+  /**
+   * Executes the operation for all elements of the stream and reports each result to the handler. The stream is paused
+   * while the window is full. If the stream fails, no further operations are started and the returned future fails
+   * when the running operations are finished.
+   *
+   * @param stream
+   *          the source
+   * @param resultHandler
+   *          called with the element and the result of its operation
+   * @return a future that succeeds with the number of executed operations when the stream ended and all operations
+   *         are finished
+   */
+  public SharedFuture<Long> stream(final ReadStream<T> stream, final BiConsumer<T, AsyncResult<U>> resultHandler) {
+    ReadStreamSource<T> source = new ReadStreamSource<>(stream, windowSize);
+    Window window = new Window(source, resultHandler, null);
+    source.window = window;
+    source.start();
+    return window.finished;
+  }
+
+  private interface Source<T> {
+
+    /**
+     * @return true if an element is available now
+     */
+    boolean hasNext();
+
+    T next();
+
+    /**
+     * @return true if there will be no more elements
+     */
+    boolean isExhausted();
+
+    Throwable failure();
+  }
+
+  private static class IteratorSource<T> implements Source<T> {
+
+    private final Iterator<T> iterator;
+
+    IteratorSource(final Iterator<T> iterator) {
+      this.iterator = iterator;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return iterator.hasNext();
+    }
+
+    @Override
+    public T next() {
+      return iterator.next();
+    }
+
+    @Override
+    public boolean isExhausted() {
+      return !iterator.hasNext();
+    }
+
+    @Override
+    public Throwable failure() {
+      return null;
+    }
+  }
+
+  private static class ReadStreamSource<T> implements Source<T> {
+
+    private final ReadStream<T> stream;
+    private final int bufferSize;
+    private final Queue<T> buffer = new ArrayDeque<>();
+    private SlidingWindowExecutor<T, ?>.Window window;
+    private boolean paused;
+    private boolean ended;
+    private Throwable failure;
+
+    ReadStreamSource(final ReadStream<T> stream, final int bufferSize) {
+      this.stream = stream;
+      this.bufferSize = bufferSize;
+    }
+
+    void start() {
+      stream.exceptionHandler(e -> {
+        failure = e;
+        ended = true;
+        window.pump();
+      });
+      stream.endHandler(v -> {
+        ended = true;
+        window.pump();
+      });
+      stream.handler(element -> {
+        buffer.add(element);
+        if (!paused && buffer.size() >= bufferSize) {
+          paused = true;
+          stream.pause();
+        }
+        window.pump();
+      });
+    }
+
+    @Override
+    public boolean hasNext() {
+      return failure == null && !buffer.isEmpty();
+    }
+
+    @Override
+    public T next() {
+      T element = buffer.poll();
+      if (paused && buffer.isEmpty() && !ended) {
+        paused = false;
+        stream.resume();
+      }
+      return element;
+    }
+
+    @Override
+    public boolean isExhausted() {
+      return ended && (failure != null || buffer.isEmpty());
+    }
+
+    @Override
+    public Throwable failure() {
+      return failure;
+    }
+  }
+
+  /**
+   * State of one execution
+   */
+  private class Window {
+
+    private final Source<T> source;
+    private final BiConsumer<T, AsyncResult<U>> resultHandler;
+    private final List<Future<U>> futures;
+    private final SharedFuture<Long> finished = SharedFuture.future();
+
+    private int inFlight;
+    private long executed;
+    private boolean pumping;
+    private boolean repump;
+
+    private double tokens = burst;
+    private long lastRefillNanos = System.nanoTime();
+    private boolean waitingForTokens;
+
+    Window(final Source<T> source, final BiConsumer<T, AsyncResult<U>> resultHandler, final List<Future<U>> futures) {
+      this.source = source;
+      this.resultHandler = resultHandler;
+      this.futures = futures;
+    }
+
+    /**
+     * Starts operations until the window is full. Operations that complete synchronously call this method again, in
+     * that case the outer call continues instead of recursing.
+     */
+    void pump() {
+      if (pumping) {
+        repump = true;
+        return;
+      }
+      pumping = true;
+      try {
+        do {
+          repump = false;
+          while (inFlight < windowSize && source.hasNext() && acquireToken()) {
+            start(source.next());
+          }
+        } while (repump);
+      } finally {
+        pumping = false;
+      }
+      if (inFlight == 0 && source.isExhausted() && !finished.isComplete()) {
+        if (source.failure() != null) {
+          finished.fail(source.failure());
+        } else {
+          finished.complete(executed);
+        }
+      }
+    }
+
+    private void start(final T element) {
+      inFlight++;
+      executed++;
+      Future<U> future;
+      try {
+        future = operation.apply(element);
+      } catch (Throwable e) {
+        future = Future.failedFuture(e);
+      }
+      if (futures != null) {
+        futures.add(future);
+      }
+      future.setHandler(res -> {
+        inFlight--;
+        if (resultHandler != null) {
+          resultHandler.accept(element, res);
+        }
+        pump();
+      });
+    }
+
+    private boolean acquireToken() {
+      if (opsPerSecond <= 0) {
+        return true;
+      }
+      if (waitingForTokens) {
+        return false;
+      }
+      long now = System.nanoTime();
+      tokens = Math.min(burst, tokens + (now - lastRefillNanos) * opsPerSecond / TimeUnit.SECONDS.toNanos(1));
+      lastRefillNanos = now;
+      if (tokens >= 1) {
+        tokens--;
+        return true;
+      }
+      long waitMs = Math.max(1, (long) Math.ceil((1 - tokens) * 1000 / opsPerSecond));
+      waitingForTokens = true;
+      vertx.setTimer(waitMs, id -> {
+        waitingForTokens = false;
+        pump();
+      });
+      return false;
+    }
+  }
+}
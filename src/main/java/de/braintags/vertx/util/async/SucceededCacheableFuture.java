@@ -1,5 +1,6 @@
 package de.braintags.vertx.util.async;
 
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 import io.vertx.core.AsyncResult;
@@ -48,6 +49,32 @@ public class SucceededCacheableFuture<T> extends SucceededSharedFuture<T> implem
     }
   }
 
+  @Override
+  public <U, V> CacheableFuture<V> mapThenCompose(final Function<T, U> mapper, final Function<U, Future<V>> composer) {
+    try {
+      return CacheableFuture.wrap(expires(), composer.apply(mapper.apply(result)));
+    } catch (Throwable e) {
+      return CacheableFuture.failedFuture(e);
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <U, V> CacheableFuture<V> map2(final Future<U> other, final BiFunction<T, U, V> combiner) {
+    if (!(other instanceof CacheableResult) || !other.isComplete()) {
+      return new CombinedCacheableFuture<>(this, other, combiner);
+    }
+    if (other.failed()) {
+      return CacheableFuture.failedFuture(other.cause());
+    }
+    try {
+      return CacheableFuture.succeededFuture(Math.min(expires(), ((CacheableResult<U>) other).expires()),
+          combiner.apply(result, other.result()));
+    } catch (Throwable e) {
+      return CacheableFuture.failedFuture(e);
+    }
+  }
+
   @Override
   public <V> CacheableFuture<V> map(final V value) {
     try {
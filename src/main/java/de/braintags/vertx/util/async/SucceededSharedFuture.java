@@ -1,13 +1,25 @@
 package de.braintags.vertx.util.async;
 
+import java.util.Collections;
 import java.util.function.Function;
 
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 
+/**
+ * A future which is already succeeded. The future is immutable, so map operations which don't change the result return
+ * the future itself and common results are shared instances, see {@link #of(Object)}.
+ */
 public class SucceededSharedFuture<T> implements SharedFuture<T> {
 
+  @SuppressWarnings("rawtypes")
+  private static final SucceededSharedFuture NULL = new SucceededSharedFuture<>(null);
+  private static final SucceededSharedFuture<Boolean> TRUE = new SucceededSharedFuture<>(Boolean.TRUE);
+  private static final SucceededSharedFuture<Boolean> FALSE = new SucceededSharedFuture<>(Boolean.FALSE);
+  @SuppressWarnings("rawtypes")
+  private static final SucceededSharedFuture EMPTY_LIST = new SucceededSharedFuture<>(Collections.emptyList());
+
   protected final T result;
 
   /**
@@ -18,6 +30,26 @@ public class SucceededSharedFuture<T> implements SharedFuture<T> {
     this.result = result;
   }
 
+  /**
+   * Returns a succeeded future with the result. For null, {@link Boolean} and {@link Collections#emptyList()} a shared
+   * instance is returned instead of creating a new one.
+   *
+   * @param result
+   *          the result
+   * @return the succeeded future
+   */
+  @SuppressWarnings("unchecked")
+  static <T> SucceededSharedFuture<T> of(final T result) {
+    if (result == null) {
+      return NULL;
+    } else if (result instanceof Boolean) {
+      return (SucceededSharedFuture<T>) (((Boolean) result).booleanValue() ? TRUE : FALSE);
+    } else if (result == Collections.EMPTY_LIST) {
+      return EMPTY_LIST;
+    }
+    return new SucceededSharedFuture<>(result);
+  }
+
   @Override
   public boolean isComplete() {
     return true;
@@ -109,30 +141,25 @@ public class SucceededSharedFuture<T> implements SharedFuture<T> {
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public <U> SharedFuture<U> map(final Function<T, U> mapper) {
     try {
-      return SharedFuture.succeededFuture(mapper.apply(result));
+      U mapped = mapper.apply(result);
+      return mapped == result ? (SharedFuture<U>) this : SharedFuture.succeededFuture(mapped);
     } catch (Throwable e) {
       return SharedFuture.failedFuture(e);
     }
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public <V> SharedFuture<V> map(final V value) {
-    try {
-      return SharedFuture.succeededFuture(value);
-    } catch (Throwable e) {
-      return SharedFuture.failedFuture(e);
-    }
+    return value == result ? (SharedFuture<V>) this : SharedFuture.succeededFuture(value);
   }
 
   @Override
   public <V> SharedFuture<V> mapEmpty() {
-    try {
-      return SharedFuture.succeededFuture();
-    } catch (Throwable e) {
-      return SharedFuture.failedFuture(e);
-    }
+    return SharedFuture.succeededFuture();
   }
 
   @Override
@@ -0,0 +1,36 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+
+/**
+ * Monitors {@link Future futures} and fails them if they do not complete in time.
+ *
+ * @see FutureTimeoutMonitor
+ * @see TimingWheelTimeoutMonitor
+ */
+public interface TimeoutMonitor {
+
+  /**
+   * Monitors the future with the default timeout of the monitor
+   *
+   * @param context
+   *          the context on which the future is failed
+   * @param future
+   *          the future to monitor
+   */
+  void addFuture(Context context, Future<?> future);
+
+}
@@ -0,0 +1,419 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import de.braintags.vertx.util.async.metrics.AsyncMetrics;
+import de.braintags.vertx.util.async.metrics.Counter;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+/**
+ * A {@link TimeoutMonitor} based on a hierarchical timing wheel. In contrast to {@link FutureTimeoutMonitor} the cost
+ * of adding and removing a future is constant and does not depend on the number of monitored futures:
+ * <ul>
+ * <li>each future can have its own timeout, see {@link #addFuture(Context, Future, long)}</li>
+ * <li>{@link SharedFuture shared futures} are removed from the wheel as soon as they complete, other futures are
+ * checked when their timeout is reached</li>
+ * <li>the futures that timeout in the same tick are failed with one {@link Context#runOnContext(Handler)} call per
+ * context</li>
+ * </ul>
+ * The wheel is maintained by a single daemon thread which wakes up once per tick. Timeouts are at most one tick late.
+ * The number of futures in flight and the timeout rate in per mille are registered as the gauges
+ * <code>timeout.monitor.wheel.&lt;name&gt;.inFlight</code> and
+ * <code>timeout.monitor.wheel.&lt;name&gt;.timeoutRatePerMille</code> of the {@link AsyncMetrics}.
+ */
+public class TimingWheelTimeoutMonitor implements TimeoutMonitor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TimingWheelTimeoutMonitor.class);
+  private static final Counter TIMEOUTS = AsyncMetrics.counter("timeout.monitor.wheel.timeouts");
+
+  private static final int WHEEL_BITS = 6;
+  private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+  private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+  private static final int LEVELS = 4;
+  // timeouts further in the future are reinserted when they reach the end of the wheel
+  private static final long MAX_TICKS = 1L << (WHEEL_BITS * LEVELS);
+
+  private static final AtomicReferenceFieldUpdater<TimingWheelTimeoutMonitor, Timeout> REGISTRATIONS = AtomicReferenceFieldUpdater
+      .newUpdater(TimingWheelTimeoutMonitor.class, Timeout.class, "registrations");
+  private static final AtomicReferenceFieldUpdater<TimingWheelTimeoutMonitor, Timeout> CANCELLATIONS = AtomicReferenceFieldUpdater
+      .newUpdater(TimingWheelTimeoutMonitor.class, Timeout.class, "cancellations");
+
+  private final long timeoutMs;
+  private final long tickNanos;
+  private final long startNanos;
+  private final Function<Future<?>, Exception> timeoutException;
+  private final Thread monitorThread;
+
+  // stacks of timeouts added or completed since the last tick, handed over to the monitor thread
+  private volatile Timeout registrations;
+  private volatile Timeout cancellations;
+
+  // only accessed by the monitor thread
+  private final Timeout[][] wheel = new Timeout[LEVELS][WHEEL_SIZE];
+  private final Map<Context, List<Timeout>> expiredByContext = new IdentityHashMap<>();
+  private long currentTick;
+
+  private final LongAdder inFlight = new LongAdder();
+  private final LongAdder timeouts = new LongAdder();
+  private final LongAdder completed = new LongAdder();
+
+  /**
+   * @param name
+   *          Name for the monitoring thread.
+   * @param timeoutMs
+   *          Default timeout for the futures in milliseconds.
+   * @param tickMs
+   *          Resolution of the wheel in milliseconds. If you decrease this value, the futures timeout more accurate,
+   *          but the monitor thread wakes up more often.
+   * @param timeoutException
+   *          Function to create the cause for the futures to fail with timeout.
+   */
+  public TimingWheelTimeoutMonitor(final String name, final long timeoutMs, final long tickMs,
+      final Function<Future<?>, Exception> timeoutException) {
+    if (tickMs <= 0) {
+      throw new IllegalArgumentException("tickMs must be > 0");
+    }
+    if (timeoutMs < tickMs) {
+      throw new IllegalArgumentException("tickMs must be smaller than timeoutMs");
+    }
+    this.timeoutMs = timeoutMs;
+    this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+    this.timeoutException = timeoutException;
+    this.startNanos = System.nanoTime();
+
+    String gaugePrefix = "timeout.monitor.wheel." + name;
+    AsyncMetrics.gauge(gaugePrefix + ".inFlight", this::getInFlight);
+    AsyncMetrics.gauge(gaugePrefix + ".timeoutRatePerMille", () -> Math.round(getTimeoutRate() * 1000));
+
+    monitorThread = new Thread(this::monitorThread);
+    monitorThread.setName(name);
+    monitorThread.setDaemon(true);
+    monitorThread.start();
+  }
+
+  @Override
+  public void addFuture(final Context context, final Future<?> future) {
+    addFuture(context, future, timeoutMs);
+  }
+
+  /**
+   * Monitors the future with an individual timeout
+   *
+   * @param context
+   *          the context on which the future is failed. If null, the future is failed on the monitor thread.
+   * @param future
+   *          the future to monitor
+   * @param timeoutMs
+   *          the timeout in milliseconds
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public void addFuture(final Context context, final Future<?> future, final long timeoutMs) {
+    if (future.isComplete()) {
+      return;
+    }
+    long deadlineNanos = System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    // round up, a future must never timeout early
+    Timeout timeout = new Timeout(this, context, future, (deadlineNanos + tickNanos - 1) / tickNanos);
+    inFlight.increment();
+    push(REGISTRATIONS, timeout, true);
+    if (future instanceof SharedFuture) {
+      ((SharedFuture) future).setHandler(timeout);
+    }
+  }
+
+  /**
+   * Stops the monitor thread. Monitored futures will not timeout anymore.
+   */
+  public void close() {
+    monitorThread.interrupt();
+  }
+
+  /**
+   * @return the number of monitored futures which are neither completed nor timed out
+   */
+  public long getInFlight() {
+    return inFlight.sum();
+  }
+
+  /**
+   * @return the number of futures which timed out
+   */
+  public long getTimeoutCount() {
+    return timeouts.sum();
+  }
+
+  /**
+   * @return the number of futures which completed in time
+   */
+  public long getCompletedCount() {
+    return completed.sum();
+  }
+
+  /**
+   * @return the ratio of timed out futures to all finished futures, 0 if no future finished yet
+   */
+  public double getTimeoutRate() {
+    long timedOut = timeouts.sum();
+    long finished = timedOut + completed.sum();
+    return finished == 0 ? 0 : (double) timedOut / finished;
+  }
+
+  private void push(final AtomicReferenceFieldUpdater<TimingWheelTimeoutMonitor, Timeout> stack,
+      final Timeout timeout, final boolean registration) {
+    Timeout head;
+    do {
+      head = stack.get(this);
+      if (registration) {
+        timeout.nextRegistration = head;
+      } else {
+        timeout.nextCancellation = head;
+      }
+    } while (!stack.compareAndSet(this, head, timeout));
+  }
+
+  private void monitorThread() {
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        long nowTick = (System.nanoTime() - startNanos) / tickNanos;
+        processRegistrations();
+        processCancellations();
+        while (currentTick < nowTick) {
+          currentTick++;
+          cascade();
+          expire(currentTick & WHEEL_MASK);
+        }
+        dispatchExpired();
+        LockSupport.parkNanos(this, startNanos + (currentTick + 1) * tickNanos - System.nanoTime());
+      } catch (Throwable e) {
+        LOGGER.error(e);
+      }
+    }
+  }
+
+  private void processRegistrations() {
+    Timeout timeout = REGISTRATIONS.getAndSet(this, null);
+    while (timeout != null) {
+      Timeout next = timeout.nextRegistration;
+      timeout.nextRegistration = null;
+      if (timeout.state == Timeout.PENDING) {
+        schedule(timeout);
+      }
+      timeout = next;
+    }
+  }
+
+  private void processCancellations() {
+    Timeout timeout = CANCELLATIONS.getAndSet(this, null);
+    while (timeout != null) {
+      Timeout next = timeout.nextCancellation;
+      timeout.nextCancellation = null;
+      unlink(timeout);
+      timeout = next;
+    }
+  }
+
+  private void schedule(final Timeout timeout) {
+    if (timeout.deadlineTick <= currentTick) {
+      expired(timeout);
+      return;
+    }
+    long target = Math.min(timeout.deadlineTick, currentTick + MAX_TICKS - 1);
+    int level = 0;
+    while (level < LEVELS - 1
+        && (target >>> (WHEEL_BITS * (level + 1))) != (currentTick >>> (WHEEL_BITS * (level + 1)))) {
+      level++;
+    }
+    int slot = (int) ((target >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+    link(timeout, level, slot);
+  }
+
+  /**
+   * Moves the timeouts of the higher levels which are due in the current range of the lower level one level down
+   */
+  private void cascade() {
+    for (int level = LEVELS - 1; level > 0; level--) {
+      long mask = (1L << (WHEEL_BITS * level)) - 1;
+      if ((currentTick & mask) == 0) {
+        int slot = (int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        Timeout timeout = wheel[level][slot];
+        wheel[level][slot] = null;
+        while (timeout != null) {
+          Timeout next = timeout.next;
+          timeout.level = -1;
+          timeout.next = null;
+          timeout.prev = null;
+          schedule(timeout);
+          timeout = next;
+        }
+      }
+    }
+  }
+
+  private void expire(final long slot) {
+    Timeout timeout = wheel[0][(int) slot];
+    wheel[0][(int) slot] = null;
+    while (timeout != null) {
+      Timeout next = timeout.next;
+      timeout.level = -1;
+      timeout.next = null;
+      timeout.prev = null;
+      if (timeout.deadlineTick > currentTick) {
+        // timeout beyond the range of the wheel
+        schedule(timeout);
+      } else {
+        expired(timeout);
+      }
+      timeout = next;
+    }
+  }
+
+  private void expired(final Timeout timeout) {
+    if (!Timeout.STATE.compareAndSet(timeout, Timeout.PENDING, Timeout.DONE)) {
+      return;
+    }
+    inFlight.decrement();
+    if (timeout.future.isComplete()) {
+      // not a shared future, completed in time
+      completed.increment();
+      timeout.clear();
+      return;
+    }
+    timeouts.increment();
+    expiredByContext.computeIfAbsent(timeout.context, c -> new ArrayList<>()).add(timeout);
+  }
+
+  private void dispatchExpired() {
+    if (expiredByContext.isEmpty()) {
+      return;
+    }
+    for (Map.Entry<Context, List<Timeout>> entry : expiredByContext.entrySet()) {
+      List<Timeout> expired = entry.getValue();
+      if (entry.getKey() == null) {
+        failAll(expired);
+      } else {
+        entry.getKey().runOnContext(v -> failAll(expired));
+      }
+    }
+    expiredByContext.clear();
+  }
+
+  private void failAll(final List<Timeout> expired) {
+    for (int i = 0; i < expired.size(); i++) {
+      Timeout timeout = expired.get(i);
+      try {
+        Future<?> future = timeout.future;
+        timeout.clear();
+        if (future.tryFail(timeoutException.apply(future))) {
+          TIMEOUTS.increment();
+        }
+      } catch (Throwable e) {
+        LOGGER.error(e);
+      }
+    }
+  }
+
+  private void link(final Timeout timeout, final int level, final int slot) {
+    Timeout head = wheel[level][slot];
+    timeout.next = head;
+    if (head != null) {
+      head.prev = timeout;
+    }
+    timeout.level = level;
+    timeout.slot = slot;
+    wheel[level][slot] = timeout;
+  }
+
+  private void unlink(final Timeout timeout) {
+    if (timeout.level < 0) {
+      return;
+    }
+    if (timeout.prev == null) {
+      wheel[timeout.level][timeout.slot] = timeout.next;
+    } else {
+      timeout.prev.next = timeout.next;
+    }
+    if (timeout.next != null) {
+      timeout.next.prev = timeout.prev;
+    }
+    timeout.level = -1;
+    timeout.next = null;
+    timeout.prev = null;
+  }
+
+  /**
+   * Entry of the wheel. It is the completion handler of the monitored shared future, too, so no further objects are
+   * needed to remove the entry on completion.
+   */
+  private static class Timeout implements Handler<AsyncResult<Object>> {
+
+    private static final int PENDING = 0;
+    private static final int DONE = 1;
+
+    private static final AtomicIntegerFieldUpdater<Timeout> STATE = AtomicIntegerFieldUpdater
+        .newUpdater(Timeout.class, "state");
+
+    private final TimingWheelTimeoutMonitor monitor;
+    private final long deadlineTick;
+    private Context context;
+    private Future<?> future;
+    private volatile int state;
+
+    private Timeout nextRegistration;
+    private Timeout nextCancellation;
+
+    // position in the wheel, only accessed by the monitor thread
+    private int level = -1;
+    private int slot;
+    private Timeout prev;
+    private Timeout next;
+
+    Timeout(final TimingWheelTimeoutMonitor monitor, final Context context, final Future<?> future,
+        final long deadlineTick) {
+      this.monitor = monitor;
+      this.context = context;
+      this.future = future;
+      this.deadlineTick = deadlineTick;
+    }
+
+    @Override
+    public void handle(final AsyncResult<Object> event) {
+      if (STATE.compareAndSet(this, PENDING, DONE)) {
+        monitor.inFlight.decrement();
+        monitor.completed.increment();
+        clear();
+        monitor.push(CANCELLATIONS, this, false);
+      }
+    }
+
+    private void clear() {
+      context = null;
+      future = null;
+    }
+  }
+}
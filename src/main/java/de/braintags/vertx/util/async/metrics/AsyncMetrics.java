@@ -0,0 +1,155 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+/**
+ * Access to the installed {@link MetricsRegistry}. The instrumented classes get their meters once, e.g. in a static
+ * field:
+ *
+ * <pre>
+ * private static final Counter TIMEOUTS = AsyncMetrics.counter("timeout.monitor.future.timeouts");
+ * </pre>
+ *
+ * The returned meters forward to the meters of the current registry and are rebound when another registry is
+ * installed. By default the {@link NoopMetricsRegistry} is installed, so a meter update costs a field read and an
+ * empty call which is inlined by the JIT.
+ */
+public final class AsyncMetrics {
+
+  private static final List<MeterHandle> HANDLES = new CopyOnWriteArrayList<>();
+  private static final Map<String, LongSupplier> GAUGES = new ConcurrentHashMap<>();
+  private static volatile MetricsRegistry registry = NoopMetricsRegistry.INSTANCE;
+
+  private AsyncMetrics() {
+    // hide constructor
+  }
+
+  /**
+   * Installs the registry. The meters requested before are rebound to the new registry.
+   *
+   * @param newRegistry
+   *          the registry, null to install the {@link NoopMetricsRegistry}
+   */
+  public static synchronized void setRegistry(final MetricsRegistry newRegistry) {
+    registry = newRegistry == null ? NoopMetricsRegistry.INSTANCE : newRegistry;
+    for (MeterHandle handle : HANDLES) {
+      handle.bind(registry);
+    }
+    GAUGES.forEach(registry::gauge);
+  }
+
+  /**
+   * @return the installed registry
+   */
+  public static MetricsRegistry getRegistry() {
+    return registry;
+  }
+
+  /**
+   * @param name
+   *          the name of the counter
+   * @return a counter forwarding to the counter of the installed registry
+   */
+  public static synchronized Counter counter(final String name) {
+    CounterHandle handle = new CounterHandle(name);
+    handle.bind(registry);
+    HANDLES.add(handle);
+    return handle;
+  }
+
+  /**
+   * @param name
+   *          the name of the timer
+   * @return a timer forwarding to the timer of the installed registry
+   */
+  public static synchronized Timer timer(final String name) {
+    TimerHandle handle = new TimerHandle(name);
+    handle.bind(registry);
+    HANDLES.add(handle);
+    return handle;
+  }
+
+  /**
+   * Registers a gauge in the installed registry and in all registries installed later
+   *
+   * @param name
+   *          the name of the gauge
+   * @param value
+   *          supplies the current value
+   */
+  public static synchronized void gauge(final String name, final LongSupplier value) {
+    GAUGES.put(name, value);
+    registry.gauge(name, value);
+  }
+
+  private interface MeterHandle {
+
+    void bind(MetricsRegistry registry);
+  }
+
+  private static final class CounterHandle implements Counter, MeterHandle {
+
+    private final String name;
+    private volatile Counter delegate = NoopMetricsRegistry.COUNTER;
+
+    CounterHandle(final String name) {
+      this.name = name;
+    }
+
+    @Override
+    public void bind(final MetricsRegistry registry) {
+      delegate = registry.counter(name);
+    }
+
+    @Override
+    public void increment(final long amount) {
+      delegate.increment(amount);
+    }
+
+    @Override
+    public long count() {
+      return delegate.count();
+    }
+  }
+
+  private static final class TimerHandle implements Timer, MeterHandle {
+
+    private final String name;
+    private volatile Timer delegate = NoopMetricsRegistry.TIMER;
+
+    TimerHandle(final String name) {
+      this.name = name;
+    }
+
+    @Override
+    public void bind(final MetricsRegistry registry) {
+      delegate = registry.timer(name);
+    }
+
+    @Override
+    public void record(final long nanos) {
+      delegate.record(nanos);
+    }
+
+    @Override
+    public long count() {
+      return delegate.count();
+    }
+  }
+}
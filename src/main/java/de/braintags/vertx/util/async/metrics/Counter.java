@@ -0,0 +1,37 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async.metrics;
+
+/**
+ * A monotonically increasing count of events
+ */
+public interface Counter {
+
+  /**
+   * Increments the counter by one
+   */
+  default void increment() {
+    increment(1);
+  }
+
+  /**
+   * @param amount
+   *          the amount to add
+   */
+  void increment(long amount);
+
+  /**
+   * @return the current count
+   */
+  long count();
+}
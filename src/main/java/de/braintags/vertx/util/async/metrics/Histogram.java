@@ -0,0 +1,152 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * A histogram with log-linear buckets like an HDR histogram: values below 128 are counted exactly, above each power of
+ * two is divided into 64 buckets. So each value is recorded with a relative error below 1.6% in a fixed array of
+ * counters, without allocation and without locks. Values up to 2^40 (about 18 minutes in nanoseconds) are
+ * distinguished, larger values are counted in the last bucket.
+ */
+public class Histogram {
+
+  private static final int SUB_BUCKET_BITS = 6;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+  private static final int MAX_BIT = 40;
+  private static final long MAX_VALUE = (1L << MAX_BIT) - 1;
+  private static final int BUCKETS = LINEAR_LIMIT + (MAX_BIT - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * @param value
+   *          the value to record, negative values are recorded as 0
+   */
+  public void record(final long value) {
+    long v = Math.max(0, Math.min(MAX_VALUE, value));
+    counts.incrementAndGet(index(v));
+    count.increment();
+    sum.add(v);
+    long current;
+    while (v > (current = max.get()) && !max.compareAndSet(current, v)) {
+      // retry
+    }
+  }
+
+  static int index(final long value) {
+    if (value < LINEAR_LIMIT) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+  }
+
+  /**
+   * @return the highest value which is recorded in the bucket
+   */
+  static long highestValue(final int index) {
+    if (index < LINEAR_LIMIT) {
+      return index;
+    }
+    int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+    long subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+
+  /**
+   * @return the number of recorded values
+   */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * @return the largest recorded value
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * @return the mean of the recorded values
+   */
+  public double getMean() {
+    long n = count.sum();
+    return n == 0 ? 0 : (double) sum.sum() / n;
+  }
+
+  /**
+   * @param percentile
+   *          the percentile between 0 and 100
+   * @return the value below or equal to which the given percentage of the values were recorded
+   */
+  public long getValueAtPercentile(final double percentile) {
+    long[] snapshot = snapshot();
+    long total = 0;
+    for (long c : snapshot) {
+      total += c;
+    }
+    return valueAtPercentile(snapshot, total, percentile);
+  }
+
+  private long[] snapshot() {
+    long[] snapshot = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+    }
+    return snapshot;
+  }
+
+  private long valueAtPercentile(final long[] snapshot, final long total, final double percentile) {
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long seen = 0;
+    for (int i = 0; i < snapshot.length; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return Math.min(highestValue(i), getMax());
+      }
+    }
+    return getMax();
+  }
+
+  /**
+   * @param unit
+   *          the divisor to convert the values, e.g. 1000000 to convert nanoseconds to milliseconds
+   * @return count, mean, max and the 50th, 90th, 99th and 99.9th percentile
+   */
+  public JsonObject toJson(final double unit) {
+    long[] snapshot = snapshot();
+    long total = 0;
+    for (long c : snapshot) {
+      total += c;
+    }
+    return new JsonObject().put("count", total).put("mean", getMean() / unit).put("max", getMax() / unit)
+        .put("p50", valueAtPercentile(snapshot, total, 50) / unit)
+        .put("p90", valueAtPercentile(snapshot, total, 90) / unit)
+        .put("p99", valueAtPercentile(snapshot, total, 99) / unit)
+        .put("p999", valueAtPercentile(snapshot, total, 99.9) / unit);
+  }
+}
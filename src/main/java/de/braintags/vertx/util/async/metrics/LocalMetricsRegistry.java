@@ -0,0 +1,104 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * A registry keeping the meters in memory: counters are {@link LongAdder long adders}, timers record into a
+ * {@link Histogram}. The values can be read as JSON, e.g. by a {@link MetricsHandler}.
+ */
+public class LocalMetricsRegistry implements MetricsRegistry {
+
+  private static final double NANOS_PER_MILLI = 1000000.0;
+
+  private final Map<String, LocalCounter> counters = new ConcurrentHashMap<>();
+  private final Map<String, LocalTimer> timers = new ConcurrentHashMap<>();
+  private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+  @Override
+  public Counter counter(final String name) {
+    return counters.computeIfAbsent(name, n -> new LocalCounter());
+  }
+
+  @Override
+  public LocalTimer timer(final String name) {
+    return timers.computeIfAbsent(name, n -> new LocalTimer());
+  }
+
+  @Override
+  public void gauge(final String name, final LongSupplier value) {
+    gauges.put(name, value);
+  }
+
+  /**
+   * Counters are written with their count, gauges with their current value and timers with count, mean, max and
+   * percentiles in milliseconds. The names are sorted.
+   */
+  @Override
+  public JsonObject toJson() {
+    JsonObject counterJson = new JsonObject();
+    new TreeMap<>(counters).forEach((name, counter) -> counterJson.put(name, counter.count()));
+    JsonObject gaugeJson = new JsonObject();
+    new TreeMap<>(gauges).forEach((name, gauge) -> gaugeJson.put(name, gauge.getAsLong()));
+    JsonObject timerJson = new JsonObject();
+    new TreeMap<>(timers).forEach((name, timer) -> timerJson.put(name, timer.histogram.toJson(NANOS_PER_MILLI)));
+    return new JsonObject().put("counters", counterJson).put("gauges", gaugeJson).put("timers", timerJson);
+  }
+
+  private static class LocalCounter implements Counter {
+
+    private final LongAdder adder = new LongAdder();
+
+    @Override
+    public void increment(final long amount) {
+      adder.add(amount);
+    }
+
+    @Override
+    public long count() {
+      return adder.sum();
+    }
+  }
+
+  /**
+   * A timer recording into a histogram of nanoseconds
+   */
+  public static class LocalTimer implements Timer {
+
+    private final Histogram histogram = new Histogram();
+
+    @Override
+    public void record(final long nanos) {
+      histogram.record(nanos);
+    }
+
+    @Override
+    public long count() {
+      return histogram.getCount();
+    }
+
+    /**
+     * @return the histogram of the recorded nanoseconds
+     */
+    public Histogram getHistogram() {
+      return histogram;
+    }
+  }
+}
@@ -0,0 +1,32 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async.metrics;
+
+import io.vertx.core.Handler;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Serves the JSON dump of the installed {@link MetricsRegistry}, e.g.
+ *
+ * <pre>
+ * router.get("/metrics").handler(new MetricsHandler());
+ * </pre>
+ */
+public class MetricsHandler implements Handler<RoutingContext> {
+
+  @Override
+  public void handle(final RoutingContext context) {
+    context.response().putHeader("Content-Type", "application/json")
+        .end(AsyncMetrics.getRegistry().toJson().encodePrettily());
+  }
+}
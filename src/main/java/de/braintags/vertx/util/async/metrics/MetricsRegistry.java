@@ -0,0 +1,57 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async.metrics;
+
+import java.util.function.LongSupplier;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Service provider interface for the metrics of the async utilities. An implementation can record into its own data
+ * structures like {@link LocalMetricsRegistry} or bridge to a metrics library. It is installed with
+ * {@link AsyncMetrics#setRegistry(MetricsRegistry)}.
+ * <p>
+ * The meters are requested once per name and kept by the callers, so the lookup does not need to be fast, but the
+ * returned meters must be thread safe and cheap to update.
+ */
+public interface MetricsRegistry {
+
+  /**
+   * @param name
+   *          the name of the counter
+   * @return the counter with the name, created if not existing
+   */
+  Counter counter(String name);
+
+  /**
+   * @param name
+   *          the name of the timer
+   * @return the timer with the name, created if not existing
+   */
+  Timer timer(String name);
+
+  /**
+   * Registers a gauge which is sampled when the metrics are read
+   *
+   * @param name
+   *          the name of the gauge
+   * @param value
+   *          supplies the current value
+   */
+  void gauge(String name, LongSupplier value);
+
+  /**
+   * @return the current values of all meters
+   */
+  JsonObject toJson();
+}
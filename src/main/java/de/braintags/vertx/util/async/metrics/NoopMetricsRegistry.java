@@ -0,0 +1,74 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async.metrics;
+
+import java.util.function.LongSupplier;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * The default registry which records nothing. Its meters have empty methods, so the JIT inlines the calls to nothing.
+ */
+public final class NoopMetricsRegistry implements MetricsRegistry {
+
+  public static final NoopMetricsRegistry INSTANCE = new NoopMetricsRegistry();
+
+  static final Counter COUNTER = new Counter() {
+
+    @Override
+    public void increment(final long amount) {
+      // records nothing
+    }
+
+    @Override
+    public long count() {
+      return 0;
+    }
+  };
+
+  static final Timer TIMER = new Timer() {
+
+    @Override
+    public void record(final long nanos) {
+      // records nothing
+    }
+
+    @Override
+    public long count() {
+      return 0;
+    }
+  };
+
+  private NoopMetricsRegistry() {
+  }
+
+  @Override
+  public Counter counter(final String name) {
+    return COUNTER;
+  }
+
+  @Override
+  public Timer timer(final String name) {
+    return TIMER;
+  }
+
+  @Override
+  public void gauge(final String name, final LongSupplier value) {
+    // records nothing
+  }
+
+  @Override
+  public JsonObject toJson() {
+    return new JsonObject();
+  }
+}
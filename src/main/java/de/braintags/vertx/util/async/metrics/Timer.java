@@ -0,0 +1,40 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async.metrics;
+
+/**
+ * Records durations into a histogram
+ */
+public interface Timer {
+
+  /**
+   * @param nanos
+   *          the duration in nanoseconds
+   */
+  void record(long nanos);
+
+  /**
+   * Records the time since the given start
+   *
+   * @param startNanos
+   *          the start as returned by {@link System#nanoTime()}
+   */
+  default void recordSince(final long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * @return the number of recorded durations
+   */
+  long count();
+}
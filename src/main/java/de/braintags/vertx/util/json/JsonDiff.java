@@ -12,11 +12,18 @@
  */
 package de.braintags.vertx.util.json;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -24,7 +31,6 @@ import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.JsonNodeType;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
-import de.braintags.vertx.util.EqUtil;
 import io.vertx.core.json.Json;
 
 /**
@@ -41,7 +47,7 @@ import io.vertx.core.json.Json;
  */
 public class JsonDiff {
 
-  private static final String JSON_DIFF_OVERRIDE = "@jsonDiffOverride";
+  static final String JSON_DIFF_OVERRIDE = "@jsonDiffOverride";
   static final String VALUE = "value";
   static final String DIFF = "diff";
   static final String INDEX = "index";
@@ -55,7 +61,7 @@ public class JsonDiff {
    *          is not modified
    */
   public static JsonNode getDiff(final JsonNode base, final JsonNode data) {
-    return getDiff(base, data, Json.mapper.getNodeFactory(), false);
+    return getDiff(base, data, Json.mapper.getNodeFactory());
   }
 
   /**
@@ -69,11 +75,20 @@ public class JsonDiff {
    *          a JsonNodeFactory
    */
   public static JsonNode getDiff(final JsonNode base, final JsonNode data, final JsonNodeFactory nodeFactory) {
-    return getDiff(base, data, nodeFactory, false);
+    return getDiff(base, data, nodeFactory, new StructuralHasher(), false);
+  }
+
+  /**
+   * Creates a diff from base to data with the hashes of the given hasher, which may already know hashes of the
+   * subtrees
+   */
+  static JsonNode getDiff(final JsonNode base, final JsonNode data, final JsonNodeFactory nodeFactory,
+      final StructuralHasher hasher) {
+    return getDiff(base, data, nodeFactory, hasher, false);
   }
 
   private static JsonNode getDiff(final JsonNode base, final JsonNode data, final JsonNodeFactory nodeFactory,
-      final boolean arrayMapsConverted) {
+      final StructuralHasher hasher, final boolean arrayMapsConverted) {
     JsonNodeType nodeType = base.getNodeType();
     if (nodeType != data.getNodeType()) {
       return data.deepCopy();
@@ -83,21 +98,22 @@ public class JsonDiff {
       if (base instanceof ArrayMapNode || data instanceof ArrayMapNode) {
         ArrayMapNode b = base.isNull() ? new ArrayMapNode() : (ArrayMapNode) base;
         ArrayMapNode d = data.isNull() ? new ArrayMapNode() : (ArrayMapNode) data;
-        return arrayMapDiff(b, d, nodeFactory, arrayMapsConverted);
+        return arrayMapDiff(b, d, nodeFactory, hasher, arrayMapsConverted);
       } else {
         throw new IllegalArgumentException("nodeType is null and base and/or data is not ArrayMapNode");
       }
     }
     switch (nodeType) {
       case ARRAY:
-        return arrayDiff((ArrayNode) base, (ArrayNode) data, nodeFactory, arrayMapsConverted);
+        return arrayDiff((ArrayNode) base, (ArrayNode) data, nodeFactory, hasher, arrayMapsConverted);
       case OBJECT:
         if (!arrayMapsConverted && (ArrayMapNode.isArrayMapNode(base) || ArrayMapNode.isArrayMapNode(data))) {
           ArrayMapNode arrayBase = (ArrayMapNode) ArrayMapNode.deepConvertNode(base);
           ArrayMapNode arrayData = (ArrayMapNode) ArrayMapNode.deepConvertNode(data);
-          return ArrayMapNode.toRegularNode(arrayMapDiff(arrayBase, arrayData, nodeFactory, true), nodeFactory);
+          return ArrayMapNode.toRegularNode(arrayMapDiff(arrayBase, arrayData, nodeFactory, hasher, true),
+              nodeFactory);
         } else {
-          return objectDiff((ObjectNode) base, (ObjectNode) data, nodeFactory, arrayMapsConverted);
+          return objectDiff((ObjectNode) base, (ObjectNode) data, nodeFactory, hasher, arrayMapsConverted);
         }
       case BINARY:
       case BOOLEAN:
@@ -122,7 +138,7 @@ public class JsonDiff {
   }
 
   private static ObjectNode objectDiff(final ObjectNode base, final ObjectNode data, final JsonNodeFactory nodeFactory,
-      final boolean arrayMapsConverted) {
+      final StructuralHasher hasher, final boolean arrayMapsConverted) {
     ObjectNode diff = nodeFactory.objectNode();
     Iterator<Entry<String, JsonNode>> dataFields = data.fields();
     while (dataFields.hasNext()) {
@@ -131,7 +147,11 @@ public class JsonDiff {
       String fieldName = dataField.getKey();
       JsonNode baseNode = base.get(fieldName);
       if (baseNode != null) {
-        JsonNode subDiff = getDiff(baseNode, dataNode, nodeFactory, arrayMapsConverted);
+        if (hasher.equal(baseNode, dataNode)) {
+          // unchanged subtree
+          continue;
+        }
+        JsonNode subDiff = getDiff(baseNode, dataNode, nodeFactory, hasher, arrayMapsConverted);
         if (subDiff != null) {
           if ((!subDiff.isObject() && !(subDiff instanceof ArrayMapNode)) || subDiff.size() > 0) {
             diff.set(fieldName, subDiff);
@@ -153,7 +173,7 @@ public class JsonDiff {
   }
 
   private static ArrayMapNode arrayMapDiff(final ArrayMapNode base, final ArrayMapNode data,
-      final JsonNodeFactory nodeFactory, final boolean arrayMapsConverted) {
+      final JsonNodeFactory nodeFactory, final StructuralHasher hasher, final boolean arrayMapsConverted) {
     Map<JsonNode, JsonNode> diffChildren = new LinkedHashMap<>();
 
     Map<JsonNode, JsonNode> baseChildren = base.getChildren();
@@ -161,8 +181,8 @@ public class JsonDiff {
       JsonNode baseValue = baseChildren.get(dataEntry.getKey());
       if (baseValue == null) {
         diffChildren.put(dataEntry.getKey(), dataEntry.getValue());
-      } else {
-        JsonNode subDiff = getDiff(baseValue, dataEntry.getValue(), nodeFactory, arrayMapsConverted);
+      } else if (!hasher.equal(baseValue, dataEntry.getValue())) {
+        JsonNode subDiff = getDiff(baseValue, dataEntry.getValue(), nodeFactory, hasher, arrayMapsConverted);
         if (subDiff != null) {
           if ((!subDiff.isObject() && !(subDiff instanceof ArrayMapNode)) || subDiff.size() > 0) {
             diffChildren.put(dataEntry.getKey(), subDiff);
@@ -180,19 +200,24 @@ public class JsonDiff {
   }
 
   private static ArrayNode arrayDiff(final ArrayNode baseNode, final ArrayNode dataNode,
-      final JsonNodeFactory nodeFactory, final boolean arrayMapsConverted) {
+      final JsonNodeFactory nodeFactory, final StructuralHasher hasher, final boolean arrayMapsConverted) {
     ArrayNode elements = nodeFactory.arrayNode(dataNode.size());
-    boolean[] usedIndices = new boolean[baseNode.size()];
+    Map<StructuralHasher.Hash, IndexStack> baseIndices = indexElements(baseNode, hasher);
     for (int index = 0; index < dataNode.size(); index++) {
       JsonNode element = dataNode.get(index);
-      int oldIndex = indexOf(baseNode, element, usedIndices);
+      IndexStack equalIndices = baseIndices.get(hasher.hash128(element));
+      int oldIndex = equalIndices != null ? equalIndices.pop() : -1;
+      if (oldIndex >= 0 && !hasher.equal(baseNode.get(oldIndex), element)) {
+        // hash collision, the element is diffed like a changed one
+        equalIndices.push(oldIndex);
+        oldIndex = -1;
+      }
       if (oldIndex >= 0) {
         elements.add(nodeFactory.numberNode(oldIndex));
-        usedIndices[oldIndex] = true;
       } else {
         ObjectNode valueNode = nodeFactory.objectNode();
         if (baseNode.size() > index) {
-          JsonNode diffEncoding = getDiff(baseNode.get(index), element, nodeFactory, arrayMapsConverted);
+          JsonNode diffEncoding = getDiff(baseNode.get(index), element, nodeFactory, hasher, arrayMapsConverted);
           assert diffEncoding != null;
           valueNode.set(DIFF, diffEncoding);
           valueNode.set(INDEX, nodeFactory.numberNode(index));
@@ -205,16 +230,38 @@ public class JsonDiff {
     return elements;
   }
 
-  private static int indexOf(final ArrayNode baseNode, final JsonNode element, final boolean[] ignoredIndices) {
-    if (baseNode == null) {
-      return -1;
+  /**
+   * Groups the indices of the base elements by their structural hash, so each data element is matched by one hash
+   * lookup instead of comparing it with all base elements. Like a backward scan, the highest unused index of an equal
+   * element is matched first.
+   */
+  private static Map<StructuralHasher.Hash, IndexStack> indexElements(final ArrayNode baseNode,
+      final StructuralHasher hasher) {
+    Map<StructuralHasher.Hash, IndexStack> indices = new HashMap<>(baseNode.size() * 4 / 3 + 1);
+    for (int i = 0; i < baseNode.size(); i++) {
+      indices.computeIfAbsent(hasher.hash128(baseNode.get(i)), e -> new IndexStack()).push(i);
     }
-    for (int i = baseNode.size() - 1; i >= 0; i--) {
-      if (!ignoredIndices[i] && EqUtil.eq(baseNode.get(i), element)) {
-        return i;
+    return indices;
+  }
+
+  /**
+   * The ascending indices of equal base elements
+   */
+  private static class IndexStack {
+
+    private int[] indices = new int[1];
+    private int size;
+
+    void push(final int index) {
+      if (size == indices.length) {
+        indices = Arrays.copyOf(indices, size * 2);
       }
+      indices[size++] = index;
+    }
+
+    int pop() {
+      return size > 0 ? indices[--size] : -1;
     }
-    return -1;
   }
 
   /**
@@ -354,6 +401,174 @@ public class JsonDiff {
     baseNode.addAll(Arrays.asList(newValues));
   }
 
+  /**
+   * Applies the diff to the base node like {@link #applyDiff(JsonNode, JsonNode)}, but only the nodes on the paths of
+   * the diff are touched: unchanged fields, array elements and array map entries stay in the base, they are neither
+   * copied nor converted to an {@link ArrayMapNode}. So the cost depends on the size of the diff, not on the size of the
+   * base. Only the values of the diff are copied, the result does not share nodes with the diff.
+   *
+   * @param base
+   *          MAY BE MODIFIED!
+   * @param diff
+   *          is not modified
+   * @return
+   *         the modified JsonNode
+   */
+  public static JsonNode applyDiffInPlace(final JsonNode base, final JsonNode diff) {
+    return inPlaceApplyDiff(base, diff, Json.mapper.getNodeFactory());
+  }
+
+  private static JsonNode inPlaceApplyDiff(final JsonNode base, final JsonNode diff,
+      final JsonNodeFactory nodeFactory) {
+    JsonNodeType nodeType = base.isNull() ? diff.getNodeType() : base.getNodeType();
+
+    if (nodeType != diff.getNodeType()) {
+      return diff.deepCopy();
+    }
+    if (nodeType == null) {
+      // already converted array maps
+      return internalApplyDiff(base, diff, nodeFactory, true);
+    }
+
+    switch (nodeType) {
+      case ARRAY:
+        ArrayNode baseArray = base.isNull() ? nodeFactory.arrayNode() : (ArrayNode) base;
+        inPlaceApplyArrayDiff(baseArray, (ArrayNode) diff, nodeFactory);
+        return baseArray;
+      case OBJECT:
+        ObjectNode baseObject = base.isNull() ? nodeFactory.objectNode() : (ObjectNode) base;
+        if (ArrayMapNode.isArrayMapNode(diff)) {
+          inPlaceApplyArrayMapDiff(baseObject, (ArrayNode) diff.get(ArrayMapSerializer.ARRAY_MAP), nodeFactory);
+          return baseObject;
+        }
+        if (diff.has(JSON_DIFF_OVERRIDE)) {
+          ObjectNode res = diff.deepCopy();
+          res.remove(JSON_DIFF_OVERRIDE);
+          return res;
+        }
+        Iterator<Entry<String, JsonNode>> diffFields = diff.fields();
+        while (diffFields.hasNext()) {
+          Entry<String, JsonNode> diffField = diffFields.next();
+          JsonNode baseNode = baseObject.path(diffField.getKey());
+          boolean missing = baseNode.isMissingNode();
+          if (missing) {
+            baseNode = nodeFactory.nullNode();
+          }
+          JsonNode newNode = inPlaceApplyDiff(baseNode, diffField.getValue(), nodeFactory);
+          // a null value for a missing field is still set, the shared NullNode is returned unchanged
+          if (missing || newNode != baseNode) {
+            baseObject.set(diffField.getKey(), newNode);
+          }
+        }
+        return baseObject;
+      case BINARY:
+      case BOOLEAN:
+      case NULL:
+      case NUMBER:
+      case STRING:
+        return diff.deepCopy();
+
+      case POJO:
+      case MISSING:
+      default:
+        throw new IllegalArgumentException("node type may not be " + nodeType);
+    }
+  }
+
+  /**
+   * Applies the entries of an array map diff to the entries of the base, which are looked up by their key. Only the
+   * keys of the base are converted, the values are patched in their regular form.
+   */
+  private static void inPlaceApplyArrayMapDiff(final ObjectNode base, final ArrayNode diffEntries,
+      final JsonNodeFactory nodeFactory) {
+    if (base.size() > 0 && !ArrayMapNode.isArrayMapNode(base)) {
+      throw new IllegalArgumentException("array map diff for a base which is not an array map: " + base);
+    }
+    ArrayNode entries = base.size() > 0 ? (ArrayNode) base.get(ArrayMapSerializer.ARRAY_MAP)
+        : base.putArray(ArrayMapSerializer.ARRAY_MAP);
+    Map<JsonNode, Integer> indices = new HashMap<>(entries.size() * 4 / 3 + 1);
+    for (int i = 0; i < entries.size(); i++) {
+      indices.put(ArrayMapNode.deepConvertNode(entries.get(i).get(ArrayMapSerializer.KEY)), i);
+    }
+
+    BitSet removed = new BitSet();
+    for (JsonNode diffEntry : diffEntries) {
+      JsonNode key = diffEntry.get(ArrayMapSerializer.KEY);
+      JsonNode value = diffEntry.get(ArrayMapSerializer.VALUE);
+      JsonNode convertedKey = ArrayMapNode.deepConvertNode(key);
+      Integer index = indices.get(convertedKey);
+      if (value == null || value.isNull()) {
+        if (index != null) {
+          removed.set(index);
+          indices.remove(convertedKey);
+        }
+      } else if (index != null) {
+        ObjectNode entry = (ObjectNode) entries.get(index);
+        JsonNode baseValue = entry.get(ArrayMapSerializer.VALUE);
+        JsonNode newValue = inPlaceApplyDiff(baseValue, value, nodeFactory);
+        if (newValue != baseValue) {
+          entry.set(ArrayMapSerializer.VALUE, newValue);
+        }
+      } else {
+        ObjectNode entry = entries.addObject();
+        entry.set(ArrayMapSerializer.KEY, key.deepCopy());
+        entry.set(ArrayMapSerializer.VALUE, value.deepCopy());
+        indices.put(convertedKey, entries.size() - 1);
+      }
+    }
+    for (int i = removed.length() - 1; i >= 0; i = removed.previousSetBit(i - 1)) {
+      entries.remove(i);
+    }
+  }
+
+  /**
+   * Rearranges the elements of the base array. A base element is only patched in place if the diff does not reference
+   * it a second time, e.g. as unchanged element at another position.
+   */
+  private static void inPlaceApplyArrayDiff(final ArrayNode baseNode, final ArrayNode diff,
+      final JsonNodeFactory nodeFactory) {
+    BitSet referenced = new BitSet(baseNode.size());
+    BitSet shared = new BitSet();
+    for (JsonNode diffNode : diff) {
+      int index = diffNode.isNumber() ? diffNode.asInt() : diffNode.path(INDEX).asInt(-1);
+      if (index >= 0) {
+        if (referenced.get(index)) {
+          shared.set(index);
+        }
+        referenced.set(index);
+      }
+    }
+
+    JsonNode[] newValues = new JsonNode[diff.size()];
+    for (int i = 0; i < diff.size(); i++) {
+      JsonNode diffNode = diff.get(i);
+      if (diffNode.isNumber()) {
+        newValues[i] = baseNode.get(diffNode.asInt());
+      } else {
+        ObjectNode obj = (ObjectNode) diffNode;
+        JsonNode valueDiff = obj.get(DIFF);
+        if (valueDiff != null) {
+          int index = obj.get(INDEX).intValue();
+          JsonNode element = shared.get(index) ? baseNode.get(index).deepCopy() : baseNode.get(index);
+          newValues[i] = inPlaceApplyDiff(element, valueDiff, nodeFactory);
+        } else {
+          newValues[i] = getArrayDiffValue(diff, i, obj).deepCopy();
+        }
+      }
+    }
+
+    for (int i = 0; i < newValues.length; i++) {
+      if (i >= baseNode.size()) {
+        baseNode.add(newValues[i]);
+      } else if (baseNode.get(i) != newValues[i]) {
+        baseNode.set(i, newValues[i]);
+      }
+    }
+    for (int i = baseNode.size() - 1; i >= newValues.length; i--) {
+      baseNode.remove(i);
+    }
+  }
+
   private static JsonNode getArrayDiffValue(final ArrayNode diff, final int index, final ObjectNode obj) {
     JsonNode value = obj.get(VALUE);
     if (value == null) {
@@ -429,6 +644,13 @@ public class JsonDiff {
     if (diff.has(JSON_DIFF_OVERRIDE)) {
       return diff.deepCopy();
     }
+    if (base.has(JSON_DIFF_OVERRIDE)) {
+      // the base is a complete value, the diff is applied to it
+      JsonNode marker = base.remove(JSON_DIFF_OVERRIDE);
+      ObjectNode res = (ObjectNode) internalApplyDiff(base, diff, nodeFactory, arrayMapsConverted);
+      res.set(JSON_DIFF_OVERRIDE, marker);
+      return res;
+    }
 
     Iterator<Entry<String, JsonNode>> diffFields = diff.fields();
     while (diffFields.hasNext()) {
@@ -486,7 +708,9 @@ public class JsonDiff {
             JsonNode baseValue = baseNode.get(DIFF);
             if (baseValue != null) {
               ObjectNode newValue = nodeFactory.objectNode();
-              newValue.set(DIFF, internalSquashDiff(baseValue, valueDiff, nodeFactory, arrayMapsConverted));
+              // the base entry may be kept at another index, too
+              newValue.set(DIFF,
+                  internalSquashDiff(baseValue.deepCopy(), valueDiff, nodeFactory, arrayMapsConverted));
               newValue.set(INDEX, baseNode.get(INDEX));
               newValues[i] = newValue;
             } else {
@@ -508,6 +732,151 @@ public class JsonDiff {
     base.addAll(Arrays.asList(newValues));
   }
 
+  /**
+   * Composes two sequential diffs: applying the result to a node has the same effect as applying the first and then the
+   * second diff, see {@link #squashDiff(JsonNode, JsonNode)}.
+   *
+   * @param first
+   *          is not modified
+   * @param second
+   *          the diff which follows the first one, is not modified
+   * @return the composed diff, which does not share nodes with the diffs
+   */
+  public static JsonNode compose(final JsonNode first, final JsonNode second) {
+    return squashDiff(first.deepCopy(), second.deepCopy());
+  }
+
+  /**
+   * Merges two diffs, which were both created from the same base: the fields and array map entries changed by only one
+   * diff are taken from that diff. If both diffs change the same node differently, the change of the right diff is
+   * taken and the path of the node is reported as conflict. Objects and array maps changed by both diffs are merged
+   * recursively, arrays are merged as a whole.
+   *
+   * @param base
+   *          the common base of both diffs, is not modified
+   * @param left
+   *          is not modified
+   * @param right
+   *          is not modified, wins on conflicts
+   * @return the merged diff from the base and the conflicts
+   */
+  public static MergeResult merge(final JsonNode base, final JsonNode left, final JsonNode right) {
+    JsonNodeFactory nodeFactory = Json.mapper.getNodeFactory();
+    JsonNode leftData = inPlaceApplyDiff(base.deepCopy(), left, nodeFactory);
+    JsonNode rightData = inPlaceApplyDiff(base.deepCopy(), right, nodeFactory);
+    List<String> conflicts = new ArrayList<>();
+    JsonNode merged = mergeNodes("", base, leftData, rightData, nodeFactory, new StructuralHasher(), conflicts);
+    JsonNode diff = getDiff(base, merged, nodeFactory);
+    return new MergeResult(diff != null ? diff : getEmptyDiff(nodeFactory), conflicts);
+  }
+
+  /**
+   * @param base
+   *          the base node, null if it is missing
+   * @param left
+   *          the left node, null if it was removed
+   * @param right
+   *          the right node, null if it was removed
+   * @return the merged node, null if it is removed
+   */
+  private static JsonNode mergeNodes(final String path, final JsonNode base, final JsonNode left,
+      final JsonNode right, final JsonNodeFactory nodeFactory, final StructuralHasher hasher,
+      final List<String> conflicts) {
+    if (equalOrMissing(left, right, hasher)) {
+      return left;
+    } else if (equalOrMissing(base, left, hasher)) {
+      return right;
+    } else if (equalOrMissing(base, right, hasher)) {
+      return left;
+    }
+
+    if (left != null && right != null && left.isObject() && right.isObject()
+        && (base == null || base.isObject())) {
+      boolean arrayMap = ArrayMapNode.isArrayMapNode(left) && ArrayMapNode.isArrayMapNode(right);
+      if (arrayMap && (base == null || ArrayMapNode.isArrayMapNode(base))) {
+        return mergeArrayMaps(path, base, left, right, nodeFactory, hasher, conflicts);
+      } else if (!arrayMap && !ArrayMapNode.isArrayMapNode(left) && !ArrayMapNode.isArrayMapNode(right)) {
+        return mergeObjects(path, base, (ObjectNode) left, (ObjectNode) right, nodeFactory, hasher, conflicts);
+      }
+    }
+    conflicts.add(path.isEmpty() ? "/" : path);
+    return right;
+  }
+
+  private static ObjectNode mergeObjects(final String path, final JsonNode base, final ObjectNode left,
+      final ObjectNode right, final JsonNodeFactory nodeFactory, final StructuralHasher hasher,
+      final List<String> conflicts) {
+    Set<String> fieldNames = new LinkedHashSet<>();
+    if (base != null) {
+      base.fieldNames().forEachRemaining(fieldNames::add);
+    }
+    left.fieldNames().forEachRemaining(fieldNames::add);
+    right.fieldNames().forEachRemaining(fieldNames::add);
+
+    ObjectNode merged = nodeFactory.objectNode();
+    for (String fieldName : fieldNames) {
+      JsonNode value = mergeNodes(path + "/" + fieldName, base != null ? base.get(fieldName) : null,
+          left.get(fieldName), right.get(fieldName), nodeFactory, hasher, conflicts);
+      if (value != null) {
+        merged.set(fieldName, value);
+      }
+    }
+    return merged;
+  }
+
+  private static ObjectNode mergeArrayMaps(final String path, final JsonNode base, final JsonNode left,
+      final JsonNode right, final JsonNodeFactory nodeFactory, final StructuralHasher hasher,
+      final List<String> conflicts) {
+    Map<JsonNode, ObjectNode> baseEntries = arrayMapEntries(base);
+    Map<JsonNode, ObjectNode> leftEntries = arrayMapEntries(left);
+    Map<JsonNode, ObjectNode> rightEntries = arrayMapEntries(right);
+    Set<JsonNode> keys = new LinkedHashSet<>(baseEntries.keySet());
+    keys.addAll(leftEntries.keySet());
+    keys.addAll(rightEntries.keySet());
+
+    ObjectNode merged = nodeFactory.objectNode();
+    ArrayNode mergedEntries = merged.putArray(ArrayMapSerializer.ARRAY_MAP);
+    for (JsonNode key : keys) {
+      ObjectNode baseEntry = baseEntries.get(key);
+      ObjectNode leftEntry = leftEntries.get(key);
+      ObjectNode rightEntry = rightEntries.get(key);
+      JsonNode value = mergeNodes(path + "/" + ArrayMapSerializer.ARRAY_MAP + "[" + key + "]",
+          arrayMapValue(baseEntry), arrayMapValue(leftEntry), arrayMapValue(rightEntry), nodeFactory, hasher,
+          conflicts);
+      if (value != null) {
+        ObjectNode keyEntry = rightEntry != null ? rightEntry : leftEntry != null ? leftEntry : baseEntry;
+        ObjectNode entry = mergedEntries.addObject();
+        entry.set(ArrayMapSerializer.KEY, keyEntry.get(ArrayMapSerializer.KEY));
+        entry.set(ArrayMapSerializer.VALUE, value);
+      }
+    }
+    return merged;
+  }
+
+  /**
+   * @return the entries of an array map in its regular form by their converted key
+   */
+  private static Map<JsonNode, ObjectNode> arrayMapEntries(final JsonNode arrayMap) {
+    Map<JsonNode, ObjectNode> entries = new LinkedHashMap<>();
+    if (arrayMap != null) {
+      for (JsonNode entry : arrayMap.get(ArrayMapSerializer.ARRAY_MAP)) {
+        entries.put(ArrayMapNode.deepConvertNode(entry.get(ArrayMapSerializer.KEY)), (ObjectNode) entry);
+      }
+    }
+    return entries;
+  }
+
+  private static JsonNode arrayMapValue(final ObjectNode entry) {
+    return entry != null ? entry.get(ArrayMapSerializer.VALUE) : null;
+  }
+
+  private static boolean equalOrMissing(final JsonNode a, final JsonNode b, final StructuralHasher hasher) {
+    if (a == null || b == null) {
+      return a == b;
+    }
+    return hasher.equal(a, b);
+  }
+
   /**
    * Retains the diff tree specified by retainedFields
    *
@@ -633,6 +1002,38 @@ public class JsonDiff {
     }
   }
 
+  /**
+   * The result of {@link JsonDiff#merge(JsonNode, JsonNode, JsonNode)}
+   */
+  public static class MergeResult {
+
+    private final JsonNode diff;
+    private final List<String> conflicts;
+
+    MergeResult(final JsonNode diff, final List<String> conflicts) {
+      this.diff = diff;
+      this.conflicts = Collections.unmodifiableList(conflicts);
+    }
+
+    /**
+     * @return the merged diff from the base
+     */
+    public JsonNode getDiff() {
+      return diff;
+    }
+
+    /**
+     * @return the paths of the nodes which were changed differently by both diffs, e.g. "/field/array"
+     */
+    public List<String> getConflicts() {
+      return conflicts;
+    }
+
+    public boolean hasConflicts() {
+      return !conflicts.isEmpty();
+    }
+  }
+
   public static JsonNode getEmptyDiff(final JsonNodeFactory nodeFactory) {
     return nodeFactory.objectNode();
   }
@@ -0,0 +1,463 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.json;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.DecimalNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.vertx.core.json.Json;
+
+/**
+ * Compact binary encoding of the diffs of {@link JsonDiff}, e.g. to replicate diffs over the event bus. Each node is
+ * written as a tag byte followed by its content:
+ * <ul>
+ * <li>lengths and integers are variable length, integers zigzag encoded, so small values take one byte</li>
+ * <li>each string, e.g. a field name, is written once and referenced by its index afterwards</li>
+ * <li>array diffs are written as a list of operations, a run of unchanged elements with consecutive base indices is
+ * one operation with the first index and the length</li>
+ * </ul>
+ * {@link #decode(byte[])} returns the same diff as the encoded one, so the encoding can be applied with
+ * {@link JsonDiff#applyDiff(JsonNode, JsonNode)} or {@link #applyPatch(JsonNode, byte[])}.
+ */
+public class JsonDiffCodec {
+
+  private static final byte NULL = 0;
+  private static final byte FALSE = 1;
+  private static final byte TRUE = 2;
+  private static final byte INT = 3;
+  private static final byte LONG = 4;
+  private static final byte FLOAT = 5;
+  private static final byte DOUBLE = 6;
+  private static final byte BIG_INTEGER = 7;
+  private static final byte DECIMAL = 8;
+  private static final byte STRING = 9;
+  private static final byte STRING_REF = 10;
+  private static final byte BINARY = 11;
+  private static final byte OBJECT = 12;
+  private static final byte ARRAY = 13;
+  private static final byte ARRAY_DIFF = 14;
+
+  private static final byte OP_KEEP = 0;
+  private static final byte OP_DIFF = 1;
+  private static final byte OP_VALUE = 2;
+
+  private JsonDiffCodec() {
+  }
+
+  /**
+   * @param diff
+   *          a diff created by {@link JsonDiff}
+   * @return the binary encoding of the diff
+   */
+  public static byte[] encode(final JsonNode diff) {
+    Encoder encoder = new Encoder();
+    encoder.write(ArrayMapNode.toRegularNode(diff, Json.mapper.getNodeFactory()), false);
+    return encoder.toByteArray();
+  }
+
+  /**
+   * @param patch
+   *          the result of {@link #encode(JsonNode)}
+   * @return the diff
+   */
+  public static JsonNode decode(final byte[] patch) {
+    return decode(patch, Json.mapper.getNodeFactory());
+  }
+
+  /**
+   * @param patch
+   *          the result of {@link #encode(JsonNode)}
+   * @param nodeFactory
+   *          the factory for the nodes of the diff
+   * @return the diff
+   */
+  public static JsonNode decode(final byte[] patch, final JsonNodeFactory nodeFactory) {
+    Decoder decoder = new Decoder(patch, nodeFactory);
+    JsonNode diff = decoder.read();
+    if (decoder.pos != patch.length) {
+      throw new IllegalArgumentException("trailing bytes after the diff at " + decoder.pos);
+    }
+    return diff;
+  }
+
+  /**
+   * Applies an encoded diff, see {@link JsonDiff#applyDiff(JsonNode, JsonNode)}
+   *
+   * @param base
+   *          MAY BE MODIFIED!
+   * @param patch
+   *          the result of {@link #encode(JsonNode)}
+   * @return the modified JsonNode
+   */
+  public static JsonNode applyPatch(final JsonNode base, final byte[] patch) {
+    return JsonDiff.applyDiff(base, decode(patch));
+  }
+
+  private static class Encoder {
+
+    private final Map<String, Integer> strings = new HashMap<>();
+    private byte[] buf = new byte[256];
+    private int pos;
+
+    /**
+     * @param value
+     *          true if the node is a value of the diff, e.g. the value of a changed array element or the content of an
+     *          overriding object, whose arrays are never written as array diffs
+     */
+    void write(final JsonNode node, final boolean value) {
+      if (node.isObject()) {
+        boolean fieldValues = value || node.has(JsonDiff.JSON_DIFF_OVERRIDE);
+        writeByte(OBJECT);
+        writeVarint(node.size());
+        Iterator<Entry<String, JsonNode>> fields = node.fields();
+        while (fields.hasNext()) {
+          Entry<String, JsonNode> field = fields.next();
+          writeString(field.getKey());
+          write(field.getValue(), fieldValues);
+        }
+      } else if (node.isArray()) {
+        if (!value && isArrayDiff(node)) {
+          writeArrayDiff(node);
+        } else {
+          writeByte(ARRAY);
+          writeVarint(node.size());
+          for (int i = 0; i < node.size(); i++) {
+            write(node.get(i), value);
+          }
+        }
+      } else if (node.isTextual()) {
+        writeString(node.textValue());
+      } else if (node.isInt() || node.isShort()) {
+        writeByte(INT);
+        writeVarlong(zigzag(node.intValue()));
+      } else if (node.isLong()) {
+        writeByte(LONG);
+        writeVarlong(zigzag(node.longValue()));
+      } else if (node.isFloat()) {
+        writeByte(FLOAT);
+        writeFixed(Float.floatToIntBits(node.floatValue()), 4);
+      } else if (node.isDouble()) {
+        writeByte(DOUBLE);
+        writeFixed(Double.doubleToLongBits(node.doubleValue()), 8);
+      } else if (node.isBigInteger()) {
+        writeByte(BIG_INTEGER);
+        writeBytes(node.bigIntegerValue().toByteArray());
+      } else if (node.isBigDecimal()) {
+        writeByte(DECIMAL);
+        writeVarlong(zigzag(node.decimalValue().scale()));
+        writeBytes(node.decimalValue().unscaledValue().toByteArray());
+      } else if (node.isBoolean()) {
+        writeByte(node.booleanValue() ? TRUE : FALSE);
+      } else if (node.isNull()) {
+        writeByte(NULL);
+      } else if (node.isBinary()) {
+        writeByte(BINARY);
+        try {
+          writeBytes(node.binaryValue());
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      } else {
+        throw new IllegalArgumentException("node type may not be " + node.getNodeType());
+      }
+    }
+
+    /**
+     * An array diff contains the base index of each unchanged element, and an object with the diff and the base index
+     * or the value of each changed element. Other arrays, e.g. of negative ints, are written as plain arrays.
+     */
+    private static boolean isArrayDiff(final JsonNode array) {
+      for (int i = 0; i < array.size(); i++) {
+        JsonNode element = array.get(i);
+        if (element.isInt()) {
+          if (element.intValue() < 0) {
+            return false;
+          }
+          continue;
+        }
+        if (!element.isObject()) {
+          return false;
+        }
+        boolean diff = element.size() == 2 && element.has(JsonDiff.DIFF) && element.path(JsonDiff.INDEX).isInt()
+            && element.get(JsonDiff.INDEX).intValue() >= 0;
+        boolean value = element.size() == 1 && element.has(JsonDiff.VALUE);
+        if (!diff && !value) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void writeArrayDiff(final JsonNode array) {
+      writeByte(ARRAY_DIFF);
+      writeVarint(array.size());
+      int i = 0;
+      while (i < array.size()) {
+        JsonNode element = array.get(i);
+        if (element.isInt()) {
+          int start = element.intValue();
+          int length = 1;
+          while (i + length < array.size() && array.get(i + length).isInt()
+              && array.get(i + length).intValue() == start + length) {
+            length++;
+          }
+          writeByte(OP_KEEP);
+          writeVarint(start);
+          writeVarint(length);
+          i += length;
+        } else {
+          if (element.has(JsonDiff.DIFF)) {
+            writeByte(OP_DIFF);
+            writeVarint(element.get(JsonDiff.INDEX).intValue());
+            write(element.get(JsonDiff.DIFF), false);
+          } else {
+            writeByte(OP_VALUE);
+            write(element.get(JsonDiff.VALUE), true);
+          }
+          i++;
+        }
+      }
+    }
+
+    private void writeString(final String s) {
+      Integer ref = strings.get(s);
+      if (ref != null) {
+        writeByte(STRING_REF);
+        writeVarint(ref);
+        return;
+      }
+      strings.put(s, strings.size());
+      writeByte(STRING);
+      writeBytes(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeBytes(final byte[] bytes) {
+      writeVarint(bytes.length);
+      ensure(bytes.length);
+      System.arraycopy(bytes, 0, buf, pos, bytes.length);
+      pos += bytes.length;
+    }
+
+    private void writeByte(final byte b) {
+      ensure(1);
+      buf[pos++] = b;
+    }
+
+    private void writeVarint(final int value) {
+      if (value < 0) {
+        throw new IllegalArgumentException("negative length or index " + value);
+      }
+      writeVarlong(value);
+    }
+
+    private void writeVarlong(final long value) {
+      ensure(10);
+      long v = value;
+      while ((v & ~0x7FL) != 0) {
+        buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+        v >>>= 7;
+      }
+      buf[pos++] = (byte) v;
+    }
+
+    private void writeFixed(final long value, final int bytes) {
+      ensure(bytes);
+      for (int i = 0; i < bytes; i++) {
+        buf[pos++] = (byte) (value >>> (8 * i));
+      }
+    }
+
+    private void ensure(final int bytes) {
+      if (pos + bytes > buf.length) {
+        buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + bytes));
+      }
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buf, pos);
+    }
+
+    private static long zigzag(final long value) {
+      return (value << 1) ^ (value >> 63);
+    }
+  }
+
+  private static class Decoder {
+
+    private final byte[] buf;
+    private final JsonNodeFactory nodeFactory;
+    private final List<String> strings = new ArrayList<>();
+    private int pos;
+
+    Decoder(final byte[] buf, final JsonNodeFactory nodeFactory) {
+      this.buf = buf;
+      this.nodeFactory = nodeFactory;
+    }
+
+    JsonNode read() {
+      byte tag = readByte();
+      switch (tag) {
+        case NULL:
+          return nodeFactory.nullNode();
+        case FALSE:
+          return nodeFactory.booleanNode(false);
+        case TRUE:
+          return nodeFactory.booleanNode(true);
+        case INT:
+          return nodeFactory.numberNode((int) unzigzag(readVarlong()));
+        case LONG:
+          return nodeFactory.numberNode(unzigzag(readVarlong()));
+        case FLOAT:
+          return nodeFactory.numberNode(Float.intBitsToFloat((int) readFixed(4)));
+        case DOUBLE:
+          return nodeFactory.numberNode(Double.longBitsToDouble(readFixed(8)));
+        case BIG_INTEGER:
+          return nodeFactory.numberNode(new BigInteger(readBytes()));
+        case DECIMAL:
+          int scale = (int) unzigzag(readVarlong());
+          // the factory may strip trailing zeros
+          return DecimalNode.valueOf(new BigDecimal(new BigInteger(readBytes()), scale));
+        case STRING:
+        case STRING_REF:
+          return nodeFactory.textNode(readString(tag));
+        case BINARY:
+          return nodeFactory.binaryNode(readBytes());
+        case OBJECT:
+          int fields = readVarint();
+          ObjectNode object = nodeFactory.objectNode();
+          for (int i = 0; i < fields; i++) {
+            String name = readString(readByte());
+            object.set(name, read());
+          }
+          return object;
+        case ARRAY:
+          int size = readVarint();
+          ArrayNode array = nodeFactory.arrayNode(size);
+          for (int i = 0; i < size; i++) {
+            array.add(read());
+          }
+          return array;
+        case ARRAY_DIFF:
+          return readArrayDiff();
+        default:
+          throw new IllegalArgumentException("unknown tag " + tag + " at " + (pos - 1));
+      }
+    }
+
+    private ArrayNode readArrayDiff() {
+      int size = readVarint();
+      ArrayNode array = nodeFactory.arrayNode(size);
+      while (array.size() < size) {
+        byte op = readByte();
+        switch (op) {
+          case OP_KEEP:
+            int start = readVarint();
+            int length = readVarint();
+            for (int i = 0; i < length; i++) {
+              array.add(nodeFactory.numberNode(start + i));
+            }
+            break;
+          case OP_DIFF:
+            ObjectNode diff = nodeFactory.objectNode();
+            int index = readVarint();
+            diff.set(JsonDiff.DIFF, read());
+            diff.set(JsonDiff.INDEX, nodeFactory.numberNode(index));
+            array.add(diff);
+            break;
+          case OP_VALUE:
+            array.add(nodeFactory.objectNode().set(JsonDiff.VALUE, read()));
+            break;
+          default:
+            throw new IllegalArgumentException("unknown array diff operation " + op + " at " + (pos - 1));
+        }
+      }
+      return array;
+    }
+
+    private String readString(final byte tag) {
+      if (tag == STRING_REF) {
+        return strings.get(readVarint());
+      }
+      if (tag != STRING) {
+        throw new IllegalArgumentException("expected a string at " + (pos - 1));
+      }
+      String s = new String(readBytes(), StandardCharsets.UTF_8);
+      strings.add(s);
+      return s;
+    }
+
+    private byte[] readBytes() {
+      int length = readVarint();
+      if (length > buf.length - pos) {
+        throw new IllegalArgumentException("length " + length + " exceeds the patch at " + pos);
+      }
+      byte[] bytes = Arrays.copyOfRange(buf, pos, pos + length);
+      pos += length;
+      return bytes;
+    }
+
+    private byte readByte() {
+      if (pos >= buf.length) {
+        throw new IllegalArgumentException("unexpected end of the patch");
+      }
+      return buf[pos++];
+    }
+
+    private int readVarint() {
+      long value = readVarlong();
+      if (value > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("length or index too large at " + pos);
+      }
+      return (int) value;
+    }
+
+    private long readVarlong() {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        byte b = readByte();
+        value |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IllegalArgumentException("malformed variable length number at " + pos);
+    }
+
+    private long readFixed(final int bytes) {
+      long value = 0;
+      for (int i = 0; i < bytes; i++) {
+        value |= (long) (readByte() & 0xFF) << (8 * i);
+      }
+      return value;
+    }
+
+    private static long unzigzag(final long value) {
+      return (value >>> 1) ^ -(value & 1);
+    }
+  }
+}
@@ -0,0 +1,396 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.json;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeType;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.vertx.core.json.Json;
+
+/**
+ * Creates the diff of {@link JsonDiff} from two token streams and writes it to a generator, so the two documents don't
+ * have to be held in memory as trees. The objects of both documents are walked field by field, only
+ * <ul>
+ * <li>arrays, which are diffed by the position of equal elements</li>
+ * <li>objects encoded as {@link ArrayMapSerializer#ARRAY_MAP array map}</li>
+ * <li>fields whose order differs between base and data</li>
+ * </ul>
+ * are read into trees and diffed by {@link JsonDiff#getDiff(JsonNode, JsonNode)}. Values which are only contained in
+ * the data are copied from the data stream to the generator without building a tree. If both documents are written
+ * by the same serializer, the fields have the same order and the memory needed is bounded by the largest array or
+ * array map.
+ */
+public class JsonStreamDiff {
+
+  private final ObjectMapper mapper;
+  private final JsonParser base;
+  private final JsonParser data;
+  private final DeferredGenerator out;
+  // a hasher memoizes the nodes it hashed, so each diffed tree gets its own one to release them with the tree
+  private final Supplier<StructuralHasher> hashers;
+
+  private JsonStreamDiff(final ObjectMapper mapper, final JsonParser base, final JsonParser data,
+      final JsonGenerator out, final Supplier<StructuralHasher> hashers) {
+    this.mapper = mapper;
+    this.base = base;
+    this.data = data;
+    this.out = new DeferredGenerator(mapper, out);
+    this.hashers = hashers;
+  }
+
+  /**
+   * Writes the diff from base to data, see {@link JsonDiff#getDiff(JsonNode, JsonNode)}
+   *
+   * @param base
+   *          the parser of the base document, positioned before or at its first token
+   * @param data
+   *          the parser of the data document, positioned before or at its first token
+   * @param out
+   *          the generator the diff is written to
+   */
+  public static void getDiff(final JsonParser base, final JsonParser data, final JsonGenerator out)
+      throws IOException {
+    getDiff(base, data, out, StructuralHasher::new);
+  }
+
+  static void getDiff(final JsonParser base, final JsonParser data, final JsonGenerator out,
+      final Supplier<StructuralHasher> hashers) throws IOException {
+    new JsonStreamDiff(Json.mapper, base, data, out, hashers).diffDocument();
+  }
+
+  /**
+   * Writes the diff from a base tree to the data document, see {@link JsonDiff#getDiff(JsonNode, JsonNode)}
+   *
+   * @param base
+   *          the base document, is not modified
+   * @param data
+   *          the parser of the data document, positioned before or at its first token
+   * @param out
+   *          the generator the diff is written to
+   */
+  public static void getDiff(final JsonNode base, final JsonParser data, final JsonGenerator out) throws IOException {
+    try (JsonParser baseParser = base.traverse(Json.mapper)) {
+      getDiff(baseParser, data, out);
+    }
+  }
+
+  private void diffDocument() throws IOException {
+    JsonToken baseToken = base.getCurrentToken() != null ? base.getCurrentToken() : base.nextToken();
+    JsonToken dataToken = data.getCurrentToken() != null ? data.getCurrentToken() : data.nextToken();
+    if (baseToken == JsonToken.START_OBJECT && dataToken == JsonToken.START_OBJECT) {
+      String baseFirst = nextFieldName(base);
+      String dataFirst = nextFieldName(data);
+      if (isArrayMap(baseFirst) || isArrayMap(dataFirst)) {
+        out.writeTree(null,
+            JsonDiff.getDiff(readObject(base, baseFirst), readObject(data, dataFirst), mapper.getNodeFactory()));
+      } else {
+        out.beginObject(null);
+        diffObject(baseFirst, dataFirst);
+        out.endObject(true);
+      }
+    } else if (type(baseToken) != type(dataToken)) {
+      out.copy(null, data);
+    } else {
+      JsonNode diff = JsonDiff.getDiff(readScalar(base), readScalar(data), mapper.getNodeFactory());
+      if (diff != null) {
+        out.writeTree(null, diff);
+      }
+    }
+    out.flush();
+  }
+
+  /**
+   * Diffs the fields of two objects whose start and first field name are read already
+   */
+  private void diffObject(final String baseFirst, final String dataFirst) throws IOException {
+    Map<String, JsonNode> pendingBase = null;
+    Map<String, JsonNode> pendingData = null;
+    String baseName = baseFirst;
+    String dataName = dataFirst;
+    boolean baseEnded = baseName == null;
+    boolean dataEnded = dataName == null;
+
+    while (!baseEnded || !dataEnded) {
+      if (baseName != null && baseName.equals(dataName)) {
+        diffField(baseName);
+      } else {
+        if (baseName != null) {
+          if (pendingData != null && pendingData.containsKey(baseName)) {
+            diffTrees(baseName, readValue(base), pendingData.remove(baseName));
+          } else if (dataEnded) {
+            // removed
+            base.nextToken();
+            base.skipChildren();
+            out.writeNull(baseName);
+          } else {
+            if (pendingBase == null) {
+              pendingBase = new LinkedHashMap<>();
+            }
+            pendingBase.put(baseName, readValue(base));
+          }
+        }
+        if (dataName != null) {
+          if (pendingBase != null && pendingBase.containsKey(dataName)) {
+            diffTrees(dataName, pendingBase.remove(dataName), readValue(data));
+          } else if (baseEnded) {
+            // added
+            data.nextToken();
+            out.copy(dataName, data);
+          } else {
+            if (pendingData == null) {
+              pendingData = new LinkedHashMap<>();
+            }
+            pendingData.put(dataName, readValue(data));
+          }
+        }
+      }
+      if (!baseEnded) {
+        baseName = nextFieldName(base);
+        baseEnded = baseName == null;
+      }
+      if (!dataEnded) {
+        dataName = nextFieldName(data);
+        dataEnded = dataName == null;
+      }
+    }
+
+    if (pendingData != null) {
+      for (Entry<String, JsonNode> added : pendingData.entrySet()) {
+        out.writeTree(added.getKey(), added.getValue());
+      }
+    }
+    if (pendingBase != null) {
+      for (String removed : pendingBase.keySet()) {
+        out.writeNull(removed);
+      }
+    }
+  }
+
+  /**
+   * Diffs the values of a field which is at the same position in both objects
+   */
+  private void diffField(final String fieldName) throws IOException {
+    JsonToken baseToken = base.nextToken();
+    JsonToken dataToken = data.nextToken();
+    JsonNodeType baseType = type(baseToken);
+    if (baseType != type(dataToken)) {
+      base.skipChildren();
+      copyReplaced(fieldName);
+      return;
+    }
+    switch (baseType) {
+      case OBJECT:
+        String baseFirst = nextFieldName(base);
+        String dataFirst = nextFieldName(data);
+        if (isArrayMap(baseFirst) || isArrayMap(dataFirst)) {
+          diffTrees(fieldName, readObject(base, baseFirst), readObject(data, dataFirst));
+        } else {
+          out.beginObject(fieldName);
+          diffObject(baseFirst, dataFirst);
+          out.endObject(false);
+        }
+        return;
+      case ARRAY:
+        diffTrees(fieldName, mapper.readTree(base), mapper.readTree(data));
+        return;
+      default:
+        JsonNode baseValue = readScalar(base);
+        JsonNode dataValue = readScalar(data);
+        if (!baseValue.equals(dataValue)) {
+          out.writeTree(fieldName, dataValue);
+        }
+    }
+  }
+
+  /**
+   * Copies a data value which replaces a base value of another type. Like {@link JsonDiff} an empty object is not
+   * written.
+   */
+  private void copyReplaced(final String fieldName) throws IOException {
+    if (data.getCurrentToken() != JsonToken.START_OBJECT) {
+      out.copy(fieldName, data);
+      return;
+    }
+    out.beginObject(fieldName);
+    String name;
+    while ((name = nextFieldName(data)) != null) {
+      data.nextToken();
+      out.copy(name, data);
+    }
+    out.endObject(false);
+  }
+
+  private void diffTrees(final String fieldName, final JsonNode baseValue, final JsonNode dataValue)
+      throws IOException {
+    StructuralHasher hasher = hashers.get();
+    if (hasher.equal(baseValue, dataValue)) {
+      return;
+    }
+    JsonNode subDiff = JsonDiff.getDiff(baseValue, dataValue, mapper.getNodeFactory(), hasher);
+    if (subDiff != null && ((!subDiff.isObject() && !(subDiff instanceof ArrayMapNode)) || subDiff.size() > 0)) {
+      out.writeTree(fieldName, subDiff);
+    }
+  }
+
+  private JsonNode readValue(final JsonParser parser) throws IOException {
+    parser.nextToken();
+    return readScalar(parser);
+  }
+
+  private JsonNode readScalar(final JsonParser parser) throws IOException {
+    JsonNode node = mapper.readTree(parser);
+    return node != null ? node : mapper.getNodeFactory().nullNode();
+  }
+
+  /**
+   * Reads an object whose start and first field name are read already
+   */
+  private ObjectNode readObject(final JsonParser parser, final String firstName) throws IOException {
+    ObjectNode node = mapper.getNodeFactory().objectNode();
+    String name = firstName;
+    while (name != null) {
+      node.set(name, readValue(parser));
+      name = nextFieldName(parser);
+    }
+    return node;
+  }
+
+  private static String nextFieldName(final JsonParser parser) throws IOException {
+    JsonToken token = parser.nextToken();
+    if (token == JsonToken.FIELD_NAME) {
+      return parser.getCurrentName();
+    }
+    if (token != JsonToken.END_OBJECT) {
+      throw new IllegalStateException("unexpected token " + token);
+    }
+    return null;
+  }
+
+  private static boolean isArrayMap(final String firstFieldName) {
+    return ArrayMapSerializer.ARRAY_MAP.equals(firstFieldName);
+  }
+
+  private static JsonNodeType type(final JsonToken token) {
+    if (token == null) {
+      return JsonNodeType.MISSING;
+    }
+    switch (token) {
+      case START_OBJECT:
+        return JsonNodeType.OBJECT;
+      case START_ARRAY:
+        return JsonNodeType.ARRAY;
+      case VALUE_STRING:
+        return JsonNodeType.STRING;
+      case VALUE_NUMBER_INT:
+      case VALUE_NUMBER_FLOAT:
+        return JsonNodeType.NUMBER;
+      case VALUE_TRUE:
+      case VALUE_FALSE:
+        return JsonNodeType.BOOLEAN;
+      case VALUE_NULL:
+        return JsonNodeType.NULL;
+      case VALUE_EMBEDDED_OBJECT:
+        return JsonNodeType.BINARY;
+      default:
+        throw new IllegalStateException("unexpected token " + token);
+    }
+  }
+
+  /**
+   * Writes the start of an object only when the first field of the object is written, so objects without changes are
+   * left out like in {@link JsonDiff}
+   */
+  private static class DeferredGenerator {
+
+    private final ObjectMapper mapper;
+    private final JsonGenerator gen;
+    // the field names of the open objects, null for an object without field name
+    private final List<String> open = new ArrayList<>();
+    private int written;
+
+    DeferredGenerator(final ObjectMapper mapper, final JsonGenerator gen) {
+      this.mapper = mapper;
+      this.gen = gen;
+    }
+
+    void beginObject(final String fieldName) {
+      open.add(fieldName);
+    }
+
+    /**
+     * @param force
+     *          true to write the object even if it has no fields
+     */
+    void endObject(final boolean force) throws IOException {
+      if (force) {
+        writeOpen();
+      }
+      open.remove(open.size() - 1);
+      if (written > open.size()) {
+        written--;
+        gen.writeEndObject();
+      }
+    }
+
+    void writeTree(final String fieldName, final JsonNode value) throws IOException {
+      writeFieldName(fieldName);
+      mapper.writeTree(gen, value);
+    }
+
+    void writeNull(final String fieldName) throws IOException {
+      writeFieldName(fieldName);
+      gen.writeNull();
+    }
+
+    void copy(final String fieldName, final JsonParser parser) throws IOException {
+      writeFieldName(fieldName);
+      gen.copyCurrentStructure(parser);
+    }
+
+    void flush() throws IOException {
+      gen.flush();
+    }
+
+    private void writeFieldName(final String fieldName) throws IOException {
+      writeOpen();
+      if (fieldName != null) {
+        gen.writeFieldName(fieldName);
+      }
+    }
+
+    private void writeOpen() throws IOException {
+      for (Iterator<String> it = open.listIterator(written); it.hasNext();) {
+        String fieldName = it.next();
+        if (fieldName != null) {
+          gen.writeFieldName(fieldName);
+        }
+        gen.writeStartObject();
+      }
+      written = open.size();
+    }
+  }
+}
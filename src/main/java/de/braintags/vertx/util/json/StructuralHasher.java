@@ -0,0 +1,217 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.json;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Computes a 128 bit hash of the structure and the values of a {@link JsonNode}. Nodes which are equal by
+ * {@link JsonNode#equals(Object)} have the same hash, the field order of objects and the entry order of
+ * {@link ArrayMapNode array maps} are ignored. {@link #equal(JsonNode, JsonNode)} rejects subtrees with different hashes
+ * in O(1) once their hashes are known, subtrees with the same hash are confirmed by {@link JsonNode#equals(Object)},
+ * because the hash is not collision free.
+ * <p>
+ * The hashes of objects and arrays are memoized by identity, so a hasher must only be used while the hashed nodes are
+ * not modified, e.g. for one diff. A hasher is not thread safe.
+ */
+public class StructuralHasher {
+
+  private static final long SEED1 = 0x9E3779B97F4A7C15L;
+  private static final long SEED2 = 0xC2B2AE3D27D4EB4FL;
+
+  private final Map<JsonNode, Hash> memo = new IdentityHashMap<>();
+  // the last node each container node was confirmed to be equal to
+  private final Map<JsonNode, JsonNode> confirmed = new IdentityHashMap<>();
+
+  /**
+   * @return the 64 bit hash of the node
+   */
+  public long hash(final JsonNode node) {
+    return hash128(node).h1;
+  }
+
+  /**
+   * @return true if both nodes are the same instance, or have the same hash and are equal by
+   *         {@link JsonNode#equals(Object)}
+   */
+  public boolean equal(final JsonNode a, final JsonNode b) {
+    if (a == b) {
+      return true;
+    }
+    if (a == null || b == null || !hash128(a).equals(hash128(b))) {
+      return false;
+    }
+    if (!a.isContainerNode() && !(a instanceof ArrayMapNode)) {
+      return a.equals(b);
+    }
+    if (confirmed.get(a) == b) {
+      return true;
+    }
+    boolean equal = a.equals(b);
+    if (equal) {
+      confirmed.put(a, b);
+    }
+    return equal;
+  }
+
+  /**
+   * @return the 128 bit hash of the node, usable as key of a hash map
+   */
+  Hash hash128(final JsonNode node) {
+    if (!node.isContainerNode() && !(node instanceof ArrayMapNode)) {
+      return valueHash(node);
+    }
+    Hash hash = memo.get(node);
+    if (hash == null) {
+      hash = containerHash(node);
+      memo.put(node, hash);
+    }
+    return hash;
+  }
+
+  private Hash containerHash(final JsonNode node) {
+    if (node instanceof ArrayMapNode) {
+      // order independent sum of the entries
+      long h1 = 0;
+      long h2 = 0;
+      for (Entry<JsonNode, JsonNode> entry : ((ArrayMapNode) node).getChildren().entrySet()) {
+        Hash key = hash128(entry.getKey());
+        Hash value = hash128(entry.getValue());
+        h1 += mix(key.h1 * 31 + value.h1, SEED1);
+        h2 += mix(key.h2 * 37 + value.h2, SEED2);
+      }
+      return new Hash(mix(h1, 5), mix(h2, 5));
+    }
+    if (node.isObject()) {
+      long h1 = 0;
+      long h2 = 0;
+      Iterator<Entry<String, JsonNode>> fields = node.fields();
+      while (fields.hasNext()) {
+        Entry<String, JsonNode> field = fields.next();
+        Hash value = hash128(field.getValue());
+        h1 += mix(stringHash(field.getKey(), SEED1) * 31 + value.h1, SEED1);
+        h2 += mix(stringHash(field.getKey(), SEED2) * 37 + value.h2, SEED2);
+      }
+      return new Hash(mix(h1, 6), mix(h2, 6));
+    }
+    // array, ordered
+    long h1 = 7;
+    long h2 = 7;
+    for (int i = 0; i < node.size(); i++) {
+      Hash element = hash128(node.get(i));
+      h1 = mix(h1 * 31 + element.h1, SEED1);
+      h2 = mix(h2 * 37 + element.h2, SEED2);
+    }
+    return new Hash(h1, h2);
+  }
+
+  private static Hash valueHash(final JsonNode node) {
+    // the class separates nodes which are not equal although their values are, e.g. IntNode and LongNode
+    long type = node.getClass().getName().hashCode();
+    long value;
+    long value2;
+    if (node.isTextual()) {
+      value = stringHash(node.textValue(), SEED1);
+      value2 = stringHash(node.textValue(), SEED2);
+    } else if (node.isBigDecimal()) {
+      // DecimalNode compares by value, 1.0 equals 1.00
+      BigDecimal decimal = node.decimalValue();
+      String normalized = decimal.signum() == 0 ? "0" : decimal.stripTrailingZeros().toString();
+      value = stringHash(normalized, SEED1);
+      value2 = stringHash(normalized, SEED2);
+    } else if (node.isBigInteger()) {
+      value = stringHash(node.bigIntegerValue().toString(), SEED1);
+      value2 = stringHash(node.bigIntegerValue().toString(), SEED2);
+    } else if (node.isFloatingPointNumber()) {
+      value = value2 = Double.doubleToLongBits(node.doubleValue());
+    } else if (node.isIntegralNumber()) {
+      value = value2 = node.longValue();
+    } else if (node.isBoolean()) {
+      value = value2 = node.booleanValue() ? 1 : 0;
+    } else if (node.isBinary()) {
+      value = value2 = Arrays.hashCode(binaryValue(node));
+    } else {
+      // null, missing and POJO nodes
+      value = value2 = node.hashCode();
+    }
+    return new Hash(mix(type * 31 + value, SEED1), mix(type * 37 + value2, SEED2));
+  }
+
+  private static byte[] binaryValue(final JsonNode node) {
+    try {
+      return node.binaryValue();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static long stringHash(final String s, final long seed) {
+    long h = seed ^ s.length();
+    for (int i = 0; i < s.length(); i++) {
+      h = (h ^ s.charAt(i)) * 0x100000001B3L;
+    }
+    return mix(h, seed);
+  }
+
+  /**
+   * The finalizer of MurmurHash3, spreads each input bit over the whole result
+   */
+  private static long mix(final long value, final long seed) {
+    long h = value ^ seed;
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * A 128 bit hash
+   */
+  static final class Hash {
+
+    private final long h1;
+    private final long h2;
+
+    Hash(final long h1, final long h2) {
+      this.h1 = h1;
+      this.h2 = h2;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (h1 ^ (h1 >>> 32));
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Hash)) {
+        return false;
+      }
+      Hash other = (Hash) obj;
+      return h1 == other.h1 && h2 == other.h2;
+    }
+  }
+}
@@ -24,6 +24,8 @@ public class AsyncLock {
   final boolean readLock;
   final LockedExecution execution;
   final AtomicLong lockStamp;
+  // System.nanoTime() when the lock was queued, 0 if it was obtained immediately
+  long queuedNanos;
 
   AsyncLock(boolean readLock, LockedExecution execution) {
     this.readLock = readLock;
@@ -16,6 +16,8 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.StampedLock;
 
+import de.braintags.vertx.util.async.metrics.AsyncMetrics;
+import de.braintags.vertx.util.async.metrics.Timer;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 
@@ -29,6 +31,8 @@ import io.vertx.core.logging.LoggerFactory;
 public class AsyncReadWriteLock {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(AsyncReadWriteLock.class);
+  private static final Timer READ_WAIT = AsyncMetrics.timer("lock.read.wait");
+  private static final Timer WRITE_WAIT = AsyncMetrics.timer("lock.write.wait");
 
   private StampedLock lock;
   private final ConcurrentLinkedQueue<AsyncLock> pending;
@@ -86,6 +90,7 @@ public class AsyncReadWriteLock {
    * Enqueues the lock for execution after the pending locks. Fair execution for all locks.
    */
   private void enqueue(AsyncLock asyncLock) {
+    asyncLock.queuedNanos = System.nanoTime();
     pending.add(asyncLock);
     // maybe the reason blocking the execution is gone?
     dequeue();
@@ -128,6 +133,9 @@ public class AsyncReadWriteLock {
         throw new IllegalStateException(
             "by construction it should not happen that there is a second execution of the same LockedExecution");
       }
+      if (asyncLock.queuedNanos != 0) {
+        (asyncLock.readLock ? READ_WAIT : WRITE_WAIT).recordSince(asyncLock.queuedNanos);
+      }
       asyncLock.execution.perform(() -> executionDone(asyncLock));
     } catch (Exception e) {
       LOGGER.error("error executing execution", e);
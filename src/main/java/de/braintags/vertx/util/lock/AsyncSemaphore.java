@@ -0,0 +1,153 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.lock;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import de.braintags.vertx.util.async.AsyncTimeoutException;
+import de.braintags.vertx.util.async.SharedFuture;
+import io.vertx.core.Vertx;
+
+/**
+ * An asynchronous semaphore which limits the number of concurrent {@link LockedExecution executions}, e.g. the
+ * concurrent writes to a database. Each execution acquires a number of permits, which are released by its finish
+ * handler.
+ * <p>
+ * Waiting executions are granted in FIFO order: an execution which needs more permits than available blocks the
+ * executions behind it, even if they need fewer permits, so heavy executions do not starve. Like
+ * {@link FairAsyncReadWriteLock} the executions are started on the context they were requested on, and a waiting
+ * execution can time out or be cancelled by failing the returned future.
+ */
+public class AsyncSemaphore {
+
+  private final Vertx vertx;
+  private final int permits;
+  private final Available available;
+  private final WaitQueue queue;
+
+  /**
+   * Create a semaphore without timeouts
+   *
+   * @param permits
+   *          the number of permits
+   */
+  public AsyncSemaphore(final int permits) {
+    this(null, permits);
+  }
+
+  /**
+   * @param vertx
+   *          the vertx instance to set the timers for timeouts, may be null if no timeouts are used
+   * @param permits
+   *          the number of permits
+   */
+  public AsyncSemaphore(final Vertx vertx, final int permits) {
+    if (permits <= 0) {
+      throw new IllegalArgumentException("permits must be > 0");
+    }
+    this.vertx = vertx;
+    this.permits = permits;
+    this.available = new Available(permits);
+    this.queue = new WaitQueue(vertx, "permits", available);
+  }
+
+  /**
+   * Execute the {@link LockedExecution} with one permit.
+   *
+   * @return see {@link #execute(int, long, LockedExecution)}
+   */
+  public SharedFuture<Void> execute(final LockedExecution execution) {
+    return execute(1, 0, execution);
+  }
+
+  /**
+   * Execute the {@link LockedExecution} with the given number of permits.
+   *
+   * @param permits
+   *          the number of permits, at most the number of permits of the semaphore
+   * @param timeoutMs
+   *          the maximum time to wait for the permits, 0 to wait without limit
+   * @param execution
+   *          the handler executed with the permits
+   * @return a future which succeeds when the execution released the permits, or fails with an
+   *         {@link AsyncTimeoutException} if the permits were not granted in time, or with the exception thrown by
+   *         the execution. Failing the future while the execution is waiting cancels it.
+   */
+  public SharedFuture<Void> execute(final int permits, final long timeoutMs, final LockedExecution execution) {
+    return execute(permits, timeoutMs, Integer.MAX_VALUE, execution);
+  }
+
+  /**
+   * Like {@link #execute(int, long, LockedExecution)}, but fails with a {@link RejectedExecutionException} if the
+   * execution would have to wait while maxWaiting executions are waiting already
+   */
+  SharedFuture<Void> execute(final int permits, final long timeoutMs, final int maxWaiting,
+      final LockedExecution execution) {
+    if (permits <= 0 || permits > this.permits) {
+      throw new IllegalArgumentException("permits must be between 1 and " + this.permits);
+    }
+    if (timeoutMs > 0 && vertx == null) {
+      throw new IllegalStateException("a semaphore with timeouts needs a vertx instance");
+    }
+    return queue.execute(permits, timeoutMs, maxWaiting, execution, null, null);
+  }
+
+  /**
+   * @return the number of available permits
+   */
+  public int getAvailablePermits() {
+    synchronized (queue) {
+      return available.available;
+    }
+  }
+
+  /**
+   * @return the total number of permits
+   */
+  int permits() {
+    return permits;
+  }
+
+  /**
+   * @return the number of executions waiting for permits
+   */
+  public int getQueueLength() {
+    return queue.size();
+  }
+
+  /**
+   * The available permits, guarded by the queue
+   */
+  private static class Available implements WaitQueue.Permits {
+
+    private int available;
+
+    Available(final int available) {
+      this.available = available;
+    }
+
+    @Override
+    public boolean tryAcquire(final int permits) {
+      if (available < permits) {
+        return false;
+      }
+      available -= permits;
+      return true;
+    }
+
+    @Override
+    public void release(final int permits) {
+      available += permits;
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.lock;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import de.braintags.vertx.util.async.AsyncTimeoutException;
+import de.braintags.vertx.util.async.MultiThreadedFuture;
+import de.braintags.vertx.util.async.SharedFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+
+/**
+ * Isolates the calls to one resource, e.g. a slow dependency, by limiting their concurrency with an
+ * {@link AsyncSemaphore}. At most maxConcurrent operations are running, at most maxWaiting operations wait for a free
+ * slot. Further operations fail immediately with a {@link RejectedExecutionException}, so callers don't pile up behind
+ * a dependency which does not answer.
+ */
+public class Bulkhead {
+
+  private final AsyncSemaphore semaphore;
+  private final int maxWaiting;
+  private final long maxWaitMs;
+  private final LongAdder rejected = new LongAdder();
+
+  /**
+   * Create a bulkhead whose operations wait without time limit
+   *
+   * @param maxConcurrent
+   *          the maximum number of running operations
+   * @param maxWaiting
+   *          the maximum number of waiting operations, 0 to reject an operation if no slot is free
+   */
+  public Bulkhead(final int maxConcurrent, final int maxWaiting) {
+    this(null, maxConcurrent, maxWaiting, 0);
+  }
+
+  /**
+   * @param vertx
+   *          the vertx instance to set the timers for the wait timeout
+   * @param maxConcurrent
+   *          the maximum number of running operations
+   * @param maxWaiting
+   *          the maximum number of waiting operations, 0 to reject an operation if no slot is free
+   * @param maxWaitMs
+   *          the maximum time an operation waits for a free slot before it fails with an
+   *          {@link AsyncTimeoutException}, 0 to wait without limit
+   */
+  public Bulkhead(final Vertx vertx, final int maxConcurrent, final int maxWaiting, final long maxWaitMs) {
+    if (maxWaiting < 0) {
+      throw new IllegalArgumentException("maxWaiting must be >= 0");
+    }
+    this.semaphore = new AsyncSemaphore(vertx, maxConcurrent);
+    this.maxWaiting = maxWaiting;
+    this.maxWaitMs = maxWaitMs;
+  }
+
+  /**
+   * Executes the operation when a slot is free
+   *
+   * @param operation
+   *          creates the future of the operation
+   * @return the result of the operation, or a future failed with a {@link RejectedExecutionException} if the wait
+   *         queue is full or with an {@link AsyncTimeoutException} if no slot was free in time
+   */
+  public <T> MultiThreadedFuture<T> execute(final Supplier<? extends Future<T>> operation) {
+    MultiThreadedFuture<T> result = MultiThreadedFuture.future();
+    SharedFuture<Void> slot = semaphore.execute(1, maxWaitMs, maxWaiting, finish -> {
+      Future<T> future;
+      try {
+        future = operation.get();
+      } catch (Throwable e) {
+        future = Future.failedFuture(e);
+      }
+      future.setHandler(res -> {
+        finish.run();
+        result.handle(res);
+      });
+    });
+    slot.setHandler(res -> {
+      if (res.failed()) {
+        if (res.cause() instanceof RejectedExecutionException) {
+          rejected.increment();
+        }
+        result.tryFail(res.cause());
+      }
+    });
+    return result;
+  }
+
+  /**
+   * @return the number of running operations
+   */
+  public int getActiveCount() {
+    return semaphore.permits() - semaphore.getAvailablePermits();
+  }
+
+  /**
+   * @return the number of operations waiting for a free slot
+   */
+  public int getQueueLength() {
+    return semaphore.getQueueLength();
+  }
+
+  /**
+   * @return the number of operations rejected because the wait queue was full
+   */
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+}
@@ -0,0 +1,283 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.lock;
+
+import java.util.UUID;
+
+import de.braintags.vertx.util.async.CacheableFuture;
+import de.braintags.vertx.util.async.MultiThreadedFuture;
+import de.braintags.vertx.util.async.SharedFuture;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+/**
+ * A read / write lock shared by all nodes of a cluster, coordinated by a {@link DistributedLockServer} at an event bus
+ * address. Each node creates one instance per lock name:
+ * <ul>
+ * <li>the executions of the node are first serialized by a local {@link FairAsyncReadWriteLock}, so at most one
+ * request per node waits at the server</li>
+ * <li>all readers of the node share one read lease. Readers granted while the node holds the lease run without a round
+ * trip to the server. When the server reports a waiting writer, new readers acquire a new lease behind the writer and
+ * the old lease is released by its last reader.</li>
+ * <li>a writer acquires a write lease for its execution</li>
+ * <li>leases are renewed while they are held and expire on the server if the node does not renew them. Executions get
+ * the fencing token of their lease to protect the resource against writes under an expired lease.</li>
+ * </ul>
+ * If the lease can not be acquired, the returned future fails and the execution is not performed. The request is
+ * cancelled at the server then, so a lease granted after the timeout is released.
+ */
+public class DistributedAsyncReadWriteLock {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DistributedAsyncReadWriteLock.class);
+
+  private final Vertx vertx;
+  private final String address;
+  private final String name;
+  private final FairAsyncReadWriteLock local;
+  private long leaseMs = 10000;
+  private long acquireTimeoutMs = 30000;
+
+  // the shared read lease new readers of this node join, guarded by this
+  private Lease readLease;
+  private MultiThreadedFuture<Lease> pendingRead;
+  // the readers waiting for pendingRead
+  private int pendingReaders;
+
+  /**
+   * @param vertx
+   *          the vertx instance of this node
+   * @param address
+   *          the event bus address of the {@link DistributedLockServer}
+   * @param name
+   *          the name of the lock
+   */
+  public DistributedAsyncReadWriteLock(final Vertx vertx, final String address, final String name) {
+    this.vertx = vertx;
+    this.address = address;
+    this.name = name;
+    this.local = new FairAsyncReadWriteLock(vertx);
+  }
+
+  /**
+   * @param leaseMs
+   *          the time after which a lease of a node expires if it is not renewed, renewed every third of it
+   * @return this for fluent usage
+   */
+  public DistributedAsyncReadWriteLock setLeaseMs(final long leaseMs) {
+    this.leaseMs = leaseMs;
+    return this;
+  }
+
+  /**
+   * @param acquireTimeoutMs
+   *          the maximum time to wait for a lease from the server
+   * @return this for fluent usage
+   */
+  public DistributedAsyncReadWriteLock setAcquireTimeoutMs(final long acquireTimeoutMs) {
+    this.acquireTimeoutMs = acquireTimeoutMs;
+    return this;
+  }
+
+  /**
+   * Execute the {@link LockedExecution} using a read lock.
+   *
+   * @return see {@link #execute(boolean, FencedExecution)}
+   */
+  public SharedFuture<Void> readLock(final LockedExecution execution) {
+    return execute(true, (token, finish) -> execution.perform(finish));
+  }
+
+  /**
+   * Execute the {@link LockedExecution} using a write lock.
+   *
+   * @return see {@link #execute(boolean, FencedExecution)}
+   */
+  public SharedFuture<Void> writeLock(final LockedExecution execution) {
+    return execute(false, (token, finish) -> execution.perform(finish));
+  }
+
+  /**
+   * Execute the {@link FencedExecution} using the given lock.
+   *
+   * @param readLock
+   *          true for a read lock, false for a write lock
+   * @param execution
+   *          the handler executed with the lock
+   * @return a future which succeeds when the execution released the lock, or fails if the lease could not be acquired
+   */
+  public SharedFuture<Void> execute(final boolean readLock, final FencedExecution execution) {
+    SharedFuture<Void> result = SharedFuture.future();
+    local.execute(readLock, 0, localFinish -> {
+      MultiThreadedFuture<Lease> lease = readLock ? acquireRead() : acquire(false);
+      lease.setHandler(res -> {
+        if (res.failed()) {
+          localFinish.run();
+          result.tryFail(res.cause());
+          return;
+        }
+        try {
+          execution.perform(res.result().token, () -> {
+            if (readLock) {
+              releaseRead(res.result());
+            } else {
+              release(res.result());
+            }
+            localFinish.run();
+            result.tryComplete();
+          });
+        } catch (Exception e) {
+          LOGGER.error("error executing execution", e);
+          if (readLock) {
+            releaseRead(res.result());
+          } else {
+            release(res.result());
+          }
+          localFinish.run();
+          result.tryFail(e);
+        }
+      });
+    });
+    return result;
+  }
+
+  private MultiThreadedFuture<Lease> acquireRead() {
+    MultiThreadedFuture<Lease> pending;
+    synchronized (this) {
+      if (readLease != null) {
+        // local fast path
+        readLease.users++;
+        return MultiThreadedFuture.succeededFuture(CacheableFuture.EXPIRED, readLease);
+      }
+      pendingReaders++;
+      if (pendingRead != null) {
+        return pendingRead;
+      }
+      pending = pendingRead = MultiThreadedFuture.future();
+    }
+    acquire(true).setHandler(res -> {
+      synchronized (this) {
+        pendingRead = null;
+        if (res.succeeded()) {
+          readLease = res.result();
+          readLease.users = pendingReaders;
+        }
+        pendingReaders = 0;
+      }
+      pending.handle(res);
+    });
+    return pending;
+  }
+
+  private void releaseRead(final Lease lease) {
+    boolean last;
+    synchronized (this) {
+      last = --lease.users == 0;
+      if (last && readLease == lease) {
+        readLease = null;
+      }
+    }
+    if (last) {
+      release(lease);
+    }
+  }
+
+  private MultiThreadedFuture<Lease> acquire(final boolean read) {
+    MultiThreadedFuture<Lease> result = MultiThreadedFuture.future();
+    String requestId = UUID.randomUUID().toString();
+    JsonObject request = new JsonObject().put(DistributedLockServer.ACTION, DistributedLockServer.ACQUIRE)
+        .put(DistributedLockServer.NAME, name).put(DistributedLockServer.READ, read)
+        .put(DistributedLockServer.LEASE_MS, leaseMs).put(DistributedLockServer.REQUEST, requestId)
+        .put(DistributedLockServer.TIMEOUT_MS, acquireTimeoutMs);
+    vertx.eventBus().send(address, request, new DeliveryOptions().setSendTimeout(acquireTimeoutMs),
+        (AsyncResult<Message<JsonObject>> res) -> {
+          if (res.failed()) {
+            // the request may still wait at the server, or be granted after the timeout without anyone to release it
+            vertx.eventBus().send(address,
+                new JsonObject().put(DistributedLockServer.ACTION, DistributedLockServer.CANCEL)
+                    .put(DistributedLockServer.NAME, name).put(DistributedLockServer.REQUEST, requestId));
+            result.fail(res.cause());
+            return;
+          }
+          Lease lease = new Lease(res.result().body().getString(DistributedLockServer.LEASE),
+              res.result().body().getLong(DistributedLockServer.TOKEN));
+          lease.timerId = vertx.setPeriodic(Math.max(1, leaseMs / 3), id -> renew(lease));
+          result.complete(lease);
+        });
+    return result;
+  }
+
+  private void renew(final Lease lease) {
+    vertx.eventBus().send(address, leaseMessage(DistributedLockServer.RENEW, lease),
+        (AsyncResult<Message<JsonObject>> res) -> {
+          if (res.failed()) {
+            LOGGER.warn("lease of lock " + name + " with token " + lease.token + " could not be renewed",
+                res.cause());
+            leaseLost(lease);
+          } else if (res.result().body().getBoolean(DistributedLockServer.WRITER_WAITING, false)) {
+            retire(lease);
+          }
+        });
+  }
+
+  /**
+   * Stops sharing the read lease with new readers because a writer waits for it. The lease is renewed until its last
+   * reader releases it, new readers acquire a new lease which the server grants after the writer.
+   */
+  private synchronized void retire(final Lease lease) {
+    if (readLease == lease) {
+      readLease = null;
+    }
+  }
+
+  /**
+   * Stops renewing a lease which expired or could not be renewed in time. If it is the shared read lease, new readers
+   * of this node acquire a new lease instead of running under the lost one.
+   */
+  private void leaseLost(final Lease lease) {
+    vertx.cancelTimer(lease.timerId);
+    synchronized (this) {
+      if (readLease == lease) {
+        readLease = null;
+      }
+    }
+  }
+
+  private void release(final Lease lease) {
+    vertx.cancelTimer(lease.timerId);
+    vertx.eventBus().send(address, leaseMessage(DistributedLockServer.RELEASE, lease));
+  }
+
+  private JsonObject leaseMessage(final String action, final Lease lease) {
+    return new JsonObject().put(DistributedLockServer.ACTION, action).put(DistributedLockServer.NAME, name)
+        .put(DistributedLockServer.LEASE, lease.id);
+  }
+
+  private static class Lease {
+
+    private final String id;
+    private final long token;
+    private long timerId;
+    // the readers of a read lease, guarded by the lock
+    private int users;
+
+    Lease(final String id, final long token) {
+      this.id = id;
+      this.token = token;
+    }
+  }
+}
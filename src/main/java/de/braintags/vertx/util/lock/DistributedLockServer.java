@@ -0,0 +1,272 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.lock;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * The coordinator of {@link DistributedAsyncReadWriteLock distributed locks}. One server is started on one node of the
+ * cluster and receives the requests of all nodes at its event bus address. Each name is an independent read / write
+ * lock:
+ * <ul>
+ * <li>requests are granted in FIFO order, all consecutive read requests at the head of the queue at once</li>
+ * <li>each grant is a lease with a fencing token which is higher than the tokens of all previous grants</li>
+ * <li>a lease which is neither renewed nor released within its lease time expires, so a crashed node does not hold a
+ * lock forever</li>
+ * <li>a request which is not granted within the timeout sent with it is dropped, a request which the node cancels
+ * after its timeout is dropped, or its lease released if it was granted already</li>
+ * <li>the reply to a renewal tells whether a writer is waiting, so a node stops sharing its read lease with new
+ * readers</li>
+ * </ul>
+ * The state is only accessed by the event bus handler and the timers of the server, which all run on the context of
+ * the consumer.
+ */
+public class DistributedLockServer {
+
+  static final String ACTION = "action";
+  static final String ACQUIRE = "acquire";
+  static final String RELEASE = "release";
+  static final String RENEW = "renew";
+  static final String CANCEL = "cancel";
+  static final String REQUEST = "request";
+  static final String TIMEOUT_MS = "timeoutMs";
+  static final String WRITER_WAITING = "writerWaiting";
+  static final String NAME = "name";
+  static final String READ = "read";
+  static final String LEASE = "lease";
+  static final String LEASE_MS = "leaseMs";
+  static final String TOKEN = "token";
+
+  static final int LEASE_EXPIRED = 404;
+  static final int BAD_REQUEST = 400;
+
+  private final Vertx vertx;
+  private final String address;
+  private final Map<String, LockState> locks = new HashMap<>();
+  private long lastToken;
+  private MessageConsumer<JsonObject> consumer;
+
+  /**
+   * @param vertx
+   *          the vertx instance
+   * @param address
+   *          the event bus address of the server
+   */
+  public DistributedLockServer(final Vertx vertx, final String address) {
+    this.vertx = vertx;
+    this.address = address;
+  }
+
+  /**
+   * Start receiving requests
+   *
+   * @return this for fluent usage
+   */
+  public DistributedLockServer start() {
+    consumer = vertx.eventBus().consumer(address, this::handle);
+    return this;
+  }
+
+  /**
+   * Stop receiving requests, leases held are dropped
+   */
+  public void close() {
+    if (consumer != null) {
+      consumer.unregister();
+      consumer = null;
+    }
+  }
+
+  private void handle(final Message<JsonObject> message) {
+    JsonObject body = message.body();
+    String name = body.getString(NAME);
+    if (name == null) {
+      message.fail(BAD_REQUEST, "no lock name");
+      return;
+    }
+    switch (body.getString(ACTION, "")) {
+    case ACQUIRE:
+      LockState state = locks.computeIfAbsent(name, LockState::new);
+      long timeoutMs = body.getLong(TIMEOUT_MS, 0L);
+      state.waiting.add(new Waiter(message, body.getString(REQUEST), body.getBoolean(READ, false),
+          body.getLong(LEASE_MS, 10000L), timeoutMs > 0 ? System.currentTimeMillis() + timeoutMs : Long.MAX_VALUE));
+      grant(state);
+      removeIfUnused(state);
+      break;
+    case RELEASE:
+      release(name, body.getString(LEASE));
+      message.reply(new JsonObject());
+      break;
+    case CANCEL:
+      cancel(name, body.getString(REQUEST));
+      message.reply(new JsonObject());
+      break;
+    case RENEW:
+      LockState renewed = renew(name, body.getString(LEASE));
+      if (renewed != null) {
+        message.reply(new JsonObject().put(WRITER_WAITING, renewed.isWriterWaiting()));
+      } else {
+        message.fail(LEASE_EXPIRED, "lease expired");
+      }
+      break;
+    default:
+      message.fail(BAD_REQUEST, "unknown action " + body.getString(ACTION));
+    }
+  }
+
+  private void grant(final LockState state) {
+    Waiter head;
+    while ((head = state.waiting.peek()) != null) {
+      if (head.deadline < System.currentTimeMillis()) {
+        // the requester does not wait for the reply any more, a lease would not be released by anyone
+        state.waiting.poll();
+        continue;
+      }
+      if (head.read ? state.writer : state.writer || !state.leases.isEmpty()) {
+        return;
+      }
+      state.waiting.poll();
+      Lease lease = new Lease(UUID.randomUUID().toString(), head.requestId, head.leaseMs);
+      state.leases.put(lease.id, lease);
+      state.writer = !head.read;
+      lease.timerId = vertx.setTimer(lease.leaseMs, id -> expire(state.name, lease.id));
+      head.message.reply(new JsonObject().put(LEASE, lease.id).put(TOKEN, ++lastToken));
+      if (!head.read) {
+        return;
+      }
+    }
+  }
+
+  private void release(final String name, final String leaseId) {
+    LockState state = locks.get(name);
+    Lease lease = state == null ? null : state.leases.remove(leaseId);
+    if (lease == null) {
+      return;
+    }
+    vertx.cancelTimer(lease.timerId);
+    state.writer = false;
+    grant(state);
+    removeIfUnused(state);
+  }
+
+  /**
+   * Drops the request if it still waits, or releases its lease if it was granted after the requester gave up
+   */
+  private void cancel(final String name, final String requestId) {
+    LockState state = locks.get(name);
+    if (state == null || requestId == null) {
+      return;
+    }
+    if (state.waiting.removeIf(waiter -> requestId.equals(waiter.requestId))) {
+      // readers behind a cancelled writer may be granted now
+      grant(state);
+      removeIfUnused(state);
+      return;
+    }
+    for (Lease lease : state.leases.values()) {
+      if (requestId.equals(lease.requestId)) {
+        release(name, lease.id);
+        return;
+      }
+    }
+  }
+
+  private void removeIfUnused(final LockState state) {
+    if (state.leases.isEmpty() && state.waiting.isEmpty()) {
+      locks.remove(state.name);
+    }
+  }
+
+  private void expire(final String name, final String leaseId) {
+    LockState state = locks.get(name);
+    if (state != null && state.leases.containsKey(leaseId)) {
+      release(name, leaseId);
+    }
+  }
+
+  /**
+   * @return the state of the lock, null if the lease is not held any more
+   */
+  private LockState renew(final String name, final String leaseId) {
+    LockState state = locks.get(name);
+    Lease lease = state == null ? null : state.leases.get(leaseId);
+    if (lease == null) {
+      return null;
+    }
+    vertx.cancelTimer(lease.timerId);
+    lease.timerId = vertx.setTimer(lease.leaseMs, id -> expire(name, leaseId));
+    return state;
+  }
+
+  private static class LockState {
+
+    private final String name;
+    private final Map<String, Lease> leases = new HashMap<>();
+    private final ArrayDeque<Waiter> waiting = new ArrayDeque<>();
+    private boolean writer;
+
+    LockState(final String name) {
+      this.name = name;
+    }
+
+    boolean isWriterWaiting() {
+      long now = System.currentTimeMillis();
+      for (Waiter waiter : waiting) {
+        if (!waiter.read && waiter.deadline >= now) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static class Lease {
+
+    private final String id;
+    private final String requestId;
+    private final long leaseMs;
+    private long timerId;
+
+    Lease(final String id, final String requestId, final long leaseMs) {
+      this.id = id;
+      this.requestId = requestId;
+      this.leaseMs = leaseMs;
+    }
+  }
+
+  private static class Waiter {
+
+    private final Message<JsonObject> message;
+    private final String requestId;
+    private final boolean read;
+    private final long leaseMs;
+    private final long deadline;
+
+    Waiter(final Message<JsonObject> message, final String requestId, final boolean read, final long leaseMs,
+        final long deadline) {
+      this.message = message;
+      this.requestId = requestId;
+      this.read = read;
+      this.leaseMs = leaseMs;
+      this.deadline = deadline;
+    }
+  }
+}
@@ -0,0 +1,169 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.lock;
+
+import de.braintags.vertx.util.async.AsyncTimeoutException;
+import de.braintags.vertx.util.async.SharedFuture;
+import de.braintags.vertx.util.async.metrics.AsyncMetrics;
+import de.braintags.vertx.util.async.metrics.Timer;
+import io.vertx.core.Vertx;
+
+/**
+ * A fair asynchronous read / write lock. Like {@link AsyncReadWriteLock} a {@link LockedExecution} is executed with a
+ * read or write lock, but
+ * <ul>
+ * <li>the waiting executions are granted strictly in FIFO order: a waiting writer blocks the readers behind it, all
+ * consecutive readers at the head of the queue are granted at once</li>
+ * <li>the state is guarded by the monitor of the {@link WaitQueue}, which is held only to update the counters and the
+ * queue, nothing spins or retries</li>
+ * <li>granted executions are started on the context they were requested on. Executions of the releasing context or
+ * without context are run by a loop on the releasing thread instead of recursively, so long queues of synchronous
+ * executions do not grow the stack</li>
+ * <li>a waiting execution can time out or be cancelled by failing the returned future</li>
+ * </ul>
+ * The wait times are recorded by the timers "lock.fair.read.wait" and "lock.fair.write.wait" of {@link AsyncMetrics}.
+ */
+public class FairAsyncReadWriteLock {
+
+  private static final Timer READ_WAIT = AsyncMetrics.timer("lock.fair.read.wait");
+  private static final Timer WRITE_WAIT = AsyncMetrics.timer("lock.fair.write.wait");
+  private static final int READ = 1;
+  private static final int WRITE = 2;
+
+  private final Vertx vertx;
+  private final LockState state = new LockState();
+  private final WaitQueue queue;
+
+  /**
+   * Create a lock without timeouts
+   */
+  public FairAsyncReadWriteLock() {
+    this(null);
+  }
+
+  /**
+   * @param vertx
+   *          the vertx instance to set the timers for lock timeouts
+   */
+  public FairAsyncReadWriteLock(final Vertx vertx) {
+    this.vertx = vertx;
+    this.queue = new WaitQueue(vertx, "lock", state);
+  }
+
+  /**
+   * Execute the {@link LockedExecution} using a read lock.
+   *
+   * @return see {@link #execute(boolean, long, LockedExecution)}
+   */
+  public SharedFuture<Void> readLock(final LockedExecution execution) {
+    return execute(true, 0, execution);
+  }
+
+  /**
+   * Execute the {@link LockedExecution} using a write lock.
+   *
+   * @return see {@link #execute(boolean, long, LockedExecution)}
+   */
+  public SharedFuture<Void> writeLock(final LockedExecution execution) {
+    return execute(false, 0, execution);
+  }
+
+  /**
+   * Execute the {@link LockedExecution} using the given lock.
+   *
+   * @param readLock
+   *          true for a read lock, false for a write lock
+   * @param timeoutMs
+   *          the maximum time to wait for the lock, 0 to wait without limit
+   * @param execution
+   *          the handler executed with the lock
+   * @return a future which succeeds when the execution released the lock, or fails with an
+   *         {@link AsyncTimeoutException} if the lock was not granted in time, or with the exception thrown by the
+   *         execution. Failing the future while the execution is waiting cancels it.
+   */
+  public SharedFuture<Void> execute(final boolean readLock, final long timeoutMs, final LockedExecution execution) {
+    return execute(readLock, timeoutMs, execution, null);
+  }
+
+  /**
+   * Execute the {@link LockedExecution} using the given lock, see {@link #execute(boolean, long, LockedExecution)}
+   *
+   * @param onDone
+   *          called once when the execution released the lock or was cancelled before it was granted, independent of
+   *          the completion of the returned future, may be null
+   */
+  SharedFuture<Void> execute(final boolean readLock, final long timeoutMs, final LockedExecution execution,
+      final Runnable onDone) {
+    if (timeoutMs > 0 && vertx == null) {
+      throw new IllegalStateException("a lock with timeouts needs a vertx instance");
+    }
+    return queue.execute(readLock ? READ : WRITE, timeoutMs, Integer.MAX_VALUE, execution,
+        readLock ? READ_WAIT : WRITE_WAIT, onDone);
+  }
+
+  /**
+   * @return the number of executions waiting for the lock
+   */
+  public int getQueueLength() {
+    return queue.size();
+  }
+
+  /**
+   * @return the number of executions holding the read lock
+   */
+  public int getReadLockCount() {
+    synchronized (queue) {
+      return state.readers;
+    }
+  }
+
+  /**
+   * @return true if an execution holds the write lock
+   */
+  public boolean isWriteLocked() {
+    synchronized (queue) {
+      return state.writer;
+    }
+  }
+
+  /**
+   * The readers and the writer holding the lock, guarded by the queue
+   */
+  private static class LockState implements WaitQueue.Permits {
+
+    private int readers;
+    private boolean writer;
+
+    @Override
+    public boolean tryAcquire(final int permits) {
+      if (permits == READ ? writer : writer || readers > 0) {
+        return false;
+      }
+      if (permits == READ) {
+        readers++;
+      } else {
+        writer = true;
+      }
+      return true;
+    }
+
+    @Override
+    public void release(final int permits) {
+      if (permits == READ) {
+        readers--;
+      } else {
+        writer = false;
+      }
+    }
+  }
+}
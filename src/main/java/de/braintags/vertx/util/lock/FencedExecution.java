@@ -0,0 +1,32 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.lock;
+
+/**
+ * A {@link LockedExecution} which receives the fencing token of its lock. Fencing tokens grow with each grant of a
+ * lock, so a resource can reject writes with a token lower than the highest token it has seen, e.g. writes of a node
+ * whose lease has expired during a long pause.
+ */
+@FunctionalInterface
+public interface FencedExecution {
+
+  /**
+   * Do the work and call the finishHandler afterwards in order to release the lock.
+   *
+   * @param fencingToken
+   *          the token of the lock
+   * @param finishHandler
+   *          must be called as soon as the work is finished in order to release the lock.
+   */
+  void perform(long fencingToken, Runnable finishHandler);
+}
@@ -0,0 +1,148 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.lock;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.braintags.vertx.util.async.SharedFuture;
+import io.vertx.core.Vertx;
+
+/**
+ * Read / write locks per key, e.g. to serialize the updates of one entity while updates of other entities run in
+ * parallel. Each key is locked by a {@link FairAsyncReadWriteLock}:
+ * <ul>
+ * <li>by default the lock of a key is created by the first execution and removed when the last execution of the key
+ * is finished, so only the locks of keys in use are kept</li>
+ * <li>with stripes the keys are spread over a fixed number of locks. Keys of the same stripe block each other, but no
+ * lock is created or removed per execution.</li>
+ * </ul>
+ *
+ * @param <K>
+ *          the type of the keys
+ */
+public class KeyedAsyncLock<K> {
+
+  private final Vertx vertx;
+  private final FairAsyncReadWriteLock[] stripes;
+  private final ConcurrentHashMap<K, Entry> locks;
+
+  /**
+   * Create a lock which creates the lock of a key on demand, without timeouts
+   */
+  public KeyedAsyncLock() {
+    this(null, 0);
+  }
+
+  /**
+   * @param vertx
+   *          the vertx instance to set the timers for lock timeouts, may be null if no timeouts are used
+   * @param stripes
+   *          the number of locks the keys are spread over, 0 to create the lock of a key on demand
+   */
+  public KeyedAsyncLock(final Vertx vertx, final int stripes) {
+    if (stripes < 0) {
+      throw new IllegalArgumentException("stripes must be >= 0");
+    }
+    this.vertx = vertx;
+    if (stripes > 0) {
+      this.stripes = new FairAsyncReadWriteLock[stripes];
+      for (int i = 0; i < stripes; i++) {
+        this.stripes[i] = new FairAsyncReadWriteLock(vertx);
+      }
+      this.locks = null;
+    } else {
+      this.stripes = null;
+      this.locks = new ConcurrentHashMap<>();
+    }
+  }
+
+  /**
+   * Execute the {@link LockedExecution} using the read lock of the key.
+   *
+   * @return see {@link FairAsyncReadWriteLock#execute(boolean, long, LockedExecution)}
+   */
+  public SharedFuture<Void> readLock(final K key, final LockedExecution execution) {
+    return execute(key, true, 0, execution);
+  }
+
+  /**
+   * Execute the {@link LockedExecution} using the write lock of the key.
+   *
+   * @return see {@link FairAsyncReadWriteLock#execute(boolean, long, LockedExecution)}
+   */
+  public SharedFuture<Void> writeLock(final K key, final LockedExecution execution) {
+    return execute(key, false, 0, execution);
+  }
+
+  /**
+   * Execute the {@link LockedExecution} using the lock of the key.
+   *
+   * @param key
+   *          the key to lock
+   * @param readLock
+   *          true for a read lock, false for a write lock
+   * @param timeoutMs
+   *          the maximum time to wait for the lock, 0 to wait without limit
+   * @param execution
+   *          the handler executed with the lock
+   * @return see {@link FairAsyncReadWriteLock#execute(boolean, long, LockedExecution)}
+   */
+  public SharedFuture<Void> execute(final K key, final boolean readLock, final long timeoutMs,
+      final LockedExecution execution) {
+    if (stripes != null) {
+      return stripes[stripe(key)].execute(readLock, timeoutMs, execution);
+    }
+
+    Entry entry = locks.compute(key, (k, current) -> {
+      Entry e = current != null ? current : new Entry(vertx);
+      e.users++;
+      return e;
+    });
+    try {
+      // the key is in use until the lock itself is released, failing the returned future does not release it
+      return entry.lock.execute(readLock, timeoutMs, execution, () -> release(key));
+    } catch (RuntimeException e) {
+      release(key);
+      throw e;
+    }
+  }
+
+  /**
+   * @return the number of locks, for locks created on demand the number of keys in use
+   */
+  public int getLockCount() {
+    return stripes != null ? stripes.length : locks.size();
+  }
+
+  private void release(final K key) {
+    locks.computeIfPresent(key, (k, e) -> --e.users == 0 ? null : e);
+  }
+
+  private int stripe(final K key) {
+    int h = key.hashCode();
+    // spread the high bits, like HashMap
+    h ^= h >>> 16;
+    return (h & 0x7fffffff) % stripes.length;
+  }
+
+  private static class Entry {
+
+    private final FairAsyncReadWriteLock lock;
+    // guarded by the map entry
+    private int users;
+
+    Entry(final Vertx vertx) {
+      this.lock = new FairAsyncReadWriteLock(vertx);
+    }
+  }
+}
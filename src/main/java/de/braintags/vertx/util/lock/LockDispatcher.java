@@ -0,0 +1,61 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.lock;
+
+import java.util.ArrayDeque;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+
+/**
+ * Starts granted executions of the locks in this package on the context they were requested on. Executions of the
+ * current context or without context are run by a loop on the current thread instead of recursively, so a release
+ * which grants the next execution, which releases synchronously, does not grow the stack.
+ */
+final class LockDispatcher {
+
+  private static final ThreadLocal<ArrayDeque<Runnable>> TRAMPOLINE = new ThreadLocal<>();
+
+  private LockDispatcher() {
+  }
+
+  /**
+   * @param context
+   *          the context of the requester, may be null
+   * @param task
+   *          the task to run
+   */
+  static void dispatch(final Context context, final Runnable task) {
+    if (context != null && context != Vertx.currentContext()) {
+      context.runOnContext(v -> task.run());
+      return;
+    }
+    ArrayDeque<Runnable> trampoline = TRAMPOLINE.get();
+    if (trampoline != null) {
+      // called by a task of this thread, the outer loop runs it
+      trampoline.add(task);
+      return;
+    }
+    trampoline = new ArrayDeque<>();
+    TRAMPOLINE.set(trampoline);
+    try {
+      Runnable next = task;
+      while (next != null) {
+        next.run();
+        next = trampoline.poll();
+      }
+    } finally {
+      TRAMPOLINE.remove();
+    }
+  }
+}
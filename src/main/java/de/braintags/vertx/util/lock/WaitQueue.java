@@ -0,0 +1,256 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.lock;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import de.braintags.vertx.util.async.AsyncTimeoutException;
+import de.braintags.vertx.util.async.SharedFuture;
+import de.braintags.vertx.util.async.metrics.Timer;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+/**
+ * The queue of the executions waiting for {@link FairAsyncReadWriteLock} or {@link AsyncSemaphore}. Whether an
+ * execution can be granted is decided by the {@link Permits} of the owner, everything else is done here:
+ * <ul>
+ * <li>the waiting executions are granted in FIFO order, an execution which can not be granted blocks the executions
+ * behind it</li>
+ * <li>the state of the queue and of the permits is guarded by the monitor of the queue</li>
+ * <li>granted executions are started by the {@link LockDispatcher} on the context they were requested on</li>
+ * <li>a waiting execution can time out or be cancelled by failing its future, a granted one releases its permits when
+ * it finishes</li>
+ * </ul>
+ */
+final class WaitQueue {
+
+  /**
+   * The permits of the owner of a queue, called with the monitor of the queue held
+   */
+  interface Permits {
+
+    /**
+     * @return true if the permits were available and are taken now
+     */
+    boolean tryAcquire(int permits);
+
+    void release(int permits);
+  }
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(WaitQueue.class);
+
+  private final Vertx vertx;
+  private final String resource;
+  private final Permits permits;
+
+  // guarded by this
+  private final ArrayDeque<Request> waiting = new ArrayDeque<>();
+
+  /**
+   * @param vertx
+   *          the vertx instance to set the timers for timeouts, may be null if no timeouts are used
+   * @param resource
+   *          the name of what is granted, used in the message of timeouts
+   * @param permits
+   *          the permits granted
+   */
+  WaitQueue(final Vertx vertx, final String resource, final Permits permits) {
+    this.vertx = vertx;
+    this.resource = resource;
+    this.permits = permits;
+  }
+
+  /**
+   * Executes the execution when the permits are granted
+   *
+   * @param maxWaiting
+   *          the maximum number of waiting executions, the future fails with a {@link RejectedExecutionException} if
+   *          the execution would have to wait while the queue is full
+   * @param waitTimer
+   *          records the wait time of executions which were queued, may be null
+   * @param onDone
+   *          called once when the execution released the permits or was cancelled before it was granted, may be null
+   */
+  SharedFuture<Void> execute(final int permits, final long timeoutMs, final int maxWaiting,
+      final LockedExecution execution, final Timer waitTimer, final Runnable onDone) {
+    Request request = new Request(permits, execution, Vertx.currentContext(), waitTimer, onDone);
+    synchronized (this) {
+      if (waiting.isEmpty() && this.permits.tryAcquire(permits)) {
+        request.granted = true;
+      } else if (waiting.size() >= maxWaiting) {
+        return SharedFuture.failedFuture(new RejectedExecutionException("wait queue is full"));
+      } else {
+        request.queuedNanos = System.nanoTime();
+        waiting.add(request);
+      }
+    }
+    if (request.granted) {
+      dispatch(request);
+      return request.result;
+    }
+
+    if (timeoutMs > 0) {
+      request.timerId = vertx.setTimer(timeoutMs, id -> timedOut(request, timeoutMs));
+    }
+    request.result.setHandler(res -> {
+      if (res.failed()) {
+        cancelled(request);
+      }
+    });
+    return request.result;
+  }
+
+  /**
+   * @return the number of waiting executions
+   */
+  synchronized int size() {
+    return waiting.size();
+  }
+
+  /**
+   * Grants the waiting executions at the head of the queue as long as their permits are available. Called with the
+   * monitor held.
+   */
+  private List<Request> grantWaiting() {
+    List<Request> granted = null;
+    Request head;
+    while ((head = waiting.peek()) != null) {
+      if (head.result.isComplete()) {
+        // cancelled or timed out
+        waiting.poll();
+        continue;
+      }
+      if (!permits.tryAcquire(head.permits)) {
+        break;
+      }
+      waiting.poll();
+      head.granted = true;
+      if (granted == null) {
+        granted = new ArrayList<>(2);
+      }
+      granted.add(head);
+    }
+    return granted;
+  }
+
+  private void timedOut(final Request request, final long timeoutMs) {
+    synchronized (this) {
+      // a granted execution may be running already, a waiting one is removed so it can not be granted anymore
+      if (request.granted || !waiting.remove(request)) {
+        return;
+      }
+    }
+    request.result.tryFail(new AsyncTimeoutException(resource + " not granted within " + timeoutMs + "ms"));
+  }
+
+  private void cancelled(final Request request) {
+    List<Request> granted;
+    synchronized (this) {
+      if (request.granted) {
+        // released by run
+        return;
+      }
+      waiting.remove(request);
+      // a cancelled execution at the head may have blocked the executions behind it
+      granted = grantWaiting();
+    }
+    done(request);
+    dispatchAll(granted);
+  }
+
+  private void release(final Request request) {
+    List<Request> granted;
+    synchronized (this) {
+      permits.release(request.permits);
+      granted = grantWaiting();
+    }
+    done(request);
+    dispatchAll(granted);
+  }
+
+  private static void done(final Request request) {
+    if (request.onDone != null) {
+      request.onDone.run();
+    }
+  }
+
+  private void dispatchAll(final List<Request> granted) {
+    if (granted != null) {
+      for (int i = 0; i < granted.size(); i++) {
+        dispatch(granted.get(i));
+      }
+    }
+  }
+
+  private void dispatch(final Request request) {
+    if (request.timerId >= 0) {
+      vertx.cancelTimer(request.timerId);
+    }
+    LockDispatcher.dispatch(request.context, () -> run(request));
+  }
+
+  private void run(final Request request) {
+    if (request.result.isComplete()) {
+      // cancelled after the permits were granted
+      release(request);
+      return;
+    }
+    if (request.queuedNanos != 0 && request.waitTimer != null) {
+      request.waitTimer.recordSince(request.queuedNanos);
+    }
+    AtomicBoolean released = new AtomicBoolean();
+    try {
+      request.execution.perform(() -> {
+        if (released.compareAndSet(false, true)) {
+          release(request);
+          request.result.tryComplete();
+        }
+      });
+    } catch (Exception e) {
+      LOGGER.error("error executing execution", e);
+      if (released.compareAndSet(false, true)) {
+        release(request);
+        request.result.tryFail(e);
+      }
+    }
+  }
+
+  private static class Request {
+
+    private final int permits;
+    private final LockedExecution execution;
+    private final Context context;
+    private final Timer waitTimer;
+    private final Runnable onDone;
+    private final SharedFuture<Void> result = SharedFuture.future();
+    private long queuedNanos;
+    private volatile long timerId = -1;
+    // guarded by the queue
+    private boolean granted;
+
+    Request(final int permits, final LockedExecution execution, final Context context, final Timer waitTimer,
+        final Runnable onDone) {
+      this.permits = permits;
+      this.execution = execution;
+      this.context = context;
+      this.waitTimer = waitTimer;
+      this.onDone = onDone;
+    }
+  }
+}
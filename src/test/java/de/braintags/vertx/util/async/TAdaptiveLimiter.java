@@ -0,0 +1,106 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+
+import de.braintags.vertx.BtVertxTestBase;
+import io.vertx.core.Future;
+import io.vertx.ext.unit.TestContext;
+
+/**
+ * Unit test for {@link AdaptiveLimiter}
+ *
+ */
+public class TAdaptiveLimiter extends BtVertxTestBase {
+
+  @Test
+  public void testQueueAndReject(final TestContext context) {
+    AdaptiveLimiter limiter = new AdaptiveLimiter(new AdaptiveLimiter.AimdLimit(10000, 0.9), 2, 1, 2, 1);
+    List<Future<String>> pending = new ArrayList<>();
+
+    MultiThreadedFuture<String> f1 = limiter.execute(() -> add(pending));
+    MultiThreadedFuture<String> f2 = limiter.execute(() -> add(pending));
+    MultiThreadedFuture<String> queued = limiter.execute(() -> add(pending));
+    MultiThreadedFuture<String> rejected = limiter.execute(() -> add(pending));
+
+    assertThat(pending.size(), is(2));
+    assertThat(limiter.getInFlight(), is(2));
+    assertThat(limiter.getQueueDepth(), is(1));
+    assertThat(rejected.cause(), instanceOf(RejectedExecutionException.class));
+    assertThat(limiter.getRejectedCount(), is(1L));
+
+    pending.get(0).complete("a");
+    assertThat(f1.result(), is("a"));
+    // the queued operation is started in the free slot
+    assertThat(pending.size(), is(3));
+    assertThat(limiter.getQueueDepth(), is(0));
+
+    pending.get(1).complete("b");
+    pending.get(2).complete("c");
+    assertThat(f2.result(), is("b"));
+    assertThat(queued.result(), is("c"));
+    assertThat(limiter.getInFlight(), is(0));
+  }
+
+  @Test
+  public void testAimd(final TestContext context) {
+    AdaptiveLimiter limiter = new AdaptiveLimiter(new AdaptiveLimiter.AimdLimit(10000, 0.5), 10, 1, 100, 0);
+    for (int i = 0; i < 5; i++) {
+      limiter.execute(() -> Future.succeededFuture("fast"));
+    }
+    // only one operation in flight at a time, the limit is not used, so it does not grow
+    assertThat(limiter.getLimit(), is(10));
+
+    List<Future<String>> pending = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      limiter.execute(() -> add(pending));
+    }
+    pending.get(0).complete("fast");
+    assertThat(limiter.getLimit(), is(11));
+
+    pending.get(1).fail(new AsyncTimeoutException("timeout"));
+    assertThat(limiter.getLimit(), is(5));
+  }
+
+  @Test
+  public void testGradient(final TestContext context) throws InterruptedException {
+    AdaptiveLimiter.GradientLimit gradient = new AdaptiveLimiter.GradientLimit(1.0, 1.0, 10);
+    int limit = 20;
+    for (int i = 0; i < 20; i++) {
+      limit = gradient.update(limit, limit, 1000000, false);
+    }
+    int steady = limit;
+    // round trip times rise to 4 times the average, the limit shrinks
+    for (int i = 0; i < 3; i++) {
+      limit = gradient.update(limit, limit, 4000000, false);
+    }
+    assertThat(limit, lessThan(steady));
+  }
+
+  private static Future<String> add(final List<Future<String>> pending) {
+    Future<String> f = Future.future();
+    pending.add(f);
+    return f;
+  }
+
+}
@@ -0,0 +1,126 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import de.braintags.vertx.BtVertxTestBase;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+
+/**
+ * Unit test for {@link AsyncCache}
+ *
+ */
+public class TAsyncCache extends BtVertxTestBase {
+
+  @Test
+  public void testSingleFlight(final TestContext context) {
+    AtomicInteger loads = new AtomicInteger();
+    CacheableFuture<String> pending = CacheableFuture.future();
+    AsyncCache<String, String> cache = new AsyncCache<>(10, key -> {
+      loads.incrementAndGet();
+      return pending;
+    });
+
+    CacheableFuture<String> f1 = cache.get("a");
+    CacheableFuture<String> f2 = cache.get("a");
+    assertThat(f1, sameInstance(f2));
+    assertThat(f1.isComplete(), is(false));
+    assertThat(loads.get(), is(1));
+
+    pending.complete(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1), "value");
+    assertThat(f1.result(), is("value"));
+    assertThat(cache.get("a").result(), is("value"));
+    assertThat(loads.get(), is(1));
+    assertThat(cache.hitCount(), is(2L));
+    assertThat(cache.missCount(), is(1L));
+    assertThat(cache.loadSuccessCount(), is(1L));
+  }
+
+  @Test
+  public void testExpires(final TestContext context) {
+    AtomicInteger loads = new AtomicInteger();
+    AsyncCache<String, Integer> cache = new AsyncCache<>(10,
+        key -> CacheableFuture.succeededFuture(System.currentTimeMillis() + 20, loads.incrementAndGet()));
+
+    assertThat(cache.get("a").result(), is(1));
+    assertThat(cache.get("a").result(), is(1));
+
+    Async async = context.async();
+    vertx.setTimer(50, id -> {
+      assertThat(cache.getIfPresent("a"), nullValue());
+      assertThat(cache.get("a").result(), is(2));
+      async.complete();
+    });
+  }
+
+  @Test
+  public void testNotCacheable(final TestContext context) {
+    AtomicInteger loads = new AtomicInteger();
+    AsyncCache<String, Integer> cache = new AsyncCache<>(10, key -> {
+      if (loads.incrementAndGet() == 1) {
+        return CacheableFuture.failedFuture(new IllegalStateException("test failure"));
+      }
+      return SharedFuture.succeededFuture(loads.get());
+    });
+
+    assertThat(cache.get("a").failed(), is(true));
+    // not a cacheable result, expires immediately
+    assertThat(cache.get("a").result(), is(2));
+    assertThat(cache.get("a").result(), is(3));
+    assertThat(cache.loadFailureCount(), is(1L));
+    assertThat(cache.size(), is(0));
+  }
+
+  @Test
+  public void testLruEviction(final TestContext context) {
+    long expires = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+    AsyncCache<String, String> cache = new AsyncCache<>(2, key -> CacheableFuture.succeededFuture(expires, key));
+
+    cache.get("a");
+    cache.get("b");
+    // access a, so b is the least recently used entry
+    cache.get("a");
+    cache.get("c");
+
+    assertThat(cache.size(), is(2));
+    assertThat(cache.getIfPresent("b"), nullValue());
+    assertThat(cache.getIfPresent("a").result(), is("a"));
+    assertThat(cache.getIfPresent("c").result(), is("c"));
+    assertThat(cache.evictionCount(), is(1L));
+  }
+
+  @Test
+  public void testWeigher(final TestContext context) {
+    long expires = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+    AsyncCache<String, String> cache = new AsyncCache<>(10, (key, value) -> value.length(),
+        key -> CacheableFuture.succeededFuture(expires, key));
+
+    cache.get("12345");
+    cache.get("1234");
+    assertThat(cache.weight(), is(9L));
+    cache.get("12");
+    assertThat(cache.weight(), is(6L));
+    assertThat(cache.getIfPresent("12345"), nullValue());
+  }
+
+}
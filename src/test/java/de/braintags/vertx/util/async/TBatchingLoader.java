@@ -0,0 +1,125 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import de.braintags.vertx.BtVertxTestBase;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+
+/**
+ * Unit test for {@link BatchingLoader}
+ *
+ */
+public class TBatchingLoader extends BtVertxTestBase {
+
+  @Test
+  public void testSameTick(final TestContext context) {
+    List<List<String>> batches = new ArrayList<>();
+    BatchingLoader<String, String> loader = new BatchingLoader<>(vertx, keys -> load(batches, keys),
+        (key, value) -> key.length());
+    Async async = context.async();
+    vertx.runOnContext(v -> {
+      MultiThreadedFuture<String> a = loader.load("a");
+      MultiThreadedFuture<String> bb = loader.load("bb");
+      MultiThreadedFuture<String> a2 = loader.load("a");
+      MultiThreadedFuture<String> missing = loader.load("missing");
+      assertThat(batches.size(), is(0));
+      CompositeFuture.all(a, bb, a2, missing).setHandler(context.asyncAssertSuccess(res -> {
+        assertThat(batches.size(), is(1));
+        assertThat(batches.get(0), contains("a", "bb", "missing"));
+        assertThat(a.result(), is("A"));
+        assertThat(a2.result(), is("A"));
+        assertThat(bb.result(), is("BB"));
+        assertThat(missing.result(), nullValue());
+        // per key expiration
+        assertThat(a.expires(), is(1L));
+        assertThat(bb.expires(), is(2L));
+        async.complete();
+      }));
+    });
+  }
+
+  @Test
+  public void testMaxBatchSize(final TestContext context) {
+    List<List<String>> batches = new ArrayList<>();
+    BatchingLoader<String, String> loader = new BatchingLoader<>(vertx, keys -> load(batches, keys))
+        .setMaxBatchSize(2).setMaxDelayMicros(50000);
+    Async async = context.async();
+    vertx.runOnContext(v -> {
+      loader.load("a");
+      loader.load("b");
+      // the full batch is loaded immediately
+      assertThat(batches.size(), is(1));
+      loader.load("c").setHandler(context.asyncAssertSuccess(res -> {
+        assertThat(res, is("C"));
+        assertThat(batches.size(), is(2));
+        assertThat(batches.get(1), contains("c"));
+        async.complete();
+      }));
+    });
+  }
+
+  @Test
+  public void testFailure(final TestContext context) {
+    BatchingLoader<String, String> loader = new BatchingLoader<>(vertx, keys -> Future.failedFuture("down"));
+    loader.load("a").setHandler(context.asyncAssertFailure(e -> assertThat(e.getMessage(), is("down"))));
+  }
+
+  @Test
+  public void testExpiryFailsSingleKey(final TestContext context) {
+    BatchingLoader<String, String> loader = new BatchingLoader<>(vertx, keys -> load(new ArrayList<>(), keys),
+        (key, value) -> {
+          if (value == null) {
+            throw new IllegalStateException("no value for " + key);
+          }
+          return 1L;
+        });
+    Async async = context.async();
+    vertx.runOnContext(v -> {
+      MultiThreadedFuture<String> a = loader.load("a");
+      MultiThreadedFuture<String> missing = loader.load("missing");
+      CompositeFuture.join(a, missing).setHandler(context.asyncAssertFailure(e -> {
+        assertThat(a.result(), is("A"));
+        assertThat(missing.cause().getMessage(), is("no value for missing"));
+        async.complete();
+      }));
+    });
+  }
+
+  private static Future<Map<String, String>> load(final List<List<String>> batches, final Set<String> keys) {
+    batches.add(new ArrayList<>(keys));
+    Map<String, String> values = new HashMap<>();
+    for (String key : keys) {
+      if (!key.equals("missing")) {
+        values.put(key, key.toUpperCase());
+      }
+    }
+    return Future.succeededFuture(values);
+  }
+
+}
@@ -0,0 +1,140 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.braintags.vertx.BtVertxTestBase;
+import io.vertx.ext.unit.TestContext;
+
+/**
+ * Unit test for {@link CacheableCompositeFuture}
+ *
+ */
+public class TCacheableCompositeFuture extends BtVertxTestBase {
+
+  @Test
+  public void testAll(final TestContext context) {
+    List<CacheableFuture<Integer>> futures = pending(3);
+    CacheableFuture<List<Integer>> all = CacheableCompositeFuture.all(futures);
+    futures.get(2).complete(300, 3);
+    futures.get(0).complete(100, 1);
+    assertThat(all.isComplete(), is(false));
+    futures.get(1).complete(200, 2);
+    assertThat(all.result(), contains(1, 2, 3));
+    assertThat(all.expires(), is(100L));
+    // the result list is not backed by a fixed size array
+    all.result().add(4);
+    assertThat(all.result(), contains(1, 2, 3, 4));
+  }
+
+  @Test
+  public void testAllFailsFast(final TestContext context) {
+    List<CacheableFuture<Integer>> futures = pending(3);
+    CacheableFuture<List<Integer>> all = CacheableCompositeFuture.all(futures);
+    futures.get(1).fail("failure");
+    assertThat(all.failed(), is(true));
+    assertThat(all.cause().getMessage(), is("failure"));
+  }
+
+  @Test
+  public void testJoin(final TestContext context) {
+    List<CacheableFuture<Integer>> futures = pending(3);
+    CacheableFuture<List<Integer>> join = CacheableCompositeFuture.join(futures);
+    futures.get(2).fail("second");
+    futures.get(1).fail("first");
+    assertThat(join.isComplete(), is(false));
+    futures.get(0).complete(100, 1);
+    // the failure of the first failed future in list order
+    assertThat(join.cause().getMessage(), is("first"));
+  }
+
+  @Test
+  public void testAny(final TestContext context) {
+    List<CacheableFuture<Integer>> futures = pending(3);
+    CacheableFuture<Integer> any = CacheableCompositeFuture.any(futures);
+    futures.get(0).fail("failure");
+    assertThat(any.isComplete(), is(false));
+    futures.get(2).complete(300, 3);
+    assertThat(any.result(), is(3));
+    assertThat(any.expires(), is(300L));
+
+    List<CacheableFuture<Integer>> failing = pending(2);
+    CacheableFuture<Integer> none = CacheableCompositeFuture.any(failing);
+    failing.get(1).fail("second");
+    failing.get(0).fail("first");
+    assertThat(none.cause().getMessage(), is("first"));
+  }
+
+  @Test
+  public void testFirstN(final TestContext context) {
+    List<CacheableFuture<Integer>> futures = pending(4);
+    CacheableFuture<List<Integer>> firstTwo = CacheableCompositeFuture.firstN(futures, 2);
+    futures.get(3).complete(400, 4);
+    futures.get(0).fail("failure");
+    futures.get(1).complete(200, 2);
+    assertThat(firstTwo.result(), contains(4, 2));
+    assertThat(firstTwo.expires(), is(200L));
+
+    List<CacheableFuture<Integer>> failing = pending(3);
+    CacheableFuture<List<Integer>> unreachable = CacheableCompositeFuture.firstN(failing, 2);
+    failing.get(0).fail("first");
+    assertThat(unreachable.isComplete(), is(false));
+    failing.get(1).fail("second");
+    assertThat(unreachable.cause().getMessage(), is("second"));
+  }
+
+  @Test
+  public void testOnEach(final TestContext context) {
+    List<CacheableFuture<Integer>> futures = pending(3);
+    List<Integer> order = new ArrayList<>();
+    CacheableFuture<Void> done = CacheableCompositeFuture.onEach(futures, (index, res) -> order.add(index));
+    futures.get(1).complete(100, 2);
+    assertThat(order, contains(1));
+    futures.get(0).fail("failure");
+    futures.get(2).complete(300, 3);
+    assertThat(order, contains(1, 0, 2));
+    assertThat(done.succeeded(), is(true));
+    assertThat(done.expires(), is(CacheableResult.EXPIRED));
+  }
+
+  @Test
+  public void testManyCompleted(final TestContext context) {
+    List<CacheableFuture<Integer>> futures = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      futures.add(CacheableFuture.succeededFuture(10000 - i, i));
+    }
+    CacheableFuture<List<Integer>> all = CacheableCompositeFuture.all(futures);
+    assertThat(all.result().size(), is(5000));
+    assertThat(all.result().get(4999), is(4999));
+    assertThat(all.expires(), is(5001L));
+    assertThat(CacheableCompositeFuture.allVoid(Arrays.asList(futures.get(0))).succeeded(), is(true));
+  }
+
+  private static List<CacheableFuture<Integer>> pending(final int count) {
+    List<CacheableFuture<Integer>> futures = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      futures.add(CacheableFuture.future());
+    }
+    return futures;
+  }
+
+}
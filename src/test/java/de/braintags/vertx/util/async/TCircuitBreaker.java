@@ -0,0 +1,126 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import de.braintags.vertx.BtVertxTestBase;
+import io.vertx.ext.unit.TestContext;
+
+/**
+ * Unit test for {@link CircuitBreaker}
+ *
+ */
+public class TCircuitBreaker extends BtVertxTestBase {
+
+  @Test
+  public void testOpenAndClose(final TestContext context) throws InterruptedException {
+    CircuitBreaker breaker = new CircuitBreaker().setWindow(10, 4).setOpenDurationMs(50).setHalfOpenCalls(2);
+    AtomicInteger calls = new AtomicInteger();
+    Supplier<CacheableFuture<String>> failing = () -> {
+      calls.incrementAndGet();
+      return CacheableFuture.failedFuture(new IllegalStateException("down"));
+    };
+    Supplier<CacheableFuture<String>> working = () -> {
+      calls.incrementAndGet();
+      return CacheableFuture.succeededFuture(CacheableResult.INFINITE, "up");
+    };
+
+    breaker.execute(working);
+    breaker.execute(failing);
+    breaker.execute(failing);
+    assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+    breaker.execute(failing);
+    assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+
+    CacheableFuture<String> rejected = breaker.execute(working);
+    assertThat(rejected.cause(), instanceOf(RejectedExecutionException.class));
+    assertThat(calls.get(), is(4));
+
+    Thread.sleep(60);
+    assertThat(breaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+    assertThat(breaker.execute(working).result(), is("up"));
+    assertThat(breaker.execute(working).result(), is("up"));
+    assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+  }
+
+  @Test
+  public void testHalfOpenFailure(final TestContext context) throws InterruptedException {
+    CircuitBreaker breaker = new CircuitBreaker().setWindow(2, 2).setOpenDurationMs(20).setHalfOpenCalls(1);
+    Supplier<CacheableFuture<String>> failing = () -> CacheableFuture.failedFuture(new IllegalStateException("down"));
+    breaker.execute(failing);
+    breaker.execute(failing);
+    Thread.sleep(30);
+    breaker.execute(failing);
+    assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+  }
+
+  @Test
+  public void testHalfOpenCallsLimitedByWindow(final TestContext context) throws InterruptedException {
+    // the default of 5 trial calls does not fit into the window
+    CircuitBreaker breaker = new CircuitBreaker().setWindow(2, 2).setOpenDurationMs(20);
+    breaker.execute(() -> CacheableFuture.failedFuture(new IllegalStateException("down")));
+    breaker.execute(() -> CacheableFuture.failedFuture(new IllegalStateException("down")));
+    assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+    Thread.sleep(30);
+    breaker.execute(() -> CacheableFuture.succeededFuture(CacheableResult.INFINITE, "up"));
+    breaker.execute(() -> CacheableFuture.succeededFuture(CacheableResult.INFINITE, "up"));
+    assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+  }
+
+  @Test
+  public void testSlowCalls(final TestContext context) {
+    CircuitBreaker breaker = new CircuitBreaker().setWindow(4, 4).setSlowCallThreshold(0, 0.5);
+    for (int i = 0; i < 4; i++) {
+      breaker.execute(() -> CacheableFuture.succeededFuture(CacheableResult.INFINITE, "slow"));
+    }
+    assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+  }
+
+  @Test
+  public void testStaleIfError(final TestContext context) {
+    CircuitBreaker breaker = new CircuitBreaker().setWindow(2, 2).setOpenDurationMs(60000);
+    AtomicBoolean down = new AtomicBoolean();
+    AtomicInteger calls = new AtomicInteger();
+    Supplier<CacheableFuture<String>> supplier = breaker.protect(() -> {
+      calls.incrementAndGet();
+      if (down.get()) {
+        return CacheableFuture.failedFuture(new IllegalStateException("down"));
+      }
+      return CacheableFuture.succeededFuture(System.currentTimeMillis() - 1, "value");
+    });
+
+    RefreshableFuture<String, CacheableFuture<String>> refreshable = new RefreshableFuture<>(60000, supplier);
+    assertThat(refreshable.get().result(), is("value"));
+
+    down.set(true);
+    for (int i = 0; i < 5; i++) {
+      CacheableFuture<String> f = refreshable.get();
+      assertThat(f.result(), is("value"));
+    }
+    // two failed refreshes opened the circuit, afterwards the stale value was served without calling the backend
+    assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+    assertThat(calls.get(), is(4));
+    assertThat(supplier.get().expires(), is(CacheableResult.EXPIRED));
+  }
+
+}
@@ -138,4 +138,28 @@ public class TCompositeUtil extends BtVertxTestBase {
     }).setHandler(context.asyncAssertSuccess());
   }
 
+  /**
+   * Ensure that the windowed execution returns all futures in the order of the iterator
+   */
+  @Test
+  public void testWindowedCompleteResult(final TestContext context) {
+    List<String> testList = new ArrayList<>();
+    for (int i = 1; i <= 10; i++)
+      testList.add("Test" + i);
+
+    CompositeUtil.executeWindowed(testList.iterator(), 3, value -> {
+      if ("Test5".equals(value))
+        return Future.<String> failedFuture("Test fail");
+      else
+        return Future.succeededFuture(value);
+    }).setHandler(context.asyncAssertSuccess(result -> {
+      assertThat(result.size(), is(10));
+      for (int i = 0; i < 10; i++) {
+        assertThat(result.get(i).failed(), is(i == 4));
+        if (i != 4)
+          assertThat(result.get(i).result(), is("Test" + (i + 1)));
+      }
+    }));
+  }
+
 }
@@ -0,0 +1,163 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import de.braintags.vertx.BtVertxTestBase;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.unit.TestContext;
+
+/**
+ * Unit test for {@link FutureTracer}
+ *
+ */
+public class TFutureTracer extends BtVertxTestBase {
+
+  @Test
+  public void testSlowChain(final TestContext context) {
+    AtomicLong clock = new AtomicLong();
+    FutureTracer tracer = new FutureTracer(1, 20, 10, clock::get);
+    StackTraceElement site = new StackTraceElement("my.Service", "load", "Service.java", 42);
+    FutureTrace root = new FutureTrace("CacheableFutureImpl", null, null, 1, 0);
+    FutureTrace mapped = new FutureTrace("MappedCacheableFuture", site, root, 1, 0);
+    FutureTrace fastBranch = new FutureTrace("CacheableFutureImpl", null, root, 1, 0);
+
+    tracer.completed(fastBranch);
+    clock.set(TimeUnit.MILLISECONDS.toNanos(5));
+    tracer.completed(root);
+    // the root has children, the chain is reported by its last stage
+    assertThat(tracer.getSlowChains().isEmpty(), is(true));
+    clock.set(TimeUnit.MILLISECONDS.toNanos(35));
+    tracer.completed(mapped);
+    assertThat(tracer.getSlowChains(), contains(mapped));
+
+    String[] lines = tracer.toCollapsedStacks().split("\n");
+    assertThat(lines.length, is(2));
+    assertThat(lines[0], is("CacheableFutureImpl 5000"));
+    assertThat(lines[1], is("CacheableFutureImpl;MappedCacheableFuture(my.Service.load:42) 30000"));
+
+    JsonArray events = tracer.toChromeTrace().getJsonArray("traceEvents");
+    assertThat(events.size(), is(2));
+    assertThat(events.getJsonObject(1).getString("name"), is("MappedCacheableFuture"));
+    assertThat(events.getJsonObject(1).getLong("ts"), is(5000L));
+    assertThat(events.getJsonObject(1).getLong("dur"), is(30000L));
+    assertThat(events.getJsonObject(1).getJsonObject("args").getString("callSite"),
+        is("my.Service.load(Service.java:42)"));
+  }
+
+  @Test
+  public void testTracedChain(final TestContext context) {
+    AtomicLong clock = new AtomicLong();
+    FutureTracer tracer = new FutureTracer(1, 20, 10, clock::get);
+    FutureTracer installed = FutureTracer.install(tracer);
+    FutureTrace outer = new FutureTrace("CacheableFutureImpl", null, null, 99, 0);
+    List<FutureTrace> running = new ArrayList<>();
+    List<FutureTrace> created = new ArrayList<>();
+    try {
+      CacheableFuture<Integer> root = CacheableFuture.future();
+      CacheableFuture<Integer> mapped = root.map(v -> v + 1);
+      CacheableFuture<Integer> composed = mapped.compose(v -> {
+        running.add(FutureTracer.current());
+        CacheableFuture<Integer> inner = CacheableFuture.future();
+        created.add(trace(inner));
+        inner.complete(CacheableResult.INFINITE, v * 2);
+        return inner;
+      });
+      CacheableFuture<Integer> chained = composed.chain(v -> {
+        running.add(FutureTracer.current());
+        return CacheableFuture.succeededFuture(CacheableResult.INFINITE, 3);
+      });
+      CacheableFuture<Integer> then = chained.then(res -> {
+        running.add(FutureTracer.current());
+        return CacheableFuture.succeededFuture(CacheableResult.INFINITE, res.result() + 1);
+      });
+
+      // each stage is the child of the stage it is derived from
+      assertThat(trace(root).getParent(), nullValue());
+      assertThat(trace(mapped).getParent() == trace(root), is(true));
+      assertThat(trace(composed).getParent() == trace(mapped), is(true));
+      assertThat(trace(chained).getParent() == trace(composed), is(true));
+      assertThat(trace(then).getParent() == trace(chained), is(true));
+      assertThat(trace(then).getChainId(), is(trace(root).getChainId()));
+
+      FutureTrace previous = FutureTracer.enter(outer);
+      try {
+        clock.set(TimeUnit.MILLISECONDS.toNanos(30));
+        root.complete(CacheableResult.INFINITE, 1);
+        // the stages restore the trace entered before
+        assertThat(FutureTracer.current() == outer, is(true));
+      } finally {
+        FutureTracer.exit(previous);
+      }
+      assertThat(FutureTracer.current(), nullValue());
+      assertThat(then.result(), is(4));
+
+      // the mappers run with their own stage as current trace
+      assertThat(running, contains(trace(composed), trace(chained), trace(then)));
+      // a future created by a mapper is a child of the running stage
+      assertThat(created.get(0).getParent() == trace(composed), is(true));
+      assertThat(tracer.getSlowChains(), contains(created.get(0), trace(then)));
+      List<String> stages = new ArrayList<>();
+      for (FutureTrace trace = trace(then); trace != null; trace = trace.getParent()) {
+        stages.add(trace.getStage());
+      }
+      assertThat(stages, contains("CacheableFutureThen", "CacheableFutureChain", "ComposedCacheableFuture",
+          "MappedCacheableFuture", "CacheableFutureImpl"));
+      assertThat(trace(then).getCallSite().getClassName(), is(TFutureTracer.class.getName()));
+    } finally {
+      FutureTracer.install(installed);
+    }
+  }
+
+  @Test
+  public void testFastChainAndSampling(final TestContext context) {
+    FutureTracer tracer = new FutureTracer(0, 1000, 10);
+    assertThat(tracer.start(CacheableFuture.future(), null), nullValue());
+
+    FutureTrace root = new FutureTrace("CacheableFutureImpl", null, null, 1, 0);
+    tracer.completed(root);
+    assertThat(tracer.getSlowChains().isEmpty(), is(true));
+  }
+
+  @Test
+  public void testCurrentStageIsParent(final TestContext context) {
+    FutureTracer tracer = new FutureTracer(0, 1000, 10);
+    FutureTrace stage = new FutureTrace("ComposedCacheableFuture", null, null, 7, 0);
+    FutureTrace previous = FutureTracer.enter(stage);
+    try {
+      // not sampled as root, but traced as child of the running stage
+      FutureTrace inner = tracer.start(CacheableFuture.future(), null);
+      assertThat(inner.getParent() == stage, is(true));
+      assertThat(inner.getChainId(), is(7L));
+      assertThat(inner.getCallSite().getClassName(), is(TFutureTracer.class.getName()));
+    } finally {
+      FutureTracer.exit(previous);
+    }
+  }
+
+  private static FutureTrace trace(final CacheableFuture<?> future) {
+    return ((CacheableFutureImpl<?>) future).trace;
+  }
+
+}
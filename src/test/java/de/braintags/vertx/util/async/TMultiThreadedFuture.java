@@ -0,0 +1,185 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import de.braintags.vertx.BtVertxTestBase;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+
+/**
+ * Unit test for {@link MultiThreadedFutureImpl} and the handler storage of {@link SharedFutureImpl}
+ *
+ */
+public class TMultiThreadedFuture extends BtVertxTestBase {
+
+  @Test
+  public void testHandlerOrder(final TestContext context) {
+    List<Integer> called = new ArrayList<>();
+    SharedFuture<String> future = SharedFuture.future();
+    for (int i = 0; i < 5; i++) {
+      int index = i;
+      future.setHandler(res -> called.add(index));
+    }
+    future.complete("a");
+    future.setHandler(res -> called.add(5));
+    assertThat(called, contains(0, 1, 2, 3, 4, 5));
+    assertThat(future.result(), is("a"));
+  }
+
+  @Test
+  public void testConcurrentCompletion(final TestContext context) throws InterruptedException {
+    int threads = 4;
+    int handlersPerThread = 1000;
+    for (int run = 0; run < 20; run++) {
+      MultiThreadedFuture<Integer> future = MultiThreadedFuture.future();
+      AtomicInteger called = new AtomicInteger();
+      AtomicInteger completed = new AtomicInteger();
+      CountDownLatch start = new CountDownLatch(1);
+      CountDownLatch done = new CountDownLatch(2 * threads + 1);
+      for (int t = 0; t < threads; t++) {
+        new Thread(() -> {
+          await(start);
+          for (int i = 0; i < handlersPerThread; i++) {
+            future.setHandler(res -> called.incrementAndGet());
+          }
+          done.countDown();
+        }).start();
+      }
+      for (int t = 0; t < threads; t++) {
+        int value = t;
+        new Thread(() -> {
+          await(start);
+          if (future.tryComplete(value)) {
+            completed.incrementAndGet();
+          }
+          done.countDown();
+        }).start();
+      }
+      new Thread(() -> {
+        await(start);
+        future.tryFail(new IllegalStateException("concurrent failure"));
+        done.countDown();
+      }).start();
+      start.countDown();
+      done.await();
+
+      assertThat(future.isComplete(), is(true));
+      assertThat(completed.get() + (future.failed() ? 1 : 0), is(1));
+      assertThat(called.get(), is(threads * handlersPerThread));
+    }
+  }
+
+  @Test
+  public void testBatchedDispatch(final TestContext context) throws InterruptedException {
+    AtomicInteger submissions = new AtomicInteger();
+    Context[] contexts = new Context[3];
+    for (int i = 0; i < contexts.length; i++) {
+      contexts[i] = counting(vertx.getOrCreateContext(), submissions);
+    }
+    MultiThreadedFutureImpl<String> future = new MultiThreadedFutureImpl<>();
+    int handlers = 30;
+    List<List<Integer>> called = new ArrayList<>();
+    for (int i = 0; i < contexts.length; i++) {
+      called.add(new ArrayList<>());
+    }
+    CountDownLatch done = new CountDownLatch(handlers);
+    for (int i = 0; i < handlers; i++) {
+      int index = i;
+      future.addHandler(contexts[i % contexts.length], res -> {
+        called.get(index % contexts.length).add(index);
+        done.countDown();
+      });
+    }
+    future.complete("a");
+    done.await();
+    // one task per context, the handlers of each context in the order they were added
+    assertThat(submissions.get(), is(contexts.length));
+    assertThat(called.get(1), contains(1, 4, 7, 10, 13, 16, 19, 22, 25, 28));
+  }
+
+  @Test
+  public void testThrowingHandlerInBatch(final TestContext context) throws InterruptedException {
+    Context handlerContext = vertx.getOrCreateContext();
+    List<Throwable> reported = new ArrayList<>();
+    CountDownLatch done = new CountDownLatch(3);
+    handlerContext.exceptionHandler(e -> {
+      reported.add(e);
+      done.countDown();
+    });
+    List<Integer> called = new ArrayList<>();
+    MultiThreadedFutureImpl<String> future = new MultiThreadedFutureImpl<>();
+    future.addHandler(handlerContext, res -> {
+      called.add(0);
+      done.countDown();
+    });
+    future.addHandler(handlerContext, res -> {
+      throw new IllegalStateException("handler failed");
+    });
+    future.addHandler(handlerContext, res -> {
+      called.add(2);
+      done.countDown();
+    });
+    future.complete("a");
+    done.await();
+    // the handler after the failed one is still called, the failure goes to the exception handler of the context
+    assertThat(called, contains(0, 2));
+    assertThat(reported.get(0).getMessage(), is("handler failed"));
+  }
+
+  @Test
+  public void testNotifyOnOwner(final TestContext context) {
+    Context owner = vertx.getOrCreateContext();
+    MultiThreadedFuture<String> future = MultiThreadedFuture.future(owner);
+    Async async = context.async();
+    future.setHandler(res -> {
+      assertThat(Vertx.currentContext() == owner, is(true));
+      assertThat(res.result(), is("a"));
+      async.complete();
+    });
+    // completed outside of the owner context, e.g. by a worker
+    future.complete("a");
+  }
+
+  private static Context counting(final Context context, final AtomicInteger submissions) {
+    return (Context) Proxy.newProxyInstance(Context.class.getClassLoader(), new Class<?>[] { Context.class },
+        (proxy, method, args) -> {
+          if (method.getName().equals("runOnContext")) {
+            submissions.incrementAndGet();
+          }
+          return method.invoke(context, args);
+        });
+  }
+
+  private static void await(final CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
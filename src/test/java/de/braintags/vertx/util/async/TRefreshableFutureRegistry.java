@@ -0,0 +1,88 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import de.braintags.vertx.BtVertxTestBase;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+
+/**
+ * Unit test for {@link RefreshableFutureRegistry}
+ *
+ */
+public class TRefreshableFutureRegistry extends BtVertxTestBase {
+
+  @Test
+  public void testRefreshAhead(final TestContext context) {
+    AtomicInteger called = new AtomicInteger();
+    RefreshableFutureRegistry<String, Integer> registry = new RefreshableFutureRegistry<>(vertx, 50, 0, 1, 10000,
+        key -> CacheableFuture.succeededFuture(System.currentTimeMillis() + 100, called.incrementAndGet()));
+
+    assertThat(registry.get("a").result(), is(1));
+    Async async = context.async();
+    vertx.setTimer(80, id -> {
+      // refreshed in the background before the expiration, no new future is created on the request path
+      CacheableFuture<Integer> future = registry.get("a");
+      assertThat(future.isComplete(), is(true));
+      assertThat(future.result(), is(2));
+      registry.clear();
+      async.complete();
+    });
+  }
+
+  @Test
+  public void testIdleRemoved(final TestContext context) {
+    AtomicInteger called = new AtomicInteger();
+    RefreshableFutureRegistry<String, Integer> registry = new RefreshableFutureRegistry<>(vertx, 10, 0, 1, 30,
+        key -> CacheableFuture.succeededFuture(CacheableResult.INFINITE, called.incrementAndGet()));
+
+    assertThat(registry.get("a").result(), is(1));
+    assertThat(registry.size(), is(1));
+    Async async = context.async();
+    vertx.setTimer(80, id -> {
+      assertThat(registry.size(), is(0));
+      assertThat(registry.get("a").result(), is(2));
+      registry.clear();
+      async.complete();
+    });
+  }
+
+  @Test
+  public void testFailedRefreshKeepsValue(final TestContext context) {
+    AtomicInteger called = new AtomicInteger();
+    RefreshableFutureRegistry<String, Integer> registry = new RefreshableFutureRegistry<>(vertx, 20, 0, 1, 10000,
+        key -> {
+          if (called.incrementAndGet() > 1) {
+            return CacheableFuture.failedFuture(new IllegalStateException("refresh failed"));
+          }
+          return CacheableFuture.succeededFuture(System.currentTimeMillis() + 40, called.get());
+        });
+
+    assertThat(registry.get("a").result(), is(1));
+    Async async = context.async();
+    vertx.setTimer(30, id -> {
+      assertThat(called.get() > 1, is(true));
+      assertThat(registry.get("a").result(), is(1));
+      registry.clear();
+      async.complete();
+    });
+  }
+
+}
@@ -0,0 +1,152 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import de.braintags.vertx.BtVertxTestBase;
+import io.vertx.core.Future;
+import io.vertx.ext.unit.TestContext;
+
+/**
+ * Unit test for {@link RetryingFuture}
+ *
+ */
+public class TRetryingFuture extends BtVertxTestBase {
+
+  @Test
+  public void testRetryDecider(final TestContext context) {
+    AtomicInteger calls = new AtomicInteger();
+    new RetryingFuture<Future<String>>(vertx, () -> {
+      if (calls.incrementAndGet() < 3) {
+        return Future.failedFuture("failure " + calls.get());
+      }
+      return Future.succeededFuture("done");
+    }, retry -> retry < 5, retry -> 1).setHandler(context.asyncAssertSuccess(f -> {
+      assertThat(f.result(), is("done"));
+      assertThat(calls.get(), is(3));
+    }));
+  }
+
+  @Test
+  public void testMaxRetries(final TestContext context) {
+    AtomicInteger calls = new AtomicInteger();
+    RetryPolicy policy = new RetryPolicy().setMaxRetries(2).setBackoff(1, 5);
+    new RetryingFuture<Future<String>>(vertx, () -> {
+      calls.incrementAndGet();
+      return Future.failedFuture("failure");
+    }, policy).setHandler(context.asyncAssertFailure(e -> assertThat(calls.get(), is(3))));
+  }
+
+  @Test
+  public void testRetryOn(final TestContext context) {
+    AtomicInteger calls = new AtomicInteger();
+    RetryPolicy policy = new RetryPolicy().setBackoff(1, 5).setRetryOn(e -> !(e instanceof IllegalStateException));
+    new RetryingFuture<Future<String>>(vertx, () -> {
+      calls.incrementAndGet();
+      return Future.failedFuture(new IllegalStateException("not retryable"));
+    }, policy).setHandler(context.asyncAssertFailure(e -> assertThat(calls.get(), is(1))));
+  }
+
+  @Test
+  public void testBudgetExhausted(final TestContext context) {
+    AtomicInteger calls = new AtomicInteger();
+    RetryPolicy policy = new RetryPolicy().setBackoff(1, 5).setBudget(new RetryBudget(0, 0));
+    new RetryingFuture<Future<String>>(vertx, () -> {
+      calls.incrementAndGet();
+      return Future.failedFuture("failure");
+    }, policy).setHandler(context.asyncAssertFailure(e -> assertThat(calls.get(), is(1))));
+  }
+
+  @Test
+  public void testBudgetDeposit(final TestContext context) {
+    RetryBudget budget = new RetryBudget(0.5, 0);
+    assertThat(budget.tryWithdraw(), is(false));
+    budget.deposit();
+    budget.deposit();
+    assertThat(budget.tryWithdraw(), is(true));
+    assertThat(budget.tryWithdraw(), is(false));
+  }
+
+  @Test
+  public void testAttemptTimeout(final TestContext context) {
+    List<Future<String>> attempts = new ArrayList<>();
+    RetryPolicy policy = new RetryPolicy().setBackoff(1, 5).setAttemptTimeoutMs(50);
+    RetryingFuture<Future<String>> result = new RetryingFuture<>(vertx, () -> {
+      Future<String> f = Future.future();
+      if (attempts.size() > 0) {
+        f.complete("second");
+      }
+      attempts.add(f);
+      return f;
+    }, policy);
+    result.setHandler(context.asyncAssertSuccess(f -> {
+      assertThat(f.result(), is("second"));
+      assertThat(attempts.get(0).cause(), instanceOf(AsyncTimeoutException.class));
+    }));
+  }
+
+  @Test
+  public void testHedging(final TestContext context) {
+    List<Future<String>> attempts = new ArrayList<>();
+    RetryPolicy policy = new RetryPolicy().setHedgeDelayMs(20);
+    RetryingFuture<Future<String>> result = new RetryingFuture<>(vertx, () -> {
+      Future<String> f = Future.future();
+      if (attempts.size() > 0) {
+        f.complete("hedged");
+      }
+      attempts.add(f);
+      return f;
+    }, policy);
+    result.setHandler(context.asyncAssertSuccess(f -> {
+      assertThat(f.result(), is("hedged"));
+      assertThat(attempts.size(), is(2));
+      // the slow attempt is cancelled
+      assertThat(attempts.get(0).cause(), instanceOf(CancellationException.class));
+    }));
+  }
+
+  @Test
+  public void testHedgeDelayFromLatencies(final TestContext context) {
+    RetryPolicy policy = new RetryPolicy().setHedging(true);
+    assertThat(policy.hedgeDelayMs(), is(-1L));
+    for (int i = 1; i <= 100; i++) {
+      policy.recordLatency(i);
+    }
+    assertThat(policy.hedgeDelayMs(), is(95L));
+  }
+
+  @Test
+  public void testDecorrelatedJitter(final TestContext context) {
+    RetryPolicy policy = new RetryPolicy().setBackoff(10, 1000);
+    long previous = 0;
+    for (int i = 0; i < 100; i++) {
+      long delay = policy.nextDelayMs(i, previous);
+      assertThat(delay, greaterThanOrEqualTo(10L));
+      assertThat(delay, lessThanOrEqualTo(Math.min(1000L, Math.max(10L, previous * 3))));
+      previous = delay;
+    }
+  }
+
+}
@@ -0,0 +1,194 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import de.braintags.vertx.BtVertxTestBase;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+
+/**
+ * Unit test for {@link SlidingWindowExecutor}
+ *
+ */
+public class TSlidingWindowExecutor extends BtVertxTestBase {
+
+  /**
+   * A slow operation must not block the start of the following operations
+   */
+  @Test
+  public void testSlidingWindow(final TestContext context) {
+    List<Integer> values = IntStream.range(0, 10).boxed().collect(Collectors.toList());
+    List<Future<Integer>> pending = new ArrayList<>();
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+
+    SlidingWindowExecutor<Integer, Integer> executor = new SlidingWindowExecutor<>(3, value -> {
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      if (value == 0) {
+        // never completes until the end
+        Future<Integer> f = Future.future();
+        pending.add(f);
+        return f.map(v -> {
+          inFlight.decrementAndGet();
+          return v;
+        });
+      }
+      inFlight.decrementAndGet();
+      return Future.succeededFuture(value * 2);
+    });
+
+    SharedFuture<List<Future<Integer>>> result = executor.execute(values.iterator());
+    assertThat(result.isComplete(), is(false));
+    assertThat(maxInFlight.get(), lessThanOrEqualTo(3));
+    pending.get(0).complete(0);
+    assertThat(result.succeeded(), is(true));
+    List<Future<Integer>> futures = result.result();
+    assertThat(futures.size(), is(10));
+    for (int i = 0; i < 10; i++) {
+      assertThat(futures.get(i).result(), is(i * 2));
+    }
+  }
+
+  @Test
+  public void testStreamingResults(final TestContext context) {
+    AtomicInteger sum = new AtomicInteger();
+    AtomicInteger failed = new AtomicInteger();
+    SlidingWindowExecutor<Integer, Integer> executor = new SlidingWindowExecutor<>(2, value -> {
+      if (value == 5) {
+        throw new IllegalArgumentException("test failure");
+      }
+      return Future.succeededFuture(value);
+    });
+
+    SharedFuture<Long> result = executor.stream(IntStream.range(0, 100000).iterator(), (value, res) -> {
+      if (res.succeeded()) {
+        sum.addAndGet(res.result() % 10);
+      } else {
+        failed.incrementAndGet();
+      }
+    });
+    assertThat(result.result(), is(100000L));
+    assertThat(failed.get(), is(1));
+    assertThat(sum.get(), is(45 * 10000 - 5));
+  }
+
+  @Test
+  public void testRateLimit(final TestContext context) {
+    long start = System.currentTimeMillis();
+    SlidingWindowExecutor<Integer, Integer> executor = new SlidingWindowExecutor<Integer, Integer>(10,
+        Future::succeededFuture).setRateLimit(vertx, 20);
+
+    Async async = context.async();
+    executor.stream(IntStream.range(0, 30).iterator(), (value, res) -> {
+    }).setHandler(res -> {
+      // 20 tokens are available immediately, the remaining 10 need 500ms
+      assertThat(res.result(), is(30L));
+      assertThat(System.currentTimeMillis() - start, greaterThanOrEqualTo(450L));
+      async.complete();
+    });
+  }
+
+  @Test
+  public void testReadStreamBackpressure(final TestContext context) {
+    TestStream stream = new TestStream();
+    List<Future<Integer>> pending = new ArrayList<>();
+    SlidingWindowExecutor<Integer, Integer> executor = new SlidingWindowExecutor<>(2, value -> {
+      Future<Integer> f = Future.future();
+      pending.add(f);
+      return f;
+    });
+    SharedFuture<Long> result = executor.stream(stream, (value, res) -> {
+    });
+
+    stream.write(1);
+    stream.write(2);
+    assertThat(stream.paused, is(false));
+    stream.write(3);
+    stream.write(4);
+    // window and buffer are full
+    assertThat(stream.paused, is(true));
+    assertThat(pending.size(), is(2));
+
+    pending.get(0).complete(1);
+    pending.get(1).complete(2);
+    assertThat(pending.size(), is(4));
+    assertThat(stream.paused, is(false));
+
+    stream.end();
+    assertThat(result.isComplete(), is(false));
+    pending.get(2).complete(3);
+    pending.get(3).complete(4);
+    assertThat(result.result(), is(4L));
+  }
+
+  private static class TestStream implements ReadStream<Integer> {
+
+    private Handler<Integer> handler;
+    private Handler<Void> endHandler;
+    private boolean paused;
+
+    void write(final Integer value) {
+      handler.handle(value);
+    }
+
+    void end() {
+      endHandler.handle(null);
+    }
+
+    @Override
+    public ReadStream<Integer> exceptionHandler(final Handler<Throwable> handler) {
+      return this;
+    }
+
+    @Override
+    public ReadStream<Integer> handler(final Handler<Integer> handler) {
+      this.handler = handler;
+      return this;
+    }
+
+    @Override
+    public ReadStream<Integer> pause() {
+      paused = true;
+      return this;
+    }
+
+    @Override
+    public ReadStream<Integer> resume() {
+      paused = false;
+      return this;
+    }
+
+    @Override
+    public ReadStream<Integer> endHandler(final Handler<Void> endHandler) {
+      this.endHandler = endHandler;
+      return this;
+    }
+  }
+
+}
@@ -0,0 +1,119 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Collections;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import de.braintags.vertx.BtVertxTestBase;
+import io.vertx.core.Future;
+import io.vertx.ext.unit.TestContext;
+
+/**
+ * Unit test for the succeeded futures and the fused operators of {@link SharedFuture}
+ *
+ */
+public class TSucceededFuture extends BtVertxTestBase {
+
+  @Test
+  public void testSharedInstances(final TestContext context) {
+    assertThat(SharedFuture.succeededFuture(), sameInstance(SharedFuture.succeededFuture(null)));
+    assertThat(SharedFuture.succeededFuture(true), sameInstance(SharedFuture.succeededFuture(Boolean.TRUE)));
+    assertThat(SharedFuture.succeededFuture(Collections.emptyList()),
+        sameInstance(SharedFuture.succeededFuture(Collections.emptyList())));
+    assertThat(SharedFuture.succeededFuture("a"), not(sameInstance(SharedFuture.succeededFuture("a"))));
+  }
+
+  @Test
+  public void testMapSameResult(final TestContext context) {
+    SharedFuture<String> shared = SharedFuture.succeededFuture("a");
+    assertThat(shared.map(Function.identity()), sameInstance(shared));
+
+    // the expiration of a cacheable future is mutable, so the mapped future is a new instance
+    CacheableFuture<String> future = CacheableFuture.succeededFuture(100, "a");
+    CacheableFuture<String> mapped = future.map(Function.identity());
+    assertThat(mapped, not(sameInstance(future)));
+    mapped.reduceExpire(10);
+    assertThat(future.expires(), is(100L));
+    assertThat(future.mapEmpty().result() == null, is(true));
+    assertThat(future.map("b").result(), is("b"));
+    assertThat(future.map("b").expires(), is(100L));
+
+    CacheableResult<String> result = CacheableResult.succeededResult("a", 100);
+    assertThat(result.map(Function.identity()), sameInstance(result));
+    assertThat(result.map(s -> s + "b").result(), is("ab"));
+    assertThat(result.map(s -> s + "b").expires(), is(100L));
+  }
+
+  @Test
+  public void testFusedOperators(final TestContext context) {
+    CacheableFuture<Integer> future = CacheableFuture.succeededFuture(100, 1);
+    CacheableFuture<Integer> other = CacheableFuture.succeededFuture(50, 2);
+
+    CacheableFuture<Integer> composed = future.mapThenCompose(i -> i + 1, i -> other.map(o -> o * i));
+    assertThat(composed.result(), is(4));
+    assertThat(composed.expires(), is(50L));
+
+    CacheableFuture<Integer> combined = future.map2(other, (a, b) -> a + b);
+    assertThat(combined.result(), is(3));
+    assertThat(combined.expires(), is(50L));
+
+    Function<Integer, String> toString = String::valueOf;
+    Function<String, String> append = s -> s + "!";
+    CacheableFuture<String> piped = future.pipe(toString, append, append);
+    assertThat(piped.result(), is("1!!"));
+    assertThat(piped.expires(), is(100L));
+  }
+
+  @Test
+  public void testFusedOperatorsPending(final TestContext context) {
+    SharedFuture<Integer> future = SharedFuture.future();
+    SharedFuture<Integer> other = SharedFuture.future();
+    SharedFuture<Integer> combined = future.map2(other, (a, b) -> a * b);
+    SharedFuture<Integer> piped = future.pipe((Function<Integer, Integer>) i -> i + 1);
+    future.complete(3);
+    assertThat(piped.result(), is(4));
+    assertThat(combined.isComplete(), is(false));
+    other.complete(5);
+    assertThat(combined.result(), is(15));
+  }
+
+  @Test
+  public void testFusedOperatorsPendingCacheable(final TestContext context) {
+    CacheableFuture<Integer> future = CacheableFuture.future();
+    CacheableFuture<Integer> other = CacheableFuture.future();
+    CacheableFuture<Integer> combined = future.map2(other, (a, b) -> a * b);
+    CacheableFuture<Integer> composed = future.mapThenCompose(i -> i + 1, i -> other.map(o -> o * i));
+    other.complete(50, 5);
+    assertThat(combined.isComplete(), is(false));
+    future.complete(100, 3);
+    assertThat(combined.result(), is(15));
+    assertThat(combined.expires(), is(50L));
+    assertThat(composed.result(), is(20));
+    assertThat(composed.expires(), is(50L));
+
+    CacheableFuture<Integer> failing = CacheableFuture.future();
+    CacheableFuture<Integer> failed = failing.map2(CacheableFuture.succeededFuture(100, 1), (a, b) -> a + b);
+    failing.fail("failure");
+    assertThat(failed.failed(), is(true));
+    assertThat(future.map2(Future.succeededFuture(2), (a, b) -> a + b).expires(), is(CacheableResult.EXPIRED));
+  }
+
+}
@@ -0,0 +1,150 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.After;
+import org.junit.Test;
+
+import de.braintags.vertx.BtVertxTestBase;
+import de.braintags.vertx.util.async.metrics.AsyncMetrics;
+import de.braintags.vertx.util.async.metrics.LocalMetricsRegistry;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+
+/**
+ * Unit test for {@link TimingWheelTimeoutMonitor}
+ *
+ */
+public class TTimingWheelTimeoutMonitor extends BtVertxTestBase {
+
+  @After
+  public void resetRegistry() {
+    AsyncMetrics.setRegistry(null);
+  }
+
+  @Test
+  public void testTimeout(final TestContext context) {
+    TimingWheelTimeoutMonitor monitor = new TimingWheelTimeoutMonitor("test-monitor", 50, 10,
+        f -> new AsyncTimeoutException("timeout"));
+    Context vertxContext = vertx.getOrCreateContext();
+    SharedFuture<String> future = SharedFuture.future();
+    SharedFuture<String> completed = SharedFuture.future();
+    long start = System.currentTimeMillis();
+    monitor.addFuture(vertxContext, future);
+    monitor.addFuture(vertxContext, completed);
+    assertThat(monitor.getInFlight(), is(2L));
+
+    completed.complete("done");
+    assertThat(monitor.getInFlight(), is(1L));
+    assertThat(monitor.getCompletedCount(), is(1L));
+
+    Async async = context.async();
+    future.setHandler(res -> {
+      context.assertTrue(System.currentTimeMillis() - start >= 50);
+      assertThat(res.cause(), instanceOf(AsyncTimeoutException.class));
+      assertThat(Vertx.currentContext() == vertxContext, is(true));
+      assertThat(monitor.getTimeoutCount(), is(1L));
+      assertThat(monitor.getInFlight(), is(0L));
+      assertThat(monitor.getTimeoutRate(), is(0.5));
+      monitor.close();
+      async.complete();
+    });
+  }
+
+  @Test
+  public void testIndividualTimeouts(final TestContext context) {
+    TimingWheelTimeoutMonitor monitor = new TimingWheelTimeoutMonitor("test-monitor", 10000, 5,
+        f -> new AsyncTimeoutException("timeout"));
+    Context vertxContext = vertx.getOrCreateContext();
+    SharedFuture<String> longTimeout = SharedFuture.future();
+    SharedFuture<String> shortTimeout = SharedFuture.future();
+    // the long timeout is placed in a higher level of the wheel
+    monitor.addFuture(vertxContext, longTimeout, 700);
+    monitor.addFuture(vertxContext, shortTimeout, 20);
+
+    Async async = context.async();
+    shortTimeout.setHandler(res -> {
+      assertThat(res.failed(), is(true));
+      assertThat(longTimeout.isComplete(), is(false));
+    });
+    longTimeout.setHandler(res -> {
+      assertThat(res.failed(), is(true));
+      assertThat(shortTimeout.failed(), is(true));
+      monitor.close();
+      async.complete();
+    });
+  }
+
+  @Test
+  public void testPlainFuture(final TestContext context) {
+    TimingWheelTimeoutMonitor monitor = new TimingWheelTimeoutMonitor("test-monitor", 20, 5,
+        f -> new AsyncTimeoutException("timeout"));
+    Future<String> completed = Future.future();
+    Future<String> pending = Future.future();
+    monitor.addFuture(null, completed);
+    monitor.addFuture(null, pending);
+    completed.complete("done");
+    // not a shared future, so it is removed when its timeout is reached
+    assertThat(monitor.getInFlight(), is(2L));
+
+    Async async = context.async();
+    pending.setHandler(res -> {
+      assertThat(res.failed(), is(true));
+      assertThat(monitor.getCompletedCount(), is(1L));
+      assertThat(monitor.getTimeoutCount(), is(1L));
+      monitor.close();
+      async.complete();
+    });
+  }
+
+  @Test
+  public void testMetrics(final TestContext context) {
+    LocalMetricsRegistry registry = new LocalMetricsRegistry();
+    AsyncMetrics.setRegistry(registry);
+    TimingWheelTimeoutMonitor monitor = new TimingWheelTimeoutMonitor("metrics-monitor", 20, 5,
+        f -> new AsyncTimeoutException("timeout"));
+    SharedFuture<String> completed = SharedFuture.future();
+    SharedFuture<String> pending = SharedFuture.future();
+    monitor.addFuture(null, completed);
+    monitor.addFuture(null, pending);
+    assertThat(gauges(registry).getLong("timeout.monitor.wheel.metrics-monitor.inFlight"), is(2L));
+    completed.complete("done");
+
+    Async async = context.async();
+    pending.setHandler(res -> {
+      JsonObject gauges = gauges(registry);
+      assertThat(gauges.getLong("timeout.monitor.wheel.metrics-monitor.inFlight"), is(0L));
+      assertThat(gauges.getLong("timeout.monitor.wheel.metrics-monitor.timeoutRatePerMille"), is(500L));
+      monitor.close();
+      // the counter is incremented after the future failed
+      vertx.setTimer(50, id -> {
+        assertThat(registry.counter("timeout.monitor.wheel.timeouts").count(), is(1L));
+        assertThat(registry.counter("timeout.monitor.future.timeouts").count(), is(0L));
+        async.complete();
+      });
+    });
+  }
+
+  private static JsonObject gauges(final LocalMetricsRegistry registry) {
+    return registry.toJson().getJsonObject("gauges");
+  }
+
+}
@@ -0,0 +1,100 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.async.metrics;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import org.junit.After;
+import org.junit.Test;
+
+import de.braintags.vertx.BtVertxTestBase;
+import de.braintags.vertx.util.async.RetryingFuture;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+
+/**
+ * Unit test for {@link AsyncMetrics}, {@link LocalMetricsRegistry} and {@link Histogram}
+ *
+ */
+public class TAsyncMetrics extends BtVertxTestBase {
+
+  @After
+  public void resetRegistry() {
+    AsyncMetrics.setRegistry(null);
+  }
+
+  @Test
+  public void testHistogramPercentiles(final TestContext context) {
+    Histogram histogram = new Histogram();
+    for (long i = 1; i <= 100000; i++) {
+      histogram.record(i * 1000);
+    }
+    assertThat(histogram.getCount(), is(100000L));
+    assertThat(histogram.getMax(), is(100000000L));
+    assertWithin(histogram.getValueAtPercentile(50), 50000000L);
+    assertWithin(histogram.getValueAtPercentile(99), 99000000L);
+    assertThat(histogram.getValueAtPercentile(100), is(100000000L));
+  }
+
+  @Test
+  public void testHistogramBuckets(final TestContext context) {
+    for (long value : new long[] { 0, 1, 127, 128, 129, 1000, 123456789, (1L << 40) - 1 }) {
+      int index = Histogram.index(value);
+      assertThat(Histogram.highestValue(index), greaterThanOrEqualTo(value));
+      if (index > 0) {
+        assertThat(Histogram.highestValue(index - 1), lessThanOrEqualTo(value - 1));
+      }
+    }
+  }
+
+  @Test
+  public void testRebinding(final TestContext context) {
+    Counter counter = AsyncMetrics.counter("test.counter");
+    counter.increment();
+    assertThat(counter.count(), is(0L));
+
+    LocalMetricsRegistry registry = new LocalMetricsRegistry();
+    AsyncMetrics.setRegistry(registry);
+    counter.increment(2);
+    AsyncMetrics.gauge("test.gauge", () -> 42);
+    Timer timer = AsyncMetrics.timer("test.timer");
+    timer.record(2000000);
+
+    JsonObject json = registry.toJson();
+    assertThat(json.getJsonObject("counters").getLong("test.counter"), is(2L));
+    assertThat(json.getJsonObject("gauges").getLong("test.gauge"), is(42L));
+    assertThat(json.getJsonObject("timers").getJsonObject("test.timer").getLong("count"), is(1L));
+  }
+
+  @Test
+  public void testRetryingFutureHook(final TestContext context) {
+    LocalMetricsRegistry registry = new LocalMetricsRegistry();
+    AsyncMetrics.setRegistry(registry);
+    new RetryingFuture<Future<String>>(vertx, () -> Future.failedFuture("failure"), retry -> retry < 2, retry -> 1)
+        .setHandler(context.asyncAssertFailure(e -> {
+          assertThat(registry.counter("retrying.attempts").count(), is(3L));
+          assertThat(registry.counter("retrying.retries").count(), is(2L));
+          assertThat(registry.timer("retrying.attempt.duration").count(), is(3L));
+        }));
+  }
+
+  private static void assertWithin(final long actual, final long expected) {
+    assertThat(actual, allOf(greaterThanOrEqualTo(expected), lessThanOrEqualTo((long) (expected * 1.02))));
+  }
+
+}
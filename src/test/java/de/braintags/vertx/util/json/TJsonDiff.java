@@ -17,6 +17,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -239,6 +240,70 @@ public class TJsonDiff {
     assertEquals(pojos.getRight(), decodedPojo);
   }
 
+  /**
+   * Test method for {@link de.braintags.vertx.util.json.JsonDiff#applyDiffInPlace(JsonNode, JsonNode)}.
+   * 
+   * @throws JsonProcessingException
+   */
+  @Test
+  public void testApplyDiffInPlace() throws JsonProcessingException {
+    ObjectMapper objectMapper = Json.mapper;
+    Triple<ObjectNode, ObjectNode, SimplePojo> pojos = getDiffPojos(objectMapper);
+
+    JsonNode diff = JsonDiff.getDiff(pojos.getLeft(), pojos.getMiddle(), objectMapper.getNodeFactory());
+    JsonNode diffBackup = diff.deepCopy();
+
+    ObjectNode base = pojos.getLeft().deepCopy();
+    ArrayNode innerEntries = (ArrayNode) base.get("arrayMap").get(ArrayMapSerializer.ARRAY_MAP).get(0)
+        .get(ArrayMapSerializer.VALUE).get(ArrayMapSerializer.ARRAY_MAP);
+    JsonNode unchangedEntry = innerEntries.get(2);
+    JsonNode pojoJson = JsonDiff.applyDiffInPlace(base, diff);
+
+    assertTrue(pojoJson == base);
+    assertEquals(diffBackup, diff);
+    assertEquals(JsonDiff.applyDiff(pojos.getLeft().deepCopy(), diff), pojoJson);
+    assertEquals(pojos.getRight(), objectMapper.treeToValue(pojoJson, SimplePojo.class));
+    // the unchanged entry of the array map is neither copied nor converted
+    assertTrue(innerEntries.get(2) == unchangedEntry);
+  }
+
+  @Test
+  public void testApplyDiffInPlaceAddsNullField() throws IOException {
+    JsonNode base = Json.mapper.readTree("{\"a\":1}");
+    JsonNode diff = Json.mapper.readTree("{\"b\":null}");
+    JsonNode result = JsonDiff.applyDiffInPlace(base, diff);
+    assertTrue(result.has("b"));
+    assertEquals(JsonDiff.applyDiff(Json.mapper.readTree("{\"a\":1}"), diff), result);
+  }
+
+  /**
+   * The elements of an array diff are the index of an equal base element, the highest unused one first, or the diff to
+   * the base element at the same index, or the value of an added element
+   */
+  @Test
+  public void testArrayDiffIndices() throws IOException {
+    // duplicates
+    assertArrayDiff("[1,1,2]", "[1,1,1]", "[1,0,{\"diff\":1,\"index\":2}]");
+    // moved
+    assertArrayDiff("[\"a\",\"b\",\"c\"]", "[\"c\",\"a\",\"b\"]", "[2,0,1]");
+    // removed equal elements
+    assertArrayDiff("[1,2,1,3]", "[1,3]", "[2,3]");
+    assertArrayDiff("[1,2,1,3]", "[1,1]", "[2,0]");
+    // changed and added next to equal ones
+    assertArrayDiff("[{\"x\":1},{\"x\":1}]", "[{\"x\":1},{\"x\":2},{\"x\":1},{\"x\":1}]",
+        "[1,{\"diff\":{\"x\":2},\"index\":1},0,{\"value\":{\"x\":1}}]");
+  }
+
+  private static void assertArrayDiff(final String base, final String data, final String expectedDiff)
+      throws IOException {
+    JsonNode baseNode = Json.mapper.readTree(base);
+    JsonNode dataNode = Json.mapper.readTree(data);
+    JsonNode diff = JsonDiff.getDiff(baseNode, dataNode);
+    assertEquals(Json.mapper.readTree(expectedDiff), diff);
+    assertEquals(dataNode, JsonDiff.applyDiff(baseNode.deepCopy(), diff));
+    assertEquals(dataNode, JsonDiff.applyDiffInPlace(baseNode.deepCopy(), diff));
+  }
+
   private Triple<ObjectNode, ObjectNode, SimplePojo> getDiffPojos(final ObjectMapper objectMapper) {
     // ######### BUILD_POJO ##############
 
@@ -344,6 +409,73 @@ public class TJsonDiff {
     assertEquals(pojo, decodedPojo);
   }
 
+  /**
+   * Test method for {@link de.braintags.vertx.util.json.JsonDiff#compose(JsonNode, JsonNode)}.
+   * 
+   * @throws JsonProcessingException
+   */
+  @Test
+  public void testCompose() throws JsonProcessingException {
+    ObjectMapper objectMapper = Json.mapper;
+    Triple<ObjectNode, ObjectNode, SimplePojo> pojos = getDiffPojos(objectMapper);
+
+    JsonNode diff = JsonDiff.getDiff(pojos.getLeft(), pojos.getMiddle(), objectMapper.getNodeFactory());
+
+    SimplePojo pojo = pojos.getRight();
+    pojo.getRecursive().setString("Foo");
+    pojo.getArray().remove(1);
+    pojo.getArray().get(0).setString("Changed twice");
+    pojo.getArrayMap().get(ARRAY_MAP_KEY_1).remove(ARRAY_MAP_KEY_2);
+    pojo.getArrayMap().get(ARRAY_MAP_KEY_1).get(ARRAY_MAP_KEY_1).integer = -20;
+    ObjectNode secondModification = objectMapper.valueToTree(pojo);
+    JsonNode secondDiff = JsonDiff.getDiff(pojos.getMiddle(), secondModification, objectMapper.getNodeFactory());
+
+    JsonNode diffBackup = diff.deepCopy();
+    JsonNode secondDiffBackup = secondDiff.deepCopy();
+    JsonNode composed = JsonDiff.compose(diff, secondDiff);
+    assertEquals(diffBackup, diff);
+    assertEquals(secondDiffBackup, secondDiff);
+
+    ObjectNode pojoJson = (ObjectNode) JsonDiff.applyDiff(pojos.getLeft().deepCopy(), composed);
+    assertEquals(pojo, objectMapper.treeToValue(pojoJson, SimplePojo.class));
+  }
+
+  /**
+   * Test method for {@link de.braintags.vertx.util.json.JsonDiff#compose(JsonNode, JsonNode)} with a diff which
+   * overrides an object.
+   */
+  @Test
+  public void testComposeOverride() throws IOException {
+    JsonNode base = Json.mapper.readTree("{\"a\":{\"x\":1}}");
+    JsonNode first = Json.mapper.readTree("{\"a\":{\"@jsonDiffOverride\":true,\"y\":[{\"v\":1},{\"v\":2}]}}");
+    JsonNode data = Json.mapper.readTree("{\"a\":{\"y\":[{\"v\":2},{\"v\":1},{\"v\":3}],\"z\":3}}");
+    JsonNode second = JsonDiff.getDiff(JsonDiff.applyDiff(base.deepCopy(), first), data);
+
+    JsonNode composed = JsonDiff.compose(first, second);
+    assertEquals(data, JsonDiff.applyDiff(base.deepCopy(), composed));
+  }
+
+  /**
+   * Test method for {@link de.braintags.vertx.util.json.JsonDiff#merge(JsonNode, JsonNode, JsonNode)}.
+   */
+  @Test
+  public void testMerge() throws IOException {
+    JsonNode base = Json.mapper.readTree("{\"a\":1,\"b\":{\"x\":1,\"y\":1},\"c\":1,\"arr\":[1,2],"
+        + "\"m\":{\"@arrayMap\":[{\"key\":\"k1\",\"value\":{\"v\":1}},{\"key\":\"k2\",\"value\":{\"v\":2}}]}}");
+    JsonNode left = Json.mapper.readTree("{\"a\":2,\"b\":{\"x\":2,\"y\":1},\"c\":2,\"arr\":[1,2,3],"
+        + "\"m\":{\"@arrayMap\":[{\"key\":\"k1\",\"value\":{\"v\":10}},{\"key\":\"k2\",\"value\":{\"v\":2}}]}}");
+    JsonNode right = Json.mapper.readTree("{\"a\":1,\"b\":{\"x\":1,\"y\":3},\"c\":3,\"arr\":[0,1,2],"
+        + "\"m\":{\"@arrayMap\":[{\"key\":\"k1\",\"value\":{\"v\":1}},{\"key\":\"k3\",\"value\":{\"v\":3}}]}}");
+    JsonNode expected = Json.mapper.readTree("{\"a\":2,\"b\":{\"x\":2,\"y\":3},\"c\":3,\"arr\":[0,1,2],"
+        + "\"m\":{\"@arrayMap\":[{\"key\":\"k1\",\"value\":{\"v\":10}},{\"key\":\"k3\",\"value\":{\"v\":3}}]}}");
+
+    JsonDiff.MergeResult result = JsonDiff.merge(base, JsonDiff.getDiff(base, left), JsonDiff.getDiff(base, right));
+
+    assertTrue(result.hasConflicts());
+    assertEquals(Arrays.asList("/c", "/arr"), result.getConflicts());
+    assertEquals(expected, JsonDiff.applyDiff(base.deepCopy(), result.getDiff()));
+  }
+
   /**
    * Test method for {@link de.braintags.vertx.util.json.JsonDiff#retainDiffTree(JsonNode, JsonNode, JsonNode)}.
    * 
@@ -0,0 +1,121 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.DecimalNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.vertx.core.json.Json;
+
+public class TJsonDiffCodec {
+
+  @BeforeClass
+  public static void setup() {
+    JsonConfig.staticInit();
+  }
+
+  @Test
+  public void testValues() {
+    JsonNodeFactory nc = JsonNodeFactory.instance;
+    ObjectNode diff = nc.objectNode();
+    diff.set("null", nc.nullNode());
+    diff.put("true", true);
+    diff.put("false", false);
+    diff.put("int", -42);
+    diff.put("maxInt", Integer.MAX_VALUE);
+    diff.put("long", Long.MIN_VALUE);
+    diff.put("smallLong", 3L);
+    diff.put("float", 1.5f);
+    diff.put("double", -0.1);
+    diff.set("bigInteger", nc.numberNode(new BigInteger("123456789012345678901234567890")));
+    // the scale is kept
+    diff.set("decimal", DecimalNode.valueOf(new BigDecimal("-12.500")));
+    diff.put("string", "äöü €");
+    diff.put("repeated", "string");
+    diff.put("binary", new byte[] { 0, 1, -1 });
+    diff.set("array", nc.arrayNode().add("a").add(nc.objectNode().put("value", 1).put("other", 2)).add(3));
+    assertRoundTrip(diff);
+  }
+
+  @Test
+  public void testArrayDiff() throws IOException {
+    ArrayNode base = JsonNodeFactory.instance.arrayNode();
+    for (int i = 0; i < 1000; i++) {
+      base.add(JsonNodeFactory.instance.objectNode().put("id", i).put("name", "element " + i));
+    }
+    ArrayNode data = base.deepCopy();
+    data.remove(10);
+    ((ObjectNode) data.get(500)).put("name", "changed");
+    data.insert(700, JsonNodeFactory.instance.objectNode().put("id", -1));
+
+    JsonNode diff = JsonDiff.getDiff(base, data);
+    byte[] patch = assertRoundTrip(diff);
+    // the runs of unchanged elements are encoded as start and length
+    assertTrue(patch.length < 100);
+    assertTrue(patch.length < Json.mapper.writeValueAsBytes(diff).length / 10);
+    assertEquals(data, JsonDiffCodec.applyPatch(base.deepCopy(), patch));
+  }
+
+  @Test
+  public void testPojoDiff() throws IOException {
+    JsonNode base = Json.mapper.readTree("{\"a\":{\"x\":1,\"y\":[1,2,3]},\"b\":\"text\",\"removed\":1,"
+        + "\"arrayMap\":{\"@arrayMap\":[{\"key\":\"k1\",\"value\":{\"v\":1}},{\"key\":\"k2\",\"value\":{\"v\":2}}]}}");
+    JsonNode data = Json.mapper.readTree("{\"a\":{\"x\":2,\"y\":[3,1,2]},\"b\":\"text\",\"added\":[true],"
+        + "\"arrayMap\":{\"@arrayMap\":[{\"key\":\"k2\",\"value\":{\"v\":3}},{\"key\":\"k3\",\"value\":{\"v\":4}}]}}");
+    JsonNode diff = JsonDiff.getDiff(base, data);
+    byte[] patch = assertRoundTrip(diff);
+    assertEquals(JsonDiff.applyDiff(base.deepCopy(), diff), JsonDiffCodec.applyPatch(base.deepCopy(), patch));
+  }
+
+  @Test
+  public void testIntArrayValues() throws IOException {
+    assertRoundTrip(Json.mapper.readTree("{\"temps\":[-5,3]}"));
+    assertRoundTrip(Json.mapper.readTree("[{\"value\":[-1,0,1]},{\"diff\":[0,-2],\"index\":0}]"));
+    assertRoundTrip(Json.mapper.readTree("{\"a\":{\"@jsonDiffOverride\":true,\"ids\":[0,1,2]}}"));
+
+    JsonNode base = Json.mapper.readTree("{\"a\":\"text\"}");
+    JsonNode data = Json.mapper.readTree("{\"a\":[-1,2]}");
+    JsonNode diff = JsonDiff.getDiff(base, data);
+    byte[] patch = assertRoundTrip(diff);
+    assertEquals(data, JsonDiffCodec.applyPatch(base.deepCopy(), patch));
+    // an added field is copied as value
+    assertRoundTrip(JsonDiff.getDiff(base, Json.mapper.readTree("{\"a\":\"text\",\"added\":[3,-4,5]}")));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTruncated() {
+    byte[] patch = JsonDiffCodec.encode(JsonNodeFactory.instance.objectNode().put("field", "value"));
+    JsonDiffCodec.decode(Arrays.copyOf(patch, patch.length - 1));
+  }
+
+  private static byte[] assertRoundTrip(final JsonNode diff) {
+    byte[] patch = JsonDiffCodec.encode(diff);
+    assertEquals(diff, JsonDiffCodec.decode(patch));
+    return patch;
+  }
+
+}
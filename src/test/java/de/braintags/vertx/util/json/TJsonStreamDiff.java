@@ -0,0 +1,127 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.vertx.core.json.Json;
+
+public class TJsonStreamDiff {
+
+  private static final String BASE = "{\"equal\":1,\"changed\":\"a\",\"removed\":true,"
+      + "\"inner\":{\"x\":1,\"y\":[1,2,3],\"same\":{\"z\":0}},"
+      + "\"array\":[{\"a\":1},{\"a\":2},3],"
+      + "\"map\":{\"@arrayMap\":[{\"key\":\"k1\",\"value\":{\"v\":1}},{\"key\":\"k2\",\"value\":{\"v\":2}}]},"
+      + "\"typeChanged\":5}";
+
+  private static final String DATA = "{\"equal\":1,\"changed\":\"b\","
+      + "\"inner\":{\"x\":2,\"y\":[3,1,4],\"same\":{\"z\":0}},"
+      + "\"array\":[3,{\"a\":1},{\"a\":5}],"
+      + "\"map\":{\"@arrayMap\":[{\"key\":\"k1\",\"value\":{\"v\":10}}]},"
+      + "\"typeChanged\":{\"t\":1},\"added\":{\"n\":null}}";
+
+  private static final String DATA_REORDERED = "{\"added\":{\"n\":null},\"typeChanged\":{\"t\":1},"
+      + "\"map\":{\"@arrayMap\":[{\"key\":\"k1\",\"value\":{\"v\":10}}]},"
+      + "\"inner\":{\"same\":{\"z\":0},\"y\":[3,1,4],\"x\":2},"
+      + "\"changed\":\"b\",\"array\":[3,{\"a\":1},{\"a\":5}],\"equal\":1}";
+
+  @BeforeClass
+  public static void setup() {
+    JsonConfig.staticInit();
+  }
+
+  @Test
+  public void testSameFieldOrder() throws IOException {
+    assertSameDiff(BASE, DATA);
+  }
+
+  @Test
+  public void testDifferentFieldOrder() throws IOException {
+    assertSameDiff(BASE, DATA_REORDERED);
+    assertSameDiff(DATA_REORDERED, BASE);
+  }
+
+  @Test
+  public void testUnchanged() throws IOException {
+    assertEquals("{}", streamDiff(BASE, BASE));
+    assertEquals("{}", streamDiff(DATA, DATA_REORDERED));
+  }
+
+  @Test
+  public void testTreeAndParser() throws IOException {
+    JsonNode base = Json.mapper.readTree(BASE);
+    StringWriter writer = new StringWriter();
+    JsonFactory factory = Json.mapper.getFactory();
+    try (JsonParser data = factory.createParser(DATA); JsonGenerator out = factory.createGenerator(writer)) {
+      JsonStreamDiff.getDiff(base, data, out);
+    }
+    JsonNode diff = Json.mapper.readTree(writer.toString());
+    JsonNode applied = JsonDiff.applyDiff(base.deepCopy(), diff);
+    JsonNode expected = JsonDiff.applyDiff(base.deepCopy(), JsonDiff.getDiff(base, Json.mapper.readTree(DATA)));
+    assertEquals(expected, applied);
+  }
+
+  @Test
+  public void testHasherPerTree() throws IOException {
+    String base = "{\"a\":[1,2],\"b\":[3,4],\"c\":{\"@arrayMap\":[{\"key\":\"k\",\"value\":1}]}}";
+    String data = "{\"a\":[2,1],\"b\":[3,4],\"c\":{\"@arrayMap\":[{\"key\":\"k\",\"value\":2}]}}";
+    List<StructuralHasher> hashers = new ArrayList<>();
+    StringWriter writer = new StringWriter();
+    JsonFactory factory = Json.mapper.getFactory();
+    try (JsonParser baseParser = factory.createParser(base);
+        JsonParser dataParser = factory.createParser(data);
+        JsonGenerator out = factory.createGenerator(writer)) {
+      JsonStreamDiff.getDiff(baseParser, dataParser, out, () -> {
+        StructuralHasher hasher = new StructuralHasher();
+        hashers.add(hasher);
+        return hasher;
+      });
+    }
+    assertEquals(JsonDiff.getDiff(Json.mapper.readTree(base), Json.mapper.readTree(data)),
+        Json.mapper.readTree(writer.toString()));
+    // each array and array map is hashed by its own hasher, no nodes are kept from one field to the next
+    assertEquals(3, hashers.size());
+    assertTrue(hashers.get(0) != hashers.get(1) && hashers.get(1) != hashers.get(2));
+  }
+
+  private static void assertSameDiff(final String base, final String data) throws IOException {
+    JsonNode expected = JsonDiff.getDiff(Json.mapper.readTree(base), Json.mapper.readTree(data));
+    assertEquals(expected, Json.mapper.readTree(streamDiff(base, data)));
+  }
+
+  private static String streamDiff(final String base, final String data) throws IOException {
+    StringWriter writer = new StringWriter();
+    JsonFactory factory = Json.mapper.getFactory();
+    try (JsonParser baseParser = factory.createParser(base);
+        JsonParser dataParser = factory.createParser(data);
+        JsonGenerator out = factory.createGenerator(writer)) {
+      JsonStreamDiff.getDiff(baseParser, dataParser, out);
+    }
+    return writer.toString();
+  }
+
+}
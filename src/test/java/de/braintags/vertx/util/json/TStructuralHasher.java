@@ -0,0 +1,99 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import io.vertx.core.json.Json;
+
+public class TStructuralHasher {
+
+  @Test
+  public void testFieldOrderIsIgnored() throws IOException {
+    StructuralHasher hasher = new StructuralHasher();
+    JsonNode a = Json.mapper.readTree("{\"x\":1,\"y\":{\"a\":[1,2],\"b\":\"c\"}}");
+    JsonNode b = Json.mapper.readTree("{\"y\":{\"b\":\"c\",\"a\":[1,2]},\"x\":1}");
+    assertEquals(hasher.hash(a), hasher.hash(b));
+    assertTrue(hasher.equal(a, b));
+
+    // array order is not ignored
+    JsonNode c = Json.mapper.readTree("{\"x\":1,\"y\":{\"a\":[2,1],\"b\":\"c\"}}");
+    assertFalse(hasher.equal(a, c));
+    // a field name and value swapped
+    assertFalse(hasher.equal(Json.mapper.readTree("{\"a\":\"b\"}"), Json.mapper.readTree("{\"b\":\"a\"}")));
+  }
+
+  @Test
+  public void testValueNodes() {
+    StructuralHasher hasher = new StructuralHasher();
+    JsonNodeFactory factory = JsonNodeFactory.instance;
+    // not equal by JsonNode.equals
+    assertFalse(hasher.equal(factory.numberNode(1), factory.numberNode(1L)));
+    assertFalse(hasher.equal(factory.textNode("1"), factory.numberNode(1)));
+    assertFalse(hasher.equal(factory.nullNode(), factory.textNode("null")));
+    // equal by JsonNode.equals
+    assertTrue(hasher.equal(factory.numberNode(new BigDecimal("1.0")), factory.numberNode(new BigDecimal("1.00"))));
+    assertTrue(hasher.equal(factory.numberNode(2.5), factory.numberNode(2.5)));
+  }
+
+  @Test
+  public void testArrayMapEntryOrderIsIgnored() {
+    StructuralHasher hasher = new StructuralHasher();
+    JsonNodeFactory factory = JsonNodeFactory.instance;
+    Map<JsonNode, JsonNode> first = new LinkedHashMap<>();
+    first.put(factory.textNode("k1"), factory.numberNode(1));
+    first.put(factory.textNode("k2"), factory.numberNode(2));
+    Map<JsonNode, JsonNode> second = new LinkedHashMap<>();
+    second.put(factory.textNode("k2"), factory.numberNode(2));
+    second.put(factory.textNode("k1"), factory.numberNode(1));
+    assertTrue(hasher.equal(new ArrayMapNode(first), new ArrayMapNode(second)));
+    second.put(factory.textNode("k1"), factory.numberNode(3));
+    assertNotEquals(hasher.hash(new ArrayMapNode(first)), hasher.hash(new ArrayMapNode(second)));
+  }
+
+  @Test
+  public void testDiffSkipsUnchangedSubtrees() throws IOException {
+    JsonNode base = Json.mapper.readTree("{\"same\":{\"a\":[1,2,3]},\"array\":[1,2],\"changed\":{\"b\":1}}");
+    JsonNode data = Json.mapper.readTree("{\"same\":{\"a\":[1,2,3]},\"array\":[1,2],\"changed\":{\"b\":2}}");
+    assertEquals(Json.mapper.readTree("{\"changed\":{\"b\":2}}"), JsonDiff.getDiff(base, data));
+  }
+
+  @Test
+  public void testHashCollisionIsConfirmed() throws IOException {
+    // every node has the same hash
+    StructuralHasher colliding = new StructuralHasher() {
+      @Override
+      Hash hash128(final JsonNode node) {
+        return new Hash(1, 1);
+      }
+    };
+    JsonNode a = Json.mapper.readTree("{\"x\":[1,2]}");
+    assertFalse(colliding.equal(a, Json.mapper.readTree("{\"x\":[2,1]}")));
+    assertFalse(colliding.equal(Json.mapper.readTree("1"), Json.mapper.readTree("2")));
+    assertTrue(colliding.equal(a, a.deepCopy()));
+  }
+
+}
@@ -0,0 +1,108 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.lock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import de.braintags.vertx.util.async.AsyncTimeoutException;
+import de.braintags.vertx.util.async.SharedFuture;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class AsyncSemaphoreTest {
+
+  private Vertx vertx;
+
+  @Before
+  public void setUp() {
+    vertx = Vertx.vertx();
+  }
+
+  @After
+  public void tearDown(final TestContext context) {
+    vertx.close(context.asyncAssertSuccess());
+  }
+
+  @Test
+  public void testWeightedFifo(final TestContext context) {
+    AsyncSemaphore semaphore = new AsyncSemaphore(3);
+    List<String> order = new ArrayList<>();
+    List<Runnable> finishers = new ArrayList<>();
+
+    semaphore.execute(2, 0, record(order, "a", finishers));
+    // needs 2 permits, only 1 available
+    semaphore.execute(2, 0, record(order, "b", finishers));
+    // would fit, but must not overtake b
+    semaphore.execute(1, 0, record(order, "c", finishers));
+    context.assertEquals("[a]", order.toString());
+    context.assertEquals(1, semaphore.getAvailablePermits());
+    context.assertEquals(2, semaphore.getQueueLength());
+
+    finishers.get(0).run();
+    context.assertEquals("[a, b, c]", order.toString());
+    context.assertEquals(0, semaphore.getAvailablePermits());
+    finishers.get(1).run();
+    finishers.get(2).run();
+    context.assertEquals(3, semaphore.getAvailablePermits());
+  }
+
+  @Test
+  public void testCancel(final TestContext context) {
+    AsyncSemaphore semaphore = new AsyncSemaphore(2);
+    List<String> order = new ArrayList<>();
+    List<Runnable> finishers = new ArrayList<>();
+
+    semaphore.execute(1, 0, record(order, "a", finishers));
+    SharedFuture<Void> heavy = semaphore.execute(2, 0, record(order, "b", finishers));
+    semaphore.execute(1, 0, record(order, "c", finishers));
+    context.assertEquals("[a]", order.toString());
+
+    heavy.tryFail(new CancellationException());
+    context.assertEquals("[a, c]", order.toString());
+    context.assertEquals(0, semaphore.getQueueLength());
+  }
+
+  @Test
+  public void testTimeout(final TestContext context) {
+    AsyncSemaphore semaphore = new AsyncSemaphore(vertx, 1);
+    List<Runnable> finishers = new ArrayList<>();
+    semaphore.execute(finishers::add);
+
+    Async async = context.async();
+    semaphore.execute(1, 50, finish -> context.fail("timed out execution executed")).setHandler(res -> {
+      context.assertTrue(res.cause() instanceof AsyncTimeoutException);
+      finishers.get(0).run();
+      context.assertEquals(1, semaphore.getAvailablePermits());
+      async.complete();
+    });
+  }
+
+  private static LockedExecution record(final List<String> order, final String name,
+      final List<Runnable> finishers) {
+    return finish -> {
+      order.add(name);
+      finishers.add(finish);
+    };
+  }
+
+}
@@ -0,0 +1,62 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.lock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import de.braintags.vertx.util.async.MultiThreadedFuture;
+import io.vertx.core.Future;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class BulkheadTest {
+
+  @Test
+  public void testQueueAndReject(final TestContext context) {
+    Bulkhead bulkhead = new Bulkhead(2, 1);
+    List<Future<String>> pending = new ArrayList<>();
+
+    MultiThreadedFuture<String> f1 = bulkhead.execute(() -> add(pending));
+    bulkhead.execute(() -> add(pending));
+    MultiThreadedFuture<String> queued = bulkhead.execute(() -> add(pending));
+    MultiThreadedFuture<String> rejected = bulkhead.execute(() -> add(pending));
+
+    context.assertEquals(2, pending.size());
+    context.assertEquals(2, bulkhead.getActiveCount());
+    context.assertEquals(1, bulkhead.getQueueLength());
+    context.assertTrue(rejected.cause() instanceof RejectedExecutionException);
+    context.assertEquals(1L, bulkhead.getRejectedCount());
+
+    pending.get(0).complete("a");
+    context.assertEquals("a", f1.result());
+    // the queued operation is started in the free slot
+    context.assertEquals(3, pending.size());
+    pending.get(2).fail("failed");
+    context.assertTrue(queued.failed());
+    pending.get(1).complete("b");
+    context.assertEquals(0, bulkhead.getActiveCount());
+  }
+
+  private static Future<String> add(final List<Future<String>> pending) {
+    Future<String> f = Future.future();
+    pending.add(f);
+    return f;
+  }
+
+}
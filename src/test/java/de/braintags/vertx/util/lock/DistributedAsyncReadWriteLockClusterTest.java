@@ -0,0 +1,127 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.lock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.spi.cluster.hazelcast.HazelcastClusterManager;
+
+/**
+ * Two clustered vertx instances in this JVM, joined by an in-memory Hazelcast cluster on the loopback interface. The
+ * lock server runs on the first node, the messages of the second node go over the clustered event bus.
+ */
+@RunWith(VertxUnitRunner.class)
+public class DistributedAsyncReadWriteLockClusterTest {
+
+  private static final String ADDRESS = "test.cluster.locks";
+
+  private Vertx vertx1;
+  private Vertx vertx2;
+  private DistributedLockServer server;
+
+  @Before
+  public void setUp(final TestContext context) {
+    Async started = context.async(2);
+    Vertx.clusteredVertx(options(), context.asyncAssertSuccess(v -> {
+      vertx1 = v;
+      server = new DistributedLockServer(v, ADDRESS).start();
+      started.countDown();
+      // the second node joins after the server is registered
+      Vertx.clusteredVertx(options(), context.asyncAssertSuccess(v2 -> {
+        vertx2 = v2;
+        started.countDown();
+      }));
+    }));
+    started.awaitSuccess(60000);
+  }
+
+  @After
+  public void tearDown(final TestContext context) {
+    server.close();
+    vertx2.close(context.asyncAssertSuccess());
+    vertx1.close(context.asyncAssertSuccess());
+  }
+
+  @Test
+  public void testWritersOfNodesAreSerialized(final TestContext context) {
+    DistributedAsyncReadWriteLock node1 = new DistributedAsyncReadWriteLock(vertx1, ADDRESS, "resource");
+    DistributedAsyncReadWriteLock node2 = new DistributedAsyncReadWriteLock(vertx2, ADDRESS, "resource");
+    boolean[] released = new boolean[1];
+    Async async = context.async();
+
+    node1.execute(false, (token, finish) -> {
+      node2.execute(false, (token2, finish2) -> {
+        // node1 has released its lease
+        context.assertTrue(released[0]);
+        context.assertTrue(token2 > token);
+        finish2.run();
+        async.complete();
+      });
+      vertx1.setTimer(200, id -> {
+        released[0] = true;
+        finish.run();
+      });
+    });
+  }
+
+  @Test
+  public void testReadLeasePerNode(final TestContext context) {
+    DistributedAsyncReadWriteLock node1 = new DistributedAsyncReadWriteLock(vertx1, ADDRESS, "resource");
+    DistributedAsyncReadWriteLock node2 = new DistributedAsyncReadWriteLock(vertx2, ADDRESS, "resource");
+    Async async = context.async();
+    boolean[] readersDone = new boolean[1];
+
+    node2.execute(true, (token, finish) -> node2.execute(true, (token2, finish2) -> {
+      // the readers of node2 share the lease of node2
+      context.assertEquals(token, token2);
+      node1.execute(true, (token3, finish3) -> {
+        // node1 reads in parallel with its own lease
+        context.assertNotEquals(token, token3);
+        node1.execute(false, (token4, finish4) -> {
+          // the writer waits for the readers of both nodes
+          context.assertTrue(readersDone[0]);
+          context.assertTrue(token4 > token3);
+          finish4.run();
+          async.complete();
+        });
+        vertx2.setTimer(200, id -> {
+          readersDone[0] = true;
+          finish2.run();
+          finish.run();
+          finish3.run();
+        });
+      });
+    }));
+  }
+
+  private static VertxOptions options() {
+    Config config = new Config();
+    JoinConfig join = config.getNetworkConfig().getJoin();
+    join.getMulticastConfig().setEnabled(false);
+    join.getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+    config.getNetworkConfig().getInterfaces().setEnabled(true).addInterface("127.0.0.1");
+    return new VertxOptions().setClusterManager(new HazelcastClusterManager(config)).setClusterHost("127.0.0.1");
+  }
+
+}
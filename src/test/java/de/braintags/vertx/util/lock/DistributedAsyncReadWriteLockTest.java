@@ -0,0 +1,214 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.lock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+/**
+ * The nodes are simulated by several lock instances on the event bus of one vertx instance, each with its own local
+ * lock and read lease.
+ */
+@RunWith(VertxUnitRunner.class)
+public class DistributedAsyncReadWriteLockTest {
+
+  private static final String ADDRESS = "test.locks";
+
+  private Vertx vertx;
+  private DistributedLockServer server;
+
+  @Before
+  public void setUp() {
+    vertx = Vertx.vertx();
+    server = new DistributedLockServer(vertx, ADDRESS).start();
+  }
+
+  @After
+  public void tearDown(final TestContext context) {
+    server.close();
+    vertx.close(context.asyncAssertSuccess());
+  }
+
+  @Test
+  public void testWritersOfNodesAreSerialized(final TestContext context) {
+    DistributedAsyncReadWriteLock node1 = new DistributedAsyncReadWriteLock(vertx, ADDRESS, "resource");
+    DistributedAsyncReadWriteLock node2 = new DistributedAsyncReadWriteLock(vertx, ADDRESS, "resource");
+    List<Long> tokens = new ArrayList<>();
+    Async async = context.async();
+
+    node1.execute(false, (token, finish) -> {
+      tokens.add(token);
+      node2.execute(false, (token2, finish2) -> {
+        // node1 has released its lease
+        context.assertEquals(1, tokens.size());
+        context.assertTrue(token2 > token);
+        finish2.run();
+        async.complete();
+      });
+      vertx.setTimer(100, id -> finish.run());
+    });
+  }
+
+  @Test
+  public void testLocalReadersShareLease(final TestContext context) {
+    DistributedAsyncReadWriteLock node1 = new DistributedAsyncReadWriteLock(vertx, ADDRESS, "resource");
+    Async async = context.async();
+
+    node1.execute(true, (token, finish) -> {
+      node1.execute(true, (token2, finish2) -> {
+        // granted without a new lease
+        context.assertEquals(token, token2);
+        finish2.run();
+        finish.run();
+        async.complete();
+      });
+    });
+  }
+
+  @Test
+  public void testWaitingWriterStopsSharedReadLease(final TestContext context) {
+    DistributedAsyncReadWriteLock node1 = new DistributedAsyncReadWriteLock(vertx, ADDRESS, "resource")
+        .setLeaseMs(60);
+    DistributedAsyncReadWriteLock node2 = new DistributedAsyncReadWriteLock(vertx, ADDRESS, "resource");
+    List<String> order = new ArrayList<>();
+    Async async = context.async();
+
+    node1.execute(true, (token, finish) -> {
+      node2.writeLock(finish2 -> {
+        order.add("writer");
+        finish2.run();
+      });
+      // a reader overlapping the first one, started after the renewal reported the waiting writer
+      vertx.setTimer(100, id -> node1.execute(true, (token2, finish3) -> {
+        order.add("reader");
+        context.assertTrue(token2 > token);
+        context.assertEquals("[writer, reader]", order.toString());
+        finish3.run();
+        async.complete();
+      }));
+      vertx.setTimer(200, id -> finish.run());
+    });
+  }
+
+  @Test
+  public void testLeaseExpires(final TestContext context) {
+    DistributedAsyncReadWriteLock node2 = new DistributedAsyncReadWriteLock(vertx, ADDRESS, "resource");
+    Async async = context.async();
+
+    // a node which crashes after acquiring the write lease
+    JsonObject acquire = new JsonObject().put(DistributedLockServer.ACTION, DistributedLockServer.ACQUIRE)
+        .put(DistributedLockServer.NAME, "resource").put(DistributedLockServer.LEASE_MS, 200L);
+    vertx.eventBus().send(ADDRESS, acquire, (AsyncResult<Message<JsonObject>> res) -> {
+      context.assertTrue(res.succeeded());
+      long start = System.currentTimeMillis();
+      node2.writeLock(finish -> {
+        context.assertTrue(System.currentTimeMillis() - start >= 150);
+        finish.run();
+        async.complete();
+      });
+    });
+  }
+
+  @Test
+  public void testTimedOutRequestIsDropped(final TestContext context) {
+    DistributedAsyncReadWriteLock node2 = new DistributedAsyncReadWriteLock(vertx, ADDRESS, "resource")
+        .setAcquireTimeoutMs(100);
+    DistributedAsyncReadWriteLock node3 = new DistributedAsyncReadWriteLock(vertx, ADDRESS, "resource");
+    Async async = context.async();
+
+    // a node holding the write lease much longer than the timeout of node2
+    JsonObject acquire = new JsonObject().put(DistributedLockServer.ACTION, DistributedLockServer.ACQUIRE)
+        .put(DistributedLockServer.NAME, "resource").put(DistributedLockServer.LEASE_MS, 60000L);
+    vertx.eventBus().send(ADDRESS, acquire, (AsyncResult<Message<JsonObject>> res) -> {
+      String lease = res.result().body().getString(DistributedLockServer.LEASE);
+      node2.writeLock(finish -> context.fail("granted after the timeout")).setHandler(res2 -> {
+        context.assertTrue(res2.failed());
+        vertx.eventBus().send(ADDRESS, new JsonObject().put(DistributedLockServer.ACTION, DistributedLockServer.RELEASE)
+            .put(DistributedLockServer.NAME, "resource").put(DistributedLockServer.LEASE, lease));
+        // the request of node2 does not hold the lock for its lease time
+        long start = System.currentTimeMillis();
+        node3.writeLock(finish -> {
+          context.assertTrue(System.currentTimeMillis() - start < 5000);
+          finish.run();
+          async.complete();
+        });
+      });
+    });
+  }
+
+  @Test
+  public void testLostReadLeaseIsNotShared(final TestContext context) {
+    // a server which grants leases, but does not know them when they are renewed
+    int[] acquires = new int[1];
+    vertx.eventBus().<JsonObject> consumer("test.expiring", message -> {
+      String action = message.body().getString(DistributedLockServer.ACTION);
+      if (DistributedLockServer.ACQUIRE.equals(action)) {
+        acquires[0]++;
+        message.reply(new JsonObject().put(DistributedLockServer.LEASE, "lease" + acquires[0])
+            .put(DistributedLockServer.TOKEN, (long) acquires[0]));
+      } else if (DistributedLockServer.RENEW.equals(action)) {
+        message.fail(DistributedLockServer.LEASE_EXPIRED, "lease expired");
+      }
+    });
+    DistributedAsyncReadWriteLock node1 = new DistributedAsyncReadWriteLock(vertx, "test.expiring", "resource")
+        .setLeaseMs(30);
+    Async async = context.async();
+
+    node1.execute(true, (token, finish) -> vertx.setTimer(100, id -> {
+      // the renewal of the shared lease has failed, the next reader acquires a new one
+      node1.execute(true, (token2, finish2) -> {
+        context.assertEquals(2, acquires[0]);
+        context.assertNotEquals(token, token2);
+        finish2.run();
+        finish.run();
+        async.complete();
+      });
+    }));
+  }
+
+  @Test
+  public void testLeaseIsRenewed(final TestContext context) {
+    DistributedAsyncReadWriteLock node1 = new DistributedAsyncReadWriteLock(vertx, ADDRESS, "resource")
+        .setLeaseMs(150);
+    DistributedAsyncReadWriteLock node2 = new DistributedAsyncReadWriteLock(vertx, ADDRESS, "resource");
+    boolean[] released = new boolean[1];
+    Async async = context.async();
+
+    node1.writeLock(finish -> {
+      node2.writeLock(finish2 -> {
+        context.assertTrue(released[0]);
+        finish2.run();
+        async.complete();
+      });
+      // held longer than the lease time
+      vertx.setTimer(500, id -> {
+        released[0] = true;
+        finish.run();
+      });
+    });
+  }
+
+}
@@ -0,0 +1,166 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.lock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import de.braintags.vertx.util.async.AsyncTimeoutException;
+import de.braintags.vertx.util.async.SharedFuture;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class FairAsyncReadWriteLockTest {
+
+  private Vertx vertx;
+
+  @Before
+  public void setUp() {
+    vertx = Vertx.vertx();
+  }
+
+  @After
+  public void tearDown(final TestContext context) {
+    vertx.close(context.asyncAssertSuccess());
+  }
+
+  @Test
+  public void testFifoAndReaderBatch(final TestContext context) {
+    FairAsyncReadWriteLock lock = new FairAsyncReadWriteLock();
+    List<String> order = new ArrayList<>();
+    List<Runnable> finishers = new ArrayList<>();
+    LockedExecution hold = finish -> finishers.add(finish);
+
+    lock.writeLock(record(order, "w1", hold));
+    lock.readLock(record(order, "r1", hold));
+    lock.readLock(record(order, "r2", hold));
+    lock.writeLock(record(order, "w2", hold));
+    // must not overtake the waiting writer
+    lock.readLock(record(order, "r3", hold));
+    context.assertEquals(4, lock.getQueueLength());
+
+    finishers.get(0).run();
+    // both readers at the head are granted together
+    context.assertEquals(order.toString(), "[w1, r1, r2]");
+    context.assertEquals(2, lock.getReadLockCount());
+
+    finishers.get(1).run();
+    context.assertEquals(order.size(), 3);
+    finishers.get(2).run();
+    context.assertEquals(order.toString(), "[w1, r1, r2, w2]");
+    context.assertTrue(lock.isWriteLocked());
+
+    finishers.get(3).run();
+    context.assertEquals(order.toString(), "[w1, r1, r2, w2, r3]");
+    finishers.get(4).run();
+    // finishing twice does not release twice
+    finishers.get(4).run();
+    context.assertEquals(0, lock.getReadLockCount());
+    context.assertFalse(lock.isWriteLocked());
+    context.assertEquals(0, lock.getQueueLength());
+  }
+
+  @Test
+  public void testCancel(final TestContext context) {
+    FairAsyncReadWriteLock lock = new FairAsyncReadWriteLock();
+    List<Runnable> finishers = new ArrayList<>();
+    AtomicInteger readers = new AtomicInteger();
+
+    lock.readLock(finishers::add);
+    SharedFuture<Void> writer = lock.writeLock(finish -> context.fail("cancelled writer executed"));
+    SharedFuture<Void> reader = lock.readLock(finish -> {
+      readers.incrementAndGet();
+      finish.run();
+    });
+    context.assertEquals(0, readers.get());
+
+    writer.tryFail(new CancellationException());
+    // the reader behind the cancelled writer is granted
+    context.assertEquals(1, readers.get());
+    context.assertTrue(reader.succeeded());
+    finishers.get(0).run();
+    context.assertEquals(0, lock.getReadLockCount());
+  }
+
+  @Test
+  public void testTimeout(final TestContext context) {
+    FairAsyncReadWriteLock lock = new FairAsyncReadWriteLock(vertx);
+    List<Runnable> finishers = new ArrayList<>();
+    lock.writeLock(finishers::add);
+
+    Async async = context.async();
+    lock.execute(true, 50, finish -> context.fail("timed out reader executed")).setHandler(res -> {
+      context.assertTrue(res.cause() instanceof AsyncTimeoutException);
+      context.assertEquals(0, lock.getQueueLength());
+      finishers.get(0).run();
+      context.assertFalse(lock.isWriteLocked());
+      async.complete();
+    });
+  }
+
+  @Test
+  public void testRunOnRequestingContext(final TestContext context) {
+    FairAsyncReadWriteLock lock = new FairAsyncReadWriteLock();
+    List<Runnable> finishers = new ArrayList<>();
+    lock.writeLock(finishers::add);
+
+    Async async = context.async();
+    Context requesting = vertx.getOrCreateContext();
+    requesting.runOnContext(v -> {
+      lock.readLock(finish -> {
+        context.assertTrue(Vertx.currentContext() == requesting);
+        finish.run();
+        async.complete();
+      });
+      // released from a thread without context
+      new Thread(finishers.get(0)).start();
+    });
+  }
+
+  @Test
+  public void testLongQueue(final TestContext context) {
+    FairAsyncReadWriteLock lock = new FairAsyncReadWriteLock();
+    List<Runnable> finishers = new ArrayList<>();
+    AtomicInteger executed = new AtomicInteger();
+    lock.writeLock(finishers::add);
+    for (int i = 0; i < 20000; i++) {
+      lock.execute(i % 2 == 0, 0, finish -> {
+        executed.incrementAndGet();
+        finish.run();
+      });
+    }
+    // the synchronous executions are run in a loop, not recursively
+    finishers.get(0).run();
+    context.assertEquals(20000, executed.get());
+    context.assertEquals(0, lock.getQueueLength());
+  }
+
+  private static LockedExecution record(final List<String> order, final String name, final LockedExecution execution) {
+    return finish -> {
+      order.add(name);
+      execution.perform(finish);
+    };
+  }
+
+}
@@ -0,0 +1,104 @@
+/*-
+ * #%L
+ * Vert.x utilities from Braintags
+ * %%
+ * Copyright (C) 2017 Braintags GmbH
+ * %%
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * #L%
+ */
+package de.braintags.vertx.util.lock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import de.braintags.vertx.util.async.SharedFuture;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class KeyedAsyncLockTest {
+
+  @Test
+  public void testKeysAreIndependent(final TestContext context) {
+    KeyedAsyncLock<String> lock = new KeyedAsyncLock<>();
+    List<String> order = new ArrayList<>();
+    List<Runnable> finishers = new ArrayList<>();
+
+    lock.writeLock("a", finish -> {
+      order.add("a1");
+      finishers.add(finish);
+    });
+    lock.writeLock("a", finish -> {
+      order.add("a2");
+      finishers.add(finish);
+    });
+    lock.writeLock("b", finish -> {
+      order.add("b1");
+      finishers.add(finish);
+    });
+    // the second writer of "a" waits, "b" is not blocked
+    context.assertEquals("[a1, b1]", order.toString());
+    context.assertEquals(2, lock.getLockCount());
+
+    finishers.get(0).run();
+    context.assertEquals("[a1, b1, a2]", order.toString());
+    finishers.get(1).run();
+    finishers.get(2).run();
+    // idle locks are removed
+    context.assertEquals(0, lock.getLockCount());
+  }
+
+  @Test
+  public void testCancelRunningExecution(final TestContext context) {
+    KeyedAsyncLock<String> lock = new KeyedAsyncLock<>();
+    List<String> order = new ArrayList<>();
+    List<Runnable> finishers = new ArrayList<>();
+
+    SharedFuture<Void> running = lock.writeLock("a", finish -> {
+      order.add("a1");
+      finishers.add(finish);
+    });
+    // the caller gives up, but the execution still holds the lock
+    running.fail(new IllegalStateException("cancelled"));
+    context.assertEquals(1, lock.getLockCount());
+
+    lock.writeLock("a", finish -> {
+      order.add("a2");
+      finishers.add(finish);
+    });
+    context.assertEquals("[a1]", order.toString());
+
+    finishers.get(0).run();
+    context.assertEquals("[a1, a2]", order.toString());
+    finishers.get(1).run();
+    context.assertEquals(0, lock.getLockCount());
+  }
+
+  @Test
+  public void testStripes(final TestContext context) {
+    KeyedAsyncLock<Integer> lock = new KeyedAsyncLock<>(null, 4);
+    List<Runnable> finishers = new ArrayList<>();
+    int[] executed = new int[1];
+    for (int i = 0; i < 100; i++) {
+      lock.writeLock(i, finish -> {
+        executed[0]++;
+        finishers.add(finish);
+      });
+    }
+    // one writer per stripe
+    context.assertEquals(4, executed[0]);
+    context.assertEquals(4, lock.getLockCount());
+    for (int i = 0; i < finishers.size(); i++) {
+      finishers.get(i).run();
+    }
+    context.assertEquals(100, executed[0]);
+  }
+
+}